@@ -0,0 +1,130 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.google.common.base.Strings;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.channel.BlackHoleChannel;
+import com.sonar.sslr.impl.channel.IdentifierAndKeywordChannel;
+import com.sonar.sslr.impl.channel.PunctuatorChannel;
+import com.sonar.sslr.impl.channel.RegexpChannel;
+import com.sonar.sslr.impl.channel.UnknownCharacterChannel;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Measures cost of lexing of C-like code by {@link Lexer},
+ * which is dominated by {@link PunctuatorChannel} and {@link IdentifierAndKeywordChannel}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class LexerBenchmark {
+
+  private static enum Keyword implements TokenType {
+    IF, ELSE, WHILE, FOR, RETURN, INT, CHAR, VOID, STRUCT, SIZEOF;
+
+    @Override
+    public String getName() {
+      return name();
+    }
+
+    @Override
+    public String getValue() {
+      return name().toLowerCase();
+    }
+
+    @Override
+    public boolean hasToBeSkippedFromAst(AstNode node) {
+      return false;
+    }
+  }
+
+  private static enum Punctuator implements TokenType {
+    ELLIPSIS("..."), SHL_ASSIGN("<<="), SHR_ASSIGN(">>="),
+    ADD_ASSIGN("+="), SUB_ASSIGN("-="), MUL_ASSIGN("*="), DIV_ASSIGN("/="), MOD_ASSIGN("%="),
+    AND_ASSIGN("&="), XOR_ASSIGN("^="), OR_ASSIGN("|="),
+    SHL("<<"), SHR(">>"), INC("++"), DEC("--"), ARROW("->"), ANDAND("&&"), OROR("||"),
+    LE("<="), GE(">="), EQ("=="), NE("!="),
+    LPAREN("("), RPAREN(")"), LBRACKET("["), RBRACKET("]"), LBRACE("{"), RBRACE("}"),
+    DOT("."), COMMA(","), SEMICOLON(";"), COLON(":"), QUESTION("?"), ASSIGN("="),
+    PLUS("+"), MINUS("-"), STAR("*"), DIV("/"), MOD("%"), AND("&"), OR("|"), XOR("^"), TILDE("~"), NOT("!"),
+    LT("<"), GT(">");
+
+    private final String value;
+
+    private Punctuator(String value) {
+      this.value = value;
+    }
+
+    @Override
+    public String getName() {
+      return name();
+    }
+
+    @Override
+    public String getValue() {
+      return value;
+    }
+
+    @Override
+    public boolean hasToBeSkippedFromAst(AstNode node) {
+      return false;
+    }
+  }
+
+  private Lexer lexer;
+  private String input;
+
+  @Setup
+  public void setup() {
+    int n = Integer.getInteger("n", 10);
+    lexer = Lexer.builder()
+        .withChannel(new BlackHoleChannel("\\s++"))
+        .withChannel(new IdentifierAndKeywordChannel("[a-zA-Z_][a-zA-Z_0-9]*+", true, Keyword.values()))
+        .withChannel(new RegexpChannel(GenericTokenType.LITERAL, "[0-9]++"))
+        .withChannel(new PunctuatorChannel(Punctuator.values()))
+        .withChannel(new UnknownCharacterChannel())
+        .build();
+    input = Strings.repeat(""
+      + "int f(struct s *p, int n) {\n"
+      + "  for (i = 0; i < n && p->a[i] != 0; i++) {\n"
+      + "    x += (p->b[i] << 2) | ~y;\n"
+      + "    if (x >= 10 || !z) return -1; else x %= 3;\n"
+      + "  }\n"
+      + "  return x == 0 ? sizeof(*p) : x >> 1;\n"
+      + "}\n", n);
+  }
+
+  @GenerateMicroBenchmark
+  public List<Token> lex() {
+    return lexer.lex(input);
+  }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.google.common.base.Strings;
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.Parser;
+import com.sonar.sslr.impl.channel.BlackHoleChannel;
+import com.sonar.sslr.impl.channel.RegexpChannel;
+import com.sonar.sslr.impl.channel.UnknownCharacterChannel;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.grammar.LexerfulGrammarBuilder;
+import org.sonar.sslr.internal.matchers.LexerfulAstCreator;
+import org.sonar.sslr.internal.vm.CompilableGrammarRule;
+import org.sonar.sslr.internal.vm.Machine;
+import org.sonar.sslr.internal.vm.MutableGrammarCompiler;
+
+import java.util.List;
+
+/**
+ * Measures cost of parsing of a single file by {@link Parser},
+ * compared to the cost of parsing with compilation of grammar for each file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class LexerfulParserBenchmark {
+
+  private static enum MyGrammar implements GrammarRuleKey {
+    COMPILATION_UNIT, STATEMENT, IF_STATEMENT, WHILE_STATEMENT, BLOCK, ASSIGNMENT, EXPRESSION, TERM, FACTOR;
+
+    public static Grammar create() {
+      LexerfulGrammarBuilder b = LexerfulGrammarBuilder.create();
+      b.setRootRule(COMPILATION_UNIT);
+      b.rule(COMPILATION_UNIT).is(b.zeroOrMore(STATEMENT), GenericTokenType.EOF);
+      b.rule(STATEMENT).is(b.firstOf(IF_STATEMENT, WHILE_STATEMENT, BLOCK, ASSIGNMENT));
+      b.rule(IF_STATEMENT).is("if", "(", EXPRESSION, ")", STATEMENT, b.optional("else", STATEMENT));
+      b.rule(WHILE_STATEMENT).is("while", "(", EXPRESSION, ")", STATEMENT);
+      b.rule(BLOCK).is("{", b.zeroOrMore(STATEMENT), "}");
+      b.rule(ASSIGNMENT).is(GenericTokenType.IDENTIFIER, "=", EXPRESSION, ";");
+      b.rule(EXPRESSION).is(TERM, b.zeroOrMore(b.firstOf("+", "-"), TERM));
+      b.rule(TERM).is(FACTOR, b.zeroOrMore(b.firstOf("*", "/"), FACTOR));
+      b.rule(FACTOR).is(b.firstOf(
+          GenericTokenType.IDENTIFIER,
+          GenericTokenType.LITERAL,
+          b.sequence("(", EXPRESSION, ")")));
+      return b.build();
+    }
+  }
+
+  private Parser<Grammar> parser;
+  private List<Token> tokens;
+
+  @Setup
+  public void setup() {
+    int n = Integer.getInteger("n", 10);
+    Lexer lexer = Lexer.builder()
+        .withChannel(new BlackHoleChannel("\\s++"))
+        .withChannel(new RegexpChannel(GenericTokenType.IDENTIFIER, "[a-zA-Z]++"))
+        .withChannel(new RegexpChannel(GenericTokenType.LITERAL, "[0-9]++"))
+        .withChannel(new UnknownCharacterChannel())
+        .build();
+    tokens = lexer.lex(Strings.repeat("if (a) { b = (c + 1) * d; } else while (e) f = g / 2 - h;\n", n));
+    parser = Parser.builder(MyGrammar.create()).withLexer(lexer).build();
+  }
+
+  @GenerateMicroBenchmark
+  public AstNode parse() {
+    return parser.parse(tokens);
+  }
+
+  @GenerateMicroBenchmark
+  public AstNode parseWithCompilationOfGrammar() {
+    CompilableGrammarRule rootRule = (CompilableGrammarRule) parser.getRootRule();
+    return LexerfulAstCreator.create(Machine.parse(tokens, MutableGrammarCompiler.compile(rootRule)), tokens);
+  }
+
+}
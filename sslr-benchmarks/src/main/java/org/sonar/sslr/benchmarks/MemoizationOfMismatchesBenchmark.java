@@ -28,6 +28,7 @@ import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.sonar.sslr.grammar.GrammarRuleKey;
 import org.sonar.sslr.grammar.LexerlessGrammarBuilder;
+import org.sonar.sslr.parser.MemoizationPolicy;
 import org.sonar.sslr.parser.ParseRunner;
 
 import java.util.Arrays;
@@ -36,7 +37,7 @@ import java.util.Arrays;
 @BenchmarkMode(Mode.Throughput)
 public class MemoizationOfMismatchesBenchmark {
 
-  private ParseRunner required, notRequired;
+  private ParseRunner required, notRequired, requiredPackrat;
   private char[] input;
 
   @Setup
@@ -59,6 +60,7 @@ public class MemoizationOfMismatchesBenchmark {
       b.rule(rules[i]).is(b.optional(spacing), "k" + i);
     }
     required = new ParseRunner(b.build().rule(root));
+    requiredPackrat = new ParseRunner(b.build().rule(root), false, MemoizationPolicy.MATCHES_AND_MISMATCHES);
 
     b = LexerlessGrammarBuilder.create();
     b.rule(root).is(b.zeroOrMore(b.firstOf(rules[0], rules[1], Arrays.copyOfRange(rules, 2, rules.length))), b.endOfInput());
@@ -74,6 +76,11 @@ public class MemoizationOfMismatchesBenchmark {
     return required.parse(input).isMatched();
   }
 
+  @GenerateMicroBenchmark
+  public boolean requiredPackrat() {
+    return requiredPackrat.parse(input).isMatched();
+  }
+
   @GenerateMicroBenchmark
   public boolean notRequired() {
     return notRequired.parse(input).isMatched();
@@ -0,0 +1,89 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.grammar.LexerlessGrammarBuilder;
+import org.sonar.sslr.internal.vm.CompilableGrammarRule;
+import org.sonar.sslr.internal.vm.CompiledGrammar;
+import org.sonar.sslr.internal.vm.Machine;
+import org.sonar.sslr.internal.vm.MutableGrammarCompiler;
+import org.sonar.sslr.internal.vm.Optimization;
+
+import java.util.Set;
+
+/**
+ * Ordered choice between operators and punctuators of C, compiled with and without {@link Optimization#STRING_TRIE}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class OperatorsBenchmark {
+
+  private static enum MyGrammar implements GrammarRuleKey {
+    OPERATORS
+  }
+
+  private static final String[] OPERATORS = {
+    "<<=", ">>=", "...", "->", "++", "--", "<<", ">>", "<=", ">=", "==", "!=", "&&", "||",
+    "*=", "/=", "%=", "+=", "-=", "&=", "^=", "|=", "##",
+    "[", "]", "(", ")", "{", "}", ".", "&", "*", "+", "-", "~", "!", "/", "%", "<", ">", "^", "|", "?", ":", ";", "=", ",", "#"};
+
+  private char[] input;
+  private CompiledGrammar trie, orderedChoice;
+
+  @Setup
+  public void setup() {
+    int n = Integer.getInteger("n", 10);
+    input = Strings.repeat(Joiner.on(' ').join(OPERATORS) + " ", n).toCharArray();
+
+    Object[] rest = new Object[OPERATORS.length - 1];
+    System.arraycopy(OPERATORS, 2, rest, 0, OPERATORS.length - 2);
+    rest[OPERATORS.length - 2] = " ";
+    LexerlessGrammarBuilder b = LexerlessGrammarBuilder.create();
+    b.rule(MyGrammar.OPERATORS).is(b.zeroOrMore(b.firstOf(OPERATORS[0], OPERATORS[1], rest)), b.endOfInput());
+    b.setRootRule(MyGrammar.OPERATORS);
+    CompilableGrammarRule rule = (CompilableGrammarRule) b.build().getRootRule();
+
+    Set<Optimization> optimizations = Optimizations.fromSystemProperty();
+    optimizations.add(Optimization.STRING_TRIE);
+    trie = MutableGrammarCompiler.compile(rule, optimizations);
+    optimizations.remove(Optimization.STRING_TRIE);
+    orderedChoice = MutableGrammarCompiler.compile(rule, optimizations);
+  }
+
+  @GenerateMicroBenchmark
+  public boolean trie() {
+    return Machine.parse(input, trie).isMatched();
+  }
+
+  @GenerateMicroBenchmark
+  public boolean orderedChoice() {
+    return Machine.parse(input, orderedChoice).isMatched();
+  }
+
+}
@@ -0,0 +1,49 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.google.common.base.Splitter;
+import org.sonar.sslr.internal.vm.Optimization;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+final class Optimizations {
+
+  private Optimizations() {
+  }
+
+  /**
+   * Reads optimizations from system property "optimizations", which contains comma-separated names.
+   * All optimizations are enabled by default.
+   */
+  static Set<Optimization> fromSystemProperty() {
+    String property = System.getProperty("optimizations");
+    if (property == null) {
+      return EnumSet.allOf(Optimization.class);
+    }
+    Set<Optimization> result = EnumSet.noneOf(Optimization.class);
+    for (String name : Splitter.on(',').trimResults().omitEmptyStrings().split(property)) {
+      result.add(Optimization.valueOf(name));
+    }
+    return result;
+  }
+
+}
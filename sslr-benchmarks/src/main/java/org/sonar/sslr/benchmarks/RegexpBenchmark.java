@@ -0,0 +1,85 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import com.google.common.base.Strings;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.GenerateMicroBenchmark;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.sslr.internal.regexp.Dfa;
+
+import java.nio.CharBuffer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares automaton with {@link java.util.regex} on typical regular expressions of lexerless grammars.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+public class RegexpBenchmark {
+
+  private static final String IDENTIFIER = "[a-zA-Z_][a-zA-Z_0-9]*+";
+  private static final String STRING_LITERAL = "\"(?:[^\"\\\\]|\\\\.)*+\"";
+
+  private char[] identifier, stringLiteral;
+  private Dfa identifierDfa, stringLiteralDfa;
+  private Matcher identifierMatcher, stringLiteralMatcher;
+
+  @Setup
+  public void setup() {
+    int n = Integer.getInteger("n", 20);
+    identifier = (Strings.repeat("a", n) + " ").toCharArray();
+    stringLiteral = ("\"" + Strings.repeat("a\\\"", n) + "\" ").toCharArray();
+    identifierDfa = Dfa.compile(IDENTIFIER);
+    stringLiteralDfa = Dfa.compile(STRING_LITERAL);
+    identifierMatcher = Pattern.compile(IDENTIFIER).matcher(CharBuffer.wrap(identifier));
+    stringLiteralMatcher = Pattern.compile(STRING_LITERAL).matcher(CharBuffer.wrap(stringLiteral));
+  }
+
+  @GenerateMicroBenchmark
+  public int identifierDfa() {
+    return identifierDfa.match(identifier, 0, identifier.length);
+  }
+
+  @GenerateMicroBenchmark
+  public int identifierPattern() {
+    return lookingAt(identifierMatcher);
+  }
+
+  @GenerateMicroBenchmark
+  public int stringLiteralDfa() {
+    return stringLiteralDfa.match(stringLiteral, 0, stringLiteral.length);
+  }
+
+  @GenerateMicroBenchmark
+  public int stringLiteralPattern() {
+    return lookingAt(stringLiteralMatcher);
+  }
+
+  private static int lookingAt(Matcher matcher) {
+    matcher.reset();
+    return matcher.lookingAt() ? matcher.end() : -1;
+  }
+
+}
@@ -29,6 +29,7 @@ import org.openjdk.jmh.annotations.State;
 import org.sonar.sslr.internal.vm.CompilationHandler;
 import org.sonar.sslr.internal.vm.EndOfInputExpression;
 import org.sonar.sslr.internal.vm.Instruction;
+import org.sonar.sslr.internal.vm.InstructionOptimizer;
 import org.sonar.sslr.internal.vm.Machine;
 import org.sonar.sslr.internal.vm.OneOrMoreExpression;
 import org.sonar.sslr.internal.vm.OptionalExpression;
@@ -64,7 +65,8 @@ public class ZeroOrMoreExpressionBenchmark {
   }
 
   private Instruction[] compile(ParsingExpression expression) {
-    return new SequenceExpression(expression, EndOfInputExpression.INSTANCE).compile(new CompilationHandler());
+    Instruction[] instructions = new SequenceExpression(expression, EndOfInputExpression.INSTANCE).compile(new CompilationHandler());
+    return InstructionOptimizer.optimize(instructions, Optimizations.fromSystemProperty());
   }
 
 }
@@ -17,18 +17,20 @@
  * License along with this program; if not, write to the Free Software
  * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
  */
-package org.sonar.sslr.internal.text;
+package org.sonar.sslr.benchmarks;
 
 import org.junit.Test;
 
 import static org.fest.assertions.Assertions.assertThat;
 
-public class TextUtilsTest {
+public class LexerBenchmarkTest {
 
   @Test
-  public void test_computeLines() {
-    assertThat(TextUtils.computeLines("foo".toCharArray())).isEqualTo(new int[] {});
-    assertThat(TextUtils.computeLines("foo\nbar\r\nbaz\rqux\r".toCharArray())).isEqualTo(new int[] {4, 9, 13, 17});
+  public void test() {
+    LexerBenchmark benchmark = new LexerBenchmark();
+    benchmark.setup();
+
+    assertThat(benchmark.lex()).hasSize(861);
   }
 
 }
@@ -0,0 +1,37 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.benchmarks;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LexerfulParserBenchmarkTest {
+
+  @Test
+  public void test() {
+    LexerfulParserBenchmark benchmark = new LexerfulParserBenchmark();
+    benchmark.setup();
+
+    assertThat(benchmark.parse().getNumberOfChildren()).isEqualTo(11);
+    assertThat(benchmark.parseWithCompilationOfGrammar().getNumberOfChildren()).isEqualTo(11);
+  }
+
+}
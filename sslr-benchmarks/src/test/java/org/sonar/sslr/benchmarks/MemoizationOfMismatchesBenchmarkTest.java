@@ -31,6 +31,7 @@ public class MemoizationOfMismatchesBenchmarkTest {
     benchmark.setup();
 
     assertThat(benchmark.required()).isTrue();
+    assertThat(benchmark.requiredPackrat()).isTrue();
     assertThat(benchmark.notRequired()).isTrue();
   }
 
@@ -34,4 +34,18 @@ public class OneOrMoreExpressionBenchmarkTest {
     assertThat(benchmark.usingZeroOrMore()).isTrue();
   }
 
+  @Test
+  public void without_optimizations() {
+    System.setProperty("optimizations", "");
+    try {
+      OneOrMoreExpressionBenchmark benchmark = new OneOrMoreExpressionBenchmark();
+      benchmark.setup();
+
+      assertThat(benchmark.oneOrMore()).isTrue();
+      assertThat(benchmark.usingZeroOrMore()).isTrue();
+    } finally {
+      System.clearProperty("optimizations");
+    }
+  }
+
 }
@@ -34,4 +34,18 @@ public class ZeroOrMoreExpressionBenchmarkTest {
     assertThat(benchmark.optionalOneOrMore()).isTrue();
   }
 
+  @Test
+  public void without_optimizations() {
+    System.setProperty("optimizations", "");
+    try {
+      ZeroOrMoreExpressionBenchmark benchmark = new ZeroOrMoreExpressionBenchmark();
+      benchmark.setup();
+
+      assertThat(benchmark.zeroOrMore()).isTrue();
+      assertThat(benchmark.optionalOneOrMore()).isTrue();
+    } finally {
+      System.clearProperty("optimizations");
+    }
+  }
+
 }
@@ -20,7 +20,6 @@
 package com.sonar.sslr.impl;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Lists;
 import com.google.common.io.Closeables;
 import com.sonar.sslr.api.Preprocessor;
 import com.sonar.sslr.api.PreprocessorAction;
@@ -30,11 +29,10 @@ import org.sonar.sslr.channel.Channel;
 import org.sonar.sslr.channel.ChannelDispatcher;
 import org.sonar.sslr.channel.CodeReader;
 import org.sonar.sslr.channel.CodeReaderConfiguration;
+import org.sonar.sslr.internal.vm.lexerful.TokenList;
 
 import java.io.File;
 import java.io.InputStreamReader;
-import java.io.Reader;
-import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -42,7 +40,6 @@ import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -50,6 +47,19 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.sonar.sslr.api.GenericTokenType.EOF;
 
+/**
+ * Each invocation of {@code lex} methods is performed by a separate lexing session, which carries all the mutable state
+ * (list of tokens, pending trivia and URI), and which is passed to channels in place of this lexer.
+ * So that single instance of lexer can be used concurrently from several threads,
+ * as long as its channels, preprocessors and code reader filters can be used concurrently.
+ * All channels provided by SSLR satisfy this requirement.
+ * However {@link Parser#parse(Iterable, int, ParseListener)} can't verify this requirement, so serializes usage of its lexer,
+ * and {@link Parser#parse(Iterable, int, ParseListener, com.google.common.base.Supplier)} should be used
+ * to parse files concurrently with a separate lexer per thread.
+ *
+ * <p>Methods {@link #getTokens()} and {@link #getURI()} of this instance return state of the last lexing session,
+ * so in case of concurrent usage result of {@code lex} methods should be used instead.</p>
+ */
 public class Lexer {
 
   private final Charset charset;
@@ -59,7 +69,7 @@ public class Lexer {
 
   private URI uri;
   private final List<Trivia> trivia = new LinkedList<Trivia>();
-  private List<Token> tokens = new ArrayList<Token>();
+  private TokenList tokens = new TokenList();
 
   private Lexer(Builder builder) {
     this.charset = builder.charset;
@@ -75,6 +85,17 @@ public class Lexer {
     }
   }
 
+  /**
+   * Creates lexing session, which shares configuration with given lexer.
+   */
+  private Lexer(Lexer lexer, URI uri) {
+    this.charset = lexer.charset;
+    this.preprocessors = lexer.preprocessors;
+    this.configuration = lexer.configuration;
+    this.channelDispatcher = lexer.channelDispatcher;
+    this.uri = uri;
+  }
+
   public List<Token> lex(File file) {
     checkNotNull(file, "file cannot be null");
     checkArgument(file.isFile(), "file \"%s\" must be a file", file.getAbsolutePath());
@@ -90,13 +111,14 @@ public class Lexer {
     checkNotNull(url, "url cannot be null");
 
     InputStreamReader reader = null;
+    URI sessionUri = uri;
     try {
-      this.uri = url.toURI();
+      sessionUri = url.toURI();
 
       reader = new InputStreamReader(url.openStream(), charset);
-      return lex(reader);
+      return lex(new CodeReader(reader, configuration), sessionUri);
     } catch (Exception e) {
-      throw new LexerException("Unable to lex url: " + getURI(), e);
+      throw new LexerException("Unable to lex url: " + sessionUri, e);
     } finally {
       Closeables.closeQuietly(reader);
     }
@@ -113,17 +135,23 @@ public class Lexer {
     checkNotNull(sourceCode, "sourceCode cannot be null");
 
     try {
-      return lex(new StringReader(sourceCode));
+      return lex(new CodeReader(sourceCode, configuration), uri);
     } catch (Exception e) {
       throw new LexerException("Unable to lex string source code \"" + sourceCode + "\"", e);
     }
   }
 
-  private List<Token> lex(Reader reader) {
-    tokens = Lists.newArrayList();
+  private List<Token> lex(CodeReader code, URI uri) {
+    Lexer session = new Lexer(this, uri);
+    List<Token> result = session.lexSession(code);
+    // for backward compatibility
+    this.uri = uri;
+    this.tokens = session.tokens;
+    return result;
+  }
 
+  private List<Token> lexSession(CodeReader code) {
     initPreprocessors();
-    CodeReader code = new CodeReader(reader, configuration);
     try {
       channelDispatcher.consume(code, this);
 
@@ -151,8 +179,9 @@ public class Lexer {
   }
 
   private void preprocess(Preprocessor preprocessor) {
-    List<Token> remainingTokens = Collections.unmodifiableList(new ArrayList<Token>(tokens));
-    tokens.clear();
+    // Performance optimization: tokens are not copied, preprocessor reads previous list and fills new one
+    List<Token> remainingTokens = tokens;
+    tokens = new TokenList(remainingTokens.size());
 
     int i = 0;
     while (i < remainingTokens.size()) {
@@ -210,14 +239,17 @@ public class Lexer {
       trivia.clear();
     }
 
-    this.tokens.add(firstTokenWithTrivia);
-    if (tokens.length > 1) {
-      this.tokens.addAll(Arrays.asList(tokens).subList(1, tokens.length));
+    this.tokens.append(firstTokenWithTrivia);
+    for (int i = 1; i < tokens.length; i++) {
+      this.tokens.append(tokens[i]);
     }
   }
 
+  /**
+   * @return unmodifiable list of tokens
+   */
   public List<Token> getTokens() {
-    return Collections.unmodifiableList(tokens);
+    return tokens;
   }
 
   public URI getURI() {
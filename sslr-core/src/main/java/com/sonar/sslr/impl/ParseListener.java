@@ -0,0 +1,41 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.RecognitionException;
+
+import java.io.File;
+
+/**
+ * Receives results of {@link Parser#parse(Iterable, int, ParseListener)}.
+ *
+ * <p>Methods of this interface are invoked sequentially from the thread, which has called {@link Parser#parse(Iterable, int, ParseListener)},
+ * so implementations are not required to be thread-safe.</p>
+ *
+ * @since 1.21
+ */
+public interface ParseListener {
+
+  void onSuccess(File file, AstNode ast);
+
+  void onFailure(File file, RecognitionException e);
+
+}
@@ -19,6 +19,9 @@
  */
 package com.sonar.sslr.impl;
 
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.RecognitionException;
@@ -32,11 +35,26 @@ import org.sonar.sslr.internal.matchers.LexerfulAstCreator;
 import org.sonar.sslr.internal.vm.CompilableGrammarRule;
 import org.sonar.sslr.internal.vm.CompiledGrammar;
 import org.sonar.sslr.internal.vm.Machine;
+import org.sonar.sslr.internal.vm.MachineContext;
 import org.sonar.sslr.internal.vm.MutableGrammarCompiler;
+import org.sonar.sslr.internal.vm.ParsingExpression;
 import org.sonar.sslr.parser.ParserAdapter;
 
+import javax.annotation.Nullable;
+
 import java.io.File;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * To create a new instance of this class use <code>{@link Parser#builder(Grammar)}</code>.
@@ -49,6 +67,10 @@ public class Parser<G extends Grammar> {
   private final Lexer lexer;
   private final G grammar;
 
+  private CompiledGrammar compiledGrammar;
+  private CompilableGrammarRule[] compiledRules;
+  private ParsingExpression[] compiledExpressions;
+
   /**
    * @since 1.16
    */
@@ -64,27 +86,195 @@ public class Parser<G extends Grammar> {
   }
 
   public AstNode parse(File file) {
+    List<Token> tokens;
     try {
-      lexer.lex(file);
+      tokens = lexer.lex(file);
     } catch (LexerException e) {
       throw new RecognitionException(e);
     }
-    return parse(lexer.getTokens());
+    return parse(tokens);
   }
 
   public AstNode parse(String source) {
+    List<Token> tokens;
     try {
-      lexer.lex(source);
+      tokens = lexer.lex(source);
     } catch (LexerException e) {
       throw new RecognitionException(e);
     }
-    return parse(lexer.getTokens());
+    return parse(tokens);
   }
 
   public AstNode parse(List<Token> tokens) {
-    // TODO can be compiled only once
-    CompiledGrammar g = MutableGrammarCompiler.compile((CompilableGrammarRule) rootRule);
-    return LexerfulAstCreator.create(Machine.parse(tokens, g), tokens);
+    return LexerfulAstCreator.create(Machine.parse(tokens, getCompiledGrammar()), tokens);
+  }
+
+  /**
+   * Parses given files using given number of threads, and passes results to given listener.
+   * Number of files, which are being parsed or waiting for delivery of results to listener, is limited by {@code 2 * threads},
+   * so that memory consumption does not depend on the number of files.
+   * Results are delivered in order of completion, which might differ from the order of files.
+   *
+   * <p>In case of parser with lexer, this lexer is shared between threads and might use channels, preprocessors
+   * and code reader filters, which are not thread-safe, so lexing is serialized by lock on it
+   * and only parsing of tokens is performed in parallel.
+   * Thus for such parser {@link #parse(Iterable, int, ParseListener, Supplier)} should be preferred,
+   * which lexes files in parallel.</p>
+   *
+   * @throws IllegalArgumentException if number of threads is less than 1
+   * @since 1.21
+   */
+  public void parse(Iterable<File> files, int threads, ParseListener listener) {
+    checkArgument(threads > 0, "number of threads must be greater than zero, but was %s", threads);
+    checkNotNull(listener, "listener cannot be null");
+    parse(files, threads, listener, createConcurrentFileParser());
+  }
+
+  /**
+   * Same as {@link #parse(Iterable, int, ParseListener)}, but each thread uses its own lexer created by given factory,
+   * so that lexing is not serialized, even if channels, preprocessors or code reader filters of lexer are not thread-safe.
+   *
+   * @throws IllegalArgumentException if number of threads is less than 1
+   * @since 1.21
+   */
+  public void parse(Iterable<File> files, int threads, ParseListener listener, Supplier<Lexer> lexerFactory) {
+    checkArgument(threads > 0, "number of threads must be greater than zero, but was %s", threads);
+    checkNotNull(listener, "listener cannot be null");
+    checkNotNull(lexerFactory, "lexerFactory cannot be null");
+    parse(files, threads, listener, createConcurrentFileParser(lexerFactory));
+  }
+
+  private static void parse(Iterable<File> files, int threads, ParseListener listener, Function<File, AstNode> fileParser) {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      CompletionService<ParseTask> completionService = new ExecutorCompletionService<ParseTask>(executor);
+      int maxInFlight = 2 * threads;
+      int inFlight = 0;
+      Iterator<File> iterator = files.iterator();
+      while (iterator.hasNext() || inFlight > 0) {
+        while (inFlight < maxInFlight && iterator.hasNext()) {
+          completionService.submit(new ParseTask(iterator.next(), fileParser));
+          inFlight++;
+        }
+        ParseTask task = take(completionService);
+        inFlight--;
+        if (task.exception == null) {
+          listener.onSuccess(task.file, task.ast);
+        } else {
+          listener.onFailure(task.file, task.exception);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static ParseTask take(CompletionService<ParseTask> completionService) {
+    try {
+      return completionService.take().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for parsing of files", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private static final class ParseTask implements Callable<ParseTask> {
+    private final File file;
+    private final Function<File, AstNode> fileParser;
+    private AstNode ast;
+    private RecognitionException exception;
+
+    public ParseTask(File file, Function<File, AstNode> fileParser) {
+      this.file = file;
+      this.fileParser = fileParser;
+    }
+
+    public ParseTask call() {
+      try {
+        ast = fileParser.apply(file);
+      } catch (RecognitionException e) {
+        exception = e;
+      }
+      return this;
+    }
+  }
+
+  /**
+   * Creates function, which parses given file and can be invoked concurrently from different threads.
+   * Invoked from {@link #parse(Iterable, int, ParseListener)}.
+   *
+   * <p>This method is not intended to be used or overridden by clients.</p>
+   *
+   * @since 1.21
+   */
+  protected Function<File, AstNode> createConcurrentFileParser() {
+    return createConcurrentFileParser(null);
+  }
+
+  /**
+   * @param lexerFactory factory of lexers for each thread, or null if lexing should be done by {@link #lexer}.
+   * In the latter case lexing is serialized, because lexer might use channels, preprocessors and code reader filters,
+   * which are not thread-safe.
+   */
+  private Function<File, AstNode> createConcurrentFileParser(@Nullable final Supplier<Lexer> lexerFactory) {
+    final CompiledGrammar g = getCompiledGrammar();
+    final ThreadLocal<MachineContext> machineContexts = new ThreadLocal<MachineContext>() {
+      @Override
+      protected MachineContext initialValue() {
+        return new MachineContext();
+      }
+    };
+    final ThreadLocal<Lexer> lexers = lexerFactory == null ? null : new ThreadLocal<Lexer>() {
+      @Override
+      protected Lexer initialValue() {
+        return lexerFactory.get();
+      }
+    };
+    return new Function<File, AstNode>() {
+      public AstNode apply(File file) {
+        List<Token> tokens;
+        try {
+          if (lexers == null) {
+            synchronized (lexer) {
+              tokens = lexer.lex(file);
+            }
+          } else {
+            tokens = lexers.get().lex(file);
+          }
+        } catch (LexerException e) {
+          throw new RecognitionException(e);
+        }
+        return LexerfulAstCreator.create(Machine.parse(tokens, g, machineContexts.get()), tokens);
+      }
+    };
+  }
+
+  /**
+   * Grammar is compiled only once and reused for subsequent parses,
+   * until root rule is changed or until one of compiled rules is redefined (e.g. by {@link RuleDefinition#override(Object...)}).
+   */
+  private CompiledGrammar getCompiledGrammar() {
+    if (compiledGrammar == null || !isCompiledGrammarUpToDate()) {
+      compiledGrammar = MutableGrammarCompiler.compile((CompilableGrammarRule) rootRule);
+      Collection<CompilableGrammarRule> rules = compiledGrammar.getRules();
+      compiledRules = rules.toArray(new CompilableGrammarRule[rules.size()]);
+      compiledExpressions = new ParsingExpression[compiledRules.length];
+      for (int i = 0; i < compiledRules.length; i++) {
+        compiledExpressions[i] = compiledRules[i].getExpression();
+      }
+    }
+    return compiledGrammar;
+  }
+
+  private boolean isCompiledGrammarUpToDate() {
+    for (int i = 0; i < compiledRules.length; i++) {
+      if (compiledRules[i].getExpression() != compiledExpressions[i]) {
+        return false;
+      }
+    }
+    return true;
   }
 
   public G getGrammar() {
@@ -97,6 +287,7 @@ public class Parser<G extends Grammar> {
 
   public void setRootRule(Rule rootRule) {
     this.rootRule = (RuleDefinition) rootRule;
+    this.compiledGrammar = null;
   }
 
   public static <G extends Grammar> Builder<G> builder(G grammar) {
@@ -25,8 +25,6 @@ import org.sonar.sslr.channel.CodeReader;
 import com.sonar.sslr.impl.Lexer;
 
 import java.io.IOException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Allows to skip characters, which match given regular expression.
@@ -38,18 +36,23 @@ import java.util.regex.Pattern;
  */
 public class BlackHoleChannel extends Channel<Lexer> {
 
-  private final Matcher matcher;
+  private final ThreadLocalMatcher matcher;
 
   /**
    * @throws java.util.regex.PatternSyntaxException if the expression's syntax is invalid
    */
   public BlackHoleChannel(String regexp) {
-    matcher = Pattern.compile(regexp).matcher("");
+    matcher = new ThreadLocalMatcher(regexp);
   }
 
   @Override
   public boolean consume(CodeReader code, Lexer lexer) {
-    return code.popTo(matcher, EmptyAppendable.INSTANCE) != -1;
+    return matcher.popTo(code, EmptyAppendable.INSTANCE) != -1;
+  }
+
+  @Override
+  public boolean canStartWith(char c) {
+    return matcher.canStartWith(c);
   }
 
   private static class EmptyAppendable implements Appendable {
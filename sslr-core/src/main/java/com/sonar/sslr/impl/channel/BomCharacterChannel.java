@@ -42,4 +42,9 @@ public class BomCharacterChannel extends Channel<Lexer> {
     return false;
   }
 
+  @Override
+  public boolean canStartWith(char c) {
+    return c == BOM_CHAR;
+  }
+
 }
@@ -27,9 +27,6 @@ import com.sonar.sslr.api.Trivia;
 import com.sonar.sslr.impl.Lexer;
 import com.sonar.sslr.impl.LexerException;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 import static com.sonar.sslr.api.GenericTokenType.COMMENT;
 
 /**
@@ -39,23 +36,20 @@ import static com.sonar.sslr.api.GenericTokenType.COMMENT;
  */
 public class CommentRegexpChannel extends Channel<Lexer> {
 
-  private final StringBuilder tmpBuilder = new StringBuilder();
-  private final Matcher matcher;
+  private final ThreadLocalMatcher matcher;
   private final String regexp;
-  private final Token.Builder tokenBuilder = Token.builder();
 
   public CommentRegexpChannel(String regexp) {
-    matcher = Pattern.compile(regexp).matcher("");
+    matcher = new ThreadLocalMatcher(regexp);
     this.regexp = regexp;
   }
 
   @Override
   public boolean consume(CodeReader code, Lexer lexer) {
     try {
-      if (code.popTo(matcher, tmpBuilder) > 0) {
-        String value = tmpBuilder.toString();
-
-        Token token = tokenBuilder
+      String value = matcher.popTo(code);
+      if (value != null) {
+        Token token = Token.builder()
             .setType(COMMENT)
             .setValueAndOriginalValue(value)
             .setURI(lexer.getURI())
@@ -65,7 +59,6 @@ public class CommentRegexpChannel extends Channel<Lexer> {
 
         lexer.addTrivia(Trivia.createComment(token));
 
-        tmpBuilder.delete(0, tmpBuilder.length());
         return true;
       }
       return false;
@@ -78,4 +71,9 @@ public class CommentRegexpChannel extends Channel<Lexer> {
           e);
     }
   }
+
+  @Override
+  public boolean canStartWith(char c) {
+    return matcher.canStartWith(c);
+  }
 }
@@ -28,18 +28,14 @@ import com.sonar.sslr.api.TokenType;
 import com.sonar.sslr.impl.Lexer;
 
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import static com.sonar.sslr.api.GenericTokenType.IDENTIFIER;
 
 public class IdentifierAndKeywordChannel extends Channel<Lexer> {
 
   private final Map<String, TokenType> keywordsMap;
-  private final StringBuilder tmpBuilder = new StringBuilder();
-  private final Matcher matcher;
+  private final ThreadLocalMatcher matcher;
   private final boolean caseSensitive;
-  private final Token.Builder tokenBuilder = Token.builder();
 
   /**
    * @throws java.util.regex.PatternSyntaxException if the expression's syntax is invalid
@@ -54,20 +50,20 @@ public class IdentifierAndKeywordChannel extends Channel<Lexer> {
     }
     this.keywordsMap = keywordsMapBuilder.build();
     this.caseSensitive = caseSensitive;
-    matcher = Pattern.compile(regexp).matcher("");
+    matcher = new ThreadLocalMatcher(regexp);
   }
 
   @Override
   public boolean consume(CodeReader code, Lexer lexer) {
-    if (code.popTo(matcher, tmpBuilder) > 0) {
-      String word = tmpBuilder.toString();
-      String wordOriginal = word;
+    String wordOriginal = matcher.popTo(code);
+    if (wordOriginal != null) {
+      String word = wordOriginal;
       if (!caseSensitive) {
-        word = word.toUpperCase();
+        word = code.intern(word.toUpperCase());
       }
 
       TokenType keywordType = keywordsMap.get(word);
-      Token token = tokenBuilder
+      Token token = Token.builder()
           .setType(keywordType == null ? IDENTIFIER : keywordType)
           .setValueAndOriginalValue(word, wordOriginal)
           .setURI(lexer.getURI())
@@ -77,10 +73,14 @@ public class IdentifierAndKeywordChannel extends Channel<Lexer> {
 
       lexer.addToken(token);
 
-      tmpBuilder.delete(0, tmpBuilder.length());
       return true;
     }
     return false;
   }
 
+  @Override
+  public boolean canStartWith(char c) {
+    return matcher.canStartWith(c);
+  }
+
 }
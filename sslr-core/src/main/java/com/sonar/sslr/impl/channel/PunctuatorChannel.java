@@ -26,79 +26,117 @@ import org.sonar.sslr.channel.Channel;
 import org.sonar.sslr.channel.CodeReader;
 
 import java.util.Arrays;
-import java.util.Comparator;
 
+/**
+ * Consumes the longest punctuator, which starts at the current position.
+ * Punctuators are organized into a trie, so that decision is made by a single pass over the input
+ * without allocation of temporary arrays.
+ */
 public class PunctuatorChannel extends Channel<Lexer> {
 
-  private final int lookahead;
-  private final TokenType[] sortedPunctuators;
-  private final char[][] sortedPunctuatorsChars;
-  private final Token.Builder tokenBuilder = Token.builder();
+  private final Node root = new Node();
 
-  private static class PunctuatorComparator implements Comparator<TokenType> {
+  public PunctuatorChannel(TokenType... punctuators) {
+    for (TokenType punctuator : punctuators) {
+      root.add(punctuator);
+    }
+  }
 
-    @Override
-    public int compare(TokenType a, TokenType b) {
-      if (a.getValue().length() == b.getValue().length()) {
-        return 0;
+  @Override
+  public boolean consume(CodeReader code, Lexer lexer) {
+    TokenType punctuator = root.type;
+    int length = 0;
+    Node node = root;
+    int i = 0;
+    int available = code.length();
+    while (i < available) {
+      node = node.child(code.charAt(i));
+      if (node == null) {
+        break;
+      }
+      i++;
+      if (node.type != null) {
+        punctuator = node.type;
+        length = i;
       }
-      return a.getValue().length() > b.getValue().length() ? -1 : 1;
+    }
+    if (punctuator == null) {
+      return false;
     }
 
-  }
-
-  public PunctuatorChannel(TokenType... punctuators) {
-    sortedPunctuators = punctuators;
-    Arrays.sort(sortedPunctuators, new PunctuatorComparator());
+    Token token = Token.builder()
+      .setType(punctuator)
+      .setValueAndOriginalValue(punctuator.getValue())
+      .setURI(lexer.getURI())
+      .setLine(code.getLinePosition())
+      .setColumn(code.getColumnPosition())
+      .build();
 
-    sortedPunctuatorsChars = new char[sortedPunctuators.length][];
+    lexer.addToken(token);
 
-    int maxLength = 0;
-    for (int i = 0; i < sortedPunctuators.length; i++) {
-      sortedPunctuatorsChars[i] = sortedPunctuators[i].getValue().toCharArray();
-      maxLength = Math.max(maxLength, sortedPunctuatorsChars[i].length);
+    /* Advance the CodeReader stream by the length of the punctuator */
+    for (int j = 0; j < length; j++) {
+      code.pop();
     }
-    this.lookahead = maxLength;
+
+    return true;
   }
 
   @Override
-  public boolean consume(CodeReader code, Lexer lexer) {
-    char[] next = code.peek(lookahead);
-    for (int i = 0; i < sortedPunctuators.length; i++) {
-      if (arraysEquals(next, sortedPunctuatorsChars[i])) {
-        Token token = tokenBuilder
-          .setType(sortedPunctuators[i])
-          .setValueAndOriginalValue(sortedPunctuators[i].getValue())
-          .setURI(lexer.getURI())
-          .setLine(code.getLinePosition())
-          .setColumn(code.getColumnPosition())
-          .build();
-
-        lexer.addToken(token);
-
-        /* Advance the CodeReader stream by the length of the punctuator */
-        for (int j = 0; j < sortedPunctuatorsChars[i].length; j++) {
-          code.pop();
-        }
-
-        return true;
-      }
+  public boolean canStartWith(char c) {
+    return root.type != null || root.child(c) != null;
+  }
+
+  private static final class Node {
+
+    /**
+     * Punctuator, which ends at this node, or null.
+     */
+    private TokenType type;
+
+    /**
+     * Sorted labels of children.
+     */
+    private char[] chars = new char[0];
+    private Node[] children = new Node[0];
+
+    private Node child(char c) {
+      int i = Arrays.binarySearch(chars, c);
+      return i < 0 ? null : children[i];
     }
 
-    return false;
-  }
+    private void add(TokenType punctuator) {
+      String value = punctuator.getValue();
+      Node node = this;
+      for (int i = 0; i < value.length(); i++) {
+        node = node.getOrCreateChild(value.charAt(i));
+      }
+      // first declared punctuator wins, when several have the same value
+      if (node.type == null) {
+        node.type = punctuator;
+      }
+    }
 
-  /**
-   * Expected that length of second array can be less than length of first.
-   */
-  private static boolean arraysEquals(char[] a, char[] a2) {
-    int length = a2.length;
-    for (int i = 0; i < length; i++) {
-      if (a[i] != a2[i]) {
-        return false;
+    private Node getOrCreateChild(char c) {
+      int i = Arrays.binarySearch(chars, c);
+      if (i >= 0) {
+        return children[i];
       }
+      i = -i - 1;
+      char[] newChars = new char[chars.length + 1];
+      System.arraycopy(chars, 0, newChars, 0, i);
+      System.arraycopy(chars, i, newChars, i + 1, chars.length - i);
+      newChars[i] = c;
+      Node[] newChildren = new Node[children.length + 1];
+      System.arraycopy(children, 0, newChildren, 0, i);
+      System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+      Node child = new Node();
+      newChildren[i] = child;
+      chars = newChars;
+      children = newChildren;
+      return child;
     }
-    return true;
+
   }
 
 }
@@ -27,9 +27,6 @@ import com.sonar.sslr.api.TokenType;
 import com.sonar.sslr.impl.Lexer;
 import com.sonar.sslr.impl.LexerException;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Creates token of specified type from characters, which match given regular expression.
  *
@@ -37,17 +34,15 @@ import java.util.regex.Pattern;
  */
 public class RegexpChannel extends Channel<Lexer> {
 
-  private final StringBuilder tmpBuilder = new StringBuilder();
   private final TokenType type;
-  private final Matcher matcher;
+  private final ThreadLocalMatcher matcher;
   private final String regexp;
-  private final Token.Builder tokenBuilder = Token.builder();
 
   /**
    * @throws java.util.regex.PatternSyntaxException if the expression's syntax is invalid
    */
   public RegexpChannel(TokenType type, String regexp) {
-    matcher = Pattern.compile(regexp).matcher("");
+    matcher = new ThreadLocalMatcher(regexp);
     this.type = type;
     this.regexp = regexp;
   }
@@ -55,10 +50,9 @@ public class RegexpChannel extends Channel<Lexer> {
   @Override
   public boolean consume(CodeReader code, Lexer lexer) {
     try {
-      if (code.popTo(matcher, tmpBuilder) > 0) {
-        String value = tmpBuilder.toString();
-
-        Token token = tokenBuilder
+      String value = matcher.popTo(code);
+      if (value != null) {
+        Token token = Token.builder()
             .setType(type)
             .setValueAndOriginalValue(value)
             .setURI(lexer.getURI())
@@ -68,7 +62,6 @@ public class RegexpChannel extends Channel<Lexer> {
 
         lexer.addToken(token);
 
-        tmpBuilder.delete(0, tmpBuilder.length());
         return true;
       }
       return false;
@@ -81,4 +74,9 @@ public class RegexpChannel extends Channel<Lexer> {
           e);
     }
   }
+
+  @Override
+  public boolean canStartWith(char c) {
+    return matcher.canStartWith(c);
+  }
 }
@@ -0,0 +1,86 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package com.sonar.sslr.impl.channel;
+
+import org.sonar.sslr.channel.CodeReader;
+import org.sonar.sslr.internal.regexp.Dfa;
+
+import javax.annotation.Nullable;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Holds {@link Matcher} for each thread,
+ * so that channel can be used concurrently by several invocations of {@link com.sonar.sslr.impl.Lexer}.
+ */
+final class ThreadLocalMatcher {
+
+  private final Pattern pattern;
+
+  @Nullable
+  private final Dfa dfa;
+
+  private final ThreadLocal<State> state = new ThreadLocal<State>() {
+    @Override
+    protected State initialValue() {
+      return new State(pattern.matcher(""));
+    }
+  };
+
+  /**
+   * @throws java.util.regex.PatternSyntaxException if the expression's syntax is invalid
+   */
+  ThreadLocalMatcher(String regexp) {
+    this.pattern = Pattern.compile(regexp);
+    this.dfa = Dfa.compile(regexp);
+  }
+
+  /**
+   * @return false if there is no match, which starts with given character
+   */
+  boolean canStartWith(char c) {
+    return dfa == null || dfa.canStartWith(c);
+  }
+
+  /**
+   * @return consumed characters, or null if nothing was consumed
+   */
+  String popTo(CodeReader code) {
+    String value = code.popTo(state.get().matcher);
+    return value == null || value.isEmpty() ? null : value;
+  }
+
+  /**
+   * @return the number of consumed characters or -1 if no match
+   */
+  int popTo(CodeReader code, Appendable appendable) {
+    return code.popTo(state.get().matcher, appendable);
+  }
+
+  private static final class State {
+    private final Matcher matcher;
+
+    public State(Matcher matcher) {
+      this.matcher = matcher;
+    }
+  }
+
+}
@@ -34,8 +34,6 @@ import static com.sonar.sslr.api.GenericTokenType.UNKNOWN_CHAR;
  */
 public class UnknownCharacterChannel extends Channel<Lexer> {
 
-  private final Token.Builder tokenBuilder = Token.builder();
-
   public UnknownCharacterChannel() {
   }
 
@@ -51,7 +49,7 @@ public class UnknownCharacterChannel extends Channel<Lexer> {
     if (code.peek() != -1) {
       char unknownChar = (char) code.pop();
 
-      Token token = tokenBuilder
+      Token token = Token.builder()
           .setType(UNKNOWN_CHAR)
           .setValueAndOriginalValue(String.valueOf(unknownChar))
           .setURI(lexer.getURI())
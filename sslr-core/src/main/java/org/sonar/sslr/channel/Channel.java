@@ -32,4 +32,17 @@ public abstract class Channel<O> {
    * @return false if the Channel doesn't want to consume the character stream, true otherwise.
    */
   public abstract boolean consume(CodeReader code, O output);
+
+  /**
+   * Allows {@link ChannelDispatcher} to not try this channel for characters, which can't be consumed by it.
+   * Result must not change during lifetime of the channel. Default implementation returns true for any character.
+   *
+   * @param c
+   *          the character at the current reading cursor position
+   * @return false if the Channel definitely doesn't want to consume the character stream, which starts with given character
+   * @since 1.21
+   */
+  public boolean canStartWith(char c) {
+    return true;
+  }
 }
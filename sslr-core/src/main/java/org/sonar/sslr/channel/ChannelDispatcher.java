@@ -24,13 +24,32 @@ import java.util.List;
 
 public class ChannelDispatcher<O> extends Channel<O> {
 
+  private static final int ASCII = 128;
+
   private final boolean failIfNoChannelToConsumeOneCharacter;
 
   private final Channel<O>[] channels;
 
+  /**
+   * Channels, which can start with given ASCII character, in order of their declaration.
+   * All channels are tried for other characters.
+   */
+  private final Channel<O>[][] asciiChannels;
+
   private ChannelDispatcher(Builder builder) {
     this.channels = builder.channels.toArray(new Channel[builder.channels.size()]);
     this.failIfNoChannelToConsumeOneCharacter = builder.failIfNoChannelToConsumeOneCharacter;
+    this.asciiChannels = new Channel[ASCII][];
+    List<Channel<O>> candidates = new ArrayList<Channel<O>>();
+    for (char c = 0; c < ASCII; c++) {
+      candidates.clear();
+      for (Channel<O> channel : channels) {
+        if (channel.canStartWith(c)) {
+          candidates.add(channel);
+        }
+      }
+      asciiChannels[c] = candidates.toArray(new Channel[candidates.size()]);
+    }
   }
 
   @Override
@@ -38,7 +57,7 @@ public class ChannelDispatcher<O> extends Channel<O> {
     int nextChar = code.peek();
     while (nextChar != -1) {
       boolean characterConsumed = false;
-      for (Channel<O> channel : channels) {
+      for (Channel<O> channel : nextChar < ASCII ? asciiChannels[nextChar] : channels) {
         if (channel.consume(code, output)) {
           characterConsumed = true;
           break;
@@ -61,6 +80,10 @@ public class ChannelDispatcher<O> extends Channel<O> {
     return channels;
   }
 
+  Channel[] getChannels(char c) {
+    return c < ASCII ? asciiChannels[c] : channels;
+  }
+
   /**
    * Get a Builder instance to build a new ChannelDispatcher
    */
@@ -20,13 +20,14 @@
 package org.sonar.sslr.channel;
 
 import com.google.common.base.Throwables;
-import com.google.common.io.CharStreams;
 import com.google.common.io.Closeables;
 
+import java.io.CharArrayReader;
 import java.io.FilterReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.CharBuffer;
 
 /**
  * The CodeBuffer class provides all the basic features required to manipulate a source code character stream. Those features are :
@@ -40,39 +41,112 @@ import java.io.StringReader;
  */
 public class CodeBuffer implements CharSequence {
 
+  private static final int CHUNK_SIZE = 2048;
+
   private int lastChar = -1;
   private Cursor cursor;
   private char[] buffer;
   private int bufferPosition = 0;
+  private int bufferEnd;
   private static final char LF = '\n';
   private static final char CR = '\r';
   private int tabWidth;
 
-  private boolean recordingMode = false;
-  private StringBuilder recordedCharacters = new StringBuilder();
+  /**
+   * Position in buffer, where recording was started, or -1 if recording is not in progress.
+   */
+  private int recordingStart = -1;
 
   protected CodeBuffer(String code, CodeReaderConfiguration configuration) {
-    this(new StringReader(code), configuration);
+    init(configuration);
+    if (configuration.getCodeReaderFilters().length == 0) {
+      buffer = code.toCharArray();
+      bufferEnd = buffer.length;
+    } else {
+      read(new StringReader(code), configuration);
+    }
   }
 
   /**
    * Note that this constructor will read everything from reader and will close it.
    */
   protected CodeBuffer(Reader initialCodeReader, CodeReaderConfiguration configuration) {
+    init(configuration);
+    read(initialCodeReader, configuration);
+  }
+
+  /**
+   * Note that this constructor doesn't copy given characters, unless some {@link CodeReaderFilter} is configured,
+   * so they must not be modified during lifetime of this buffer.
+   *
+   * @since 1.21
+   */
+  protected CodeBuffer(char[] code, int offset, int length, CodeReaderConfiguration configuration) {
+    init(configuration);
+    if (configuration.getCodeReaderFilters().length == 0) {
+      buffer = code;
+      bufferPosition = offset;
+      bufferEnd = offset + length;
+    } else {
+      read(new CharArrayReader(code, offset, length), configuration);
+    }
+  }
+
+  /**
+   * Reads characters between position and limit of given buffer without modification of its position.
+   * Note that this constructor doesn't copy characters of a buffer backed by an accessible array, unless some {@link CodeReaderFilter} is configured,
+   * so they must not be modified during lifetime of this buffer.
+   *
+   * @since 1.21
+   */
+  protected CodeBuffer(CharBuffer code, CodeReaderConfiguration configuration) {
+    this(
+        code.hasArray() ? code.array() : copyOf(code),
+        code.hasArray() ? code.arrayOffset() + code.position() : 0,
+        code.remaining(),
+        configuration);
+  }
+
+  private static char[] copyOf(CharBuffer code) {
+    char[] result = new char[code.remaining()];
+    code.duplicate().get(result);
+    return result;
+  }
+
+  private void init(CodeReaderConfiguration configuration) {
+    lastChar = -1;
+    cursor = new Cursor();
+    tabWidth = configuration.getTabWidth();
+  }
+
+  /**
+   * Reads everything from given reader through configured filters directly into buffer and closes reader.
+   */
+  private void read(Reader initialCodeReader, CodeReaderConfiguration configuration) {
     Reader reader = null;
 
     try {
-      lastChar = -1;
-      cursor = new Cursor();
-      tabWidth = configuration.getTabWidth();
-
       /* Setup the filters on the reader */
       reader = initialCodeReader;
       for (CodeReaderFilter<?> codeReaderFilter : configuration.getCodeReaderFilters()) {
         reader = new Filter(reader, codeReaderFilter, configuration);
       }
 
-      buffer = CharStreams.toString(reader).toCharArray();
+      // filters were always invoked with zero offset, so characters are read by chunks
+      char[] chunk = new char[CHUNK_SIZE];
+      buffer = new char[CHUNK_SIZE];
+      bufferEnd = 0;
+      int read = reader.read(chunk, 0, CHUNK_SIZE);
+      while (read != -1) {
+        if (bufferEnd + read > buffer.length) {
+          char[] newBuffer = new char[Math.max(buffer.length * 2, bufferEnd + read)];
+          System.arraycopy(buffer, 0, newBuffer, 0, bufferEnd);
+          buffer = newBuffer;
+        }
+        System.arraycopy(chunk, 0, buffer, bufferEnd, read);
+        bufferEnd += read;
+        read = reader.read(chunk, 0, CHUNK_SIZE);
+      }
     } catch (IOException e) {
       throw new ChannelException(e.getMessage(), e);
     } finally {
@@ -86,15 +160,12 @@ public class CodeBuffer implements CharSequence {
    * @return the next character or -1 if the end of the stream is reached
    */
   public final int pop() {
-    if (bufferPosition >= buffer.length) {
+    if (bufferPosition >= bufferEnd) {
       return -1;
     }
     int character = buffer[bufferPosition];
     bufferPosition++;
     updateCursorPosition(character);
-    if (recordingMode) {
-      recordedCharacters.append((char) character);
-    }
     lastChar = character;
     return character;
   }
@@ -163,13 +234,17 @@ public class CodeBuffer implements CharSequence {
   }
 
   public final void startRecording() {
-    recordingMode = true;
+    if (recordingStart == -1) {
+      recordingStart = bufferPosition;
+    }
   }
 
   public final CharSequence stopRecording() {
-    recordingMode = false;
-    CharSequence result = recordedCharacters;
-    recordedCharacters = new StringBuilder();
+    if (recordingStart == -1) {
+      return "";
+    }
+    String result = new String(buffer, recordingStart, bufferPosition - recordingStart);
+    recordingStart = -1;
     return result;
   }
 
@@ -187,7 +262,7 @@ public class CodeBuffer implements CharSequence {
   }
 
   protected final int intAt(int index) {
-    if (bufferPosition + index >= buffer.length) {
+    if (bufferPosition + index >= bufferEnd) {
       return -1;
     }
     return buffer[bufferPosition + index];
@@ -198,7 +273,7 @@ public class CodeBuffer implements CharSequence {
    */
   @Override
   public final int length() {
-    return buffer.length - bufferPosition;
+    return bufferEnd - bufferPosition;
   }
 
   @Override
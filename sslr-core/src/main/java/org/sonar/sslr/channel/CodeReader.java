@@ -19,8 +19,13 @@
  */
 package org.sonar.sslr.channel;
 
+import org.sonar.sslr.internal.text.StringPool;
+
+import javax.annotation.Nullable;
+
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.CharBuffer;
 import java.util.regex.Matcher;
 
 /**
@@ -30,6 +35,7 @@ import java.util.regex.Matcher;
 public class CodeReader extends CodeBuffer {
 
   private Cursor previousCursor;
+  private StringPool values;
 
   /*
    * Constructor needed to be backward compatible (before using CodeReaderFilter)
@@ -70,6 +76,40 @@ public class CodeReader extends CodeBuffer {
     super(code, configuration);
   }
 
+  /**
+   * Creates a code reader with specific configuration parameters.
+   * Note that this constructor doesn't copy given characters, unless some {@link CodeReaderFilter} is configured,
+   * so they must not be modified while reader is in use.
+   *
+   * @param code
+   *          the characters of code
+   * @param offset
+   *          the index of first character of code
+   * @param length
+   *          the number of characters of code
+   * @param configuration
+   *          the configuration parameters
+   * @since 1.21
+   */
+  public CodeReader(char[] code, int offset, int length, CodeReaderConfiguration configuration) {
+    super(code, offset, length, configuration);
+  }
+
+  /**
+   * Creates a code reader with specific configuration parameters from remaining characters of given buffer, without modification of its position.
+   * Note that this constructor doesn't copy characters of a buffer backed by an accessible array, unless some {@link CodeReaderFilter} is configured,
+   * so they must not be modified while reader is in use.
+   *
+   * @param code
+   *          the code itself
+   * @param configuration
+   *          the configuration parameters
+   * @since 1.21
+   */
+  public CodeReader(CharBuffer code, CodeReaderConfiguration configuration) {
+    super(code, configuration);
+  }
+
   /**
    * Read and consume the next character
    *
@@ -151,6 +191,63 @@ public class CodeReader extends CodeBuffer {
    * @return number of consumed characters or -1 if one of the two Matchers doesn't match
    */
   public final int popTo(Matcher matcher, Matcher afterMatcher, Appendable appendable) {
+    int end = lookingAt(matcher, afterMatcher);
+    if (end != -1) {
+      try {
+        previousCursor = getCursor().clone();
+        for (int i = 0; i < end; i++) {
+          appendable.append((char) pop());
+        }
+      } catch (IOException e) {
+        throw new ChannelException(e.getMessage(), e);
+      }
+    }
+    return end;
+  }
+
+  /**
+   * Read and consume the next characters according to a given regular expression.
+   * Returns the same string instance for equal sequences of characters consumed from this reader,
+   * so that tokens with equal values share memory.
+   *
+   * @param matcher
+   *          the regular expression matcher
+   * @return consumed characters or null if the next input sequence doesn't match this matcher's pattern
+   * @since 1.21
+   */
+  @Nullable
+  public final String popTo(Matcher matcher) {
+    int end = lookingAt(matcher, null);
+    if (end == -1) {
+      return null;
+    }
+    String result = values().get(this, 0, end);
+    previousCursor = getCursor().clone();
+    for (int i = 0; i < end; i++) {
+      pop();
+    }
+    return result;
+  }
+
+  /**
+   * @return string equal to given one, which is shared by all equal strings obtained from {@link #popTo(Matcher)} and from this method
+   * @since 1.21
+   */
+  public final String intern(String value) {
+    return values().get(value);
+  }
+
+  private StringPool values() {
+    if (values == null) {
+      values = new StringPool();
+    }
+    return values;
+  }
+
+  /**
+   * @return end of match relatively to the current position, or -1 if one of the two Matchers doesn't match
+   */
+  private int lookingAt(Matcher matcher, @Nullable Matcher afterMatcher) {
     try {
       matcher.reset(this);
       if (matcher.lookingAt()) {
@@ -161,10 +258,6 @@ public class CodeReader extends CodeBuffer {
             return -1;
           }
         }
-        previousCursor = getCursor().clone();
-        for (int i = 0; i < matcher.end(); i++) {
-          appendable.append((char) pop());
-        }
         return matcher.end();
       }
     } catch (StackOverflowError e) {
@@ -174,8 +267,6 @@ public class CodeReader extends CodeBuffer {
         + " This error may be due to an inefficient use of alternations - see http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=5050507", e);
     } catch (IndexOutOfBoundsException e) {
       return -1;
-    } catch (IOException e) {
-      throw new ChannelException(e.getMessage(), e);
     }
     return -1;
   }
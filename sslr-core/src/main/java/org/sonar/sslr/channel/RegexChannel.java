@@ -19,6 +19,10 @@
  */
 package org.sonar.sslr.channel;
 
+import org.sonar.sslr.internal.regexp.Dfa;
+
+import javax.annotation.Nullable;
+
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -27,8 +31,19 @@ import java.util.regex.Pattern;
  */
 public abstract class RegexChannel<O> extends Channel<O> {
 
-  private final StringBuilder tmpBuilder = new StringBuilder();
-  private final Matcher matcher;
+  private final Pattern pattern;
+  @Nullable
+  private final Dfa dfa;
+
+  /**
+   * {@link Matcher} and buffer are kept for each thread, so that channel can be used concurrently.
+   */
+  private final ThreadLocal<State> state = new ThreadLocal<State>() {
+    @Override
+    protected State initialValue() {
+      return new State(pattern.matcher(""));
+    }
+  };
 
   /**
    * Create a RegexChannel object with the required regular expression
@@ -37,19 +52,26 @@ public abstract class RegexChannel<O> extends Channel<O> {
    *          regular expression to be used to try matching the next characters in the stream
    */
   public RegexChannel(String regex) {
-    matcher = Pattern.compile(regex).matcher("");
+    pattern = Pattern.compile(regex);
+    dfa = Dfa.compile(regex);
   }
 
   @Override
   public final boolean consume(CodeReader code, O output) {
-    if (code.popTo(matcher, tmpBuilder) > 0) {
-      consume(tmpBuilder, output);
-      tmpBuilder.delete(0, tmpBuilder.length());
+    State s = state.get();
+    if (code.popTo(s.matcher, s.tmpBuilder) > 0) {
+      consume(s.tmpBuilder, output);
+      s.tmpBuilder.delete(0, s.tmpBuilder.length());
       return true;
     }
     return false;
   }
 
+  @Override
+  public boolean canStartWith(char c) {
+    return dfa == null || dfa.canStartWith(c);
+  }
+
   /**
    * The consume method is called each time the regular expression used to create the RegexChannel object matches the next characters in the
    * character streams.
@@ -61,4 +83,13 @@ public abstract class RegexChannel<O> extends Channel<O> {
    */
   protected abstract void consume(CharSequence token, O output);
 
+  private static final class State {
+    private final Matcher matcher;
+    private final StringBuilder tmpBuilder = new StringBuilder();
+
+    public State(Matcher matcher) {
+      this.matcher = matcher;
+    }
+  }
+
 }
@@ -116,6 +116,10 @@ public class MutableParsingRule implements CompilableGrammarRule, Matcher, Rule,
     throw new UnsupportedOperationException();
   }
 
+  public AstNodeSkippingPolicy getAstNodeSkippingPolicy() {
+    return astNodeSkippingPolicy;
+  }
+
   public boolean hasToBeSkippedFromAst(AstNode node) {
     return astNodeSkippingPolicy.hasToBeSkippedFromAst(node);
   }
@@ -29,6 +29,7 @@ import com.sonar.sslr.api.Trivia;
 import com.sonar.sslr.api.Trivia.TriviaKind;
 import org.sonar.sslr.internal.grammar.MutableParsingRule;
 import org.sonar.sslr.internal.text.CompositeText.CompositeTextCharSequence;
+import org.sonar.sslr.internal.text.StringPool;
 import org.sonar.sslr.internal.vm.TokenExpression;
 import org.sonar.sslr.internal.vm.TriviaExpression;
 import org.sonar.sslr.parser.ParsingResult;
@@ -55,31 +56,36 @@ public final class AstCreator {
   }
 
   private final TextCharSequence input;
+  private final ParseTree tree;
   private final Token.Builder tokenBuilder = Token.builder();
   private final List<Trivia> trivias = Lists.newArrayList();
+  private final StringPool values = new StringPool();
 
   public static AstNode create(ParsingResult parsingResult, Text input) {
-    AstNode astNode = new AstCreator(input).visit(parsingResult.getParseTreeRoot());
+    ParseTree tree = parsingResult.getParseTree();
+    AstNode astNode = new AstCreator(input, tree).visit(tree.getRoot());
     // Unwrap AstNodeType for root node:
     astNode.hasToBeSkippedFromAst();
     return astNode;
   }
 
-  private AstCreator(Text input) {
+  private AstCreator(Text input, ParseTree tree) {
     this.input = input.sequence();
+    this.tree = tree;
   }
 
-  private AstNode visit(ParseNode node) {
-    if (node.getMatcher() instanceof MutableParsingRule) {
+  private AstNode visit(int node) {
+    if (tree.getMatcher(node) instanceof MutableParsingRule) {
       return visitNonTerminal(node);
     } else {
       return visitTerminal(node);
     }
   }
 
-  private AstNode visitTerminal(ParseNode node) {
-    if (node.getMatcher() instanceof TriviaExpression) {
-      TriviaExpression ruleMatcher = (TriviaExpression) node.getMatcher();
+  private AstNode visitTerminal(int node) {
+    Matcher matcher = tree.getMatcher(node);
+    if (matcher instanceof TriviaExpression) {
+      TriviaExpression ruleMatcher = (TriviaExpression) matcher;
       if (ruleMatcher.getTriviaKind() == TriviaKind.SKIPPED_TEXT) {
         return null;
       } else if (ruleMatcher.getTriviaKind() == TriviaKind.COMMENT) {
@@ -91,9 +97,9 @@ public final class AstCreator {
       } else {
         throw new IllegalStateException("Unexpected trivia kind: " + ruleMatcher.getTriviaKind());
       }
-    } else if (node.getMatcher() instanceof TokenExpression) {
+    } else if (matcher instanceof TokenExpression) {
       updateTokenPositionAndValue(node);
-      TokenExpression ruleMatcher = (TokenExpression) node.getMatcher();
+      TokenExpression ruleMatcher = (TokenExpression) matcher;
       tokenBuilder.setType(ruleMatcher.getTokenType());
       if (ruleMatcher.getTokenType() == GenericTokenType.COMMENT) {
         tokenBuilder.setTrivia(Collections.<Trivia>emptyList());
@@ -107,13 +113,14 @@ public final class AstCreator {
     Token token = tokenBuilder.setTrivia(trivias).build();
     trivias.clear();
     AstNode astNode = new AstNode(token);
-    astNode.setFromIndex(node.getStartIndex());
-    astNode.setToIndex(node.getEndIndex());
+    astNode.setFromIndex(tree.getStartIndex(node));
+    astNode.setToIndex(tree.getEndIndex(node));
     return astNode;
   }
 
-  private void updateTokenPositionAndValue(ParseNode node) {
-    TextLocation location = input.getLocation(node.getStartIndex());
+  private void updateTokenPositionAndValue(int node) {
+    int startIndex = tree.getStartIndex(node);
+    TextLocation location = input.getLocation(startIndex);
     if (location == null) {
       tokenBuilder.setGeneratedCode(true);
       // Godin: line, column and uri has no value for generated code, but we should bypass checks in TokenBuilder
@@ -127,7 +134,7 @@ public final class AstCreator {
       tokenBuilder.setURI(location.getFileURI() == null ? FAKE_URI : location.getFileURI());
 
       TextLocation copyLocation = input instanceof CompositeTextCharSequence
-          ? ((CompositeTextCharSequence) input).getCopyLocation(node.getStartIndex())
+          ? ((CompositeTextCharSequence) input).getCopyLocation(startIndex)
           : null;
       if (copyLocation == null) {
         tokenBuilder.notCopyBook();
@@ -140,11 +147,12 @@ public final class AstCreator {
     tokenBuilder.setValueAndOriginalValue(value);
   }
 
-  private AstNode visitNonTerminal(ParseNode node) {
-    MutableParsingRule ruleMatcher = (MutableParsingRule) node.getMatcher();
-    List<AstNode> astNodes = Lists.newArrayList();
-    for (ParseNode child : node.getChildren()) {
-      AstNode astNode = visit(child);
+  private AstNode visitNonTerminal(int node) {
+    MutableParsingRule ruleMatcher = (MutableParsingRule) tree.getMatcher(node);
+    int childrenCount = tree.getChildrenCount(node);
+    List<AstNode> astNodes = Lists.newArrayListWithCapacity(childrenCount);
+    for (int i = 0; i < childrenCount; i++) {
+      AstNode astNode = visit(tree.getChild(node, i));
       if (astNode != null) {
         if (astNode.hasToBeSkippedFromAst()) {
           astNodes.addAll(astNode.getChildren());
@@ -166,17 +174,15 @@ public final class AstCreator {
     for (AstNode child : astNodes) {
       astNode.addChild(child);
     }
-    astNode.setFromIndex(node.getStartIndex());
-    astNode.setToIndex(node.getEndIndex());
+    astNode.setFromIndex(tree.getStartIndex(node));
+    astNode.setToIndex(tree.getEndIndex(node));
     return astNode;
   }
 
-  private String getValue(ParseNode node) {
-    StringBuilder result = new StringBuilder();
-    for (int i = node.getStartIndex(); i < Math.min(node.getEndIndex(), input.length()); i++) {
-      result.append(input.charAt(i));
-    }
-    return result.toString();
+  private String getValue(int node) {
+    int start = tree.getStartIndex(node);
+    int end = Math.max(start, Math.min(tree.getEndIndex(node), input.length()));
+    return values.get(input, start, end);
   }
 
   @VisibleForTesting
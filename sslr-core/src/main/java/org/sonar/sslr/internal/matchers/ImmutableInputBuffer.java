@@ -19,76 +19,59 @@
  */
 package org.sonar.sslr.internal.matchers;
 
-import com.google.common.collect.Lists;
-
-import java.util.Arrays;
-import java.util.List;
+import org.sonar.sslr.internal.text.LineIndex;
+import org.sonar.sslr.internal.text.LocatedText;
 
 public class ImmutableInputBuffer implements InputBuffer {
 
   private final char[] buffer;
+  private final LineIndex lines;
 
   /**
-   * Indices of lines in buffer.
+   * Index of lines will be computed only when required.
    */
-  private final int[] lines;
-
   public ImmutableInputBuffer(char[] buffer) {
-    this.buffer = buffer;
+    this(buffer, LineIndex.of(buffer));
+  }
 
-    List<Integer> newlines = Lists.newArrayList();
-    int i = 0;
-    newlines.add(0);
-    while (i < buffer.length) {
-      if (isEndOfLine(buffer, i)) {
-        newlines.add(i + 1);
-      }
-      i++;
-    }
-    newlines.add(i);
-    this.lines = new int[newlines.size()];
-    for (i = 0; i < newlines.size(); i++) {
-      this.lines[i] = newlines.get(i);
-    }
+  /**
+   * @param lines index of lines of given buffer, length of which defines length of input,
+   * so that buffer can be longer than input
+   */
+  public ImmutableInputBuffer(char[] buffer, LineIndex lines) {
+    this.buffer = buffer;
+    this.lines = lines;
   }
 
   public int length() {
-    return buffer.length;
+    return lines.length();
   }
 
   public char charAt(int i) {
     return buffer[i];
   }
 
-  /**
-   * A line is considered to be terminated by any one of
-   * a line feed ({@code '\n'}), a carriage return ({@code '\r'}),
-   * or a carriage return followed immediately by a line feed ({@code "\r\n"}).
-   */
-  private static boolean isEndOfLine(char[] buffer, int i) {
-    return buffer[i] == TextUtils.LF ||
-        (buffer[i] == TextUtils.CR && (((i + 1 < buffer.length) && buffer[i + 1] != TextUtils.LF) || i + 1 == buffer.length));
-  }
-
   public String extractLine(int lineNumber) {
-    int start = lines[lineNumber - 1];
-    int end = lines[lineNumber];
+    int start = lines.getLineStart(lineNumber);
+    int end = lines.getLineEnd(lineNumber);
     return new String(buffer, start, end - start);
   }
 
   public int getLineCount() {
-    return lines.length - 1;
-  }
-
-  private int getLineNumber(int index) {
-    int i = Arrays.binarySearch(lines, index);
-    return Math.min(i >= 0 ? i + 1 : -(i + 1), getLineCount());
+    return lines.getLineCount();
   }
 
   public Position getPosition(int index) {
-    int line = getLineNumber(index);
-    int column = index - lines[line - 1] + 1;
+    int line = lines.getLineNumber(index);
+    int column = index - lines.getLineStart(line) + 1;
     return new Position(line, column);
   }
 
+  /**
+   * @return text backed by the same array of chars and index of lines as this buffer, i.e. without copying
+   */
+  public LocatedText toText() {
+    return new LocatedText(null, buffer, lines.length(), lines);
+  }
+
 }
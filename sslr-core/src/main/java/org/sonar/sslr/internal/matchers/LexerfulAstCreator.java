@@ -29,31 +29,34 @@ import java.util.List;
 
 public class LexerfulAstCreator {
 
-  public static AstNode create(ParseNode node, List<Token> tokens) {
-    AstNode astNode = new LexerfulAstCreator(tokens).visit(node);
+  public static AstNode create(ParseTree tree, List<Token> tokens) {
+    AstNode astNode = new LexerfulAstCreator(tree, tokens).visit(tree.getRoot());
     // Unwrap AstNodeType for root node:
     astNode.hasToBeSkippedFromAst();
     return astNode;
   }
 
+  private final ParseTree tree;
   private final List<Token> tokens;
 
-  private LexerfulAstCreator(List<Token> tokens) {
+  private LexerfulAstCreator(ParseTree tree, List<Token> tokens) {
+    this.tree = tree;
     this.tokens = tokens;
   }
 
-  private AstNode visit(ParseNode node) {
-    if (node.getMatcher() instanceof RuleDefinition) {
+  private AstNode visit(int node) {
+    if (tree.getMatcher(node) instanceof RuleDefinition) {
       return visitNonTerminal(node);
     } else {
       return visitTerminal(node);
     }
   }
 
-  private AstNode visitNonTerminal(ParseNode node) {
-    List<AstNode> astNodes = Lists.newArrayList();
-    for (ParseNode child : node.getChildren()) {
-      AstNode astNode = visit(child);
+  private AstNode visitNonTerminal(int node) {
+    int childrenCount = tree.getChildrenCount(node);
+    List<AstNode> astNodes = Lists.newArrayListWithCapacity(childrenCount);
+    for (int i = 0; i < childrenCount; i++) {
+      AstNode astNode = visit(tree.getChild(node, i));
       if (astNode == null) {
         // skip
       } else if (astNode.hasToBeSkippedFromAst()) {
@@ -63,28 +66,30 @@ public class LexerfulAstCreator {
       }
     }
 
-    RuleDefinition ruleMatcher = (RuleDefinition) node.getMatcher();
+    RuleDefinition ruleMatcher = (RuleDefinition) tree.getMatcher(node);
 
-    Token token = node.getStartIndex() < tokens.size() ? tokens.get(node.getStartIndex()) : null;
+    int startIndex = tree.getStartIndex(node);
+    Token token = startIndex < tokens.size() ? tokens.get(startIndex) : null;
     AstNode astNode = new AstNode(ruleMatcher, ruleMatcher.getName(), token);
     for (AstNode child : astNodes) {
       astNode.addChild(child);
     }
-    astNode.setFromIndex(node.getStartIndex());
-    astNode.setToIndex(node.getEndIndex());
+    astNode.setFromIndex(startIndex);
+    astNode.setToIndex(tree.getEndIndex(node));
 
     return astNode;
   }
 
-  private AstNode visitTerminal(ParseNode node) {
-    Token token = tokens.get(node.getStartIndex());
+  private AstNode visitTerminal(int node) {
+    int startIndex = tree.getStartIndex(node);
+    Token token = tokens.get(startIndex);
     // For compatibility with SSLR < 1.19, TokenType should be checked only for TokenTypeExpression:
-    if ((node.getMatcher() instanceof TokenTypeExpression) && token.getType().hasToBeSkippedFromAst(null)) {
+    if ((tree.getMatcher(node) instanceof TokenTypeExpression) && token.getType().hasToBeSkippedFromAst(null)) {
       return null;
     }
     AstNode astNode = new AstNode(token);
-    astNode.setFromIndex(node.getStartIndex());
-    astNode.setToIndex(node.getEndIndex());
+    astNode.setFromIndex(startIndex);
+    astNode.setToIndex(tree.getEndIndex(node));
     return astNode;
   }
 
@@ -0,0 +1,212 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parse tree, which is stored in parallel arrays, so that construction of nodes doesn't require allocations.
+ * Node is identified by an index in those arrays, children of node are stored as a contiguous range of indices
+ * in array of children, so that node can be shared by several parents (e.g. in case of memoization).
+ *
+ * <p>Node is always created after its children, so that identifiers of children are less than identifier of parent.</p>
+ */
+public final class ParseTree {
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private int size;
+  private int[] startIndices;
+  private int[] endIndices;
+  private Matcher[] matchers;
+
+  /**
+   * Index in {@link #children} of first child of node.
+   * Children of node end where children of next node start.
+   */
+  private int[] childrenStarts;
+
+  private int[] children;
+  private int childrenSize;
+
+  private int root = -1;
+
+  private int[] copyStack = new int[0];
+  private int copyStackSize;
+
+  public ParseTree() {
+    this(INITIAL_CAPACITY);
+  }
+
+  public ParseTree(int initialCapacity) {
+    int capacity = Math.max(1, initialCapacity);
+    startIndices = new int[capacity];
+    endIndices = new int[capacity];
+    matchers = new Matcher[capacity];
+    childrenStarts = new int[capacity + 1];
+    children = new int[capacity];
+  }
+
+  /**
+   * Creates leaf node.
+   *
+   * @return identifier of created node
+   */
+  public int addNode(int startIndex, int endIndex, Matcher matcher) {
+    return addNode(startIndex, endIndex, matcher, children, 0, 0);
+  }
+
+  /**
+   * Creates node with children, identifiers of which are located in given array between given indices.
+   *
+   * @return identifier of created node
+   */
+  public int addNode(int startIndex, int endIndex, Matcher matcher, int[] nodes, int from, int to) {
+    if (size == startIndices.length) {
+      int capacity = size * 2;
+      startIndices = Arrays.copyOf(startIndices, capacity);
+      endIndices = Arrays.copyOf(endIndices, capacity);
+      matchers = Arrays.copyOf(matchers, capacity);
+      childrenStarts = Arrays.copyOf(childrenStarts, capacity + 1);
+    }
+    int count = to - from;
+    if (childrenSize + count > children.length) {
+      children = Arrays.copyOf(children, Math.max(children.length * 2, childrenSize + count));
+    }
+    System.arraycopy(nodes, from, children, childrenSize, count);
+    childrenSize += count;
+
+    int node = size;
+    startIndices[node] = startIndex;
+    endIndices[node] = endIndex;
+    matchers[node] = matcher;
+    size++;
+    childrenStarts[size] = childrenSize;
+    return node;
+  }
+
+  /**
+   * @return number of nodes
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Removes nodes, identifiers of which are greater than or equal to given size.
+   */
+  public void truncate(int newSize) {
+    Preconditions.checkPositionIndex(newSize, size);
+    Arrays.fill(matchers, newSize, size, null);
+    size = newSize;
+    childrenSize = childrenStarts[newSize];
+  }
+
+  public int getRoot() {
+    return root;
+  }
+
+  public void setRoot(int root) {
+    this.root = root;
+  }
+
+  public int getStartIndex(int node) {
+    return startIndices[node];
+  }
+
+  /**
+   * Be aware that element of input with this index is not included into node.
+   */
+  public int getEndIndex(int node) {
+    return endIndices[node];
+  }
+
+  public Matcher getMatcher(int node) {
+    return matchers[node];
+  }
+
+  public int getChildrenCount(int node) {
+    return childrenStarts[node + 1] - childrenStarts[node];
+  }
+
+  public int getChild(int node, int i) {
+    return children[childrenStarts[node] + i];
+  }
+
+  /**
+   * Copies given node of a given tree together with its descendants, with shift of their positions by a given offset.
+   *
+   * @return identifier of copy of given node
+   */
+  public int copy(ParseTree source, int node, int shift) {
+    int count = source.getChildrenCount(node);
+    if (count == 0) {
+      return addNode(source.startIndices[node] + shift, source.endIndices[node] + shift, source.matchers[node]);
+    }
+    // Identifiers of copies of children are accumulated on stack, so that no allocation is required per node
+    int from = copyStackSize;
+    copyStackSize += count;
+    if (copyStack.length < copyStackSize) {
+      copyStack = Arrays.copyOf(copyStack, Math.max(copyStack.length * 2, copyStackSize));
+    }
+    for (int i = 0; i < count; i++) {
+      // stack might be reallocated during copy of child
+      int child = copy(source, source.getChild(node, i), shift);
+      copyStack[from + i] = child;
+    }
+    copyStackSize = from;
+    return addNode(source.startIndices[node] + shift, source.endIndices[node] + shift, source.matchers[node], copyStack, from, from + count);
+  }
+
+  /**
+   * Creates object representation of given node and its descendants.
+   */
+  public ParseNode toParseNode(int node) {
+    int count = getChildrenCount(node);
+    List<ParseNode> result = Lists.newArrayListWithCapacity(count);
+    for (int i = 0; i < count; i++) {
+      result.add(toParseNode(getChild(node, i)));
+    }
+    return new ParseNode(getStartIndex(node), getEndIndex(node), result, getMatcher(node));
+  }
+
+  /**
+   * Creates parse tree from object representation of its root.
+   */
+  public static ParseTree of(ParseNode root) {
+    ParseTree tree = new ParseTree();
+    tree.setRoot(tree.add(root));
+    return tree;
+  }
+
+  private int add(ParseNode node) {
+    List<ParseNode> nodeChildren = node.getChildren();
+    int[] ids = new int[nodeChildren.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = add(nodeChildren.get(i));
+    }
+    return addNode(node.getStartIndex(), node.getEndIndex(), node.getMatcher(), ids, 0, ids.length);
+  }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.regexp;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of code points, represented by sorted disjoint ranges.
+ */
+final class CharSet {
+
+  public static final CharSet EMPTY = new CharSet(new int[0]);
+
+  public static final CharSet DIGITS = range('0', '9');
+  public static final CharSet SPACES = of(" \t\n\u000B\f\r");
+  public static final CharSet WORDS = range('a', 'z').union(range('A', 'Z')).union(of("_")).union(DIGITS);
+
+  /**
+   * Characters, which are matched by "." in absence of flags.
+   */
+  public static final CharSet DOT = of("\n\r\u0085\u2028\u2029").complement();
+
+  /**
+   * Pairs of first and last code points of each range.
+   */
+  private final int[] ranges;
+
+  private CharSet(int[] ranges) {
+    this.ranges = ranges;
+  }
+
+  public static CharSet range(int first, int last) {
+    return new CharSet(new int[] {first, last});
+  }
+
+  public static CharSet of(String chars) {
+    CharSet result = EMPTY;
+    for (int i = 0; i < chars.length(); i++) {
+      result = result.union(range(chars.charAt(i), chars.charAt(i)));
+    }
+    return result;
+  }
+
+  public boolean contains(int c) {
+    for (int i = 0; i < ranges.length && ranges[i] <= c; i += 2) {
+      if (c <= ranges[i + 1]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public boolean intersects(CharSet other) {
+    int i = 0;
+    int j = 0;
+    while (i < ranges.length && j < other.ranges.length) {
+      if (ranges[i + 1] < other.ranges[j]) {
+        i += 2;
+      } else if (other.ranges[j + 1] < ranges[i]) {
+        j += 2;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public CharSet union(CharSet other) {
+    int[] all = new int[ranges.length + other.ranges.length];
+    System.arraycopy(ranges, 0, all, 0, ranges.length);
+    System.arraycopy(other.ranges, 0, all, ranges.length, other.ranges.length);
+    long[] sorted = new long[all.length / 2];
+    for (int i = 0; i < sorted.length; i++) {
+      sorted[i] = ((long) all[2 * i] << 32) | all[2 * i + 1];
+    }
+    Arrays.sort(sorted);
+    int[] result = new int[all.length];
+    int size = 0;
+    for (long range : sorted) {
+      int first = (int) (range >>> 32);
+      int last = (int) range;
+      if (size > 0 && first <= result[size - 1] + 1) {
+        result[size - 1] = Math.max(result[size - 1], last);
+      } else {
+        result[size++] = first;
+        result[size++] = last;
+      }
+    }
+    return new CharSet(Arrays.copyOf(result, size));
+  }
+
+  public CharSet complement() {
+    int[] result = new int[ranges.length + 2];
+    int size = 0;
+    int next = 0;
+    for (int i = 0; i < ranges.length; i += 2) {
+      if (next < ranges[i]) {
+        result[size++] = next;
+        result[size++] = ranges[i] - 1;
+      }
+      next = ranges[i + 1] + 1;
+    }
+    if (next <= Character.MAX_CODE_POINT) {
+      result[size++] = next;
+      result[size++] = Character.MAX_CODE_POINT;
+    }
+    return new CharSet(Arrays.copyOf(result, size));
+  }
+
+  /**
+   * @return pairs of first and last code points of each range
+   */
+  public int[] getRanges() {
+    return ranges;
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(ranges);
+  }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.regexp;
+
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Deterministic finite automaton, which finds the same prefix of input as {@link java.util.regex.Matcher#lookingAt()},
+ * but in a single pass over array of characters without backtracking and without recursion.
+ *
+ * <p>Instances of this class are immutable and so can be shared between threads.</p>
+ */
+public final class Dfa {
+
+  static final int DEAD = -1;
+
+  private static final int ASCII = 128;
+
+  /**
+   * First code point of each class of code points, which are not distinguished by automaton.
+   */
+  private final int[] classStarts;
+  private final int[] asciiClasses;
+  private final int classesCount;
+
+  /**
+   * Next state for each pair of state and class, {@link #DEAD} if there is no next state.
+   */
+  private final int[] transitions;
+  private final boolean[] accepting;
+
+  Dfa(int[] classStarts, int[] transitions, boolean[] accepting) {
+    this.classStarts = classStarts;
+    this.classesCount = classStarts.length;
+    this.transitions = transitions;
+    this.accepting = accepting;
+    this.asciiClasses = new int[ASCII];
+    for (int c = 0; c < ASCII; c++) {
+      asciiClasses[c] = classOf(c);
+    }
+  }
+
+  /**
+   * @param regexp regular expression in syntax of {@link java.util.regex.Pattern}, which was already successfully compiled
+   * @return automaton, or null if regular expression uses features, which can't be represented by automaton
+   */
+  @Nullable
+  public static Dfa compile(String regexp) {
+    try {
+      Nfa nfa = new Nfa();
+      int start = RegexpParser.parse(regexp).compile(nfa, nfa.match());
+      return DfaBuilder.build(nfa, start);
+    } catch (UnsupportedRegexpException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return end of match, which starts at {@code start} and doesn't go beyond {@code end}, or -1 if there is no match
+   */
+  public int match(char[] input, int start, int end) {
+    int state = 0;
+    int result = accepting[state] ? start : -1;
+    int i = start;
+    while (i < end) {
+      int c = input[i];
+      int next;
+      if (c < ASCII) {
+        next = transitions[state * classesCount + asciiClasses[c]];
+        i++;
+      } else {
+        if (Character.isHighSurrogate((char) c) && i + 1 < end && Character.isLowSurrogate(input[i + 1])) {
+          c = Character.toCodePoint((char) c, input[i + 1]);
+          i++;
+        }
+        next = transitions[state * classesCount + classOf(c)];
+        i++;
+      }
+      if (next == DEAD) {
+        break;
+      }
+      state = next;
+      if (accepting[state]) {
+        result = i;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return false if there is no match, which starts with given character
+   */
+  public boolean canStartWith(char c) {
+    if (accepting[0] || Character.isHighSurrogate(c)) {
+      return true;
+    }
+    int cls = c < ASCII ? asciiClasses[c] : classOf(c);
+    return transitions[cls] != DEAD;
+  }
+
+  private int classOf(int c) {
+    int i = Arrays.binarySearch(classStarts, c);
+    return i >= 0 ? i : -i - 2;
+  }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.regexp;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+import org.sonar.sslr.internal.regexp.Nfa.PossessiveLoop;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+
+/**
+ * Translates {@link Nfa} into {@link Dfa} by subset construction.
+ * State of {@link Dfa} corresponds to list of states of {@link Nfa} ordered by priority,
+ * and states with lower priority than match state are discarded, because backtracking implementation never tries them,
+ * so that {@link Dfa} finds the same match as backtracking implementation, and not the longest one.
+ */
+final class DfaBuilder {
+
+  private static final int MAX_STATES = 1000;
+  private static final int MAX_TRANSITIONS = 1 << 16;
+
+  private final Nfa nfa;
+  private final boolean[] visited;
+  private boolean matched;
+
+  private final Map<List<Integer>, Integer> ids = Maps.newHashMap();
+  private final List<List<Integer>> states = Lists.newArrayList();
+
+  private DfaBuilder(Nfa nfa) {
+    this.nfa = nfa;
+    this.visited = new boolean[nfa.size()];
+  }
+
+  /**
+   * @throws UnsupportedRegexpException if automaton is too big, or contains possessive loops, which don't behave as greedy ones
+   */
+  public static Dfa build(Nfa nfa, int start) {
+    return new DfaBuilder(nfa).build(start);
+  }
+
+  private Dfa build(int start) {
+    for (PossessiveLoop loop : nfa.getPossessiveLoops()) {
+      checkPossessiveLoop(loop);
+    }
+
+    int[] classStarts = classStarts();
+    List<Integer> initial = Lists.newArrayList();
+    resetClosure();
+    closure(start, initial);
+    id(initial);
+
+    List<int[]> transitions = Lists.newArrayList();
+    for (int state = 0; state < states.size(); state++) {
+      if ((state + 1) * classStarts.length > MAX_TRANSITIONS) {
+        throw new UnsupportedRegexpException();
+      }
+      int[] row = new int[classStarts.length];
+      for (int c = 0; c < classStarts.length; c++) {
+        List<Integer> next = step(states.get(state), classStarts[c]);
+        row[c] = next.isEmpty() ? Dfa.DEAD : id(next);
+      }
+      transitions.add(row);
+    }
+
+    int[] table = new int[states.size() * classStarts.length];
+    boolean[] accepting = new boolean[states.size()];
+    for (int state = 0; state < states.size(); state++) {
+      System.arraycopy(transitions.get(state), 0, table, state * classStarts.length, classStarts.length);
+      List<Integer> threads = states.get(state);
+      accepting[state] = !threads.isEmpty() && nfa.isMatch(threads.get(threads.size() - 1));
+    }
+    return new Dfa(classStarts, table, accepting);
+  }
+
+  /**
+   * Splits all code points into classes, so that code points from the same class are not distinguished by automaton.
+   *
+   * @return first code point of each class
+   */
+  private int[] classStarts() {
+    SortedSet<Integer> starts = Sets.newTreeSet();
+    starts.add(0);
+    for (int state = 0; state < nfa.size(); state++) {
+      CharSet set = nfa.getSet(state);
+      if (set != null) {
+        int[] ranges = set.getRanges();
+        for (int i = 0; i < ranges.length; i += 2) {
+          starts.add(ranges[i]);
+          if (ranges[i + 1] < Character.MAX_CODE_POINT) {
+            starts.add(ranges[i + 1] + 1);
+          }
+        }
+      }
+    }
+    return Ints.toArray(starts);
+  }
+
+  private int id(List<Integer> threads) {
+    Integer id = ids.get(threads);
+    if (id == null) {
+      if (states.size() == MAX_STATES) {
+        throw new UnsupportedRegexpException();
+      }
+      id = states.size();
+      ids.put(threads, id);
+      states.add(threads);
+    }
+    return id;
+  }
+
+  private List<Integer> step(List<Integer> threads, int c) {
+    resetClosure();
+    List<Integer> result = Lists.newArrayList();
+    for (int thread : threads) {
+      CharSet set = nfa.getSet(thread);
+      if (set != null && set.contains(c)) {
+        closure(nfa.getOut(thread), result);
+      }
+    }
+    return result;
+  }
+
+  private void resetClosure() {
+    Arrays.fill(visited, false);
+    matched = false;
+  }
+
+  /**
+   * Adds states, which consume characters, reachable from a given state, in order of their priority,
+   * until match state is reached.
+   */
+  private void closure(int state, List<Integer> result) {
+    if (matched || visited[state]) {
+      return;
+    }
+    visited[state] = true;
+    if (nfa.isMatch(state)) {
+      result.add(state);
+      matched = true;
+    } else if (nfa.getSet(state) != null) {
+      result.add(state);
+    } else {
+      closure(nfa.getOut(state), result);
+      closure(nfa.getOtherOut(state), result);
+    }
+  }
+
+  /**
+   * Backtracking into possessive quantifier can't change result, when continuation after it can match empty string,
+   * or when choice in each state of quantified expression is determined by the next character, so that there is no other way
+   * to match the same characters.
+   */
+  private void checkPossessiveLoop(PossessiveLoop loop) {
+    resetClosure();
+    closure(loop.getExit(), Lists.<Integer>newArrayList());
+    if (matched) {
+      return;
+    }
+    for (int state = loop.getFrom(); state < loop.getTo(); state++) {
+      if (nfa.getSet(state) == null && first(nfa.getOut(state)).intersects(first(nfa.getOtherOut(state)))) {
+        throw new UnsupportedRegexpException();
+      }
+    }
+  }
+
+  /**
+   * @return characters, which can be consumed first after a given state
+   * @throws UnsupportedRegexpException if empty string can be matched after a given state
+   */
+  private CharSet first(int state) {
+    resetClosure();
+    List<Integer> threads = Lists.newArrayList();
+    closure(state, threads);
+    if (matched) {
+      throw new UnsupportedRegexpException();
+    }
+    CharSet result = CharSet.EMPTY;
+    for (int thread : threads) {
+      result = result.union(nfa.getSet(thread));
+    }
+    return result;
+  }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.regexp;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+/**
+ * Nondeterministic finite automaton, in which alternatives are ordered by priority, as in backtracking implementation of regular expressions.
+ * Each state either consumes character from a given set, or splits into two states, where first one has higher priority,
+ * or signals match.
+ */
+final class Nfa {
+
+  /**
+   * Bigger automatons are not supported, so that time and memory required for construction of {@link Dfa} remain reasonable.
+   */
+  private static final int MAX_STATES = 2000;
+
+  private final List<CharSet> sets = Lists.newArrayList();
+  private final List<int[]> outs = Lists.newArrayList();
+  private final List<PossessiveLoop> possessiveLoops = Lists.newArrayList();
+  private final int match;
+
+  public Nfa() {
+    match = add(null, -1, -1);
+  }
+
+  public int match() {
+    return match;
+  }
+
+  public int addChar(CharSet set, int next) {
+    return add(set, next, -1);
+  }
+
+  /**
+   * Creates state, whose outgoing edges should be set later by {@link #setSplit(int, int, int)}.
+   */
+  public int addSplit() {
+    return add(null, -1, -1);
+  }
+
+  public int addSplit(int preferred, int other) {
+    return add(null, preferred, other);
+  }
+
+  public void setSplit(int state, int preferred, int other) {
+    outs.get(state)[0] = preferred;
+    outs.get(state)[1] = other;
+  }
+
+  /**
+   * Possessive quantifier behaves as greedy one, only if continuation after it can't match after backtracking into quantified expression.
+   * States of such quantifiers are remembered to be verified by {@link DfaBuilder}, once automaton is completely constructed.
+   *
+   * @param from first state of quantified expression
+   * @param exit state, which follows after quantified expression
+   */
+  public void addPossessiveLoop(int from, int exit) {
+    possessiveLoops.add(new PossessiveLoop(from, size(), exit));
+  }
+
+  public List<PossessiveLoop> getPossessiveLoops() {
+    return possessiveLoops;
+  }
+
+  public int size() {
+    return sets.size();
+  }
+
+  public boolean isMatch(int state) {
+    return state == match;
+  }
+
+  /**
+   * @return set of characters, which are consumed by given state, or null if this is a split or match state
+   */
+  public CharSet getSet(int state) {
+    return sets.get(state);
+  }
+
+  public int getOut(int state) {
+    return outs.get(state)[0];
+  }
+
+  public int getOtherOut(int state) {
+    return outs.get(state)[1];
+  }
+
+  private int add(CharSet set, int out, int otherOut) {
+    if (sets.size() == MAX_STATES) {
+      throw new UnsupportedRegexpException();
+    }
+    sets.add(set);
+    outs.add(new int[] {out, otherOut});
+    return sets.size() - 1;
+  }
+
+  public static final class PossessiveLoop {
+    private final int from;
+    private final int to;
+    private final int exit;
+
+    private PossessiveLoop(int from, int to, int exit) {
+      this.from = from;
+      this.to = to;
+      this.exit = exit;
+    }
+
+    /**
+     * @return first state of quantified expression
+     */
+    public int getFrom() {
+      return from;
+    }
+
+    /**
+     * @return state after the last state of quantified expression
+     */
+    public int getTo() {
+      return to;
+    }
+
+    public int getExit() {
+      return exit;
+    }
+  }
+
+}
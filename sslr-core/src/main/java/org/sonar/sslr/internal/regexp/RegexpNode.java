@@ -0,0 +1,180 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.regexp;
+
+import java.util.List;
+
+/**
+ * Node of syntax tree of regular expression.
+ */
+abstract class RegexpNode {
+
+  /**
+   * @return true if this node can match empty string
+   */
+  public abstract boolean isNullable();
+
+  /**
+   * Adds states, which match this node, into automaton.
+   *
+   * @param next state, which should follow after match of this node
+   * @return first state
+   */
+  public abstract int compile(Nfa nfa, int next);
+
+  static final class CharNode extends RegexpNode {
+    private final CharSet set;
+
+    public CharNode(CharSet set) {
+      this.set = set;
+    }
+
+    @Override
+    public boolean isNullable() {
+      return false;
+    }
+
+    @Override
+    public int compile(Nfa nfa, int next) {
+      return nfa.addChar(set, next);
+    }
+  }
+
+  static final class SequenceNode extends RegexpNode {
+    private final List<RegexpNode> nodes;
+
+    public SequenceNode(List<RegexpNode> nodes) {
+      this.nodes = nodes;
+    }
+
+    @Override
+    public boolean isNullable() {
+      for (RegexpNode node : nodes) {
+        if (!node.isNullable()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int compile(Nfa nfa, int next) {
+      int result = next;
+      for (int i = nodes.size() - 1; i >= 0; i--) {
+        result = nodes.get(i).compile(nfa, result);
+      }
+      return result;
+    }
+  }
+
+  static final class AlternationNode extends RegexpNode {
+    private final List<RegexpNode> alternatives;
+
+    public AlternationNode(List<RegexpNode> alternatives) {
+      this.alternatives = alternatives;
+    }
+
+    @Override
+    public boolean isNullable() {
+      for (RegexpNode alternative : alternatives) {
+        if (alternative.isNullable()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public int compile(Nfa nfa, int next) {
+      int result = alternatives.get(alternatives.size() - 1).compile(nfa, next);
+      for (int i = alternatives.size() - 2; i >= 0; i--) {
+        result = nfa.addSplit(alternatives.get(i).compile(nfa, next), result);
+      }
+      return result;
+    }
+  }
+
+  enum Quantifier {
+    GREEDY,
+    LAZY,
+    POSSESSIVE
+  }
+
+  static final class RepetitionNode extends RegexpNode {
+    public static final int UNBOUNDED = -1;
+
+    private final RegexpNode node;
+    private final int min;
+    private final int max;
+    private final Quantifier quantifier;
+
+    /**
+     * @throws UnsupportedRegexpException if repetition of given node can't be represented by automaton with the same semantics
+     */
+    public RepetitionNode(RegexpNode node, int min, int max, Quantifier quantifier) {
+      if (node.isNullable() && max != 1) {
+        // backtracking implementation stops iterations, which don't consume characters
+        throw new UnsupportedRegexpException();
+      }
+      this.node = node;
+      this.min = min;
+      this.max = max;
+      this.quantifier = quantifier;
+    }
+
+    @Override
+    public boolean isNullable() {
+      return min == 0 || node.isNullable();
+    }
+
+    @Override
+    public int compile(Nfa nfa, int next) {
+      int from = nfa.size();
+      int result;
+      if (max == UNBOUNDED) {
+        result = nfa.addSplit();
+        split(nfa, result, node.compile(nfa, result), next);
+      } else {
+        result = next;
+        for (int i = min; i < max; i++) {
+          int split = nfa.addSplit();
+          split(nfa, split, node.compile(nfa, result), next);
+          result = split;
+        }
+      }
+      for (int i = 0; i < min; i++) {
+        result = node.compile(nfa, result);
+      }
+      if (quantifier == Quantifier.POSSESSIVE) {
+        nfa.addPossessiveLoop(from, next);
+      }
+      return result;
+    }
+
+    private void split(Nfa nfa, int split, int iteration, int exit) {
+      if (quantifier == Quantifier.LAZY) {
+        nfa.setSplit(split, exit, iteration);
+      } else {
+        nfa.setSplit(split, iteration, exit);
+      }
+    }
+  }
+
+}
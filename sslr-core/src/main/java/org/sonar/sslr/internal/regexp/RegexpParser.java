@@ -0,0 +1,292 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.regexp;
+
+import com.google.common.collect.Lists;
+import org.sonar.sslr.internal.regexp.RegexpNode.AlternationNode;
+import org.sonar.sslr.internal.regexp.RegexpNode.CharNode;
+import org.sonar.sslr.internal.regexp.RegexpNode.Quantifier;
+import org.sonar.sslr.internal.regexp.RegexpNode.RepetitionNode;
+import org.sonar.sslr.internal.regexp.RegexpNode.SequenceNode;
+
+import java.util.List;
+
+/**
+ * Parses subset of syntax of {@link java.util.regex.Pattern}, which describes regular languages:
+ * characters, escape sequences, predefined character classes, simple character classes, groups, alternations and quantifiers.
+ * Expression is expected to be already validated by {@link java.util.regex.Pattern#compile(String)},
+ * so any construction outside of this subset (anchors, lookaround, backreferences, flags, etc.) or ambiguity
+ * is reported as {@link UnsupportedRegexpException}.
+ */
+final class RegexpParser {
+
+  private final String regexp;
+  private int pos;
+
+  private RegexpParser(String regexp) {
+    this.regexp = regexp;
+  }
+
+  /**
+   * @throws UnsupportedRegexpException if expression uses unsupported syntax
+   */
+  public static RegexpNode parse(String regexp) {
+    RegexpParser parser = new RegexpParser(regexp);
+    RegexpNode result = parser.parseAlternation();
+    if (parser.pos != regexp.length()) {
+      throw new UnsupportedRegexpException();
+    }
+    return result;
+  }
+
+  private RegexpNode parseAlternation() {
+    List<RegexpNode> alternatives = Lists.newArrayList();
+    alternatives.add(parseSequence());
+    while (peek() == '|') {
+      pos++;
+      alternatives.add(parseSequence());
+    }
+    return alternatives.size() == 1 ? alternatives.get(0) : new AlternationNode(alternatives);
+  }
+
+  private RegexpNode parseSequence() {
+    List<RegexpNode> nodes = Lists.newArrayList();
+    while (pos < regexp.length() && peek() != '|' && peek() != ')') {
+      nodes.add(parseQuantifier(parseAtom()));
+    }
+    return nodes.size() == 1 ? nodes.get(0) : new SequenceNode(nodes);
+  }
+
+  private RegexpNode parseQuantifier(RegexpNode node) {
+    int min;
+    int max;
+    switch (peek()) {
+      case '*':
+        min = 0;
+        max = RepetitionNode.UNBOUNDED;
+        pos++;
+        break;
+      case '+':
+        min = 1;
+        max = RepetitionNode.UNBOUNDED;
+        pos++;
+        break;
+      case '?':
+        min = 0;
+        max = 1;
+        pos++;
+        break;
+      case '{':
+        pos++;
+        min = parseNumber();
+        if (peek() == ',') {
+          pos++;
+          max = peek() == '}' ? RepetitionNode.UNBOUNDED : parseNumber();
+        } else {
+          max = min;
+        }
+        expect('}');
+        break;
+      default:
+        return node;
+    }
+    Quantifier quantifier = Quantifier.GREEDY;
+    if (peek() == '?') {
+      quantifier = Quantifier.LAZY;
+      pos++;
+    } else if (peek() == '+') {
+      quantifier = Quantifier.POSSESSIVE;
+      pos++;
+    }
+    if (peek() == '*' || peek() == '+' || peek() == '?' || peek() == '{') {
+      throw new UnsupportedRegexpException();
+    }
+    return new RepetitionNode(node, min, max, quantifier);
+  }
+
+  private int parseNumber() {
+    int start = pos;
+    while (Character.isDigit(peek())) {
+      pos++;
+    }
+    if (start == pos || pos - start > 4) {
+      throw new UnsupportedRegexpException();
+    }
+    return Integer.parseInt(regexp.substring(start, pos));
+  }
+
+  private RegexpNode parseAtom() {
+    char c = next();
+    switch (c) {
+      case '(':
+        if (peek() == '?') {
+          pos++;
+          expect(':');
+        }
+        RegexpNode result = parseAlternation();
+        expect(')');
+        return result;
+      case '[':
+        return new CharNode(parseClass());
+      case '.':
+        return new CharNode(CharSet.DOT);
+      case '\\':
+        return new CharNode(parseEscape());
+      case '^':
+      case '$':
+        throw new UnsupportedRegexpException();
+      default:
+        return new CharNode(single(c));
+    }
+  }
+
+  private CharSet parseClass() {
+    boolean negated = peek() == '^';
+    if (negated) {
+      pos++;
+    }
+    if (peek() == ']') {
+      throw new UnsupportedRegexpException();
+    }
+    CharSet result = CharSet.EMPTY;
+    boolean first = true;
+    while (peek() != ']') {
+      char c = next();
+      CharSet set;
+      if (c == '[' || (c == '&' && peek() == '&')) {
+        throw new UnsupportedRegexpException();
+      } else if (c == '\\') {
+        set = parseEscape();
+      } else if (c == '-' && !first && peek() != ']') {
+        throw new UnsupportedRegexpException();
+      } else {
+        set = single(c);
+      }
+      if (peek() == '-' && pos + 1 < regexp.length() && regexp.charAt(pos + 1) != ']') {
+        pos++;
+        set = CharSet.range(singleChar(set), singleChar(parseClassChar()));
+      }
+      result = result.union(set);
+      first = false;
+    }
+    pos++;
+    return negated ? result.complement() : result;
+  }
+
+  private CharSet parseClassChar() {
+    char c = next();
+    if (c == '[' || c == '&' || c == '-') {
+      throw new UnsupportedRegexpException();
+    }
+    return c == '\\' ? parseEscape() : single(c);
+  }
+
+  private static int singleChar(CharSet set) {
+    int[] ranges = set.getRanges();
+    if (ranges.length != 2 || ranges[0] != ranges[1]) {
+      throw new UnsupportedRegexpException();
+    }
+    return ranges[0];
+  }
+
+  private CharSet parseEscape() {
+    char c = next();
+    switch (c) {
+      case 't':
+        return single('\t');
+      case 'n':
+        return single('\n');
+      case 'r':
+        return single('\r');
+      case 'f':
+        return single('\f');
+      case 'a':
+        return single('\u0007');
+      case 'e':
+        return single('\u001B');
+      case 'x':
+        return single((char) parseHex(2));
+      case 'u':
+        return single((char) parseHex(4));
+      case 'c':
+        return single((char) (next() ^ 64));
+      case 'd':
+        return CharSet.DIGITS;
+      case 'D':
+        return CharSet.DIGITS.complement();
+      case 's':
+        return CharSet.SPACES;
+      case 'S':
+        return CharSet.SPACES.complement();
+      case 'w':
+        return CharSet.WORDS;
+      case 'W':
+        return CharSet.WORDS.complement();
+      default:
+        if (Character.isLetterOrDigit(c)) {
+          throw new UnsupportedRegexpException();
+        }
+        return single(c);
+    }
+  }
+
+  private int parseHex(int digits) {
+    if (pos + digits > regexp.length()) {
+      throw new UnsupportedRegexpException();
+    }
+    int result = 0;
+    for (int i = 0; i < digits; i++) {
+      int digit = Character.digit(next(), 16);
+      if (digit == -1) {
+        throw new UnsupportedRegexpException();
+      }
+      result = result * 16 + digit;
+    }
+    return result;
+  }
+
+  /**
+   * Surrogates are not supported, because {@link java.util.regex.Pattern} combines them into code points.
+   */
+  private static CharSet single(char c) {
+    if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+      throw new UnsupportedRegexpException();
+    }
+    return CharSet.range(c, c);
+  }
+
+  private char peek() {
+    return pos < regexp.length() ? regexp.charAt(pos) : 0;
+  }
+
+  private char next() {
+    if (pos == regexp.length()) {
+      throw new UnsupportedRegexpException();
+    }
+    return regexp.charAt(pos++);
+  }
+
+  private void expect(char c) {
+    if (next() != c) {
+      throw new UnsupportedRegexpException();
+    }
+  }
+
+}
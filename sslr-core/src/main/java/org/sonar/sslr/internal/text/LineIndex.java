@@ -0,0 +1,166 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.text;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import org.sonar.sslr.text.Texts;
+
+import java.util.Arrays;
+
+/**
+ * Index of lines of a text, which allows to convert index of character into line number and vice versa.
+ * A line is considered to be terminated by any one of
+ * a line feed ({@code '\n'}), a carriage return ({@code '\r'}),
+ * or a carriage return followed immediately by a line feed ({@code "\r\n"}).
+ *
+ * <p>Numbering of lines starts from 1.</p>
+ */
+public final class LineIndex {
+
+  private final int length;
+
+  /**
+   * Indexed text, or null if index was computed eagerly.
+   */
+  private final char[] chars;
+
+  /**
+   * Indices of lines, except first one.
+   * Number of elements equal to number of line terminators.
+   * Computed lazily, so that parses, which don't need information about lines, don't pay for it.
+   */
+  private volatile int[] lines;
+
+  private LineIndex(int length, int[] lines) {
+    this.length = length;
+    this.chars = null;
+    this.lines = lines;
+  }
+
+  private LineIndex(char[] chars) {
+    this.length = chars.length;
+    this.chars = chars;
+  }
+
+  /**
+   * Creates index, which will be computed on first use.
+   */
+  public static LineIndex of(char[] chars) {
+    return new LineIndex(chars);
+  }
+
+  private int[] lines() {
+    int[] result = lines;
+    if (result == null) {
+      // Benign race: in case of concurrent access index can be computed several times, but always with the same result
+      Builder builder = new Builder();
+      builder.append(chars, 0, length);
+      result = builder.build().lines;
+      lines = result;
+    }
+    return result;
+  }
+
+  @VisibleForTesting
+  public boolean isComputed() {
+    return lines != null;
+  }
+
+  /**
+   * @return length of indexed text
+   */
+  public int length() {
+    return length;
+  }
+
+  /**
+   * Returns number of lines, which is always equal to number of line terminators plus 1.
+   */
+  public int getLineCount() {
+    return lines().length + 1;
+  }
+
+  public int getLineNumber(int index) {
+    int i = Arrays.binarySearch(lines(), index);
+    return i >= 0 ? i + 2 : -i;
+  }
+
+  /**
+   * @return index of first character of a given line
+   */
+  public int getLineStart(int line) {
+    return line == 1 ? 0 : lines()[line - 2];
+  }
+
+  /**
+   * @return index of first character of next line, or length of text for last line
+   */
+  public int getLineEnd(int line) {
+    return line == getLineCount() ? length : lines()[line - 1];
+  }
+
+  /**
+   * Builds index of lines from chunks of text, so that it can be computed while text is being read.
+   */
+  public static final class Builder {
+
+    private int[] lines = new int[16];
+    private int count;
+    private int position;
+    private boolean pendingCarriageReturn;
+
+    public void append(char[] chars, int from, int to) {
+      for (int i = from; i < to; i++) {
+        char c = chars[i];
+        if (pendingCarriageReturn && c != Texts.LF) {
+          addLine(position);
+        }
+        pendingCarriageReturn = false;
+        if (c == Texts.LF) {
+          addLine(position + 1);
+        } else if (c == Texts.CR) {
+          pendingCarriageReturn = true;
+        }
+        position++;
+      }
+    }
+
+    private void addLine(int index) {
+      if (count == lines.length) {
+        lines = Arrays.copyOf(lines, count * 2);
+      }
+      lines[count] = index;
+      count++;
+    }
+
+    public LineIndex build() {
+      Preconditions.checkState(lines != null, "LineIndex already built");
+      if (pendingCarriageReturn) {
+        addLine(position);
+      }
+      LineIndex result = new LineIndex(position, Arrays.copyOf(lines, count));
+      lines = null;
+      return result;
+    }
+
+  }
+
+}
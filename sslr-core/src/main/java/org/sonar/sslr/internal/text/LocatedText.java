@@ -26,40 +26,46 @@ import javax.annotation.Nullable;
 
 import java.io.File;
 import java.net.URI;
-import java.util.Arrays;
 
 public class LocatedText extends PlainText {
 
   private final File file;
   private final URI uri;
 
+  private final LineIndex lines;
+
+  public LocatedText(@Nullable File file, char[] chars) {
+    this(file, chars, LineIndex.of(chars));
+  }
+
   /**
-   * Indices of lines.
-   * Number of elements equal to number of line terminators.
+   * @param lines index of lines of given characters
    */
-  private final int[] lines;
+  public LocatedText(@Nullable File file, char[] chars, LineIndex lines) {
+    this(file, chars, chars.length, lines);
+  }
 
-  public LocatedText(@Nullable File file, char[] chars) {
-    super(chars);
+  /**
+   * @param length length of text, i.e. number of first characters of given array, which belong to text
+   * @param lines index of lines of text
+   */
+  public LocatedText(@Nullable File file, char[] chars, int length, LineIndex lines) {
+    super(chars, length);
+    Preconditions.checkArgument(lines.length() == length, "index of lines doesn't match characters");
     this.file = file;
     this.uri = file == null ? null : file.toURI();
-    this.lines = TextUtils.computeLines(chars);
+    this.lines = lines;
+  }
+
+  public LineIndex getLineIndex() {
+    return lines;
   }
 
   public TextLocation getLocation(int index) {
     Preconditions.checkPositionIndex(index, length());
-    int line = getLineNumber(index);
-    int column = index - getLineStart(line) + 1;
+    int line = lines.getLineNumber(index);
+    int column = index - lines.getLineStart(line) + 1;
     return new TextLocation(file, uri, line, column);
   }
 
-  private int getLineNumber(int index) {
-    int i = Arrays.binarySearch(lines, index);
-    return i >= 0 ? i + 2 : -i;
-  }
-
-  private int getLineStart(int line) {
-    return line == 1 ? 0 : lines[line - 2];
-  }
-
 }
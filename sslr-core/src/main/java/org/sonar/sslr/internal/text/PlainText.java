@@ -19,6 +19,7 @@
  */
 package org.sonar.sslr.internal.text;
 
+import com.google.common.base.Preconditions;
 import org.sonar.sslr.text.Text;
 import org.sonar.sslr.text.TextCharSequence;
 import org.sonar.sslr.text.TextLocation;
@@ -26,9 +27,19 @@ import org.sonar.sslr.text.TextLocation;
 public class PlainText extends AbstractText implements TextCharSequence {
 
   private final char[] chars;
+  private final int length;
 
   public PlainText(char[] chars) {
+    this(chars, chars.length);
+  }
+
+  /**
+   * @param length length of text, i.e. number of first characters of given array, which belong to text
+   */
+  public PlainText(char[] chars, int length) {
+    Preconditions.checkPositionIndex(length, chars.length);
     this.chars = chars;
+    this.length = length;
   }
 
   public Text subText(int start, int end) {
@@ -45,7 +56,24 @@ public class PlainText extends AbstractText implements TextCharSequence {
   }
 
   public int length() {
-    return chars.length;
+    return length;
+  }
+
+  /**
+   * Performance optimization: returns underlying array without copying, when its length is equal to length of text,
+   * so must not be modified.
+   */
+  @Override
+  public char[] toChars() {
+    return length == chars.length ? chars : super.toChars();
+  }
+
+  /**
+   * Performance optimization: returns underlying array without copying, length of which can be greater than length of text,
+   * so must not be modified.
+   */
+  public char[] getChars() {
+    return chars;
   }
 
   @Override
@@ -0,0 +1,130 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.text;
+
+/**
+ * Pool of strings, which allows to obtain string for a sequence of characters
+ * without creation of a new string for each occurrence of the same sequence,
+ * so that equal values of tokens share memory.
+ *
+ * <p>Instances of this class are not thread-safe and intended to be used during processing of a single text.</p>
+ */
+public final class StringPool {
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  /**
+   * Open addressing table with linear probing, capacity is always a power of two.
+   */
+  private String[] strings = new String[INITIAL_CAPACITY];
+  private int size;
+
+  /**
+   * @return string, which contains characters of given sequence between {@code start} (inclusive) and {@code end} (exclusive)
+   */
+  public String get(CharSequence chars, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + chars.charAt(i);
+    }
+    int index = indexOf(hash, chars, start, end);
+    String result = strings[index];
+    if (result == null) {
+      char[] value = new char[end - start];
+      for (int i = start; i < end; i++) {
+        value[i - start] = chars.charAt(i);
+      }
+      result = new String(value);
+      add(index, result);
+    }
+    return result;
+  }
+
+  /**
+   * @return string equal to given one, which is contained in this pool
+   */
+  public String get(String s) {
+    int index = indexOf(s.hashCode(), s, 0, s.length());
+    String result = strings[index];
+    if (result == null) {
+      result = s;
+      add(index, result);
+    }
+    return result;
+  }
+
+  /**
+   * @return index of slot, which contains equal string, or index of free slot
+   */
+  private int indexOf(int hash, CharSequence chars, int start, int end) {
+    int mask = strings.length - 1;
+    int index = mix(hash) & mask;
+    String s = strings[index];
+    while (s != null && !(s.hashCode() == hash && contentEquals(s, chars, start, end))) {
+      index = (index + 1) & mask;
+      s = strings[index];
+    }
+    return index;
+  }
+
+  private void add(int index, String s) {
+    strings[index] = s;
+    size++;
+    if (2 * size > strings.length) {
+      rehash();
+    }
+  }
+
+  private static boolean contentEquals(String s, CharSequence chars, int start, int end) {
+    if (s.length() != end - start) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      if (s.charAt(i - start) != chars.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void rehash() {
+    String[] oldStrings = strings;
+    strings = new String[oldStrings.length * 2];
+    int mask = strings.length - 1;
+    for (String s : oldStrings) {
+      if (s != null) {
+        int index = mix(s.hashCode()) & mask;
+        while (strings[index] != null) {
+          index = (index + 1) & mask;
+        }
+        strings[index] = s;
+      }
+    }
+  }
+
+  /**
+   * Spreads bits of hash code, because {@link String#hashCode()} of short strings has poor distribution in low bits.
+   */
+  private static int mix(int hash) {
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+}
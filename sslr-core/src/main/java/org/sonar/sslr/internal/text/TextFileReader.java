@@ -0,0 +1,107 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.text;
+
+import com.google.common.io.Closeables;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * Reads content of a file into {@link LocatedText}.
+ * File is read by chunks into a small buffer and decoded directly into array of characters of resulting text,
+ * and index of lines is computed on the fly, so that each character is copied and examined only once.
+ * File is not mapped into memory, because mapping can't be released explicitly, so would keep file locked on Windows
+ * and would hold address space until garbage collection.
+ */
+public final class TextFileReader {
+
+  /**
+   * Number of characters decoded at once, so that they are still in CPU cache when computing index of lines.
+   */
+  private static final int CHUNK_SIZE = 8192;
+
+  /**
+   * Number of bytes read at once.
+   */
+  private static final int BUFFER_SIZE = 8192;
+
+  private TextFileReader() {
+  }
+
+  public static LocatedText read(File file, Charset charset) throws IOException {
+    FileInputStream inputStream = new FileInputStream(file);
+    try {
+      return decode(file, inputStream.getChannel(), charset);
+    } finally {
+      Closeables.closeQuietly(inputStream);
+    }
+  }
+
+  private static LocatedText decode(File file, FileChannel channel, Charset charset) throws IOException {
+    // Same behavior as InputStreamReader in case of malformed input
+    CharsetDecoder decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    char[] chars = new char[(int) (channel.size() * (double) decoder.maxCharsPerByte())];
+    int length = 0;
+    LineIndex.Builder lines = new LineIndex.Builder();
+    ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    // Buffer is initially empty
+    bytes.flip();
+    boolean endOfInput = false;
+    boolean flushing = false;
+    while (true) {
+      if (length == chars.length) {
+        chars = Arrays.copyOf(chars, Math.max(CHUNK_SIZE, chars.length * 2));
+      }
+      CharBuffer out = CharBuffer.wrap(chars, length, Math.min(CHUNK_SIZE, chars.length - length));
+      CoderResult result = flushing ? decoder.flush(out) : decoder.decode(bytes, out, endOfInput);
+      lines.append(chars, length, out.position());
+      length = out.position();
+      if (result.isUnderflow()) {
+        if (flushing) {
+          break;
+        } else if (endOfInput) {
+          flushing = true;
+        } else {
+          // Remaining bytes, if any, are an incomplete sequence, which should be completed by next bytes
+          bytes.compact();
+          endOfInput = channel.read(bytes) == -1;
+          bytes.flip();
+        }
+      } else if (!result.isOverflow()) {
+        result.throwException();
+      }
+    }
+    // Performance optimization: array is not trimmed to length of text, which is less than its length for multibyte characters
+    return new LocatedText(file, chars, length, lines.build());
+  }
+
+}
@@ -19,10 +19,36 @@
  */
 package org.sonar.sslr.internal.vm;
 
+import org.sonar.sslr.internal.vm.lexerful.TokenTypeIds;
+
 public class CompilationHandler {
 
+  private final TokenTypeIds tokenTypeIds = new TokenTypeIds();
+
   public Instruction[] compile(ParsingExpression expression) {
     return expression.compile(this);
   }
 
+  /**
+   * @return set of first terminals of given expression, which allows to compile dispatch on first terminal,
+   * or {@link FirstSet#ANY} if such dispatch should not be used
+   */
+  public FirstSet firstSet(ParsingExpression expression) {
+    return FirstSet.ANY;
+  }
+
+  /**
+   * @return true if given optimization should be applied during compilation of expression
+   */
+  public boolean isEnabled(Optimization optimization) {
+    return false;
+  }
+
+  /**
+   * @return identifiers of types of tokens, which are assigned to types used by compiled instructions
+   */
+  public TokenTypeIds tokenTypeIds() {
+    return tokenTypeIds;
+  }
+
 }
@@ -21,7 +21,11 @@ package org.sonar.sslr.internal.vm;
 
 import org.sonar.sslr.grammar.GrammarRuleKey;
 import org.sonar.sslr.internal.matchers.Matcher;
+import org.sonar.sslr.internal.vm.lexerful.TokenTypeIds;
 
+import javax.annotation.Nullable;
+
+import java.util.Collection;
 import java.util.Map;
 
 public class CompiledGrammar {
@@ -30,12 +34,32 @@ public class CompiledGrammar {
   private final Instruction[] instructions;
   private final GrammarRuleKey rootRuleKey;
   private final int rootRuleOffset;
+  private final CompiledGrammar errorLocatingGrammar;
+  private final TokenTypeIds tokenTypeIds;
 
   public CompiledGrammar(Instruction[] instructions, Map<GrammarRuleKey, CompilableGrammarRule> rules, GrammarRuleKey rootRuleKey, int rootRuleOffset) {
+    this(instructions, rules, rootRuleKey, rootRuleOffset, null);
+  }
+
+  /**
+   * @param errorLocatingGrammar same grammar, but compiled without dispatch on first terminal
+   */
+  public CompiledGrammar(Instruction[] instructions, Map<GrammarRuleKey, CompilableGrammarRule> rules, GrammarRuleKey rootRuleKey, int rootRuleOffset,
+      @Nullable CompiledGrammar errorLocatingGrammar) {
+    this(instructions, rules, rootRuleKey, rootRuleOffset, errorLocatingGrammar, new TokenTypeIds());
+  }
+
+  /**
+   * @param tokenTypeIds identifiers of types of tokens, which were assigned during compilation of instructions
+   */
+  public CompiledGrammar(Instruction[] instructions, Map<GrammarRuleKey, CompilableGrammarRule> rules, GrammarRuleKey rootRuleKey, int rootRuleOffset,
+      @Nullable CompiledGrammar errorLocatingGrammar, TokenTypeIds tokenTypeIds) {
     this.instructions = instructions;
     this.rules = rules;
     this.rootRuleKey = rootRuleKey;
     this.rootRuleOffset = rootRuleOffset;
+    this.errorLocatingGrammar = errorLocatingGrammar;
+    this.tokenTypeIds = tokenTypeIds;
   }
 
   public Instruction[] getInstructions() {
@@ -46,6 +70,10 @@ public class CompiledGrammar {
     return rules.get(ruleKey);
   }
 
+  public Collection<CompilableGrammarRule> getRules() {
+    return rules.values();
+  }
+
   public GrammarRuleKey getRootRuleKey() {
     return rootRuleKey;
   }
@@ -54,4 +82,19 @@ public class CompiledGrammar {
     return rootRuleOffset;
   }
 
+  /**
+   * Dispatch on first terminal changes order, in which alternatives are tried, and so location of error,
+   * thus on parse error input should be parsed again with this grammar to locate error.
+   *
+   * @return grammar to locate errors, or null if this grammar can be used for this purpose
+   */
+  @Nullable
+  public CompiledGrammar getErrorLocatingGrammar() {
+    return errorLocatingGrammar;
+  }
+
+  public TokenTypeIds getTokenTypeIds() {
+    return tokenTypeIds;
+  }
+
 }
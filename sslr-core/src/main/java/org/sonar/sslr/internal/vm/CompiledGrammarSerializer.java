@@ -0,0 +1,546 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.sonar.sslr.api.AstNodeSkippingPolicy;
+import com.sonar.sslr.api.Grammar;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.api.Trivia.TriviaKind;
+import com.sonar.sslr.impl.ast.AlwaysSkipFromAst;
+import com.sonar.sslr.impl.ast.NeverSkipFromAst;
+import com.sonar.sslr.impl.ast.SkipFromAstIfOnlyOneChild;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.internal.grammar.MutableParsingRule;
+import org.sonar.sslr.internal.vm.Instruction.BackCommitInstruction;
+import org.sonar.sslr.internal.vm.Instruction.BacktrackInstruction;
+import org.sonar.sslr.internal.vm.Instruction.CallInstruction;
+import org.sonar.sslr.internal.vm.Instruction.CharDispatchInstruction;
+import org.sonar.sslr.internal.vm.Instruction.ChoiceInstruction;
+import org.sonar.sslr.internal.vm.Instruction.CommitInstruction;
+import org.sonar.sslr.internal.vm.Instruction.CommitVerifyInstruction;
+import org.sonar.sslr.internal.vm.Instruction.EndInstruction;
+import org.sonar.sslr.internal.vm.Instruction.FailTwiceInstruction;
+import org.sonar.sslr.internal.vm.Instruction.IgnoreErrorsInstruction;
+import org.sonar.sslr.internal.vm.Instruction.JumpInstruction;
+import org.sonar.sslr.internal.vm.Instruction.PartialCommitVerifyInstruction;
+import org.sonar.sslr.internal.vm.Instruction.PredicateChoiceInstruction;
+import org.sonar.sslr.internal.vm.Instruction.RetInstruction;
+import org.sonar.sslr.internal.vm.Instruction.TestCharInstruction;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes {@link CompiledGrammar} into compact binary form and reads it back, so that grammar can be compiled ahead of time,
+ * and application doesn't need to build and compile it on each start.
+ *
+ * <p>Binary form consists of pool of strings, table of matchers (rules, tokens, trivias and native expressions)
+ * and table of instructions for grammar and for its error-locating grammar, which refer to matchers and strings by their indexes.
+ * Rule keys and token types are stored as names of enum constants and so must be enums.
+ * Only lexerless grammars are supported.
+ * Subexpression of token or trivia is stored as a reference to another matcher, so must be a string, pattern or rule,
+ * otherwise grammar is rejected.</p>
+ *
+ * <p>Can be executed as main class to compile grammar during build:</p>
+ * <pre>
+ * java org.sonar.sslr.internal.vm.CompiledGrammarSerializer &lt;class&gt; &lt;static method, which returns Grammar&gt; &lt;output file&gt;
+ * </pre>
+ */
+public final class CompiledGrammarSerializer {
+
+  private static final int MAGIC = 0x53534C52;
+  private static final int VERSION = 2;
+
+  private static final int RULE = 0;
+  private static final int TOKEN = 1;
+  private static final int TRIVIA = 2;
+  private static final int STRING = 3;
+  private static final int PATTERN = 4;
+  private static final int END_OF_INPUT = 5;
+  private static final int NOTHING = 6;
+  private static final int STRING_TRIE = 7;
+
+  private static final int NEVER_SKIP = 0;
+  private static final int ALWAYS_SKIP = 1;
+  private static final int SKIP_IF_ONE_CHILD = 2;
+
+  private static final int JUMP = 0;
+  private static final int CALL = 1;
+  private static final int RET = 2;
+  private static final int BACKTRACK = 3;
+  private static final int END = 4;
+  private static final int CHOICE = 5;
+  private static final int PREDICATE_CHOICE = 6;
+  private static final int COMMIT = 7;
+  private static final int COMMIT_VERIFY = 8;
+  private static final int PARTIAL_COMMIT_VERIFY = 9;
+  private static final int TEST_CHAR = 10;
+  private static final int FAIL_TWICE = 11;
+  private static final int BACK_COMMIT = 12;
+  private static final int IGNORE_ERRORS = 13;
+  private static final int CHAR_DISPATCH = 14;
+  private static final int NATIVE = 15;
+
+  private CompiledGrammarSerializer() {
+  }
+
+  /**
+   * @throws IllegalArgumentException if grammar contains something, which can't be written
+   */
+  public static void write(CompiledGrammar grammar, OutputStream out) throws IOException {
+    new Writer().write(grammar, out);
+  }
+
+  /**
+   * @param classLoader class loader to load enums, which are used as rule keys and token types
+   * @throws IOException if input is not a compiled grammar, or refers to enums, which can't be loaded
+   */
+  public static CompiledGrammar read(InputStream in, ClassLoader classLoader) throws IOException {
+    return new Reader(new DataInputStream(in), classLoader).read();
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length != 3) {
+      throw new IllegalArgumentException("Usage: CompiledGrammarSerializer <class> <static method, which returns Grammar> <output file>");
+    }
+    Method method = Class.forName(args[0]).getMethod(args[1]);
+    Grammar grammar = (Grammar) method.invoke(null);
+    CompiledGrammar compiledGrammar = MutableGrammarCompiler.compile((CompilableGrammarRule) grammar.getRootRule());
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(args[2]));
+    try {
+      write(compiledGrammar, out);
+    } finally {
+      out.close();
+    }
+  }
+
+  private static final class Writer {
+    private final Map<String, Integer> strings = Maps.newLinkedHashMap();
+    private final Map<Object, Integer> matchers = Maps.newIdentityHashMap();
+    private final List<Object> matchersList = Lists.newArrayList();
+
+    public void write(CompiledGrammar grammar, OutputStream out) throws IOException {
+      ByteArrayOutputStream grammarBytes = new ByteArrayOutputStream();
+      writeGrammar(grammar, new DataOutputStream(grammarBytes));
+
+      ByteArrayOutputStream matcherBytes = new ByteArrayOutputStream();
+      DataOutputStream matcherData = new DataOutputStream(matcherBytes);
+      matcherData.writeInt(matchersList.size());
+      for (Object matcher : matchersList) {
+        writeMatcher(matcher, matcherData);
+      }
+
+      DataOutputStream data = new DataOutputStream(out);
+      data.writeInt(MAGIC);
+      data.writeInt(VERSION);
+      data.writeInt(strings.size());
+      for (String string : strings.keySet()) {
+        data.writeUTF(string);
+      }
+      matcherBytes.writeTo(data);
+      grammarBytes.writeTo(data);
+      data.flush();
+    }
+
+    private void writeGrammar(CompiledGrammar grammar, DataOutputStream data) throws IOException {
+      Collection<CompilableGrammarRule> rules = grammar.getRules();
+      data.writeInt(rules.size());
+      for (CompilableGrammarRule rule : rules) {
+        data.writeInt(matcher(rule));
+      }
+      data.writeInt(matcher(grammar.getMatcher(grammar.getRootRuleKey())));
+      data.writeInt(grammar.getRootRuleOffset());
+
+      Instruction[] instructions = grammar.getInstructions();
+      data.writeInt(instructions.length);
+      for (Instruction instruction : instructions) {
+        writeInstruction(instruction, data);
+      }
+
+      CompiledGrammar errorLocatingGrammar = grammar.getErrorLocatingGrammar();
+      data.writeBoolean(errorLocatingGrammar != null);
+      if (errorLocatingGrammar != null) {
+        writeGrammar(errorLocatingGrammar, data);
+      }
+    }
+
+    private void writeInstruction(Instruction instruction, DataOutputStream data) throws IOException {
+      if (instruction instanceof JumpInstruction) {
+        data.writeByte(JUMP);
+        data.writeInt(((JumpInstruction) instruction).getOffset());
+      } else if (instruction instanceof CallInstruction) {
+        CallInstruction call = (CallInstruction) instruction;
+        data.writeByte(CALL);
+        data.writeInt(call.getOffset());
+        data.writeInt(call.getReturnOffset());
+        data.writeInt(matcher(call.getMatcher()));
+      } else if (instruction instanceof RetInstruction) {
+        data.writeByte(RET);
+      } else if (instruction instanceof BacktrackInstruction) {
+        data.writeByte(BACKTRACK);
+      } else if (instruction instanceof EndInstruction) {
+        data.writeByte(END);
+      } else if (instruction instanceof ChoiceInstruction) {
+        data.writeByte(CHOICE);
+        data.writeInt(((ChoiceInstruction) instruction).getOffset());
+      } else if (instruction instanceof PredicateChoiceInstruction) {
+        data.writeByte(PREDICATE_CHOICE);
+        data.writeInt(((PredicateChoiceInstruction) instruction).getOffset());
+      } else if (instruction instanceof CommitInstruction) {
+        data.writeByte(COMMIT);
+        data.writeInt(((CommitInstruction) instruction).getOffset());
+      } else if (instruction instanceof CommitVerifyInstruction) {
+        data.writeByte(COMMIT_VERIFY);
+        data.writeInt(((CommitVerifyInstruction) instruction).getOffset());
+      } else if (instruction instanceof PartialCommitVerifyInstruction) {
+        data.writeByte(PARTIAL_COMMIT_VERIFY);
+        data.writeInt(((PartialCommitVerifyInstruction) instruction).getOffset());
+      } else if (instruction instanceof TestCharInstruction) {
+        TestCharInstruction test = (TestCharInstruction) instruction;
+        data.writeByte(TEST_CHAR);
+        data.writeChar(test.getChar());
+        data.writeInt(test.getOffset());
+      } else if (instruction instanceof FailTwiceInstruction) {
+        data.writeByte(FAIL_TWICE);
+      } else if (instruction instanceof BackCommitInstruction) {
+        data.writeByte(BACK_COMMIT);
+        data.writeInt(((BackCommitInstruction) instruction).getOffset());
+      } else if (instruction instanceof IgnoreErrorsInstruction) {
+        data.writeByte(IGNORE_ERRORS);
+      } else if (instruction instanceof CharDispatchInstruction) {
+        CharDispatchInstruction dispatch = (CharDispatchInstruction) instruction;
+        data.writeByte(CHAR_DISPATCH);
+        writeInts(dispatch.getOffsets(), data);
+        data.writeInt(dispatch.getDefaultOffset());
+      } else {
+        data.writeByte(NATIVE);
+        data.writeInt(matcher(instruction));
+      }
+    }
+
+    private int matcher(Object matcher) {
+      Integer index = matchers.get(matcher);
+      if (index == null) {
+        checkSupported(matcher);
+        if (matcher instanceof StringTrieExpression) {
+          // strings should be read before trie
+          for (StringExpression string : ((StringTrieExpression) matcher).getStrings()) {
+            matcher(string);
+          }
+        } else if (matcher instanceof TokenExpression) {
+          // subexpression should be read before token
+          subExpression(matcher, ((TokenExpression) matcher).getSubExpression());
+        } else if (matcher instanceof TriviaExpression) {
+          subExpression(matcher, ((TriviaExpression) matcher).getSubExpression());
+        }
+        index = matchersList.size();
+        matchers.put(matcher, index);
+        matchersList.add(matcher);
+      }
+      return index;
+    }
+
+    private void subExpression(Object matcher, ParsingExpression subExpression) {
+      if (!isSupported(subExpression)) {
+        throw new IllegalArgumentException("Unable to write " + matcher + ", because its subexpression is not a matcher");
+      }
+      matcher(subExpression);
+    }
+
+    private static void checkSupported(Object matcher) {
+      if (!isSupported(matcher)) {
+        throw new IllegalArgumentException("Unable to write " + matcher);
+      }
+    }
+
+    private static boolean isSupported(Object matcher) {
+      return matcher instanceof MutableParsingRule
+        || matcher instanceof TokenExpression
+        || matcher instanceof TriviaExpression
+        || matcher instanceof StringExpression
+        || matcher instanceof PatternExpression
+        || matcher instanceof StringTrieExpression
+        || matcher instanceof EndOfInputExpression
+        || matcher instanceof NothingExpression;
+    }
+
+    private void writeMatcher(Object matcher, DataOutputStream data) throws IOException {
+      if (matcher instanceof MutableParsingRule) {
+        MutableParsingRule rule = (MutableParsingRule) matcher;
+        data.writeByte(RULE);
+        GrammarRuleKey ruleKey = rule.getRuleKey();
+        data.writeBoolean(ruleKey != rule);
+        if (ruleKey == rule) {
+          data.writeInt(string(rule.getName()));
+        } else {
+          writeEnum(ruleKey, data);
+        }
+        data.writeByte(skippingPolicy(rule));
+      } else if (matcher instanceof TokenExpression) {
+        TokenExpression token = (TokenExpression) matcher;
+        data.writeByte(TOKEN);
+        writeEnum(token.getTokenType(), data);
+        data.writeInt(matchers.get(token.getSubExpression()));
+      } else if (matcher instanceof TriviaExpression) {
+        TriviaExpression trivia = (TriviaExpression) matcher;
+        data.writeByte(TRIVIA);
+        data.writeInt(string(trivia.getTriviaKind().name()));
+        data.writeInt(matchers.get(trivia.getSubExpression()));
+      } else if (matcher instanceof StringExpression) {
+        data.writeByte(STRING);
+        data.writeInt(string(((StringExpression) matcher).getString()));
+      } else if (matcher instanceof PatternExpression) {
+        data.writeByte(PATTERN);
+        data.writeInt(string(((PatternExpression) matcher).getRegex()));
+      } else if (matcher instanceof StringTrieExpression) {
+        StringExpression[] alternatives = ((StringTrieExpression) matcher).getStrings();
+        data.writeByte(STRING_TRIE);
+        data.writeInt(alternatives.length);
+        for (StringExpression alternative : alternatives) {
+          data.writeInt(matchers.get(alternative));
+        }
+      } else if (matcher instanceof EndOfInputExpression) {
+        data.writeByte(END_OF_INPUT);
+      } else {
+        data.writeByte(NOTHING);
+      }
+    }
+
+    private static int skippingPolicy(MutableParsingRule rule) {
+      AstNodeSkippingPolicy policy = rule.getAstNodeSkippingPolicy();
+      if (policy instanceof NeverSkipFromAst) {
+        return NEVER_SKIP;
+      } else if (policy instanceof AlwaysSkipFromAst) {
+        return ALWAYS_SKIP;
+      } else if (policy instanceof SkipFromAstIfOnlyOneChild) {
+        return SKIP_IF_ONE_CHILD;
+      }
+      throw new IllegalArgumentException("Unable to write skipping policy of rule " + rule + ": " + policy);
+    }
+
+    private void writeEnum(Object constant, DataOutputStream data) throws IOException {
+      if (!(constant instanceof Enum)) {
+        throw new IllegalArgumentException("Unable to write " + constant + ", because it is not an enum");
+      }
+      Enum<?> e = (Enum<?>) constant;
+      data.writeInt(string(e.getDeclaringClass().getName()));
+      data.writeInt(string(e.name()));
+    }
+
+    private static void writeInts(int[] ints, DataOutputStream data) throws IOException {
+      data.writeInt(ints.length);
+      for (int i : ints) {
+        data.writeInt(i);
+      }
+    }
+
+    private int string(String string) {
+      Integer index = strings.get(string);
+      if (index == null) {
+        index = strings.size();
+        strings.put(string, index);
+      }
+      return index;
+    }
+  }
+
+  private static final class Reader {
+    private final DataInputStream data;
+    private final ClassLoader classLoader;
+    private String[] strings;
+    private Object[] matchers;
+
+    public Reader(DataInputStream data, ClassLoader classLoader) {
+      this.data = data;
+      this.classLoader = classLoader;
+    }
+
+    public CompiledGrammar read() throws IOException {
+      if (data.readInt() != MAGIC) {
+        throw new IOException("Not a compiled grammar");
+      }
+      int version = data.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported version of compiled grammar: " + version);
+      }
+      strings = new String[data.readInt()];
+      for (int i = 0; i < strings.length; i++) {
+        strings[i] = data.readUTF();
+      }
+      matchers = new Object[data.readInt()];
+      for (int i = 0; i < matchers.length; i++) {
+        matchers[i] = readMatcher();
+      }
+      return readGrammar();
+    }
+
+    private CompiledGrammar readGrammar() throws IOException {
+      int rulesCount = data.readInt();
+      Map<GrammarRuleKey, CompilableGrammarRule> rules = Maps.newHashMapWithExpectedSize(rulesCount);
+      for (int i = 0; i < rulesCount; i++) {
+        MutableParsingRule rule = (MutableParsingRule) matchers[data.readInt()];
+        rules.put(rule.getRuleKey(), rule);
+      }
+      GrammarRuleKey rootRuleKey = ((MutableParsingRule) matchers[data.readInt()]).getRuleKey();
+      int rootRuleOffset = data.readInt();
+
+      Instruction[] instructions = new Instruction[data.readInt()];
+      for (int i = 0; i < instructions.length; i++) {
+        instructions[i] = readInstruction();
+      }
+
+      CompiledGrammar errorLocatingGrammar = data.readBoolean() ? readGrammar() : null;
+      return new CompiledGrammar(instructions, rules, rootRuleKey, rootRuleOffset, errorLocatingGrammar);
+    }
+
+    private Instruction readInstruction() throws IOException {
+      int opcode = data.readByte();
+      switch (opcode) {
+        case JUMP:
+          return Instruction.jump(data.readInt());
+        case CALL:
+          int offset = data.readInt();
+          int returnOffset = data.readInt();
+          return Instruction.call(offset, returnOffset, (org.sonar.sslr.internal.matchers.Matcher) matchers[data.readInt()]);
+        case RET:
+          return Instruction.ret();
+        case BACKTRACK:
+          return Instruction.backtrack();
+        case END:
+          return Instruction.end();
+        case CHOICE:
+          return Instruction.choice(data.readInt());
+        case PREDICATE_CHOICE:
+          return Instruction.predicateChoice(data.readInt());
+        case COMMIT:
+          return Instruction.commit(data.readInt());
+        case COMMIT_VERIFY:
+          return Instruction.commitVerify(data.readInt());
+        case PARTIAL_COMMIT_VERIFY:
+          return Instruction.partialCommitVerify(data.readInt());
+        case TEST_CHAR:
+          char c = data.readChar();
+          return Instruction.testChar(c, data.readInt());
+        case FAIL_TWICE:
+          return Instruction.failTwice();
+        case BACK_COMMIT:
+          return Instruction.backCommit(data.readInt());
+        case IGNORE_ERRORS:
+          return Instruction.ignoreErrors();
+        case CHAR_DISPATCH:
+          int[] offsets = readInts();
+          return Instruction.charDispatch(offsets, data.readInt());
+        case NATIVE:
+          return (Instruction) matchers[data.readInt()];
+        default:
+          throw new IOException("Unknown instruction: " + opcode);
+      }
+    }
+
+    private Object readMatcher() throws IOException {
+      int kind = data.readByte();
+      switch (kind) {
+        case RULE:
+          MutableParsingRule rule = data.readBoolean()
+              ? new MutableParsingRule((GrammarRuleKey) readEnum())
+              : new MutableParsingRule(readString());
+          readSkippingPolicy(rule);
+          return rule;
+        case TOKEN:
+          TokenType tokenType = (TokenType) readEnum();
+          return new TokenExpression(tokenType, (ParsingExpression) matchers[data.readInt()]);
+        case TRIVIA:
+          TriviaKind triviaKind = TriviaKind.valueOf(readString());
+          return new TriviaExpression(triviaKind, (ParsingExpression) matchers[data.readInt()]);
+        case STRING:
+          return new StringExpression(readString());
+        case PATTERN:
+          return new PatternExpression(readString());
+        case STRING_TRIE:
+          StringExpression[] alternatives = new StringExpression[data.readInt()];
+          for (int i = 0; i < alternatives.length; i++) {
+            alternatives[i] = (StringExpression) matchers[data.readInt()];
+          }
+          return new StringTrieExpression(alternatives);
+        case END_OF_INPUT:
+          return EndOfInputExpression.INSTANCE;
+        case NOTHING:
+          return NothingExpression.INSTANCE;
+        default:
+          throw new IOException("Unknown matcher: " + kind);
+      }
+    }
+
+    private void readSkippingPolicy(MutableParsingRule rule) throws IOException {
+      int policy = data.readByte();
+      switch (policy) {
+        case NEVER_SKIP:
+          break;
+        case ALWAYS_SKIP:
+          rule.skip();
+          break;
+        case SKIP_IF_ONE_CHILD:
+          rule.skipIfOneChild();
+          break;
+        default:
+          throw new IOException("Unknown skipping policy: " + policy);
+      }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object readEnum() throws IOException {
+      String className = readString();
+      String name = readString();
+      try {
+        Class enumClass = Class.forName(className, true, classLoader);
+        return Enum.valueOf(enumClass, name);
+      } catch (ClassNotFoundException e) {
+        throw new IOException("Unable to load " + className, e);
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Unable to load " + className + "." + name, e);
+      }
+    }
+
+    private int[] readInts() throws IOException {
+      int[] result = new int[data.readInt()];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = data.readInt();
+      }
+      return result;
+    }
+
+    private String readString() throws IOException {
+      return strings[data.readInt()];
+    }
+  }
+
+}
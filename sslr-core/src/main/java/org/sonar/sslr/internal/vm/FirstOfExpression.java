@@ -19,7 +19,18 @@
  */
 package org.sonar.sslr.internal.vm;
 
+import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.sonar.sslr.api.TokenType;
+
+import javax.annotation.Nullable;
+
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class FirstOfExpression implements ParsingExpression {
 
@@ -29,6 +40,10 @@ public class FirstOfExpression implements ParsingExpression {
     this.subExpressions = subExpressions;
   }
 
+  public ParsingExpression[] getSubExpressions() {
+    return subExpressions;
+  }
+
   /**
    * Compiles this expression into a sequence of instructions:
    * <pre>
@@ -44,18 +59,86 @@ public class FirstOfExpression implements ParsingExpression {
    * L3: subExpression[3]
    * E: ...
    * </pre>
+   *
+   * If sets of first terminals of subExpressions are known, then this expression is compiled into a dispatch on first terminal
+   * to the ordered chains of alternatives, which may start with this terminal:
+   * <pre>
+   * Dispatch B0, B1, ...
+   * B0: Choice 2
+   * Jump A0
+   * Choice 2
+   * Jump A2
+   * Backtrack
+   * B1: Choice 2
+   * Jump A1
+   * Backtrack
+   * ...
+   * A0: subExpression[0]
+   * Commit E
+   * A1: subExpression[1]
+   * Commit E
+   * A2: subExpression[2]
+   * Commit E
+   * E: ...
+   * </pre>
+   *
+   * In both cases consecutive {@link StringExpression}s might be replaced by {@link StringTrieExpression}.
    */
   public Instruction[] compile(CompilationHandler compiler) {
-    int index = 0;
+    ParsingExpression[] subExpressions = compiler.isEnabled(Optimization.STRING_TRIE) ? mergeStrings(this.subExpressions) : this.subExpressions;
     Instruction[][] sub = new Instruction[subExpressions.length][];
     for (int i = 0; i < subExpressions.length; i++) {
       sub[i] = compiler.compile(subExpressions[i]);
-      index += sub[i].length;
     }
-    Instruction[] result = new Instruction[index + (subExpressions.length - 1) * 2];
+    if (subExpressions.length > 1) {
+      FirstSet[] firstSets = new FirstSet[subExpressions.length];
+      for (int i = 0; i < subExpressions.length; i++) {
+        firstSets[i] = compiler.firstSet(subExpressions[i]);
+      }
+      Instruction[] result = compileDispatch(compiler, firstSets, sub);
+      if (result != null) {
+        return result;
+      }
+    }
+    return compileOrderedChoice(sub);
+  }
+
+  /**
+   * Replaces each sequence of at least two consecutive {@link StringExpression}s by {@link StringTrieExpression}.
+   */
+  private static ParsingExpression[] mergeStrings(ParsingExpression[] subExpressions) {
+    List<ParsingExpression> result = Lists.newArrayList();
+    List<StringExpression> strings = Lists.newArrayList();
+    for (ParsingExpression subExpression : subExpressions) {
+      if (subExpression instanceof StringExpression) {
+        strings.add((StringExpression) subExpression);
+      } else {
+        addStrings(result, strings);
+        result.add(subExpression);
+      }
+    }
+    addStrings(result, strings);
+    return result.toArray(new ParsingExpression[result.size()]);
+  }
+
+  private static void addStrings(List<ParsingExpression> result, List<StringExpression> strings) {
+    if (strings.size() == 1) {
+      result.add(strings.get(0));
+    } else if (strings.size() > 1) {
+      result.add(new StringTrieExpression(strings.toArray(new StringExpression[strings.size()])));
+    }
+    strings.clear();
+  }
+
+  private static Instruction[] compileOrderedChoice(Instruction[][] sub) {
+    int index = 0;
+    for (Instruction[] instructions : sub) {
+      index += instructions.length;
+    }
+    Instruction[] result = new Instruction[index + (sub.length - 1) * 2];
 
     index = 0;
-    for (int i = 0; i < subExpressions.length - 1; i++) {
+    for (int i = 0; i < sub.length - 1; i++) {
       result[index] = Instruction.choice(sub[i].length + 2);
       System.arraycopy(sub[i], 0, result, index + 1, sub[i].length);
       index += sub[i].length + 1;
@@ -67,6 +150,157 @@ public class FirstOfExpression implements ParsingExpression {
     return result;
   }
 
+  /**
+   * @return null if dispatch on first terminal is useless, i.e. if all alternatives may start with any terminal
+   */
+  @Nullable
+  private static Instruction[] compileDispatch(CompilationHandler compiler, FirstSet[] firstSets, Instruction[][] sub) {
+    boolean chars = false;
+    Set<TokenType> types = Sets.newLinkedHashSet();
+    Set<String> values = Sets.newLinkedHashSet();
+    for (FirstSet firstSet : firstSets) {
+      chars |= !firstSet.getChars().isEmpty();
+      types.addAll(firstSet.getTokenTypes());
+      values.addAll(firstSet.getTokenValues());
+    }
+    boolean tokens = !types.isEmpty() || !values.isEmpty();
+    if (chars == tokens) {
+      // nothing is known or grammar is neither lexerless nor lexerful
+      return null;
+    }
+
+    // ordered lists of alternatives, which may start with a given terminal
+    Map<List<Integer>, Integer> buckets = Maps.newLinkedHashMap();
+    int[] keys;
+    if (chars) {
+      keys = new int[ASCII_SIZE + 1];
+      for (char c = 0; c < ASCII_SIZE; c++) {
+        keys[c] = bucket(buckets, firstSets, new CharPredicate(c));
+      }
+      keys[ASCII_SIZE] = bucket(buckets, firstSets, new CharPredicate(ASCII_SIZE));
+    } else {
+      keys = new int[(types.size() + 1) * (values.size() + 1)];
+      List<TokenType> typesList = Lists.newArrayList(types);
+      List<String> valuesList = Lists.newArrayList(values);
+      for (int t = 0; t <= types.size(); t++) {
+        for (int v = 0; v <= values.size(); v++) {
+          TokenType type = t < types.size() ? typesList.get(t) : null;
+          String value = v < values.size() ? valuesList.get(v) : null;
+          keys[t * (values.size() + 1) + v] = bucket(buckets, firstSets, new TokenPredicate(type, value));
+        }
+      }
+    }
+    if (buckets.size() == 1 && buckets.keySet().iterator().next().size() == sub.length) {
+      // all alternatives may start with any terminal
+      return null;
+    }
+
+    int length = 1;
+    for (List<Integer> bucket : buckets.keySet()) {
+      length += bucket.size() * 2 + 1;
+    }
+    int[] alternativeOffsets = new int[sub.length];
+    for (int i = 0; i < sub.length; i++) {
+      alternativeOffsets[i] = length;
+      length += sub[i].length + 1;
+    }
+    Instruction[] result = new Instruction[length];
+
+    int[] bucketOffsets = new int[buckets.size()];
+    int index = 1;
+    for (Map.Entry<List<Integer>, Integer> entry : buckets.entrySet()) {
+      bucketOffsets[entry.getValue()] = index;
+      for (int alternative : entry.getKey()) {
+        result[index] = Instruction.choice(2);
+        result[index + 1] = Instruction.jump(alternativeOffsets[alternative] - index - 1);
+        index += 2;
+      }
+      result[index] = Instruction.backtrack();
+      index++;
+    }
+    for (int i = 0; i < sub.length; i++) {
+      System.arraycopy(sub[i], 0, result, index, sub[i].length);
+      index += sub[i].length;
+      result[index] = Instruction.commit(length - index);
+      index++;
+    }
+
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = bucketOffsets[keys[i]];
+    }
+    if (chars) {
+      result[0] = Instruction.charDispatch(Arrays.copyOf(keys, ASCII_SIZE), keys[ASCII_SIZE]);
+    } else {
+      result[0] = Instruction.tokenDispatch(indices(types), indices(values), keys, compiler.tokenTypeIds());
+    }
+    return result;
+  }
+
+  private static final char ASCII_SIZE = 128;
+
+  private static int bucket(Map<List<Integer>, Integer> buckets, FirstSet[] firstSets, Predicate<FirstSet> predicate) {
+    List<Integer> bucket = Lists.newArrayList();
+    for (int i = 0; i < firstSets.length; i++) {
+      if (firstSets[i].isAny() || firstSets[i].isNullable() || predicate.apply(firstSets[i])) {
+        bucket.add(i);
+      }
+    }
+    Integer result = buckets.get(bucket);
+    if (result == null) {
+      result = buckets.size();
+      buckets.put(bucket, result);
+    }
+    return result;
+  }
+
+  private static <T> Map<T, Integer> indices(Set<T> keys) {
+    Map<T, Integer> result = Maps.newHashMap();
+    for (T key : keys) {
+      result.put(key, result.size());
+    }
+    return result;
+  }
+
+  /**
+   * Matches sets, which contain given character, or any character, which is not less than {@link #ASCII_SIZE}.
+   */
+  private static class CharPredicate implements Predicate<FirstSet> {
+    private final char c;
+
+    public CharPredicate(char c) {
+      this.c = c;
+    }
+
+    public boolean apply(FirstSet firstSet) {
+      if (c < ASCII_SIZE) {
+        return firstSet.getChars().contains(c);
+      }
+      for (char other : firstSet.getChars()) {
+        if (other >= ASCII_SIZE) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Matches sets, which contain given type or given value of token.
+   */
+  private static class TokenPredicate implements Predicate<FirstSet> {
+    private final TokenType type;
+    private final String value;
+
+    public TokenPredicate(@Nullable TokenType type, @Nullable String value) {
+      this.type = type;
+      this.value = value;
+    }
+
+    public boolean apply(FirstSet firstSet) {
+      return firstSet.getTokenTypes().contains(type) || firstSet.getTokenValues().contains(value);
+    }
+  }
+
   @Override
   public String toString() {
     return "FirstOf" + Arrays.toString(subExpressions);
@@ -0,0 +1,146 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.collect.ImmutableSet;
+import com.sonar.sslr.api.TokenType;
+
+import java.util.Set;
+
+/**
+ * Approximation of set of terminals, with which input can start, if it matches a given parsing expression:
+ * characters for lexerless grammars, types and values of tokens for lexerful grammars.
+ * Approximation is conservative - expression never matches input, which starts with a terminal not from this set,
+ * unless this set is {@link #isAny() any} or {@link #isNullable() nullable}.
+ */
+public final class FirstSet {
+
+  /**
+   * Set for expressions, about which nothing is known.
+   */
+  public static final FirstSet ANY = new FirstSet(true, true, ImmutableSet.<Character>of(), ImmutableSet.<TokenType>of(), ImmutableSet.<String>of());
+
+  /**
+   * Set for expressions, which never match.
+   */
+  public static final FirstSet EMPTY = new FirstSet(false, false, ImmutableSet.<Character>of(), ImmutableSet.<TokenType>of(), ImmutableSet.<String>of());
+
+  /**
+   * Set for expressions, which may match without consumption of input.
+   */
+  public static final FirstSet NULLABLE = new FirstSet(false, true, ImmutableSet.<Character>of(), ImmutableSet.<TokenType>of(), ImmutableSet.<String>of());
+
+  private final boolean any;
+  private final boolean nullable;
+  private final Set<Character> chars;
+  private final Set<TokenType> tokenTypes;
+  private final Set<String> tokenValues;
+
+  private FirstSet(boolean any, boolean nullable, Set<Character> chars, Set<TokenType> tokenTypes, Set<String> tokenValues) {
+    this.any = any;
+    this.nullable = nullable;
+    this.chars = chars;
+    this.tokenTypes = tokenTypes;
+    this.tokenValues = tokenValues;
+  }
+
+  public static FirstSet ofChar(char c) {
+    return new FirstSet(false, false, ImmutableSet.of(c), ImmutableSet.<TokenType>of(), ImmutableSet.<String>of());
+  }
+
+  public static FirstSet ofTokenTypes(Set<TokenType> tokenTypes) {
+    return new FirstSet(false, false, ImmutableSet.<Character>of(), ImmutableSet.copyOf(tokenTypes), ImmutableSet.<String>of());
+  }
+
+  public static FirstSet ofTokenValue(String tokenValue) {
+    return new FirstSet(false, false, ImmutableSet.<Character>of(), ImmutableSet.<TokenType>of(), ImmutableSet.of(tokenValue));
+  }
+
+  /**
+   * @return true, if nothing is known about first terminal
+   */
+  public boolean isAny() {
+    return any;
+  }
+
+  /**
+   * @return true, if expression may match without consumption of input
+   */
+  public boolean isNullable() {
+    return nullable;
+  }
+
+  public Set<Character> getChars() {
+    return chars;
+  }
+
+  public Set<TokenType> getTokenTypes() {
+    return tokenTypes;
+  }
+
+  public Set<String> getTokenValues() {
+    return tokenValues;
+  }
+
+  /**
+   * @return set for expression, which matches if any of expressions with given sets matches
+   */
+  public FirstSet union(FirstSet other) {
+    if (any || other.any) {
+      return ANY;
+    }
+    return new FirstSet(
+        false,
+        nullable || other.nullable,
+        ImmutableSet.<Character>builder().addAll(chars).addAll(other.chars).build(),
+        ImmutableSet.<TokenType>builder().addAll(tokenTypes).addAll(other.tokenTypes).build(),
+        ImmutableSet.<String>builder().addAll(tokenValues).addAll(other.tokenValues).build());
+  }
+
+  /**
+   * @return set for sequence of expression with this set and expression with given set
+   */
+  public FirstSet followedBy(FirstSet next) {
+    if (!nullable) {
+      return this;
+    }
+    FirstSet result = union(next);
+    if (result.any || next.nullable) {
+      return result;
+    }
+    return new FirstSet(false, false, result.chars, result.tokenTypes, result.tokenValues);
+  }
+
+  /**
+   * @return true, if expression may match input, which starts with a given character
+   */
+  public boolean mayStartWith(char c) {
+    return any || nullable || chars.contains(c);
+  }
+
+  @Override
+  public String toString() {
+    if (any) {
+      return "FirstSet[any]";
+    }
+    return "FirstSet[" + (nullable ? "nullable, " : "") + chars + ", " + tokenTypes + ", " + tokenValues + "]";
+  }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.sonar.sslr.internal.vm.lexerful.AdjacentExpression;
+import org.sonar.sslr.internal.vm.lexerful.TokenTypeExpression;
+import org.sonar.sslr.internal.vm.lexerful.TokenTypesExpression;
+import org.sonar.sslr.internal.vm.lexerful.TokenValueExpression;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes {@link FirstSet}s of parsing expressions.
+ * Expressions, which are unknown for this class, are considered as able to start with any terminal.
+ * Expressions, execution of which might fail with {@link org.sonar.sslr.grammar.GrammarException} without consumption of input,
+ * are also considered as able to start with any terminal, so that alternatives containing them are never skipped by dispatch
+ * and errors in grammar are reported by {@link Machine} in the same way as without dispatch:
+ * <ul>
+ * <li>recursive reference on rule, computation of set for which is in progress, because of possible left recursion,</li>
+ * <li>predicate, sub-expression of which is considered as able to start with any terminal,</li>
+ * <li>loop, sub-expression of which may match without consumption of input.</li>
+ * </ul>
+ */
+public class FirstSetCalculator {
+
+  private final Map<ParsingExpression, FirstSet> cache = Maps.newIdentityHashMap();
+  private final Set<ParsingExpression> inProgress = Sets.newIdentityHashSet();
+
+  public FirstSet compute(ParsingExpression expression) {
+    FirstSet result = cache.get(expression);
+    if (result == null) {
+      if (!inProgress.add(expression)) {
+        return FirstSet.ANY;
+      }
+      result = doCompute(expression);
+      inProgress.remove(expression);
+      cache.put(expression, result);
+    }
+    return result;
+  }
+
+  private FirstSet doCompute(ParsingExpression expression) {
+    if (expression instanceof CompilableGrammarRule) {
+      ParsingExpression ruleExpression = ((CompilableGrammarRule) expression).getExpression();
+      return ruleExpression == null ? FirstSet.ANY : compute(ruleExpression);
+    } else if (expression instanceof SequenceExpression) {
+      FirstSet result = FirstSet.NULLABLE;
+      for (ParsingExpression subExpression : ((SequenceExpression) expression).getSubExpressions()) {
+        if (!result.isNullable()) {
+          break;
+        }
+        result = result.followedBy(compute(subExpression));
+      }
+      return result;
+    } else if (expression instanceof FirstOfExpression) {
+      FirstSet result = FirstSet.EMPTY;
+      for (ParsingExpression subExpression : ((FirstOfExpression) expression).getSubExpressions()) {
+        result = result.union(compute(subExpression));
+      }
+      return result;
+    } else if (expression instanceof OptionalExpression) {
+      return compute(((OptionalExpression) expression).getSubExpression()).union(FirstSet.NULLABLE);
+    } else if (expression instanceof ZeroOrMoreExpression) {
+      return loop(compute(((ZeroOrMoreExpression) expression).getSubExpression())).union(FirstSet.NULLABLE);
+    } else if (expression instanceof OneOrMoreExpression) {
+      return loop(compute(((OneOrMoreExpression) expression).getSubExpression()));
+    } else if (expression instanceof TokenExpression) {
+      return compute(((TokenExpression) expression).getSubExpression());
+    } else if (expression instanceof TriviaExpression) {
+      return compute(((TriviaExpression) expression).getSubExpression());
+    } else if (expression instanceof NextExpression) {
+      return predicate(compute(((NextExpression) expression).getSubExpression()));
+    } else if (expression instanceof NextNotExpression) {
+      return predicate(compute(((NextNotExpression) expression).getSubExpression()));
+    } else if (expression instanceof AdjacentExpression) {
+      return FirstSet.NULLABLE;
+    } else if (expression instanceof NothingExpression) {
+      return FirstSet.EMPTY;
+    } else if (expression instanceof StringExpression) {
+      String string = ((StringExpression) expression).getString();
+      return string.isEmpty() ? FirstSet.NULLABLE : FirstSet.ofChar(string.charAt(0));
+    } else if (expression instanceof StringTrieExpression) {
+      FirstSet result = FirstSet.EMPTY;
+      for (StringExpression string : ((StringTrieExpression) expression).getStrings()) {
+        result = result.union(compute(string));
+      }
+      return result;
+    } else if (expression instanceof TokenTypeExpression) {
+      return FirstSet.ofTokenTypes(Sets.newHashSet(((TokenTypeExpression) expression).getType()));
+    } else if (expression instanceof TokenTypesExpression) {
+      return FirstSet.ofTokenTypes(((TokenTypesExpression) expression).getTypes());
+    } else if (expression instanceof TokenValueExpression) {
+      return FirstSet.ofTokenValue(((TokenValueExpression) expression).getValue());
+    }
+    return FirstSet.ANY;
+  }
+
+  /**
+   * Predicates don't consume input, however their sub-expressions are executed.
+   */
+  private static FirstSet predicate(FirstSet subExpression) {
+    return subExpression.isAny() ? FirstSet.ANY : FirstSet.NULLABLE;
+  }
+
+  /**
+   * Loop fails with exception, when its sub-expression matches without consumption of input.
+   */
+  private static FirstSet loop(FirstSet subExpression) {
+    return subExpression.isNullable() ? FirstSet.ANY : subExpression;
+  }
+
+}
@@ -20,10 +20,15 @@
 package org.sonar.sslr.internal.vm;
 
 import com.google.common.base.Objects;
+import com.sonar.sslr.api.TokenType;
 import org.sonar.sslr.grammar.GrammarException;
 import org.sonar.sslr.internal.matchers.Matcher;
+import org.sonar.sslr.internal.vm.lexerful.TokenTypeIds;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public abstract class Instruction {
 
@@ -44,7 +49,14 @@ public abstract class Instruction {
   }
 
   public static Instruction call(int offset, Matcher matcher) {
-    return new CallInstruction(offset, matcher);
+    return new CallInstruction(offset, 1, matcher);
+  }
+
+  /**
+   * @param returnOffset offset of return address relatively to address of call
+   */
+  public static Instruction call(int offset, int returnOffset, Matcher matcher) {
+    return new CallInstruction(offset, returnOffset, matcher);
   }
 
   public static Instruction ret() {
@@ -75,6 +87,45 @@ public abstract class Instruction {
     return new CommitVerifyInstruction(offset);
   }
 
+  public static Instruction partialCommitVerify(int offset) {
+    return new PartialCommitVerifyInstruction(offset);
+  }
+
+  public static Instruction testChar(char c, int offset) {
+    return new TestCharInstruction(c, offset);
+  }
+
+  /**
+   * @param typeId identifier of given type in compiled grammar
+   */
+  public static Instruction testToken(TokenType type, int typeId, int offset) {
+    return new TestTokenInstruction(type, typeId, offset);
+  }
+
+  /**
+   * @param matcher matcher of created node
+   * @param typeId identifier of given type in compiled grammar
+   */
+  public static Instruction tokenType(Matcher matcher, TokenType type, int typeId) {
+    return new TokenTypeInstruction(matcher, type, typeId);
+  }
+
+  /**
+   * @param matcher matcher of created node
+   * @param typeIds identifiers of types of tokens in compiled grammar, to which given types will be added
+   */
+  public static Instruction tokenTypes(Matcher matcher, Set<TokenType> types, TokenTypeIds typeIds) {
+    return new TokenTypesInstruction(matcher, types, typeIds);
+  }
+
+  /**
+   * @param matcher matcher of created nodes
+   * @param typeIds identifiers of types of tokens in compiled grammar, to which given types will be added
+   */
+  public static Instruction tokensBridge(Matcher matcher, TokenType from, TokenType to, TokenTypeIds typeIds) {
+    return new TokensBridgeInstruction(matcher, typeIds.register(from), typeIds.register(to));
+  }
+
   public static Instruction failTwice() {
     return FAIL_TWICE;
   }
@@ -87,6 +138,25 @@ public abstract class Instruction {
     return IGNORE_ERRORS;
   }
 
+  /**
+   * @param offsets offsets of jumps for characters, which are less than length of this array
+   * @param defaultOffset offset of jump for other characters and for end of input
+   */
+  public static Instruction charDispatch(int[] offsets, int defaultOffset) {
+    return new CharDispatchInstruction(offsets, defaultOffset);
+  }
+
+  /**
+   * @param types indices of types of tokens
+   * @param values indices of values of tokens
+   * @param offsets offsets of jumps, where offset for token with index of type {@code t} and index of value {@code v}
+   * is located at index {@code t * (values.size() + 1) + v}, and absent index of type or of value is denoted by size of corresponding map
+   * @param typeIds identifiers of types of tokens in compiled grammar, to which types of this instruction will be added
+   */
+  public static Instruction tokenDispatch(Map<TokenType, Integer> types, Map<String, Integer> values, int[] offsets, TokenTypeIds typeIds) {
+    return new TokenDispatchInstruction(types, values, offsets, typeIds);
+  }
+
   /**
    * Executes this instruction.
    */
@@ -99,6 +169,10 @@ public abstract class Instruction {
       this.offset = offset;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
     @Override
     public void execute(Machine machine) {
       machine.jump(offset);
@@ -122,21 +196,35 @@ public abstract class Instruction {
 
   public static final class CallInstruction extends Instruction {
     private final int offset;
+    private final int returnOffset;
     private final Matcher matcher;
 
-    public CallInstruction(int offset, Matcher matcher) {
+    public CallInstruction(int offset, int returnOffset, Matcher matcher) {
       this.offset = offset;
+      this.returnOffset = returnOffset;
       this.matcher = matcher;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
+    public int getReturnOffset() {
+      return returnOffset;
+    }
+
+    public Matcher getMatcher() {
+      return matcher;
+    }
+
     @Override
     public void execute(Machine machine) {
-      machine.pushReturn(1, matcher, offset);
+      machine.pushReturn(returnOffset, matcher, offset);
     }
 
     @Override
     public String toString() {
-      return "Call " + offset;
+      return returnOffset == 1 ? "Call " + offset : "Call " + offset + " " + returnOffset;
     }
 
     @Override
@@ -144,6 +232,7 @@ public abstract class Instruction {
       if (obj instanceof CallInstruction) {
         CallInstruction other = (CallInstruction) obj;
         return this.offset == other.offset
+          && this.returnOffset == other.returnOffset
           && Objects.equal(this.matcher, other.matcher);
       }
       return false;
@@ -162,6 +251,10 @@ public abstract class Instruction {
       this.offset = offset;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
     @Override
     public void execute(Machine machine) {
       machine.pushBacktrack(offset);
@@ -208,6 +301,10 @@ public abstract class Instruction {
       this.offset = offset;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
     @Override
     public void execute(Machine machine) {
       machine.pushBacktrack(offset);
@@ -238,12 +335,13 @@ public abstract class Instruction {
       this.offset = offset;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
     @Override
     public void execute(Machine machine) {
-      // add all nodes to parent
-      machine.peek().parent().subNodes().addAll(machine.peek().subNodes());
-
-      machine.pop();
+      machine.commit();
       machine.jump(offset);
     }
 
@@ -270,16 +368,17 @@ public abstract class Instruction {
       this.offset = offset;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
     @Override
     public void execute(Machine machine) {
       if (machine.getIndex() == machine.peek().index()) {
         // TODO better message, e.g. dump stack
         throw new GrammarException("The inner part of ZeroOrMore and OneOrMore must not allow empty matches");
       }
-      // add all nodes to parent
-      machine.peek().parent().subNodes().addAll(machine.peek().subNodes());
-
-      machine.pop();
+      machine.commit();
       machine.jump(offset);
     }
 
@@ -299,6 +398,304 @@ public abstract class Instruction {
     }
   }
 
+  /**
+   * Instruction dedicated for loops.
+   * Behaves exactly as {@link CommitVerifyInstruction} followed by {@link ChoiceInstruction}, which pushed popped entry,
+   * but updates entry on top of stack instead of pop and push.
+   */
+  public static final class PartialCommitVerifyInstruction extends Instruction {
+    private final int offset;
+
+    public PartialCommitVerifyInstruction(int offset) {
+      this.offset = offset;
+    }
+
+    public int getOffset() {
+      return offset;
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      if (machine.getIndex() == machine.peek().index()) {
+        // TODO better message, e.g. dump stack
+        throw new GrammarException("The inner part of ZeroOrMore and OneOrMore must not allow empty matches");
+      }
+      machine.partialCommit();
+      machine.jump(offset);
+    }
+
+    @Override
+    public String toString() {
+      return "PartialCommitVerify " + offset;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return (obj instanceof PartialCommitVerifyInstruction) && (this.offset == ((PartialCommitVerifyInstruction) obj).offset);
+    }
+
+    @Override
+    public int hashCode() {
+      return offset;
+    }
+  }
+
+  /**
+   * Jumps to a given offset, if input doesn't start with a given character, so that alternative,
+   * which starts with this character, can be skipped without push of entry on stack.
+   */
+  public static final class TestCharInstruction extends Instruction {
+    private final char c;
+    private final int offset;
+
+    public TestCharInstruction(char c, int offset) {
+      this.c = c;
+      this.offset = offset;
+    }
+
+    public char getChar() {
+      return c;
+    }
+
+    public int getOffset() {
+      return offset;
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      if (machine.length() == 0 || machine.charAt(0) != c) {
+        machine.jump(offset);
+      } else {
+        machine.jump(1);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "TestChar " + c + " " + offset;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof TestCharInstruction) {
+        TestCharInstruction other = (TestCharInstruction) obj;
+        return this.c == other.c
+          && this.offset == other.offset;
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return offset;
+    }
+  }
+
+  /**
+   * Jumps to a given offset, if type of current token is not a given one, so that alternative,
+   * which starts with token of this type, can be skipped without push of entry on stack.
+   */
+  public static final class TestTokenInstruction extends Instruction {
+    private final TokenType type;
+    private final int typeId;
+    private final int offset;
+
+    public TestTokenInstruction(TokenType type, int typeId, int offset) {
+      this.type = type;
+      this.typeId = typeId;
+      this.offset = offset;
+    }
+
+    public TokenType getType() {
+      return type;
+    }
+
+    public int getTypeId() {
+      return typeId;
+    }
+
+    public int getOffset() {
+      return offset;
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      if (machine.length() == 0 || machine.tokenTypeIdAt(0) != typeId) {
+        machine.jump(offset);
+      } else {
+        machine.jump(1);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "TestToken " + type + " " + offset;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof TestTokenInstruction) {
+        TestTokenInstruction other = (TestTokenInstruction) obj;
+        return this.type == other.type
+          && this.typeId == other.typeId
+          && this.offset == other.offset;
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return offset;
+    }
+  }
+
+  /**
+   * Matches token of a given type by its identifier.
+   */
+  public static final class TokenTypeInstruction extends Instruction {
+    private final Matcher matcher;
+    private final TokenType type;
+    private final int typeId;
+
+    public TokenTypeInstruction(Matcher matcher, TokenType type, int typeId) {
+      this.matcher = matcher;
+      this.type = type;
+      this.typeId = typeId;
+    }
+
+    public Matcher getMatcher() {
+      return matcher;
+    }
+
+    public TokenType getType() {
+      return type;
+    }
+
+    public int getTypeId() {
+      return typeId;
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      if (machine.length() == 0 || machine.tokenTypeIdAt(0) != typeId) {
+        machine.backtrack();
+        return;
+      }
+      machine.createLeafNode(matcher, 1);
+      machine.jump(1);
+    }
+
+    @Override
+    public String toString() {
+      return matcher.toString();
+    }
+  }
+
+  /**
+   * Matches token of one of given types by lookup of its identifier in bit set.
+   */
+  public static final class TokenTypesInstruction extends Instruction {
+    private final Matcher matcher;
+
+    /**
+     * Bit set over identifiers of types.
+     */
+    private final long[] typeIds;
+
+    public TokenTypesInstruction(Matcher matcher, Set<TokenType> types, TokenTypeIds typeIds) {
+      this.matcher = matcher;
+      int maxTypeId = -1;
+      for (TokenType type : types) {
+        maxTypeId = Math.max(maxTypeId, typeIds.register(type));
+      }
+      this.typeIds = new long[(maxTypeId >> 6) + 1];
+      for (TokenType type : types) {
+        int typeId = typeIds.of(type);
+        this.typeIds[typeId >> 6] |= 1L << typeId;
+      }
+    }
+
+    public Matcher getMatcher() {
+      return matcher;
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      if (machine.length() == 0 || !containsTypeId(machine.tokenTypeIdAt(0))) {
+        machine.backtrack();
+        return;
+      }
+      machine.createLeafNode(matcher, 1);
+      machine.jump(1);
+    }
+
+    private boolean containsTypeId(int typeId) {
+      int i = typeId >> 6;
+      return i < typeIds.length && (typeIds[i] & (1L << typeId)) != 0;
+    }
+
+    @Override
+    public String toString() {
+      return matcher.toString();
+    }
+  }
+
+  /**
+   * Matches balanced sequence of tokens, which starts with token of type "from" and ends with token of type "to",
+   * by comparison of identifiers of their types.
+   */
+  public static final class TokensBridgeInstruction extends Instruction {
+    private final Matcher matcher;
+    private final int fromId;
+    private final int toId;
+
+    public TokensBridgeInstruction(Matcher matcher, int fromId, int toId) {
+      this.matcher = matcher;
+      this.fromId = fromId;
+      this.toId = toId;
+    }
+
+    public Matcher getMatcher() {
+      return matcher;
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      int length = machine.length();
+      if (length < 2 || machine.tokenTypeIdAt(0) != fromId) {
+        machine.backtrack();
+        return;
+      }
+      int offset = 0;
+      int bridgeLevel = 1;
+      int typeId;
+      do {
+        offset++;
+        if (offset >= length) {
+          machine.backtrack();
+          return;
+        }
+        typeId = machine.tokenTypeIdAt(offset);
+        if (typeId == fromId) {
+          bridgeLevel++;
+        } else if (typeId == toId) {
+          bridgeLevel--;
+        } else {
+          // nop
+        }
+      } while (bridgeLevel != 0);
+      for (int i = 0; i <= offset; i++) {
+        machine.createLeafNode(matcher, 1);
+      }
+      machine.jump(1);
+    }
+
+    @Override
+    public String toString() {
+      return matcher.toString();
+    }
+  }
+
   public static final class RetInstruction extends Instruction {
     @Override
     public void execute(Machine machine) {
@@ -357,6 +754,139 @@ public abstract class Instruction {
     }
   }
 
+  /**
+   * Jumps to the alternatives, which may start with the current character.
+   */
+  public static final class CharDispatchInstruction extends Instruction {
+    private final int[] offsets;
+    private final int defaultOffset;
+
+    public CharDispatchInstruction(int[] offsets, int defaultOffset) {
+      this.offsets = offsets;
+      this.defaultOffset = defaultOffset;
+    }
+
+    public int[] getOffsets() {
+      return offsets;
+    }
+
+    public int getDefaultOffset() {
+      return defaultOffset;
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      if (machine.length() == 0) {
+        machine.jump(defaultOffset);
+        return;
+      }
+      char c = machine.charAt(0);
+      machine.jump(c < offsets.length ? offsets[c] : defaultOffset);
+    }
+
+    @Override
+    public String toString() {
+      return "CharDispatch " + Arrays.toString(offsets) + " " + defaultOffset;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof CharDispatchInstruction) {
+        CharDispatchInstruction other = (CharDispatchInstruction) obj;
+        return this.defaultOffset == other.defaultOffset
+          && Arrays.equals(this.offsets, other.offsets);
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return defaultOffset;
+    }
+  }
+
+  /**
+   * Jumps to the alternatives, which may start with the current token.
+   */
+  public static final class TokenDispatchInstruction extends Instruction {
+    private final Map<TokenType, Integer> types;
+    private final Map<String, Integer> values;
+    private final int[] offsets;
+    private final TokenTypeIds typeIds;
+
+    /**
+     * Indexes of types, which are specified in {@link #types}, by {@link #typeIds identifiers} of types.
+     * Identifiers of other types are either not less than length of this array or mapped to size of {@link #types}.
+     */
+    private final int[] typeIndexes;
+
+    public TokenDispatchInstruction(Map<TokenType, Integer> types, Map<String, Integer> values, int[] offsets, TokenTypeIds typeIds) {
+      this.types = types;
+      this.values = values;
+      this.offsets = offsets;
+      this.typeIds = typeIds;
+      int maxTypeId = -1;
+      for (TokenType type : types.keySet()) {
+        maxTypeId = Math.max(maxTypeId, typeIds.register(type));
+      }
+      this.typeIndexes = new int[maxTypeId + 1];
+      Arrays.fill(typeIndexes, types.size());
+      for (Map.Entry<TokenType, Integer> entry : types.entrySet()) {
+        typeIndexes[typeIds.of(entry.getKey())] = entry.getValue();
+      }
+    }
+
+    public Map<TokenType, Integer> getTypes() {
+      return types;
+    }
+
+    public Map<String, Integer> getValues() {
+      return values;
+    }
+
+    public int[] getOffsets() {
+      return offsets;
+    }
+
+    public TokenTypeIds getTypeIds() {
+      return typeIds;
+    }
+
+    @Override
+    public void execute(Machine machine) {
+      if (machine.length() == 0) {
+        machine.jump(offsets[offsets.length - 1]);
+        return;
+      }
+      int typeId = machine.tokenTypeIdAt(0);
+      int type = typeId < typeIndexes.length ? typeIndexes[typeId] : types.size();
+      Integer value = values.get(machine.tokenValueAt(0));
+      int i = type * (values.size() + 1) + (value == null ? values.size() : value);
+      machine.jump(offsets[i]);
+    }
+
+    @Override
+    public String toString() {
+      return "TokenDispatch " + types + " " + values + " " + Arrays.toString(offsets);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (obj instanceof TokenDispatchInstruction) {
+        TokenDispatchInstruction other = (TokenDispatchInstruction) obj;
+        return this.types.equals(other.types)
+          && this.values.equals(other.values)
+          && Arrays.equals(this.offsets, other.offsets);
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(offsets);
+    }
+  }
+
   public static final class BackCommitInstruction extends Instruction {
     private final int offset;
 
@@ -364,6 +894,10 @@ public abstract class Instruction {
       this.offset = offset;
     }
 
+    public int getOffset() {
+      return offset;
+    }
+
     @Override
     public void execute(Machine machine) {
       MachineStack stack = machine.peek();
@@ -0,0 +1,496 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.sonar.sslr.internal.vm.Instruction.BackCommitInstruction;
+import org.sonar.sslr.internal.vm.Instruction.BacktrackInstruction;
+import org.sonar.sslr.internal.vm.Instruction.CallInstruction;
+import org.sonar.sslr.internal.vm.Instruction.CharDispatchInstruction;
+import org.sonar.sslr.internal.vm.Instruction.ChoiceInstruction;
+import org.sonar.sslr.internal.vm.Instruction.CommitInstruction;
+import org.sonar.sslr.internal.vm.Instruction.CommitVerifyInstruction;
+import org.sonar.sslr.internal.vm.Instruction.EndInstruction;
+import org.sonar.sslr.internal.vm.Instruction.FailTwiceInstruction;
+import org.sonar.sslr.internal.vm.Instruction.JumpInstruction;
+import org.sonar.sslr.internal.vm.Instruction.PartialCommitVerifyInstruction;
+import org.sonar.sslr.internal.vm.Instruction.PredicateChoiceInstruction;
+import org.sonar.sslr.internal.vm.Instruction.RetInstruction;
+import org.sonar.sslr.internal.vm.Instruction.TestCharInstruction;
+import org.sonar.sslr.internal.vm.Instruction.TestTokenInstruction;
+import org.sonar.sslr.internal.vm.Instruction.TokenDispatchInstruction;
+import org.sonar.sslr.internal.vm.Instruction.TokenTypeInstruction;
+
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Peephole optimizer of linked instructions.
+ * Instructions are decoded into a graph, where relative offsets are replaced by references on targets,
+ * so that instructions can be inserted, copied and removed, and then encoded back.
+ *
+ * @see Optimization
+ */
+public final class InstructionOptimizer {
+
+  /**
+   * Maximal number of instructions in body of {@link OneOrMoreExpression}, which can be copied to use partial commit.
+   */
+  private static final int LOOP_COPY_LIMIT = 16;
+
+  private static final class Op {
+    private Instruction instruction;
+    private Op[] targets;
+    private int address;
+
+    private Op(Instruction instruction) {
+      this.instruction = instruction;
+    }
+  }
+
+  private List<Op> ops;
+  private final Op end = new Op(null);
+  private final Op[] entries;
+
+  private InstructionOptimizer(Instruction[] instructions, int[] entryPoints) {
+    ops = Lists.newArrayListWithCapacity(instructions.length + 1);
+    for (Instruction instruction : instructions) {
+      ops.add(new Op(instruction));
+    }
+    ops.add(end);
+    for (int i = 0; i < instructions.length; i++) {
+      int[] offsets = getOffsets(instructions[i]);
+      if (offsets != null) {
+        Op[] targets = new Op[offsets.length];
+        for (int j = 0; j < offsets.length; j++) {
+          targets[j] = ops.get(i + offsets[j]);
+        }
+        ops.get(i).targets = targets;
+      }
+    }
+    entries = new Op[entryPoints.length];
+    for (int i = 0; i < entryPoints.length; i++) {
+      entries[i] = ops.get(entryPoints[i]);
+    }
+  }
+
+  public static Instruction[] optimize(Instruction[] instructions, Set<Optimization> optimizations) {
+    return optimize(instructions, new int[] {0}, optimizations);
+  }
+
+  /**
+   * @param entryPoints addresses of rules, which will be replaced by new addresses
+   */
+  public static Instruction[] optimize(Instruction[] instructions, int[] entryPoints, Set<Optimization> optimizations) {
+    InstructionOptimizer optimizer = new InstructionOptimizer(instructions, entryPoints);
+    if (optimizations.contains(Optimization.PARTIAL_COMMIT)) {
+      optimizer.usePartialCommits();
+    }
+    if (optimizations.contains(Optimization.TEST_INSTRUCTIONS)) {
+      optimizer.insertTests();
+    }
+    if (optimizations.contains(Optimization.JUMP_THREADING)) {
+      optimizer.threadJumps();
+    }
+    return optimizer.encode(entryPoints);
+  }
+
+  /**
+   * Targets, which are not in a given sequence, are preserved, except a given one, which is replaced.
+   */
+  private static List<Op> copy(List<Op> body, Op replaced, Op replacement) {
+    Map<Op, Op> copies = Maps.newHashMap();
+    for (Op op : body) {
+      copies.put(op, new Op(op.instruction));
+    }
+    List<Op> result = Lists.newArrayListWithCapacity(body.size());
+    for (Op op : body) {
+      Op copy = copies.get(op);
+      if (op.targets != null) {
+        copy.targets = new Op[op.targets.length];
+        for (int i = 0; i < op.targets.length; i++) {
+          Op target = copies.get(op.targets[i]);
+          if (target == null) {
+            target = op.targets[i] == replaced ? replacement : op.targets[i];
+          }
+          copy.targets[i] = target;
+        }
+      }
+      result.add(copy);
+    }
+    return result;
+  }
+
+  /**
+   * Replaces
+   * <pre>
+   * L1: Choice L2
+   * body
+   * CommitVerify L1
+   * L2: ...
+   * </pre>
+   * by
+   * <pre>
+   * Choice L2
+   * L1: body
+   * PartialCommitVerify L1
+   * L2: ...
+   * </pre>
+   * And
+   * <pre>
+   * Choice L3
+   * L1: body
+   * CommitVerify L2
+   * L2: Choice L4
+   * Jump L1
+   * L3: Backtrack
+   * L4: ...
+   * </pre>
+   * by
+   * <pre>
+   * Choice L3
+   * body
+   * CommitVerify L2
+   * L2: Choice L4
+   * L1: copy of body
+   * PartialCommitVerify L1
+   * L3: Backtrack
+   * L4: ...
+   * </pre>
+   */
+  private void usePartialCommits() {
+    List<Op> result = Lists.newArrayListWithCapacity(ops.size());
+    for (int i = 0; i < ops.size(); i++) {
+      Op op = ops.get(i);
+      result.add(op);
+      if (op.instruction instanceof CommitVerifyInstruction) {
+        Op next = ops.get(i + 1);
+        Op choice = op.targets[0];
+        if (choice.instruction instanceof ChoiceInstruction && choice.targets[0] == next) {
+          int choiceIndex = result.lastIndexOf(choice);
+          if (choiceIndex != -1) {
+            op.instruction = Instruction.partialCommitVerify(0);
+            op.targets[0] = result.get(choiceIndex + 1);
+          }
+        } else if (choice == next) {
+          int bodyStart = oneOrMoreBodyStart(result, i);
+          if (bodyStart != -1) {
+            List<Op> body = Lists.newArrayList(result.subList(bodyStart, result.size() - 1));
+            Op partialCommit = new Op(Instruction.partialCommitVerify(0));
+            List<Op> copy = copy(body, op, partialCommit);
+            partialCommit.targets = new Op[] {copy.get(0)};
+            result.add(next);
+            result.addAll(copy);
+            result.add(partialCommit);
+            // jump is replaced by copy of body
+            i += 2;
+          }
+        }
+      }
+    }
+    ops = result;
+  }
+
+  /**
+   * Checks that instructions around commit at given index were produced by {@link OneOrMoreExpression}.
+   *
+   * @return index of first instruction of body in a given list, or -1
+   */
+  private int oneOrMoreBodyStart(List<Op> result, int commitIndex) {
+    if (commitIndex + 4 >= ops.size()) {
+      return -1;
+    }
+    Op secondChoice = ops.get(commitIndex + 1);
+    Op jump = ops.get(commitIndex + 2);
+    Op backtrack = ops.get(commitIndex + 3);
+    if (!(secondChoice.instruction instanceof ChoiceInstruction)
+      || secondChoice.targets[0] != ops.get(commitIndex + 4)
+      || !(jump.instruction instanceof JumpInstruction)
+      || !(backtrack.instruction instanceof BacktrackInstruction)) {
+      return -1;
+    }
+    int bodyStart = result.lastIndexOf(jump.targets[0]);
+    if (bodyStart < 1 || result.size() - 1 - bodyStart > LOOP_COPY_LIMIT) {
+      return -1;
+    }
+    Op firstChoice = result.get(bodyStart - 1);
+    if (!(firstChoice.instruction instanceof ChoiceInstruction) || firstChoice.targets[0] != backtrack) {
+      return -1;
+    }
+    return isLoopBody(result.subList(bodyStart, result.size() - 1), ops.get(commitIndex)) ? bodyStart : -1;
+  }
+
+  /**
+   * @return true, if instructions from a given sequence refer only to each other, to a given commit and to rules
+   */
+  private static boolean isLoopBody(List<Op> body, Op commit) {
+    Set<Op> members = Sets.newHashSet(body);
+    for (Op op : body) {
+      if (op.targets != null) {
+        for (int i = 0; i < op.targets.length; i++) {
+          Op target = op.targets[i];
+          boolean isCall = op.instruction instanceof CallInstruction && i == 0;
+          if (!isCall && !members.contains(target) && target != commit) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Inserts test of first character or token before choice, when first instruction of alternative is a test of character or token.
+   */
+  private void insertTests() {
+    Map<Op, Op> tests = Maps.newHashMap();
+    List<Op> result = Lists.newArrayListWithCapacity(ops.size());
+    for (int i = 0; i < ops.size(); i++) {
+      Op op = ops.get(i);
+      if (op.instruction instanceof ChoiceInstruction) {
+        Instruction first = followJumps(ops.get(i + 1)).instruction;
+        Instruction test = null;
+        if (first instanceof StringExpression && !((StringExpression) first).getString().isEmpty()) {
+          test = Instruction.testChar(((StringExpression) first).getString().charAt(0), 0);
+        } else if (first instanceof TokenTypeInstruction) {
+          TokenTypeInstruction tokenType = (TokenTypeInstruction) first;
+          test = Instruction.testToken(tokenType.getType(), tokenType.getTypeId(), 0);
+        }
+        if (test != null) {
+          Op testOp = new Op(test);
+          testOp.targets = new Op[] {op.targets[0]};
+          tests.put(op, testOp);
+          result.add(testOp);
+        }
+      }
+      result.add(op);
+    }
+    ops = result;
+    if (!tests.isEmpty()) {
+      retarget(tests);
+    }
+  }
+
+  /**
+   * Replaces references on instructions.
+   */
+  private void retarget(Map<Op, Op> replacements) {
+    for (Op op : ops) {
+      if (op.targets != null) {
+        for (int i = 0; i < op.targets.length; i++) {
+          Op replacement = replacements.get(op.targets[i]);
+          if (replacement != null) {
+            op.targets[i] = replacement;
+          }
+        }
+      }
+    }
+    for (int i = 0; i < entries.length; i++) {
+      Op replacement = replacements.get(entries[i]);
+      if (replacement != null) {
+        entries[i] = replacement;
+      }
+    }
+  }
+
+  private Op followJumps(Op op) {
+    Op result = op;
+    for (int i = 0; i < ops.size() && result.instruction instanceof JumpInstruction; i++) {
+      result = result.targets[0];
+    }
+    return result;
+  }
+
+  private void threadJumps() {
+    for (Op op : ops) {
+      if (op.targets != null) {
+        for (int i = 0; i < op.targets.length; i++) {
+          op.targets[i] = followJumps(op.targets[i]);
+        }
+        if (op.instruction instanceof JumpInstruction) {
+          Instruction target = op.targets[0].instruction;
+          if (target instanceof RetInstruction || target instanceof BacktrackInstruction || target instanceof EndInstruction) {
+            // these instructions don't depend on address
+            op.instruction = target;
+            op.targets = null;
+          }
+        }
+      }
+    }
+    for (int i = 0; i < entries.length; i++) {
+      entries[i] = followJumps(entries[i]);
+    }
+    removeUnreachable();
+    removeJumpsToNext();
+  }
+
+  private void removeUnreachable() {
+    Set<Op> reachable = Sets.newHashSet();
+    Map<Op, Op> nexts = Maps.newHashMap();
+    for (int i = 0; i < ops.size() - 1; i++) {
+      nexts.put(ops.get(i), ops.get(i + 1));
+    }
+    Deque<Op> queue = Lists.newLinkedList(Arrays.asList(entries));
+    queue.add(end);
+    while (!queue.isEmpty()) {
+      Op op = queue.poll();
+      if (!reachable.add(op)) {
+        continue;
+      }
+      if (op.targets != null) {
+        queue.addAll(Arrays.asList(op.targets));
+      }
+      if (op != end && fallsThrough(op.instruction)) {
+        queue.add(nexts.get(op));
+      }
+    }
+    List<Op> result = Lists.newArrayListWithCapacity(reachable.size());
+    for (Op op : ops) {
+      if (reachable.contains(op)) {
+        result.add(op);
+      }
+    }
+    ops = result;
+  }
+
+  /**
+   * Note that all references on jumps were already replaced by their targets, so jumps are reachable only from previous instructions.
+   */
+  private void removeJumpsToNext() {
+    List<Op> result = Lists.newArrayListWithCapacity(ops.size());
+    for (int i = 0; i < ops.size(); i++) {
+      Op op = ops.get(i);
+      if (op.instruction instanceof JumpInstruction && op.targets[0] == ops.get(i + 1) && !Arrays.asList(entries).contains(op)) {
+        continue;
+      }
+      result.add(op);
+    }
+    ops = result;
+  }
+
+  private static boolean fallsThrough(Instruction instruction) {
+    return !(instruction instanceof JumpInstruction
+      || instruction instanceof CallInstruction
+      || instruction instanceof CommitInstruction
+      || instruction instanceof CommitVerifyInstruction
+      || instruction instanceof PartialCommitVerifyInstruction
+      || instruction instanceof BackCommitInstruction
+      || instruction instanceof CharDispatchInstruction
+      || instruction instanceof TokenDispatchInstruction
+      || instruction instanceof RetInstruction
+      || instruction instanceof BacktrackInstruction
+      || instruction instanceof EndInstruction
+      || instruction instanceof FailTwiceInstruction);
+  }
+
+  private Instruction[] encode(int[] entryPoints) {
+    for (int i = 0; i < ops.size(); i++) {
+      ops.get(i).address = i;
+    }
+    Instruction[] result = new Instruction[ops.size() - 1];
+    for (int i = 0; i < result.length; i++) {
+      Op op = ops.get(i);
+      if (op.targets == null) {
+        result[i] = op.instruction;
+      } else {
+        int[] offsets = new int[op.targets.length];
+        for (int j = 0; j < offsets.length; j++) {
+          offsets[j] = op.targets[j].address - i;
+        }
+        result[i] = withOffsets(op.instruction, offsets);
+      }
+    }
+    for (int i = 0; i < entryPoints.length; i++) {
+      entryPoints[i] = entries[i].address;
+    }
+    return result;
+  }
+
+  /**
+   * @return offsets of targets of given instruction, or null if instruction has no targets
+   */
+  private static int[] getOffsets(Instruction instruction) {
+    if (instruction instanceof JumpInstruction) {
+      return new int[] {((JumpInstruction) instruction).getOffset()};
+    } else if (instruction instanceof CallInstruction) {
+      return new int[] {((CallInstruction) instruction).getOffset(), ((CallInstruction) instruction).getReturnOffset()};
+    } else if (instruction instanceof ChoiceInstruction) {
+      return new int[] {((ChoiceInstruction) instruction).getOffset()};
+    } else if (instruction instanceof PredicateChoiceInstruction) {
+      return new int[] {((PredicateChoiceInstruction) instruction).getOffset()};
+    } else if (instruction instanceof CommitInstruction) {
+      return new int[] {((CommitInstruction) instruction).getOffset()};
+    } else if (instruction instanceof CommitVerifyInstruction) {
+      return new int[] {((CommitVerifyInstruction) instruction).getOffset()};
+    } else if (instruction instanceof PartialCommitVerifyInstruction) {
+      return new int[] {((PartialCommitVerifyInstruction) instruction).getOffset()};
+    } else if (instruction instanceof BackCommitInstruction) {
+      return new int[] {((BackCommitInstruction) instruction).getOffset()};
+    } else if (instruction instanceof TestCharInstruction) {
+      return new int[] {((TestCharInstruction) instruction).getOffset()};
+    } else if (instruction instanceof TestTokenInstruction) {
+      return new int[] {((TestTokenInstruction) instruction).getOffset()};
+    } else if (instruction instanceof CharDispatchInstruction) {
+      CharDispatchInstruction dispatch = (CharDispatchInstruction) instruction;
+      int[] result = Arrays.copyOf(dispatch.getOffsets(), dispatch.getOffsets().length + 1);
+      result[result.length - 1] = dispatch.getDefaultOffset();
+      return result;
+    } else if (instruction instanceof TokenDispatchInstruction) {
+      return ((TokenDispatchInstruction) instruction).getOffsets().clone();
+    }
+    return null;
+  }
+
+  private static Instruction withOffsets(Instruction instruction, int[] offsets) {
+    if (instruction instanceof JumpInstruction) {
+      return Instruction.jump(offsets[0]);
+    } else if (instruction instanceof CallInstruction) {
+      return Instruction.call(offsets[0], offsets[1], ((CallInstruction) instruction).getMatcher());
+    } else if (instruction instanceof ChoiceInstruction) {
+      return Instruction.choice(offsets[0]);
+    } else if (instruction instanceof PredicateChoiceInstruction) {
+      return Instruction.predicateChoice(offsets[0]);
+    } else if (instruction instanceof CommitInstruction) {
+      return Instruction.commit(offsets[0]);
+    } else if (instruction instanceof CommitVerifyInstruction) {
+      return Instruction.commitVerify(offsets[0]);
+    } else if (instruction instanceof PartialCommitVerifyInstruction) {
+      return Instruction.partialCommitVerify(offsets[0]);
+    } else if (instruction instanceof BackCommitInstruction) {
+      return Instruction.backCommit(offsets[0]);
+    } else if (instruction instanceof TestCharInstruction) {
+      return Instruction.testChar(((TestCharInstruction) instruction).getChar(), offsets[0]);
+    } else if (instruction instanceof TestTokenInstruction) {
+      TestTokenInstruction test = (TestTokenInstruction) instruction;
+      return Instruction.testToken(test.getType(), test.getTypeId(), offsets[0]);
+    } else if (instruction instanceof CharDispatchInstruction) {
+      return Instruction.charDispatch(Arrays.copyOf(offsets, offsets.length - 1), offsets[offsets.length - 1]);
+    } else {
+      TokenDispatchInstruction dispatch = (TokenDispatchInstruction) instruction;
+      return Instruction.tokenDispatch(dispatch.getTypes(), dispatch.getValues(), offsets, dispatch.getTypeIds());
+    }
+  }
+
+}
@@ -20,17 +20,25 @@
 package org.sonar.sslr.internal.vm;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import com.sonar.sslr.api.RecognitionException;
 import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
 import org.sonar.sslr.grammar.GrammarException;
 import org.sonar.sslr.internal.matchers.ImmutableInputBuffer;
 import org.sonar.sslr.internal.matchers.InputBuffer;
 import org.sonar.sslr.internal.matchers.Matcher;
-import org.sonar.sslr.internal.matchers.ParseNode;
+import org.sonar.sslr.internal.matchers.ParseTree;
+import org.sonar.sslr.internal.text.LineIndex;
 import org.sonar.sslr.internal.vm.lexerful.LexerfulParseErrorFormatter;
+import org.sonar.sslr.internal.vm.lexerful.TokenList;
+import org.sonar.sslr.internal.vm.lexerful.TokenTypeIds;
+import org.sonar.sslr.parser.MemoizationPolicy;
 import org.sonar.sslr.parser.ParseError;
 import org.sonar.sslr.parser.ParsingResult;
 
+import javax.annotation.Nullable;
+
 import java.util.Arrays;
 import java.util.List;
 
@@ -38,14 +46,59 @@ public class Machine implements CharSequence {
 
   private final char[] input;
   private final Token[] tokens;
+  private final TokenType[] tokenTypes;
+  private final int[] tokenTypeIds;
+  private final String[] tokenValues;
   private final int inputLength;
 
-  private MachineStack stack;
+  private final MachineStack stack;
   private int index;
   private int address;
   private boolean matched = true;
 
-  private final ParseNode[] memos;
+  private final MemoizationPolicy memoizationPolicy;
+
+  /**
+   * Identifiers of memoized nodes, -1 if there is no memoized node for given index of input.
+   * Used only with {@link MemoizationPolicy#LAST_MATCH}.
+   * When {@link #memoWindow} is less than length of input, then used as a ring buffer,
+   * so node must be checked to start at the requested index.
+   */
+  private final int[] memos;
+  private final int memosLength;
+
+  /**
+   * Number of positions in input behind the current one, for which memoized results are retained.
+   */
+  private final int memoWindow;
+
+  /**
+   * Memoized results of rules.
+   * Used only with {@link MemoizationPolicy#MATCHES} and {@link MemoizationPolicy#MATCHES_AND_MISMATCHES}.
+   */
+  private final MemoTable memoTable;
+
+  /**
+   * Size of {@link #memoTable}, after reaching of which results, which can't be reused, are removed from it.
+   */
+  private int memoTableLimit = MEMO_TABLE_MIN_LIMIT;
+
+  private static final int MEMO_TABLE_MIN_LIMIT = 4096;
+
+  /**
+   * Identifiers of memoized nodes in order of memoization, together with addresses of their rules.
+   * Nodes created after the last one, which is still memoized, can be removed from parse tree on backtrack.
+   */
+  private int[] memoizedNodes = new int[MEMOIZED_NODES_INITIAL_CAPACITY];
+  private int[] memoizedAddresses = new int[MEMOIZED_NODES_INITIAL_CAPACITY];
+  private int memoizedNodesSize;
+
+  private static final int MEMOIZED_NODES_INITIAL_CAPACITY = 64;
+
+  /**
+   * Nodes of previous parse tree, which can be reused, when they are not memoized.
+   */
+  private ReusableNodes reusableNodes;
 
   // Number of instructions in grammar for Java is about 2000.
   private final int[] calls;
@@ -54,15 +107,38 @@ public class Machine implements CharSequence {
 
   private boolean ignoreErrors = false;
 
-  public static ParseNode parse(List<Token> tokens, CompiledGrammar grammar) {
-    Token[] inputTokens = tokens.toArray(new Token[tokens.size()]);
+  private final ParseTree tree = new ParseTree();
+
+  public static ParseTree parse(List<Token> tokens, CompiledGrammar grammar) {
+    return parse(tokens, grammar, new MachineContext());
+  }
+
+  /**
+   * @param context context, which will be reused, must not be used by other threads during this call
+   */
+  public static ParseTree parse(List<Token> tokens, CompiledGrammar grammar, MachineContext context) {
+    TokenList inputTokens;
+    if (tokens instanceof TokenList) {
+      // Performance optimization: no need to copy tokens produced by Lexer
+      inputTokens = (TokenList) tokens;
+    } else {
+      inputTokens = TokenList.copyOf(tokens);
+    }
+
+    CompiledGrammar errorLocatingGrammar = grammar.getErrorLocatingGrammar();
+    if (errorLocatingGrammar != null) {
+      Machine machine = execute(null, inputTokens, tokens.size(), grammar, NOP_HANDLER, context, null);
+      if (machine.matched) {
+        return machine.tree;
+      }
+      grammar = errorLocatingGrammar;
+    }
 
     ErrorLocatingHandler errorLocatingHandler = new ErrorLocatingHandler();
-    Machine machine = new Machine(null, inputTokens, grammar.getInstructions(), errorLocatingHandler);
-    machine.execute(grammar.getMatcher(grammar.getRootRuleKey()), grammar.getRootRuleOffset(), grammar.getInstructions());
+    Machine machine = execute(null, inputTokens, tokens.size(), grammar, errorLocatingHandler, context, null);
 
     if (machine.matched) {
-      return machine.stack.subNodes().get(0);
+      return machine.tree;
     } else {
       if (tokens.isEmpty()) {
         // Godin: weird situation - I expect that list of tokens contains at least EOF, but this is not the case in C Parser
@@ -77,33 +153,101 @@ public class Machine implements CharSequence {
   }
 
   public static ParsingResult parse(char[] input, CompiledGrammar grammar) {
-    Instruction[] instructions = grammar.getInstructions();
+    return parse(input, grammar, new MachineContext());
+  }
+
+  /**
+   * @param context context, which will be reused, must not be used by other threads during this call
+   */
+  public static ParsingResult parse(char[] input, CompiledGrammar grammar, MachineContext context) {
+    return parse(input, LineIndex.of(input), grammar, context);
+  }
+
+  /**
+   * @param lines index of lines of given input, which will be used to report errors,
+   * and length of which defines length of input, so that array can be longer than input
+   * @param context context, which will be reused, must not be used by other threads during this call
+   */
+  public static ParsingResult parse(char[] input, LineIndex lines, CompiledGrammar grammar, MachineContext context) {
+    return parse(input, lines, grammar, context, null);
+  }
+
+  /**
+   * Parses input, which was obtained from input of a previous parse by replacement of some region,
+   * with reuse of nodes of the previous parse tree, which start after the replaced region.
+   * Such nodes remain valid, because result of a rule depends only on input starting from position of this rule.
+   * When machine applies a rule at position of such node, it copies node with shifted positions instead of application of rule,
+   * so that work is proportional to the size of input before the end of replaced region, plus the size of copied nodes.
+   *
+   * <p>If input doesn't match, then it is parsed again without reuse, so that error is reported exactly as without reuse.</p>
+   *
+   * @param previousTree parse tree of the previous input
+   * @param reusableFrom index in the previous input, starting from which nodes can be reused, i.e. end of replaced region
+   * @param shift difference between positions of reused nodes in the new input and in the previous input
+   * @param context context, which will be reused, must not be used by other threads during this call
+   */
+  public static ParsingResult parse(char[] input, LineIndex lines, CompiledGrammar grammar, MachineContext context,
+      ParseTree previousTree, int reusableFrom, int shift) {
+    ParsingResult result = parse(input, lines, grammar, context, new ReusableNodes(previousTree, reusableFrom, shift));
+    return result.isMatched() ? result : parse(input, lines, grammar, context);
+  }
+
+  private static ParsingResult parse(char[] input, LineIndex lines, CompiledGrammar grammar, MachineContext context, @Nullable ReusableNodes reusableNodes) {
+    int inputLength = lines.length();
+    Preconditions.checkArgument(inputLength <= input.length, "index of lines doesn't match input");
+    CompiledGrammar errorLocatingGrammar = grammar.getErrorLocatingGrammar();
+    if (errorLocatingGrammar != null) {
+      Machine machine = execute(input, null, inputLength, grammar, NOP_HANDLER, context, reusableNodes);
+      if (machine.matched) {
+        return new ParsingResult(new ImmutableInputBuffer(machine.input, lines), machine.tree);
+      }
+      grammar = errorLocatingGrammar;
+    }
 
     ErrorLocatingHandler errorLocatingHandler = new ErrorLocatingHandler();
-    Machine machine = new Machine(input, null, instructions, errorLocatingHandler);
-    machine.execute(grammar.getMatcher(grammar.getRootRuleKey()), grammar.getRootRuleOffset(), instructions);
+    Machine machine = execute(input, null, inputLength, grammar, errorLocatingHandler, context, reusableNodes);
 
     if (machine.matched) {
-      return new ParsingResult(
-          new ImmutableInputBuffer(machine.input),
-          machine.matched,
-          // TODO what if there is no nodes, or more than one?
-          machine.stack.subNodes().get(0),
-          null);
+      // Performance optimization: index of lines is not computed here, but only on demand
+      return new ParsingResult(new ImmutableInputBuffer(machine.input, lines), machine.tree);
     } else {
-      InputBuffer inputBuffer = new ImmutableInputBuffer(machine.input);
+      InputBuffer inputBuffer = new ImmutableInputBuffer(machine.input, lines);
       ParseError parseError = new ParseError(inputBuffer, errorLocatingHandler.getErrorIndex());
       return new ParsingResult(inputBuffer, machine.matched, null, parseError);
     }
   }
 
+  /**
+   * Note that grammar, which has {@link CompiledGrammar#getErrorLocatingGrammar() grammar to locate errors},
+   * can't be used to locate errors, because alternatives skipped by dispatch on first terminal don't report errors.
+   */
+  private static Machine execute(char[] input, TokenList tokens, int inputLength, CompiledGrammar grammar, MachineHandler handler, MachineContext context,
+      @Nullable ReusableNodes reusableNodes) {
+    Instruction[] instructions = grammar.getInstructions();
+    Machine machine = new Machine(input, tokens, inputLength, instructions, grammar.getTokenTypeIds(), handler, context);
+    try {
+      machine.reusableNodes = reusableNodes;
+      machine.execute(grammar.getMatcher(grammar.getRootRuleKey()), grammar.getRootRuleOffset(), instructions);
+    } finally {
+      context.release();
+    }
+    return machine;
+  }
+
   private void execute(Matcher matcher, int offset, Instruction[] instructions) {
     // Place first rule on top of stack
     push(-1);
     stack.setMatcher(matcher);
     jump(offset);
+    stack.setCalledAddress(address);
+    stack.setLeftRecursion(calls[address]);
 
     execute(instructions);
+
+    if (matched) {
+      // TODO what if there is no nodes, or more than one?
+      tree.setRoot(stack.nodes()[stack.subNodesStart()]);
+    }
   }
 
   @VisibleForTesting
@@ -117,7 +261,16 @@ public class Machine implements CharSequence {
 
   @VisibleForTesting
   public static boolean execute(Instruction[] instructions, Token... input) {
-    Machine machine = new Machine(null, input, instructions, NOP_HANDLER);
+    return execute(instructions, new TokenTypeIds(), input);
+  }
+
+  /**
+   * @param tokenTypeIds identifiers of types of tokens, which were assigned during compilation of given instructions
+   */
+  @VisibleForTesting
+  public static boolean execute(Instruction[] instructions, TokenTypeIds tokenTypeIds, Token... input) {
+    Machine machine = new Machine(null, TokenList.copyOf(Arrays.asList(input)), input.length, instructions, tokenTypeIds, NOP_HANDLER,
+        new MachineContext());
     while (machine.address != -1 && machine.address < instructions.length) {
       instructions[machine.address].execute(machine);
     }
@@ -125,25 +278,41 @@ public class Machine implements CharSequence {
   }
 
   public Machine(String input, Instruction[] instructions, MachineHandler handler) {
-    this(input.toCharArray(), null, instructions, handler);
+    this(input.toCharArray(), null, input.length(), instructions, null, handler, new MachineContext());
   }
 
-  private Machine(char[] input, Token[] tokens, Instruction[] instructions, MachineHandler handler) {
+  /**
+   * @param inputLength length of input, which can be less than length of array of tokens
+   * @param tokenTypeIds identifiers of types of tokens, which are used by instructions
+   */
+  private Machine(char[] input, @Nullable TokenList tokens, int inputLength, Instruction[] instructions, @Nullable TokenTypeIds tokenTypeIds,
+      MachineHandler handler, MachineContext context) {
     this.input = input;
-    this.tokens = tokens;
-    if (input != null) {
-      this.inputLength = input.length;
+    if (tokens == null) {
+      this.tokens = null;
+      this.tokenTypes = null;
+      this.tokenValues = null;
     } else {
-      this.inputLength = tokens.length;
+      this.tokens = tokens.elements();
+      this.tokenTypes = tokens.types();
+      this.tokenValues = tokens.values();
     }
+    this.inputLength = inputLength;
 
     this.handler = handler;
-    this.memos = new ParseNode[inputLength + 1];
-    this.stack = new MachineStack();
-    stack = stack.getOrCreateChild();
-    stack.setIndex(-1);
-    calls = new int[instructions.length];
-    Arrays.fill(calls, -1);
+    context.acquire(inputLength, instructions.length);
+    // Performance optimization: identifiers are not computed, when grammar doesn't use them
+    this.tokenTypeIds = tokens == null || tokenTypeIds == null || tokenTypeIds.size() == 0
+        ? null
+        : context.tokenTypeIds(tokenTypes, inputLength, tokenTypeIds);
+    this.memoizationPolicy = context.memoizationPolicy();
+    this.memos = context.memos();
+    this.memosLength = context.memosLength(inputLength);
+    this.memoWindow = context.memoWindow();
+    this.memoTable = context.memoTable();
+    this.calls = context.calls();
+    this.stack = context.stack();
+    stack.reset();
   }
 
   private static final MachineHandler NOP_HANDLER = new MachineHandler() {
@@ -176,24 +345,23 @@ public class Machine implements CharSequence {
   }
 
   private void push(int address) {
-    stack = stack.getOrCreateChild();
-    stack.subNodes().clear();
-    stack.setAddress(address);
-    stack.setIndex(index);
-    stack.setIgnoreErrors(ignoreErrors);
+    stack.push(address, index, ignoreErrors, tree.size());
   }
 
   public void popReturn() {
     calls[stack.calledAddress()] = stack.leftRecursion();
-    stack = stack.parent();
+    stack.commit();
   }
 
   public void pushReturn(int returnOffset, Matcher matcher, int callOffset) {
-    ParseNode memo = memos[index];
-    if (memo != null && memo.getMatcher() == matcher) {
-      stack.subNodes().add(memo);
-      index = memo.getEndIndex();
+    int memo = getMemo(matcher, address + callOffset);
+    if (memo >= 0) {
+      stack.addNode(memo);
+      index = tree.getEndIndex(memo);
       address += returnOffset;
+    } else if (memo == MemoTable.MISMATCH || (memo == MemoTable.MISMATCH_IGNORING_ERRORS && ignoreErrors)) {
+      // Note that mismatch, during which errors were ignored, can't be reused when errors should be reported
+      backtrack();
     } else {
       push(address + returnOffset);
       stack.setMatcher(matcher);
@@ -209,19 +377,88 @@ public class Machine implements CharSequence {
     }
   }
 
+  /**
+   * @return identifier of memoized node, {@link MemoTable#MISMATCH}, {@link MemoTable#MISMATCH_IGNORING_ERRORS}
+   * or {@link MemoTable#ABSENT}
+   */
+  private int getMemo(Matcher matcher, int ruleAddress) {
+    int memo = getMemoizedNode(matcher, ruleAddress);
+    if (memo == MemoTable.ABSENT && reusableNodes != null) {
+      int reusableNode = reusableNodes.get(matcher, index);
+      if (reusableNode != -1) {
+        memo = reusableNodes.copyTo(tree, reusableNode);
+        memoize(matcher, ruleAddress, index, memo);
+      }
+    }
+    return memo;
+  }
+
+  private int getMemoizedNode(Matcher matcher, int ruleAddress) {
+    switch (memoizationPolicy) {
+      case LAST_MATCH:
+        int memo = memos[memoSlot(index)];
+        return memo != -1 && tree.getMatcher(memo) == matcher && tree.getStartIndex(memo) == index ? memo : MemoTable.ABSENT;
+      case MATCHES:
+      case MATCHES_AND_MISMATCHES:
+        return memoTable.get(ruleAddress, index);
+      default:
+        return MemoTable.ABSENT;
+    }
+  }
+
+  private int memoSlot(int index) {
+    return index < memosLength ? index : index % memosLength;
+  }
+
+  private void memoize(int ruleAddress, int ruleIndex, int value) {
+    if (memoTable.size() >= memoTableLimit) {
+      // Machine never returns before committed index, so results before it can't be reused,
+      // as well as results outside of window are not retained
+      int committedIndex = stack.committedIndex();
+      memoTable.removeBefore(Math.max(committedIndex == -1 ? index : committedIndex, index - memoWindow));
+      memoTableLimit = Math.max(MEMO_TABLE_MIN_LIMIT, memoTable.size() * 2);
+    }
+    memoTable.put(ruleAddress, ruleIndex, value);
+  }
+
+  static boolean shouldMemoize(Matcher matcher) {
+    return matcher instanceof MemoParsingExpression && ((MemoParsingExpression) matcher).shouldMemoize();
+  }
+
   public void pushBacktrack(int offset) {
     push(address + offset);
     stack.setMatcher(null);
   }
 
+  /**
+   * Pops entry from top of stack together with nodes created since push of this entry.
+   */
   public void pop() {
-    stack = stack.parent();
+    stack.pop();
+  }
+
+  /**
+   * Pops entry from top of stack, nodes created since push of this entry are preserved.
+   */
+  public void commit() {
+    stack.commit();
+  }
+
+  /**
+   * Updates entry on top of stack as if it was popped with preservation of nodes and then pushed again.
+   */
+  public void partialCommit() {
+    stack.partialCommit(index, tree.size());
   }
 
   public MachineStack peek() {
     return stack;
   }
 
+  ParseTree getParseTree() {
+    return tree;
+  }
+
   public void setIgnoreErrors(boolean ignoreErrors) {
     this.ignoreErrors = ignoreErrors;
   }
@@ -236,6 +473,10 @@ public class Machine implements CharSequence {
         handler.onBacktrack(this);
       }
 
+      if (memoizationPolicy == MemoizationPolicy.MATCHES_AND_MISMATCHES && shouldMemoize(stack.matcher())) {
+        memoize(stack.calledAddress(), stack.index(), ignoreErrors ? MemoTable.MISMATCH_IGNORING_ERRORS : MemoTable.MISMATCH);
+      }
+
       popReturn();
     }
 
@@ -248,21 +489,66 @@ public class Machine implements CharSequence {
       index = stack.index();
       address = stack.address();
       ignoreErrors = stack.isIgnoreErrors();
-      stack = stack.parent();
+      tree.truncate(retainedTreeSize(stack.treeSize()));
+      stack.pop();
     }
   }
 
   public void createNode() {
-    ParseNode node = new ParseNode(stack.index(), index, stack.subNodes(), stack.matcher());
-    stack.parent().subNodes().add(node);
-    if (stack.matcher() instanceof MemoParsingExpression && ((MemoParsingExpression) stack.matcher()).shouldMemoize()) {
-      memos[stack.index()] = node;
+    int node = tree.addNode(stack.index(), index, stack.matcher(), stack.nodes(), stack.subNodesStart(), stack.subNodesEnd());
+    stack.reduce(node);
+    memoize(stack.matcher(), stack.calledAddress(), stack.index(), node);
+  }
+
+  private void memoize(Matcher matcher, int ruleAddress, int ruleIndex, int node) {
+    if (memoizationPolicy != MemoizationPolicy.NONE && shouldMemoize(matcher)) {
+      if (memoizationPolicy == MemoizationPolicy.LAST_MATCH) {
+        memos[memoSlot(ruleIndex)] = node;
+      } else {
+        memoize(ruleAddress, ruleIndex, node);
+      }
+      if (memoizedNodesSize == memoizedNodes.length) {
+        memoizedNodes = Arrays.copyOf(memoizedNodes, memoizedNodesSize * 2);
+        memoizedAddresses = Arrays.copyOf(memoizedAddresses, memoizedNodesSize * 2);
+      }
+      memoizedNodes[memoizedNodesSize] = node;
+      memoizedAddresses[memoizedNodesSize] = ruleAddress;
+      memoizedNodesSize++;
+    }
+  }
+
+  /**
+   * Nodes created after push of entry with a given size of tree are not referenced anymore, except by memoized results.
+   * Results, which were replaced or evicted since memoization, are forgotten here,
+   * so that nodes retained for them can be removed.
+   *
+   * @return size of tree, to which it can be truncated on backtrack to entry with a given size of tree
+   */
+  private int retainedTreeSize(int treeSize) {
+    while (memoizedNodesSize > 0) {
+      int node = memoizedNodes[memoizedNodesSize - 1];
+      if (node < treeSize) {
+        break;
+      }
+      if (isMemoized(node, memoizedAddresses[memoizedNodesSize - 1])) {
+        return node + 1;
+      }
+      memoizedNodesSize--;
     }
+    return treeSize;
+  }
+
+  private boolean isMemoized(int node, int ruleAddress) {
+    int ruleIndex = tree.getStartIndex(node);
+    if (memoizationPolicy == MemoizationPolicy.LAST_MATCH) {
+      return memos[memoSlot(ruleIndex)] == node;
+    }
+    return memoTable.get(ruleAddress, ruleIndex) == node;
   }
 
   public void createLeafNode(Matcher matcher, int offset) {
-    ParseNode node = new ParseNode(index, index + offset, matcher);
-    stack.subNodes().add(node);
+    int node = tree.addNode(index, index + offset, matcher);
+    stack.addNode(node);
     index += offset;
   }
 
@@ -282,6 +568,14 @@ public class Machine implements CharSequence {
     return inputLength - index;
   }
 
+  /**
+   * Allows to scan characters of input without calls of {@link #charAt(int)}:
+   * current character is located at {@link #getIndex()}, and end of input at {@link #getIndex()} + {@link #length()}.
+   */
+  public char[] getInput() {
+    return input;
+  }
+
   public char charAt(int offset) {
     return input[index + offset];
   }
@@ -299,4 +593,26 @@ public class Machine implements CharSequence {
     return tokens[index + offset];
   }
 
+  /**
+   * Same as {@code tokenAt(offset).getType()}, but without access to token.
+   */
+  public TokenType tokenTypeAt(int offset) {
+    return tokenTypes[index + offset];
+  }
+
+  /**
+   * Same as {@code getTokenTypeIds().of(tokenAt(offset).getType())} for {@link CompiledGrammar} being executed, but without access to token.
+   * Available only when grammar uses identifiers of types, i.e. contains instructions, which match tokens by types.
+   */
+  public int tokenTypeIdAt(int offset) {
+    return tokenTypeIds[index + offset];
+  }
+
+  /**
+   * Same as {@code tokenAt(offset).getValue()}, but without access to token.
+   */
+  public String tokenValueAt(int offset) {
+    return tokenValues[index + offset];
+  }
+
 }
@@ -0,0 +1,160 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.base.Preconditions;
+import com.sonar.sslr.api.TokenType;
+import org.sonar.sslr.internal.vm.lexerful.TokenTypeIds;
+import org.sonar.sslr.parser.MemoizationPolicy;
+
+import java.util.Arrays;
+
+/**
+ * Holds data structures of {@link Machine}, which can be reused between parses in order to avoid allocations:
+ * stack, table of memoized nodes, table of calls and identifiers of types of tokens.
+ * Also defines {@link MemoizationPolicy} to be used by parsing machine.
+ *
+ * <p>Instances of this class are not thread-safe and must be confined to a single thread,
+ * whereas {@link CompiledGrammar} can be shared between threads.</p>
+ *
+ * @see Machine#parse(char[], CompiledGrammar, MachineContext)
+ * @see Machine#parse(java.util.List, CompiledGrammar, MachineContext)
+ */
+public class MachineContext {
+
+  private final MemoizationPolicy memoizationPolicy;
+  private final int memoWindow;
+  private final MachineStack stack = new MachineStack();
+
+  /**
+   * Used only with {@link MemoizationPolicy#LAST_MATCH} as a ring buffer, length of which is bounded by {@link #memoWindow}.
+   */
+  private int[] memos = new int[0];
+
+  /**
+   * Used only with {@link MemoizationPolicy#MATCHES} and {@link MemoizationPolicy#MATCHES_AND_MISMATCHES}.
+   */
+  private final MemoTable memoTable;
+
+  private int[] calls = new int[0];
+
+  /**
+   * Identifiers of types of input tokens for grammar being executed, computed on each parse,
+   * because the same list of tokens can be parsed by different grammars.
+   */
+  private int[] tokenTypeIds = new int[0];
+
+  private boolean inUse;
+
+  public MachineContext() {
+    this(MemoizationPolicy.LAST_MATCH);
+  }
+
+  public MachineContext(MemoizationPolicy memoizationPolicy) {
+    this(memoizationPolicy, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param memoWindow number of positions in input behind the current one, for which memoized results are retained
+   */
+  public MachineContext(MemoizationPolicy memoizationPolicy, int memoWindow) {
+    Preconditions.checkArgument(memoWindow > 0, "memoWindow must be positive");
+    this.memoizationPolicy = Preconditions.checkNotNull(memoizationPolicy, "memoizationPolicy");
+    this.memoWindow = memoWindow;
+    this.memoTable = memoizationPolicy == MemoizationPolicy.MATCHES || memoizationPolicy == MemoizationPolicy.MATCHES_AND_MISMATCHES
+        ? new MemoTable()
+        : null;
+  }
+
+  /**
+   * Prepares this context for parsing of input of given length by given instructions.
+   *
+   * @throws IllegalStateException if this context is already in use
+   */
+  void acquire(int inputLength, int instructionsLength) {
+    if (inUse) {
+      throw new IllegalStateException("Machine context can't be used by several parses at the same time");
+    }
+    inUse = true;
+    if (memoizationPolicy == MemoizationPolicy.LAST_MATCH) {
+      int memosLength = memosLength(inputLength);
+      if (memos.length < memosLength) {
+        memos = new int[memosLength];
+      }
+      Arrays.fill(memos, 0, memosLength, -1);
+    } else if (memoTable != null) {
+      memoTable.clear();
+    }
+    if (calls.length < instructionsLength) {
+      calls = new int[instructionsLength];
+    }
+    Arrays.fill(calls, 0, instructionsLength, -1);
+  }
+
+  /**
+   * Removes references on matchers, so that they can be garbage collected.
+   */
+  void release() {
+    stack.clear();
+    inUse = false;
+  }
+
+  int memosLength(int inputLength) {
+    return Math.min(inputLength + 1, memoWindow);
+  }
+
+  public MemoizationPolicy memoizationPolicy() {
+    return memoizationPolicy;
+  }
+
+  public int memoWindow() {
+    return memoWindow;
+  }
+
+  MachineStack stack() {
+    return stack;
+  }
+
+  int[] memos() {
+    return memos;
+  }
+
+  MemoTable memoTable() {
+    return memoTable;
+  }
+
+  int[] calls() {
+    return calls;
+  }
+
+  /**
+   * @return identifiers of first {@code length} of given types, length of which can be greater than given one
+   */
+  int[] tokenTypeIds(TokenType[] types, int length, TokenTypeIds ids) {
+    if (tokenTypeIds.length < length) {
+      tokenTypeIds = new int[length];
+    }
+    for (int i = 0; i < length; i++) {
+      tokenTypeIds[i] = ids.of(types[i]);
+    }
+    return tokenTypeIds;
+  }
+
+}
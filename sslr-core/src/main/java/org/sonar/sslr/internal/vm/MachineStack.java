@@ -19,112 +19,229 @@
  */
 package org.sonar.sslr.internal.vm;
 
-import com.google.common.collect.Lists;
 import org.sonar.sslr.internal.matchers.Matcher;
-import org.sonar.sslr.internal.matchers.ParseNode;
 
 import javax.annotation.Nullable;
 
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
 
+/**
+ * Stack of {@link Machine}, which is stored in parallel arrays, one per attribute of a frame,
+ * so that operations on it don't require allocations.
+ * Identifiers of nodes of all frames are stored in a single buffer - nodes of a frame are located after nodes of a previous frame,
+ * so that removal of a frame with preservation of its nodes is just a decrement of number of frames.
+ *
+ * <p>Methods without parameter (like {@link #index()}) give access to a frame located on top of stack.</p>
+ */
 public class MachineStack {
 
-  private final MachineStack parent;
-  private MachineStack child;
+  private static final int INITIAL_CAPACITY = 64;
+
+  /**
+   * Index of frame on top of stack.
+   */
+  private int top;
 
-  private final List<ParseNode> subNodes;
-  private int address;
-  private int index;
-  private boolean ignoreErrors;
-  private Matcher matcher;
+  private int[] addresses = new int[INITIAL_CAPACITY];
+  private int[] indices = new int[INITIAL_CAPACITY];
+  private boolean[] ignoreErrors = new boolean[INITIAL_CAPACITY];
+  private Matcher[] matchers = new Matcher[INITIAL_CAPACITY];
+  private int[] leftRecursions = new int[INITIAL_CAPACITY];
+  private int[] calledAddresses = new int[INITIAL_CAPACITY];
 
-  private int leftRecursion;
-  private int calledAddress;
+  /**
+   * Index in {@link #nodes} of first node of frame.
+   */
+  private int[] nodesStarts = new int[INITIAL_CAPACITY];
+
+  /**
+   * Size of parse tree at the moment of creation of frame.
+   */
+  private int[] treeSizes = new int[INITIAL_CAPACITY];
+
+  private int[] nodes = new int[INITIAL_CAPACITY];
+  private int nodesSize;
 
   public MachineStack() {
-    this.parent = null;
-    this.subNodes = Collections.emptyList();
-    this.index = -1;
+    reset();
   }
 
-  private MachineStack(MachineStack parent) {
-    this.parent = parent;
-    this.subNodes = Lists.newArrayList();
+  /**
+   * Leaves only bottom frame, which denotes an empty stack.
+   */
+  void reset() {
+    top = 0;
+    indices[0] = -1;
+    addresses[0] = 0;
+    ignoreErrors[0] = false;
+    matchers[0] = null;
+    nodesStarts[0] = 0;
+    treeSizes[0] = 0;
+    nodesSize = 0;
   }
 
-  public MachineStack parent() {
-    return parent;
+  /**
+   * Removes references on matchers, so that they can be garbage collected.
+   */
+  void clear() {
+    Arrays.fill(matchers, null);
+    reset();
   }
 
-  public MachineStack getOrCreateChild() {
-    if (child == null) {
-      child = new MachineStack(this);
+  public void push(int address, int index, boolean ignoreErrors, int treeSize) {
+    if (top + 1 == addresses.length) {
+      grow();
     }
-    return child;
+    top++;
+    this.addresses[top] = address;
+    this.indices[top] = index;
+    this.ignoreErrors[top] = ignoreErrors;
+    this.matchers[top] = null;
+    this.nodesStarts[top] = nodesSize;
+    this.treeSizes[top] = treeSize;
+  }
+
+  private void grow() {
+    int capacity = addresses.length * 2;
+    addresses = Arrays.copyOf(addresses, capacity);
+    indices = Arrays.copyOf(indices, capacity);
+    ignoreErrors = Arrays.copyOf(ignoreErrors, capacity);
+    matchers = Arrays.copyOf(matchers, capacity);
+    leftRecursions = Arrays.copyOf(leftRecursions, capacity);
+    calledAddresses = Arrays.copyOf(calledAddresses, capacity);
+    nodesStarts = Arrays.copyOf(nodesStarts, capacity);
+    treeSizes = Arrays.copyOf(treeSizes, capacity);
   }
 
-  public boolean isReturn() {
-    return matcher != null;
+  /**
+   * Removes frame from top of stack together with its nodes.
+   */
+  public void pop() {
+    nodesSize = nodesStarts[top];
+    top--;
   }
 
   /**
-   * @return true, if this object denotes an empty stack
+   * Removes frame from top of stack, nodes of which become nodes of previous frame.
    */
-  public boolean isEmpty() {
-    return index == -1;
+  public void commit() {
+    top--;
   }
 
-  public int address() {
-    return address;
+  /**
+   * Updates frame on top of stack as if it was removed by {@link #commit()} and then pushed again at a given index,
+   * so that nodes of frame become nodes of previous frame.
+   */
+  public void partialCommit(int index, int treeSize) {
+    indices[top] = index;
+    treeSizes[top] = treeSize;
+    nodesStarts[top] = nodesSize;
   }
 
-  public void setAddress(int address) {
-    this.address = address;
+  /**
+   * @return number of frames, including bottom frame
+   */
+  public int size() {
+    return top + 1;
   }
 
-  public int index() {
-    return index;
+  /**
+   * Indices of frames never decrease from bottom to top, so index of the lowest backtrack frame is a position in input,
+   * before which parsing machine will never return.
+   *
+   * @return index of the lowest backtrack frame, or -1 if there is no such frame
+   */
+  public int committedIndex() {
+    for (int i = 1; i <= top; i++) {
+      if (matchers[i] == null) {
+        return indices[i];
+      }
+    }
+    return -1;
   }
 
-  public void setIndex(int index) {
-    this.index = index;
+  public boolean isReturn() {
+    return matchers[top] != null;
   }
 
-  public boolean isIgnoreErrors() {
-    return ignoreErrors;
+  /**
+   * @return true, if this object denotes an empty stack
+   */
+  public boolean isEmpty() {
+    return indices[top] == -1;
+  }
+
+  public int address() {
+    return addresses[top];
   }
 
-  public void setIgnoreErrors(boolean ignoreErrors) {
-    this.ignoreErrors = ignoreErrors;
+  public int index() {
+    return indices[top];
+  }
+
+  public boolean isIgnoreErrors() {
+    return ignoreErrors[top];
   }
 
   public Matcher matcher() {
-    return matcher;
+    return matchers[top];
   }
 
   public void setMatcher(@Nullable Matcher matcher) {
-    this.matcher = matcher;
+    this.matchers[top] = matcher;
   }
 
   public int leftRecursion() {
-    return leftRecursion;
+    return leftRecursions[top];
   }
 
   public void setLeftRecursion(int leftRecursion) {
-    this.leftRecursion = leftRecursion;
+    this.leftRecursions[top] = leftRecursion;
   }
 
   public int calledAddress() {
-    return calledAddress;
+    return calledAddresses[top];
   }
 
   public void setCalledAddress(int calledAddress) {
-    this.calledAddress = calledAddress;
+    this.calledAddresses[top] = calledAddress;
+  }
+
+  public int treeSize() {
+    return treeSizes[top];
+  }
+
+  public void addNode(int node) {
+    if (nodesSize == nodes.length) {
+      nodes = Arrays.copyOf(nodes, nodesSize * 2);
+    }
+    nodes[nodesSize] = node;
+    nodesSize++;
+  }
+
+  /**
+   * Replaces all nodes of frame on top of stack by a given node, which is attributed to previous frame.
+   */
+  public void reduce(int node) {
+    nodesSize = nodesStarts[top];
+    addNode(node);
+    nodesStarts[top] = nodesSize;
+  }
+
+  /**
+   * @return buffer, which contains identifiers of nodes of frame on top of stack
+   * between {@link #subNodesStart()} (inclusive) and {@link #subNodesEnd()} (exclusive)
+   */
+  public int[] nodes() {
+    return nodes;
+  }
+
+  public int subNodesStart() {
+    return nodesStarts[top];
   }
 
-  public List<ParseNode> subNodes() {
-    return subNodes;
+  public int subNodesEnd() {
+    return nodesSize;
   }
 
 }
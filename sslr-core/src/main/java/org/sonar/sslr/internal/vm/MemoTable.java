@@ -0,0 +1,155 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import java.util.Arrays;
+
+/**
+ * Table of results of rules keyed by address of rule and index in input,
+ * which is implemented as a hash table with open addressing and linear probing over parallel arrays.
+ */
+public class MemoTable {
+
+  /**
+   * Value returned when table doesn't contain a result.
+   */
+  public static final int ABSENT = -1;
+
+  /**
+   * Value, which denotes mismatch of rule.
+   */
+  public static final int MISMATCH = -2;
+
+  /**
+   * Value, which denotes mismatch of rule, during which errors were not reported.
+   */
+  public static final int MISMATCH_IGNORING_ERRORS = -3;
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /**
+   * Addresses of rules, -1 for empty slots.
+   */
+  private int[] addresses;
+  private int[] indices;
+  private int[] values;
+  private int size;
+
+  public MemoTable() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  private void allocate(int capacity) {
+    addresses = new int[capacity];
+    Arrays.fill(addresses, -1);
+    indices = new int[capacity];
+    values = new int[capacity];
+    size = 0;
+  }
+
+  /**
+   * @return identifier of node, {@link #MISMATCH}, {@link #MISMATCH_IGNORING_ERRORS} or {@link #ABSENT}
+   */
+  public int get(int address, int index) {
+    int mask = addresses.length - 1;
+    int slot = hash(address, index) & mask;
+    while (addresses[slot] != -1) {
+      if (addresses[slot] == address && indices[slot] == index) {
+        return values[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return ABSENT;
+  }
+
+  public void put(int address, int index, int value) {
+    // load factor is kept below 0.5
+    if (size * 2 >= addresses.length) {
+      rehash(addresses.length * 2);
+    }
+    int mask = addresses.length - 1;
+    int slot = hash(address, index) & mask;
+    while (addresses[slot] != -1) {
+      if (addresses[slot] == address && indices[slot] == index) {
+        values[slot] = value;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    addresses[slot] = address;
+    indices[slot] = index;
+    values[slot] = value;
+    size++;
+  }
+
+  private void rehash(int capacity) {
+    int[] oldAddresses = addresses;
+    int[] oldIndices = indices;
+    int[] oldValues = values;
+    allocate(capacity);
+    for (int i = 0; i < oldAddresses.length; i++) {
+      if (oldAddresses[i] != -1) {
+        put(oldAddresses[i], oldIndices[i], oldValues[i]);
+      }
+    }
+  }
+
+  /**
+   * Removes all results for indices less than given.
+   */
+  public void removeBefore(int index) {
+    int[] oldAddresses = addresses;
+    int[] oldIndices = indices;
+    int[] oldValues = values;
+    int retained = 0;
+    for (int i = 0; i < oldAddresses.length; i++) {
+      if (oldAddresses[i] != -1 && oldIndices[i] >= index) {
+        retained++;
+      }
+    }
+    int capacity = INITIAL_CAPACITY;
+    while (retained * 2 >= capacity) {
+      capacity *= 2;
+    }
+    allocate(capacity);
+    for (int i = 0; i < oldAddresses.length; i++) {
+      if (oldAddresses[i] != -1 && oldIndices[i] >= index) {
+        put(oldAddresses[i], oldIndices[i], oldValues[i]);
+      }
+    }
+  }
+
+  private static int hash(int address, int index) {
+    int h = address * 0x9E3779B9 + index;
+    return h ^ (h >>> 16);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void clear() {
+    if (size > 0) {
+      Arrays.fill(addresses, -1);
+      size = 0;
+    }
+  }
+
+}
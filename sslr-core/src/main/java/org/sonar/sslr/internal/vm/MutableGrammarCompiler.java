@@ -23,20 +23,60 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.sonar.sslr.grammar.GrammarRuleKey;
 
+import javax.annotation.Nullable;
+
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 
 public class MutableGrammarCompiler extends CompilationHandler {
 
   public static CompiledGrammar compile(CompilableGrammarRule rule) {
-    return new MutableGrammarCompiler().doCompile(rule);
+    return compile(rule, EnumSet.allOf(Optimization.class));
+  }
+
+  /**
+   * @param optimizations optimizations to apply
+   */
+  public static CompiledGrammar compile(CompilableGrammarRule rule, Set<Optimization> optimizations) {
+    boolean firstSetDispatch = optimizations.contains(Optimization.FIRST_SET_DISPATCH);
+    MutableGrammarCompiler compiler = new MutableGrammarCompiler(firstSetDispatch ? new FirstSetCalculator() : null, optimizations);
+    CompiledGrammar grammar = compiler.doCompile(rule);
+    if (firstSetDispatch && containsDispatch(grammar.getInstructions())) {
+      Set<Optimization> errorLocatingOptimizations = EnumSet.noneOf(Optimization.class);
+      errorLocatingOptimizations.addAll(optimizations);
+      errorLocatingOptimizations.remove(Optimization.FIRST_SET_DISPATCH);
+      CompiledGrammar errorLocatingGrammar = compile(rule, errorLocatingOptimizations);
+      grammar = new CompiledGrammar(grammar.getInstructions(), compiler.matchers, rule.getRuleKey(), grammar.getRootRuleOffset(), errorLocatingGrammar,
+          grammar.getTokenTypeIds());
+    }
+    return grammar;
   }
 
+  private static boolean containsDispatch(Instruction[] instructions) {
+    for (Instruction instruction : instructions) {
+      if (instruction instanceof Instruction.CharDispatchInstruction || instruction instanceof Instruction.TokenDispatchInstruction) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private final FirstSetCalculator firstSetCalculator;
+
   private final Queue<CompilableGrammarRule> compilationQueue = Lists.newLinkedList();
   private final Map<GrammarRuleKey, CompilableGrammarRule> matchers = Maps.newHashMap();
   private final Map<GrammarRuleKey, Integer> offsets = Maps.newHashMap();
 
+  private final Set<Optimization> optimizations;
+
+  private MutableGrammarCompiler(@Nullable FirstSetCalculator firstSetCalculator, Set<Optimization> optimizations) {
+    this.firstSetCalculator = firstSetCalculator;
+    this.optimizations = optimizations;
+  }
+
   private CompiledGrammar doCompile(CompilableGrammarRule start) {
     List<Instruction> instructions = Lists.newArrayList();
 
@@ -67,7 +107,19 @@ public class MutableGrammarCompiler extends CompilationHandler {
       }
     }
 
-    return new CompiledGrammar(result, matchers, start.getRuleKey(), offsets.get(start.getRuleKey()));
+    // Optimize
+
+    List<GrammarRuleKey> ruleKeys = Lists.newArrayList(offsets.keySet());
+    int[] entryPoints = new int[ruleKeys.size()];
+    for (int i = 0; i < entryPoints.length; i++) {
+      entryPoints[i] = offsets.get(ruleKeys.get(i));
+    }
+    result = InstructionOptimizer.optimize(result, entryPoints, optimizations);
+    for (int i = 0; i < entryPoints.length; i++) {
+      offsets.put(ruleKeys.get(i), entryPoints[i]);
+    }
+
+    return new CompiledGrammar(result, matchers, start.getRuleKey(), offsets.get(start.getRuleKey()), null, tokenTypeIds());
   }
 
   @Override
@@ -84,4 +136,14 @@ public class MutableGrammarCompiler extends CompilationHandler {
     }
   }
 
+  @Override
+  public FirstSet firstSet(ParsingExpression expression) {
+    return firstSetCalculator == null ? FirstSet.ANY : firstSetCalculator.compute(expression);
+  }
+
+  @Override
+  public boolean isEnabled(Optimization optimization) {
+    return optimizations.contains(optimization);
+  }
+
 }
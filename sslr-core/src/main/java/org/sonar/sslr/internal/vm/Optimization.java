@@ -0,0 +1,54 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+/**
+ * Optimizations applied by {@link MutableGrammarCompiler}, each of which can be enabled separately.
+ */
+public enum Optimization {
+
+  /**
+   * {@link FirstOfExpression} is compiled into a dispatch on first terminal.
+   * Changes order, in which alternatives are tried, thus grammar compiled without this optimization is used to locate errors.
+   */
+  FIRST_SET_DISPATCH,
+
+  /**
+   * Consecutive {@link StringExpression}s in {@link FirstOfExpression} are compiled into single {@link StringTrieExpression}.
+   */
+  STRING_TRIE,
+
+  /**
+   * Loops use {@link Instruction.PartialCommitVerifyInstruction} instead of pop and push of entry on each iteration.
+   */
+  PARTIAL_COMMIT,
+
+  /**
+   * Choice between alternatives is preceded by test of first character or token of alternative,
+   * so that alternative can be skipped without push of entry on stack.
+   */
+  TEST_INSTRUCTIONS,
+
+  /**
+   * Targets of jumps are replaced by final targets of chains of jumps, jumps to next instruction and unreachable instructions are removed.
+   */
+  JUMP_THREADING
+
+}
@@ -20,19 +20,41 @@
 package org.sonar.sslr.internal.vm;
 
 import org.sonar.sslr.grammar.GrammarException;
+import org.sonar.sslr.internal.regexp.Dfa;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class PatternExpression extends NativeExpression implements org.sonar.sslr.internal.matchers.Matcher {
 
-  private final Matcher matcher;
+  private final Pattern pattern;
+
+  /**
+   * Automaton to match regular expression without backtracking, or null if regular expression can't be represented by automaton
+   * (for example uses backreferences or lookaround).
+   */
+  private final Dfa dfa;
+
+  /**
+   * {@link Matcher} is not thread-safe, whereas compiled grammar can be shared between threads.
+   */
+  private final ThreadLocal<Matcher> matchers = new ThreadLocal<Matcher>() {
+    @Override
+    protected Matcher initialValue() {
+      return pattern.matcher("");
+    }
+  };
 
   /**
    * @throws java.util.regex.PatternSyntaxException if the expression's syntax is invalid
    */
   public PatternExpression(String regex) {
-    matcher = Pattern.compile(regex).matcher("");
+    pattern = Pattern.compile(regex);
+    dfa = Dfa.compile(regex);
+  }
+
+  public String getRegex() {
+    return pattern.pattern();
   }
 
   /**
@@ -40,26 +62,38 @@ public class PatternExpression extends NativeExpression implements org.sonar.ssl
    */
   @Override
   public void execute(Machine machine) {
+    int length = dfa == null ? lookingAt(machine) : dfaLookingAt(machine);
+    if (length >= 0) {
+      // TODO what if end == 0 ???
+      machine.createLeafNode(this, length);
+      machine.jump(1);
+    } else {
+      machine.backtrack();
+    }
+  }
+
+  private int dfaLookingAt(Machine machine) {
+    int index = machine.getIndex();
+    int end = dfa.match(machine.getInput(), index, index + machine.length());
+    return end == -1 ? -1 : end - index;
+  }
+
+  private int lookingAt(Machine machine) {
+    Matcher matcher = matchers.get();
     matcher.reset(machine);
     boolean result;
     try {
       result = matcher.lookingAt();
     } catch (StackOverflowError e) {
-      throw new GrammarException(e, "The regular expression '" + matcher.pattern().pattern() + "' has led to a stack overflow error."
+      throw new GrammarException(e, "The regular expression '" + pattern.pattern() + "' has led to a stack overflow error."
           + " This error is certainly due to an inefficient use of alternations. See http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=5050507");
     }
-    if (result) {
-      // TODO what if end == 0 ???
-      machine.createLeafNode(this, matcher.end());
-      machine.jump(1);
-    } else {
-      machine.backtrack();
-    }
+    return result ? matcher.end() : -1;
   }
 
   @Override
   public String toString() {
-    return "Pattern " + matcher.pattern().pattern();
+    return "Pattern " + pattern.pattern();
   }
 
 }
@@ -0,0 +1,84 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import org.sonar.sslr.internal.matchers.Matcher;
+import org.sonar.sslr.internal.matchers.ParseTree;
+
+import java.util.Arrays;
+
+/**
+ * Nodes of a previous parse tree, which can be reused for a new input, obtained from the previous one by replacement of some region.
+ * Those are nodes, which start after the replaced region, because result of a rule depends only on input starting from position of this rule.
+ */
+class ReusableNodes {
+
+  private final ParseTree tree;
+  private final int from;
+  private final int shift;
+
+  /**
+   * Last created memoizable node for each position in previous input, starting from {@link #from}, -1 if there is no such node.
+   * Same as memoization with {@link org.sonar.sslr.parser.MemoizationPolicy#LAST_MATCH}, but computed from parse tree.
+   */
+  private final int[] nodes;
+
+  /**
+   * @param from index in the previous input, starting from which nodes can be reused, i.e. end of replaced region
+   * @param shift difference between positions of nodes in the new input and in the previous input
+   */
+  public ReusableNodes(ParseTree tree, int from, int shift) {
+    this.tree = tree;
+    this.from = from;
+    this.shift = shift;
+    // only nodes within root are considered
+    int end = tree.getEndIndex(tree.getRoot());
+    nodes = new int[Math.max(0, end - from + 1)];
+    Arrays.fill(nodes, -1);
+    for (int node = 0; node < tree.size(); node++) {
+      int start = tree.getStartIndex(node);
+      if (start >= from && start <= end && Machine.shouldMemoize(tree.getMatcher(node))) {
+        nodes[start - from] = node;
+      }
+    }
+  }
+
+  /**
+   * @return node of the previous parse tree, which is a match of given matcher at given index of the new input, or -1 if there is no such node
+   */
+  public int get(Matcher matcher, int index) {
+    int i = index - shift - from;
+    if (i < 0 || i >= nodes.length) {
+      return -1;
+    }
+    int node = nodes[i];
+    return node != -1 && tree.getMatcher(node) == matcher ? node : -1;
+  }
+
+  /**
+   * Copies given node of the previous parse tree into a given tree with shift of positions.
+   *
+   * @return identifier of copy
+   */
+  public int copyTo(ParseTree target, int node) {
+    return target.copy(tree, node, shift);
+  }
+
+}
@@ -29,6 +29,10 @@ public class StringExpression extends NativeExpression implements Matcher {
     this.string = string;
   }
 
+  public String getString() {
+    return string;
+  }
+
   public void execute(Machine machine) {
     if (machine.length() < string.length()) {
       machine.backtrack();
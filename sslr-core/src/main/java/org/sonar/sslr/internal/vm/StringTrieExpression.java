@@ -0,0 +1,130 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.base.Joiner;
+
+import java.util.Arrays;
+
+/**
+ * Ordered choice between {@link StringExpression}s, which is matched in one pass over input by trie of strings:
+ * among all strings, which are prefixes of input, wins the one, which comes first in order of alternatives,
+ * and leaf node is created for it exactly as if it was matched by its {@link StringExpression}.
+ */
+public class StringTrieExpression extends NativeExpression {
+
+  private final StringExpression[] strings;
+  private final Node root;
+
+  public StringTrieExpression(StringExpression... strings) {
+    this.strings = strings;
+    this.root = new Node();
+    for (int i = 0; i < strings.length; i++) {
+      root.add(strings[i].getString(), 0, i);
+    }
+  }
+
+  public StringExpression[] getStrings() {
+    return strings;
+  }
+
+  @Override
+  public void execute(Machine machine) {
+    Node node = root;
+    int result = node.index;
+    int length = 0;
+    int i = 0;
+    while (node.minIndex < result && i < machine.length()) {
+      node = node.child(machine.charAt(i));
+      if (node == null) {
+        break;
+      }
+      i++;
+      if (node.index < result) {
+        result = node.index;
+        length = i;
+      }
+    }
+    if (result == Integer.MAX_VALUE) {
+      machine.backtrack();
+    } else {
+      machine.createLeafNode(strings[result], length);
+      machine.jump(1);
+    }
+  }
+
+  private static final class Node {
+    private char[] chars = new char[0];
+    private Node[] children = new Node[0];
+
+    /**
+     * Index of the first alternative, which ends in this node.
+     */
+    private int index = Integer.MAX_VALUE;
+
+    /**
+     * Index of the first alternative, which ends in this node or in one of its descendants.
+     */
+    private int minIndex = Integer.MAX_VALUE;
+
+    private Node child(char c) {
+      int i = Arrays.binarySearch(chars, c);
+      return i < 0 ? null : children[i];
+    }
+
+    private void add(String string, int offset, int alternative) {
+      minIndex = Math.min(minIndex, alternative);
+      if (offset == string.length()) {
+        index = Math.min(index, alternative);
+        return;
+      }
+      char c = string.charAt(offset);
+      int i = Arrays.binarySearch(chars, c);
+      if (i < 0) {
+        i = -i - 1;
+        chars = insert(chars, i, c);
+        children = insert(children, i, new Node());
+      }
+      children[i].add(string, offset + 1, alternative);
+    }
+
+    private static char[] insert(char[] array, int index, char value) {
+      char[] result = new char[array.length + 1];
+      System.arraycopy(array, 0, result, 0, index);
+      result[index] = value;
+      System.arraycopy(array, index, result, index + 1, array.length - index);
+      return result;
+    }
+
+    private static Node[] insert(Node[] array, int index, Node value) {
+      Node[] result = new Node[array.length + 1];
+      System.arraycopy(array, 0, result, 0, index);
+      result[index] = value;
+      System.arraycopy(array, index, result, index + 1, array.length - index);
+      return result;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "StringTrie [" + Joiner.on(", ").join(strings) + "]";
+  }
+
+}
@@ -27,6 +27,10 @@ public class ZeroOrMoreExpression implements ParsingExpression {
     this.subExpression = subExpression;
   }
 
+  public ParsingExpression getSubExpression() {
+    return subExpression;
+  }
+
   /**
    * Compiles this expression into a sequence of instructions:
    * <pre>
@@ -37,7 +41,7 @@ public class ZeroOrMoreExpression implements ParsingExpression {
    * </pre>
    */
   public Instruction[] compile(CompilationHandler compiler) {
-    // TODO maybe can be optimized by introduction of new instruction PartialCommit
+    // loop is optimized by InstructionOptimizer using PartialCommitVerify
     Instruction[] sub = compiler.compile(subExpression);
     Instruction[] result = new Instruction[sub.length + 2];
     result[0] = Instruction.choice(sub.length + 2);
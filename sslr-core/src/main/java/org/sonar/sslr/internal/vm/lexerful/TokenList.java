@@ -0,0 +1,109 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm.lexerful;
+
+import com.google.common.base.Preconditions;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * List of tokens backed by an array, which is produced by {@link com.sonar.sslr.impl.Lexer}
+ * and consumed by {@link org.sonar.sslr.internal.vm.Machine} without copying.
+ * Unmodifiable through the {@link java.util.List} interface.
+ *
+ * <p>Besides tokens themselves, holds columns with their types and values,
+ * so that machine can match tokens without dereferencing of each of them.</p>
+ */
+public final class TokenList extends AbstractList<Token> implements RandomAccess {
+
+  private Token[] elements;
+  private TokenType[] types;
+  private String[] values;
+  private int size;
+
+  public TokenList() {
+    this(16);
+  }
+
+  public TokenList(int initialCapacity) {
+    elements = new Token[initialCapacity];
+    types = new TokenType[initialCapacity];
+    values = new String[initialCapacity];
+  }
+
+  public static TokenList copyOf(List<Token> tokens) {
+    TokenList result = new TokenList(tokens.size());
+    for (Token token : tokens) {
+      result.append(token);
+    }
+    return result;
+  }
+
+  public void append(Token token) {
+    if (size == elements.length) {
+      int newCapacity = Math.max(16, size + (size >> 1));
+      elements = Arrays.copyOf(elements, newCapacity);
+      types = Arrays.copyOf(types, newCapacity);
+      values = Arrays.copyOf(values, newCapacity);
+    }
+    elements[size] = token;
+    types[size] = token.getType();
+    values[size] = token.getValue();
+    size++;
+  }
+
+  @Override
+  public Token get(int index) {
+    Preconditions.checkElementIndex(index, size);
+    return elements[index];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return backing array, length of which can be greater than the size of this list
+   */
+  public Token[] elements() {
+    return elements;
+  }
+
+  /**
+   * @return types of tokens, length of which can be greater than the size of this list
+   */
+  public TokenType[] types() {
+    return types;
+  }
+
+  /**
+   * @return values of tokens, length of which can be greater than the size of this list
+   */
+  public String[] values() {
+    return values;
+  }
+
+}
@@ -21,10 +21,11 @@ package org.sonar.sslr.internal.vm.lexerful;
 
 import com.sonar.sslr.api.TokenType;
 import org.sonar.sslr.internal.matchers.Matcher;
-import org.sonar.sslr.internal.vm.Machine;
-import org.sonar.sslr.internal.vm.NativeExpression;
+import org.sonar.sslr.internal.vm.CompilationHandler;
+import org.sonar.sslr.internal.vm.Instruction;
+import org.sonar.sslr.internal.vm.ParsingExpression;
 
-public class TokenTypeExpression extends NativeExpression implements Matcher {
+public class TokenTypeExpression implements Matcher, ParsingExpression {
 
   private final TokenType type;
 
@@ -32,14 +33,16 @@ public class TokenTypeExpression extends NativeExpression implements Matcher {
     this.type = type;
   }
 
-  @Override
-  public void execute(Machine machine) {
-    if (machine.length() == 0 || type != machine.tokenAt(0).getType()) {
-      machine.backtrack();
-      return;
-    }
-    machine.createLeafNode(this, 1);
-    machine.jump(1);
+  public TokenType getType() {
+    return type;
+  }
+
+  /**
+   * Compiles this expression into an instruction, which compares identifier of type of token
+   * with the one assigned to {@link #getType() type} during compilation of grammar.
+   */
+  public Instruction[] compile(CompilationHandler compiler) {
+    return new Instruction[] {Instruction.tokenType(this, type, compiler.tokenTypeIds().register(type))};
   }
 
   @Override
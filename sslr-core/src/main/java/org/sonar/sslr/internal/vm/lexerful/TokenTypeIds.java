@@ -0,0 +1,69 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm.lexerful;
+
+import com.google.common.collect.Maps;
+import com.sonar.sslr.api.TokenType;
+
+import java.util.Map;
+
+/**
+ * Dense integer identifiers of token types, which are assigned during compilation of a grammar to types used by its instructions,
+ * so that machine can match tokens by types and select alternatives by type of a token with comparison of integers
+ * and lookups in arrays instead of comparison of objects and lookups in hash tables.
+ * All types, which are not used by grammar, share the same identifier equal to {@link #size()}.
+ *
+ * <p>Identifiers are assigned only during compilation, after which this class is never modified,
+ * so that it can be shared by threads, which use compiled grammar.</p>
+ */
+public final class TokenTypeIds {
+
+  private final Map<TokenType, Integer> ids = Maps.newIdentityHashMap();
+
+  /**
+   * Assigns identifier to a given type, if it was not assigned yet.
+   *
+   * @return identifier of given type
+   */
+  public int register(TokenType type) {
+    Integer id = ids.get(type);
+    if (id == null) {
+      id = ids.size();
+      ids.put(type, id);
+    }
+    return id;
+  }
+
+  /**
+   * @return identifier of given type, or {@link #size()} if type was not registered
+   */
+  public int of(TokenType type) {
+    Integer id = ids.get(type);
+    return id == null ? ids.size() : id;
+  }
+
+  /**
+   * @return number of registered types
+   */
+  public int size() {
+    return ids.size();
+  }
+
+}
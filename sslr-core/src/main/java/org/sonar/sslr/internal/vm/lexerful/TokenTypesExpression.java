@@ -22,12 +22,13 @@ package org.sonar.sslr.internal.vm.lexerful;
 import com.google.common.collect.ImmutableSet;
 import com.sonar.sslr.api.TokenType;
 import org.sonar.sslr.internal.matchers.Matcher;
-import org.sonar.sslr.internal.vm.Machine;
-import org.sonar.sslr.internal.vm.NativeExpression;
+import org.sonar.sslr.internal.vm.CompilationHandler;
+import org.sonar.sslr.internal.vm.Instruction;
+import org.sonar.sslr.internal.vm.ParsingExpression;
 
 import java.util.Set;
 
-public class TokenTypesExpression extends NativeExpression implements Matcher {
+public class TokenTypesExpression implements Matcher, ParsingExpression {
 
   private final Set<TokenType> types;
 
@@ -35,14 +36,16 @@ public class TokenTypesExpression extends NativeExpression implements Matcher {
     this.types = ImmutableSet.copyOf(types);
   }
 
-  @Override
-  public void execute(Machine machine) {
-    if (machine.length() == 0 || !types.contains(machine.tokenAt(0).getType())) {
-      machine.backtrack();
-      return;
-    }
-    machine.createLeafNode(this, 1);
-    machine.jump(1);
+  public Set<TokenType> getTypes() {
+    return types;
+  }
+
+  /**
+   * Compiles this expression into an instruction, which looks up identifier of type of token
+   * in bit set over identifiers assigned to {@link #getTypes() types} during compilation of grammar.
+   */
+  public Instruction[] compile(CompilationHandler compiler) {
+    return new Instruction[] {Instruction.tokenTypes(this, types, compiler.tokenTypeIds())};
   }
 
   @Override
@@ -19,13 +19,13 @@
  */
 package org.sonar.sslr.internal.vm.lexerful;
 
-import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.TokenType;
 import org.sonar.sslr.internal.matchers.Matcher;
-import org.sonar.sslr.internal.vm.Machine;
-import org.sonar.sslr.internal.vm.NativeExpression;
+import org.sonar.sslr.internal.vm.CompilationHandler;
+import org.sonar.sslr.internal.vm.Instruction;
+import org.sonar.sslr.internal.vm.ParsingExpression;
 
-public class TokensBridgeExpression extends NativeExpression implements Matcher {
+public class TokensBridgeExpression implements Matcher, ParsingExpression {
 
   private final TokenType from;
   private final TokenType to;
@@ -35,35 +35,12 @@ public class TokensBridgeExpression extends NativeExpression implements Matcher
     this.to = to;
   }
 
-  @Override
-  public void execute(Machine machine) {
-    int length = machine.length();
-    if (length < 2 || machine.tokenAt(0).getType() != from) {
-      machine.backtrack();
-      return;
-    }
-    int offset = 0;
-    int bridgeLevel = 1;
-    Token token;
-    do {
-      offset++;
-      if (offset >= length) {
-        machine.backtrack();
-        return;
-      }
-      token = machine.tokenAt(offset);
-      if (token.getType() == from) {
-        bridgeLevel++;
-      } else if (token.getType() == to) {
-        bridgeLevel--;
-      } else {
-        // nop
-      }
-    } while (bridgeLevel != 0);
-    for (int i = 0; i <= offset; i++) {
-      machine.createLeafNode(this, 1);
-    }
-    machine.jump(1);
+  /**
+   * Compiles this expression into an instruction, which compares identifiers of types of tokens
+   * with the ones assigned to types "from" and "to" during compilation of grammar.
+   */
+  public Instruction[] compile(CompilationHandler compiler) {
+    return new Instruction[] {Instruction.tokensBridge(this, from, to, compiler.tokenTypeIds())};
   }
 
   @Override
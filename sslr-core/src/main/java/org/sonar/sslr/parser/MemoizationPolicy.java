@@ -0,0 +1,53 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+/**
+ * Defines which results of rules are memoized by {@link ParseRunner}, i.e. remembered for a given position in input,
+ * so that rule is not applied again at this position in case of backtracking.
+ * Only rules, which allow memoization, are memoized.
+ *
+ * @since 1.21
+ */
+public enum MemoizationPolicy {
+
+  /**
+   * Nothing is memoized, which is the most efficient policy for grammars which almost never backtrack.
+   */
+  NONE,
+
+  /**
+   * Only the last match at a given position is memoized, regardless of rule.
+   * Requires memory proportional to the size of input. This is the default policy.
+   */
+  LAST_MATCH,
+
+  /**
+   * All matches are memoized per rule and position.
+   */
+  MATCHES,
+
+  /**
+   * All matches and all mismatches are memoized per rule and position (packrat parsing),
+   * which guarantees linear time of parsing at the price of memory.
+   */
+  MATCHES_AND_MISMATCHES
+
+}
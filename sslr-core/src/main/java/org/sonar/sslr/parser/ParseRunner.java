@@ -21,14 +21,27 @@ package org.sonar.sslr.parser;
 
 import com.google.common.base.Preconditions;
 import com.sonar.sslr.api.Rule;
+import org.sonar.sslr.internal.text.LineIndex;
 import org.sonar.sslr.internal.vm.CompilableGrammarRule;
 import org.sonar.sslr.internal.vm.CompiledGrammar;
+import org.sonar.sslr.internal.vm.CompiledGrammarSerializer;
 import org.sonar.sslr.internal.vm.Machine;
+import org.sonar.sslr.internal.vm.MachineContext;
 import org.sonar.sslr.internal.vm.MutableGrammarCompiler;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 /**
  * Performs parsing of a given grammar rule on a given input text.
  *
+ * <p>Instances of this class can be safely shared between threads.
+ * When created with reuse of machine context, each thread that performs parsing keeps its own data structures
+ * (stack, table of memoized nodes and table of calls), which are reused by all subsequent parses done by this thread.
+ * This avoids allocations proportional to the size of input and to the size of grammar for each parse,
+ * at the price of retaining memory proportional to the size of the biggest input parsed by each thread.</p>
+ *
  * <p>This class is not intended to be subclassed by clients.</p>
  *
  * @since 1.16
@@ -36,13 +49,148 @@ import org.sonar.sslr.internal.vm.MutableGrammarCompiler;
 public class ParseRunner {
 
   private final CompiledGrammar compiledGrammar;
+  private final MemoizationPolicy memoizationPolicy;
+  private final int memoWindow;
+  private final ThreadLocal<MachineContext> machineContexts;
 
   public ParseRunner(Rule rule) {
-    compiledGrammar = MutableGrammarCompiler.compile((CompilableGrammarRule) Preconditions.checkNotNull(rule, "rule"));
+    this(rule, false);
+  }
+
+  /**
+   * @param reuseMachineContext whether data structures of parser should be reused between parses done by the same thread
+   * @since 1.21
+   */
+  public ParseRunner(Rule rule, boolean reuseMachineContext) {
+    this(rule, reuseMachineContext, MemoizationPolicy.LAST_MATCH);
+  }
+
+  /**
+   * @param reuseMachineContext whether data structures of parser should be reused between parses done by the same thread
+   * @param memoizationPolicy defines which results of rules should be memoized
+   * @since 1.21
+   */
+  public ParseRunner(Rule rule, boolean reuseMachineContext, MemoizationPolicy memoizationPolicy) {
+    this(rule, reuseMachineContext, memoizationPolicy, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Allows to bound memory used for memoization on very large inputs:
+   * only results for positions in input, which are less than {@code memoWindow} characters behind the current position, are retained.
+   * Results of rules, to which parser can't return anymore (e.g. before the last iteration of top-level {@code zeroOrMore}),
+   * are discarded regardless of window.
+   *
+   * @param reuseMachineContext whether data structures of parser should be reused between parses done by the same thread
+   * @param memoizationPolicy defines which results of rules should be memoized
+   * @param memoWindow number of positions in input behind the current one, for which memoized results are retained
+   * @since 1.21
+   */
+  public ParseRunner(Rule rule, boolean reuseMachineContext, MemoizationPolicy memoizationPolicy, int memoWindow) {
+    this(MutableGrammarCompiler.compile((CompilableGrammarRule) Preconditions.checkNotNull(rule, "rule")), reuseMachineContext, memoizationPolicy, memoWindow);
+  }
+
+  private ParseRunner(CompiledGrammar compiledGrammar, boolean reuseMachineContext, MemoizationPolicy memoizationPolicy, int memoWindow) {
+    Preconditions.checkArgument(memoWindow > 0, "memoWindow must be positive");
+    this.compiledGrammar = compiledGrammar;
+    this.memoizationPolicy = Preconditions.checkNotNull(memoizationPolicy, "memoizationPolicy");
+    this.memoWindow = memoWindow;
+    machineContexts = reuseMachineContext ? new MachineContextThreadLocal(memoizationPolicy, memoWindow) : null;
+  }
+
+  /**
+   * Creates parser from grammar, which was compiled ahead of time by {@link #save(OutputStream)},
+   * so that grammar doesn't need to be built and compiled again.
+   *
+   * @param classLoader class loader to load enums, which are used as keys of rules and types of tokens in grammar
+   * @throws IOException if input doesn't contain compiled grammar
+   * @since 1.21
+   */
+  public static ParseRunner load(InputStream in, ClassLoader classLoader) throws IOException {
+    return load(in, classLoader, false, MemoizationPolicy.LAST_MATCH, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @see #load(InputStream, ClassLoader)
+   * @see #ParseRunner(Rule, boolean, MemoizationPolicy, int)
+   * @since 1.21
+   */
+  public static ParseRunner load(InputStream in, ClassLoader classLoader, boolean reuseMachineContext, MemoizationPolicy memoizationPolicy, int memoWindow)
+      throws IOException {
+    return new ParseRunner(CompiledGrammarSerializer.read(in, classLoader), reuseMachineContext, memoizationPolicy, memoWindow);
+  }
+
+  /**
+   * Writes compiled grammar, so that it can be loaded later by {@link #load(InputStream, ClassLoader)}.
+   * Supported only for lexerless grammars, whose rule keys and token types are enums.
+   *
+   * @throws IllegalArgumentException if grammar can't be written
+   * @since 1.21
+   */
+  public void save(OutputStream out) throws IOException {
+    CompiledGrammarSerializer.write(compiledGrammar, out);
   }
 
   public ParsingResult parse(char[] input) {
-    return Machine.parse(input, compiledGrammar);
+    return Machine.parse(input, compiledGrammar, getMachineContext());
+  }
+
+  /**
+   * @param lines index of lines of given input, which is already known
+   */
+  ParsingResult parse(char[] input, LineIndex lines) {
+    return parse(input, lines, getMachineContext());
+  }
+
+  /**
+   * @param context context, which will be reused, must not be used by other threads during this call
+   */
+  ParsingResult parse(char[] input, LineIndex lines, MachineContext context) {
+    return Machine.parse(input, lines, compiledGrammar, context);
+  }
+
+  /**
+   * Parses input of a previous result with a given edit applied.
+   * Results of rules, which start after the edited region, are reused from the previous result with shifted positions,
+   * so that only the part of input before the end of edited region is parsed again.
+   * Part before the edited region is not reused, because rules there might have looked ahead into edited region.
+   * Previous result must be produced by this runner.
+   *
+   * @throws IndexOutOfBoundsException if edited region is not within input of previous result
+   * @since 1.21
+   */
+  public ParsingResult parse(ParsingResult previous, TextEdit edit) {
+    char[] input = edit.apply(previous.getInputBuffer());
+    if (!previous.isMatched()) {
+      return parse(input);
+    }
+    return Machine.parse(input, LineIndex.of(input), compiledGrammar, getMachineContext(),
+        previous.getParseTree(), edit.getOffset() + edit.getRemovedLength(), edit.getShift());
+  }
+
+  private MachineContext getMachineContext() {
+    return machineContexts == null ? newMachineContext() : machineContexts.get();
+  }
+
+  /**
+   * @return new context with memoization policy of this runner
+   */
+  MachineContext newMachineContext() {
+    return new MachineContext(memoizationPolicy, memoWindow);
+  }
+
+  private static class MachineContextThreadLocal extends ThreadLocal<MachineContext> {
+    private final MemoizationPolicy memoizationPolicy;
+    private final int memoWindow;
+
+    public MachineContextThreadLocal(MemoizationPolicy memoizationPolicy, int memoWindow) {
+      this.memoizationPolicy = memoizationPolicy;
+      this.memoWindow = memoWindow;
+    }
+
+    @Override
+    protected MachineContext initialValue() {
+      return new MachineContext(memoizationPolicy, memoWindow);
+    }
   }
 
 }
@@ -19,17 +19,24 @@
  */
 package org.sonar.sslr.parser;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
-import com.google.common.io.Files;
+import com.google.common.base.Supplier;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.RecognitionException;
 import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.ParseListener;
 import com.sonar.sslr.impl.Parser;
 import com.sonar.sslr.impl.matcher.RuleDefinition;
 import org.sonar.sslr.internal.matchers.AstCreator;
+import org.sonar.sslr.internal.matchers.ImmutableInputBuffer;
 import org.sonar.sslr.internal.matchers.InputBuffer;
 import org.sonar.sslr.internal.text.AbstractText;
+import org.sonar.sslr.internal.text.LineIndex;
 import org.sonar.sslr.internal.text.LocatedText;
+import org.sonar.sslr.internal.text.TextFileReader;
+import org.sonar.sslr.internal.vm.MachineContext;
 import org.sonar.sslr.text.PreprocessorsChain;
 import org.sonar.sslr.text.Text;
 
@@ -84,26 +91,103 @@ public class ParserAdapter<G extends LexerlessGrammar> extends Parser<G> {
    */
   @Override
   public AstNode parse(File file) {
-    Text text = new LocatedText(file, fileToCharArray(file, charset));
-    return parse(text);
+    return parse(readFile(file, charset));
   }
 
-  private static char[] fileToCharArray(File file, Charset charset) {
+  private static Text readFile(File file, Charset charset) {
     try {
-      return Files.toString(file, charset).toCharArray();
+      return TextFileReader.read(file, charset);
     } catch (IOException e) {
       throw new RecognitionException(0, e.getMessage(), e);
     }
   }
 
   private AstNode parse(Text input) {
+    return parse(input, null);
+  }
+
+  /**
+   * @param context context of parsing machine, which will be reused, or null to use a new one
+   */
+  private AstNode parse(Text input, @Nullable MachineContext context) {
     if (preprocessorsChain != null) {
       input = preprocessorsChain.process(input);
     }
-    // This cast is safe, even if not checked - AbstractText is a base implementation of interface Text
-    // TODO Godin: however would be better to get rid of it
-    char[] chars = ((AbstractText) input).toChars();
-    ParsingResult result = parseRunner.parse(chars);
+    char[] chars;
+    LineIndex lines;
+    if (input instanceof LocatedText) {
+      // Performance optimization: characters and index of lines were already computed, so can be reused
+      LocatedText text = (LocatedText) input;
+      chars = text.getChars();
+      lines = text.getLineIndex();
+    } else {
+      // This cast is safe, even if not checked - AbstractText is a base implementation of interface Text
+      // TODO Godin: however would be better to get rid of it
+      chars = ((AbstractText) input).toChars();
+      lines = LineIndex.of(chars);
+    }
+    ParsingResult result = context == null
+        ? parseRunner.parse(chars, lines)
+        : parseRunner.parse(chars, lines, context);
+    return createAst(result, input);
+  }
+
+  /**
+   * Whether {@link #parseResult(String)} and {@link #reparse(ParsingResult, TextEdit)} can be used,
+   * which is not the case when parser has preprocessors, because edits are made in text before preprocessing.
+   *
+   * @since 1.21
+   */
+  public boolean isReparseSupported() {
+    return preprocessorsChain == null;
+  }
+
+  /**
+   * Parses given source, so that after edit it can be parsed again by {@link #reparse(ParsingResult, TextEdit)}.
+   * AST can be obtained from result by {@link #createAst(ParsingResult)}.
+   *
+   * @throws IllegalStateException if {@link #isReparseSupported() reparse is not supported}
+   * @since 1.21
+   */
+  public ParsingResult parseResult(String source) {
+    Preconditions.checkState(isReparseSupported(), "Reparse is not supported with preprocessors");
+    return parseRunner.parse(source.toCharArray());
+  }
+
+  /**
+   * Parses source of a previous result with a given edit applied, with reuse of parts of previous result,
+   * which are located after the edited region.
+   *
+   * @throws IllegalStateException if {@link #isReparseSupported() reparse is not supported}
+   * @see ParseRunner#parse(ParsingResult, TextEdit)
+   * @since 1.21
+   */
+  public ParsingResult reparse(ParsingResult previous, TextEdit edit) {
+    Preconditions.checkState(isReparseSupported(), "Reparse is not supported with preprocessors");
+    return parseRunner.parse(previous, edit);
+  }
+
+  /**
+   * @return AST constructed from given result
+   * @throws RecognitionException if given result is not matched
+   * @since 1.21
+   */
+  public AstNode createAst(ParsingResult result) {
+    return createAst(result, toText(result.getInputBuffer()));
+  }
+
+  private static Text toText(InputBuffer inputBuffer) {
+    if (inputBuffer instanceof ImmutableInputBuffer) {
+      return ((ImmutableInputBuffer) inputBuffer).toText();
+    }
+    char[] chars = new char[inputBuffer.length()];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = inputBuffer.charAt(i);
+    }
+    return new LocatedText(null, chars);
+  }
+
+  private static AstNode createAst(ParsingResult result, Text input) {
     if (result.isMatched()) {
       return AstCreator.create(result, input);
     } else {
@@ -115,6 +199,32 @@ public class ParserAdapter<G extends LexerlessGrammar> extends Parser<G> {
     }
   }
 
+  /**
+   * Parsing of files by this class is thread-safe, as long as preprocessors are thread-safe.
+   * Each thread reuses its own context of parsing machine for all files parsed by it.
+   *
+   * @since 1.21
+   */
+  @Override
+  protected Function<File, AstNode> createConcurrentFileParser() {
+    final ThreadLocal<MachineContext> machineContexts = new ThreadLocal<MachineContext>() {
+      @Override
+      protected MachineContext initialValue() {
+        return parseRunner.newMachineContext();
+      }
+    };
+    return new Function<File, AstNode>() {
+      public AstNode apply(File file) {
+        return parse(readFile(file, charset), machineContexts.get());
+      }
+    };
+  }
+
+  @Override
+  public void parse(Iterable<File> files, int threads, ParseListener listener, Supplier<Lexer> lexerFactory) {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   public AstNode parse(List<Token> tokens) {
     throw new UnsupportedOperationException();
@@ -23,6 +23,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import org.sonar.sslr.internal.matchers.InputBuffer;
 import org.sonar.sslr.internal.matchers.ParseNode;
+import org.sonar.sslr.internal.matchers.ParseTree;
 
 import javax.annotation.Nullable;
 
@@ -36,7 +37,8 @@ import javax.annotation.Nullable;
 public class ParsingResult {
 
   private final boolean matched;
-  private final ParseNode parseTreeRoot;
+  private ParseNode parseTreeRoot;
+  private ParseTree parseTree;
   private final InputBuffer inputBuffer;
   private final ParseError parseError;
 
@@ -47,6 +49,18 @@ public class ParsingResult {
     this.parseError = parseError;
   }
 
+  /**
+   * Creates successful result.
+   *
+   * @since 1.21
+   */
+  public ParsingResult(InputBuffer inputBuffer, ParseTree parseTree) {
+    this.inputBuffer = Preconditions.checkNotNull(inputBuffer, "inputBuffer");
+    this.matched = true;
+    this.parseTree = Preconditions.checkNotNull(parseTree, "parseTree");
+    this.parseError = null;
+  }
+
   public InputBuffer getInputBuffer() {
     return inputBuffer;
   }
@@ -59,9 +73,25 @@ public class ParsingResult {
     return parseError;
   }
 
+  /**
+   * Prefer {@link #getParseTree()}, because object representation of parse tree is created on demand.
+   */
   @VisibleForTesting
   public ParseNode getParseTreeRoot() {
+    if (parseTreeRoot == null && parseTree != null) {
+      parseTreeRoot = parseTree.toParseNode(parseTree.getRoot());
+    }
     return parseTreeRoot;
   }
 
+  /**
+   * @since 1.21
+   */
+  public ParseTree getParseTree() {
+    if (parseTree == null && parseTreeRoot != null) {
+      parseTree = ParseTree.of(parseTreeRoot);
+    }
+    return parseTree;
+  }
+
 }
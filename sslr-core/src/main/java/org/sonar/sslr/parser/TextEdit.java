@@ -0,0 +1,108 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+import com.google.common.base.Preconditions;
+import org.sonar.sslr.internal.matchers.InputBuffer;
+
+/**
+ * Replacement of a region of text by another text, e.g. performed by user in editor.
+ *
+ * <p>This class is not intended to be subclassed by clients.</p>
+ *
+ * @see ParseRunner#parse(ParsingResult, TextEdit)
+ * @since 1.21
+ */
+public final class TextEdit {
+
+  private final int offset;
+  private final int removedLength;
+  private final String insertedText;
+
+  /**
+   * @param offset index of first removed character
+   * @param removedLength number of removed characters
+   * @param insertedText text, which is inserted instead of removed characters
+   */
+  public TextEdit(int offset, int removedLength, String insertedText) {
+    Preconditions.checkArgument(offset >= 0, "offset must not be negative");
+    Preconditions.checkArgument(removedLength >= 0, "removedLength must not be negative");
+    this.offset = offset;
+    this.removedLength = removedLength;
+    this.insertedText = Preconditions.checkNotNull(insertedText, "insertedText");
+  }
+
+  /**
+   * Computes edit, which transforms one text into another, as a replacement of region between their common prefix and common suffix.
+   */
+  public static TextEdit between(CharSequence oldText, CharSequence newText) {
+    int oldLength = oldText.length();
+    int newLength = newText.length();
+    int prefix = 0;
+    int maxPrefix = Math.min(oldLength, newLength);
+    while (prefix < maxPrefix && oldText.charAt(prefix) == newText.charAt(prefix)) {
+      prefix++;
+    }
+    int suffix = 0;
+    int maxSuffix = maxPrefix - prefix;
+    while (suffix < maxSuffix && oldText.charAt(oldLength - 1 - suffix) == newText.charAt(newLength - 1 - suffix)) {
+      suffix++;
+    }
+    return new TextEdit(prefix, oldLength - prefix - suffix, newText.subSequence(prefix, newLength - suffix).toString());
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  public int getRemovedLength() {
+    return removedLength;
+  }
+
+  public String getInsertedText() {
+    return insertedText;
+  }
+
+  /**
+   * @return difference between length of text after this edit and before
+   */
+  public int getShift() {
+    return insertedText.length() - removedLength;
+  }
+
+  /**
+   * @throws IndexOutOfBoundsException if removed region is not within given input
+   */
+  char[] apply(InputBuffer input) {
+    int end = offset + removedLength;
+    Preconditions.checkPositionIndexes(offset, end, input.length());
+    int shift = getShift();
+    char[] result = new char[input.length() + shift];
+    for (int i = 0; i < offset; i++) {
+      result[i] = input.charAt(i);
+    }
+    insertedText.getChars(0, insertedText.length(), result, offset);
+    for (int i = end; i < input.length(); i++) {
+      result[i + shift] = input.charAt(i);
+    }
+    return result;
+  }
+
+}
@@ -46,6 +46,26 @@ public class ChannelDispatcherTest {
     assertThat(dispatcher.getChannels()[1], is(FakeChannel.class));
   }
 
+  @Test
+  public void shouldDispatchByFirstCharacter() {
+    Channel<StringBuilder> letters = new RegexChannel<StringBuilder>("[a-z]++") {
+      @Override
+      protected void consume(CharSequence token, StringBuilder output) {
+        output.append('<').append(token).append('>');
+      }
+    };
+    Channel<StringBuilder> fake = new FakeChannel();
+    ChannelDispatcher<StringBuilder> dispatcher = ChannelDispatcher.builder().addChannels(letters, new SpaceDeletionChannel(), fake).build();
+    assertThat(dispatcher.getChannels('a').length, is(3));
+    assertThat(dispatcher.getChannels(' ').length, is(2));
+    assertThat(dispatcher.getChannels(' ')[1], is(fake));
+    assertThat(dispatcher.getChannels('\u00e9').length, is(3));
+
+    StringBuilder output = new StringBuilder();
+    dispatcher.consume(new CodeReader("two words!"), output);
+    assertThat(output.toString(), is("<two><words>!"));
+  }
+
   @Test(expected = IllegalStateException.class)
   public void shouldThrowExceptionWhenNoChannelToConsumeNextCharacter() {
     ChannelDispatcher<StringBuilder> dispatcher = ChannelDispatcher.builder().failIfNoChannelToConsumeOneCharacter().build();
@@ -30,7 +30,11 @@ import org.sonar.sslr.channel.CodeReader;
 import org.sonar.sslr.channel.CodeReaderConfiguration;
 import org.sonar.sslr.channel.CodeReaderFilter;
 
+import com.google.common.base.Strings;
+
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.CharBuffer;
 import java.util.regex.Pattern;
 
 import org.junit.Test;
@@ -116,6 +120,72 @@ public class CodeBufferTest {
     assertEquals("", reader.stopRecording().toString());
   }
 
+  @Test
+  public void testStartRecordingTwice() {
+    CodeBuffer reader = new CodeBuffer("123456", defaulConfiguration);
+    reader.startRecording();
+    reader.pop();
+    reader.startRecording();
+    reader.pop();
+    assertEquals("12", reader.stopRecording().toString());
+  }
+
+  @Test
+  public void should_read_characters_without_copy() {
+    char[] chars = "_123456_".toCharArray();
+    CodeBuffer reader = new CodeBuffer(chars, 1, 6, defaulConfiguration);
+    assertThat(reader.length(), is(6));
+    assertThat((char) reader.peek(), is('1'));
+    assertThat(reader.charAt(5), is('6'));
+    assertThat(reader.intAt(6), is(-1));
+    chars[2] = 'x';
+    reader.pop();
+    assertThat((char) reader.pop(), is('x'));
+  }
+
+  @Test
+  public void should_read_char_buffer() {
+    CharBuffer buffer = CharBuffer.wrap("_123456_".toCharArray(), 1, 6);
+    CodeBuffer reader = new CodeBuffer(buffer, defaulConfiguration);
+    assertThat(reader.length(), is(6));
+    assertThat((char) reader.peek(), is('1'));
+    reader.pop();
+    assertThat(buffer.position(), is(1));
+
+    reader = new CodeBuffer(CharBuffer.wrap("_123456_", 1, 7), defaulConfiguration);
+    assertThat(reader.length(), is(6));
+    assertThat((char) reader.peek(), is('1'));
+  }
+
+  @Test
+  public void should_apply_filters_to_characters() {
+    CodeReaderConfiguration configuration = new CodeReaderConfiguration();
+    configuration.setCodeReaderFilters(new ReplaceNumbersFilter());
+    char[] chars = "_123_".toCharArray();
+    CodeBuffer reader = new CodeBuffer(chars, 1, 3, configuration);
+    assertThat(reader.length(), is(3));
+    assertThat((char) reader.pop(), is('-'));
+    assertThat(chars[1], is('1'));
+  }
+
+  @Test
+  public void should_read_long_input() {
+    String code = Strings.repeat("0123456789", 1000);
+    CodeReaderConfiguration configuration = new CodeReaderConfiguration();
+    configuration.setCodeReaderFilters(new CodeReaderFilter<Object>() {
+      @Override
+      public int read(char[] filteredBuffer, int offset, int length) throws IOException {
+        return getReader().read(filteredBuffer, offset, length);
+      }
+    });
+    CodeBuffer reader = new CodeBuffer(new StringReader(code), configuration);
+    assertThat(reader.length(), is(code.length()));
+    for (int i = 0; i < code.length(); i++) {
+      assertThat(reader.pop(), is((int) code.charAt(i)));
+    }
+    assertThat(reader.pop(), is(-1));
+  }
+
   @Test
   public void testCharAt() {
     CodeBuffer reader = new CodeBuffer("123456", defaulConfiguration);
@@ -29,6 +29,8 @@ import java.util.regex.Pattern;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 
 public class CodeReaderTest {
@@ -84,6 +86,22 @@ public class CodeReaderTest {
     assertEquals(-1, reader.popTo(Pattern.compile("\\w+").matcher(new String()), token));
   }
 
+  @Test
+  public void should_pop_to_shared_string() {
+    CodeReader reader = new CodeReader("foo bar foo");
+    Matcher matcher = Pattern.compile("\\w++|\\s++").matcher("");
+    String first = reader.popTo(matcher);
+    assertEquals("foo", first);
+    assertThat(reader.getPreviousCursor().getColumn(), is(0));
+    assertEquals(" ", reader.popTo(matcher));
+    assertEquals("bar", reader.popTo(matcher));
+    assertEquals(" ", reader.popTo(matcher));
+    assertSame(first, reader.popTo(matcher));
+    assertThat(reader.getPreviousCursor().getColumn(), is(8));
+    assertNull(reader.popTo(matcher));
+    assertSame(first, reader.intern(new String("foo")));
+  }
+
   @Test
   public void testStackOverflowError() {
     StringBuilder sb = new StringBuilder();
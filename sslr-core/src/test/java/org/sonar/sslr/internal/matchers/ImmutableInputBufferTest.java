@@ -21,6 +21,8 @@ package org.sonar.sslr.internal.matchers;
 
 import org.junit.Test;
 import org.sonar.sslr.internal.matchers.InputBuffer.Position;
+import org.sonar.sslr.internal.text.LineIndex;
+import org.sonar.sslr.internal.text.LocatedText;
 
 import static org.fest.assertions.Assertions.assertThat;
 
@@ -122,6 +124,16 @@ public class ImmutableInputBufferTest {
     assertThat(inputBuffer.getPosition(4)).isEqualTo(new Position(3, 1));
   }
 
+  @Test
+  public void should_convert_to_text_without_copying() {
+    char[] chars = "foo\nbar".toCharArray();
+    LineIndex lines = LineIndex.of(chars);
+    LocatedText text = new ImmutableInputBuffer(chars, lines).toText();
+
+    assertThat(text.toChars()).isSameAs(chars);
+    assertThat(text.getLineIndex()).isSameAs(lines);
+  }
+
   @Test
   public void test_equality_and_hash_code_of_positions() {
     Position position = new Position(0, 0);
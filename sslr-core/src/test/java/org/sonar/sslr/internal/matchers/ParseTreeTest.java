@@ -0,0 +1,99 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.matchers;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class ParseTreeTest {
+
+  private final Matcher matcher = mock(Matcher.class);
+
+  @Test
+  public void should_add_nodes() {
+    ParseTree tree = new ParseTree(1);
+    int first = tree.addNode(0, 1, matcher);
+    int second = tree.addNode(1, 3, matcher);
+    int root = tree.addNode(0, 3, matcher, new int[] {first, second}, 0, 2);
+
+    assertThat(tree.size()).isEqualTo(3);
+    assertThat(tree.getChildrenCount(first)).isEqualTo(0);
+    assertThat(tree.getChildrenCount(root)).isEqualTo(2);
+    assertThat(tree.getChild(root, 0)).isEqualTo(first);
+    assertThat(tree.getChild(root, 1)).isEqualTo(second);
+    assertThat(tree.getStartIndex(second)).isEqualTo(1);
+    assertThat(tree.getEndIndex(second)).isEqualTo(3);
+    assertThat(tree.getMatcher(root)).isSameAs(matcher);
+  }
+
+  @Test
+  public void should_truncate() {
+    ParseTree tree = new ParseTree();
+    int leaf = tree.addNode(0, 1, matcher);
+    tree.addNode(0, 1, matcher, new int[] {leaf}, 0, 1);
+    tree.truncate(1);
+    assertThat(tree.size()).isEqualTo(1);
+
+    int node = tree.addNode(0, 1, matcher, new int[] {leaf, leaf}, 0, 2);
+    assertThat(node).isEqualTo(1);
+    assertThat(tree.getChildrenCount(node)).isEqualTo(2);
+  }
+
+  @Test
+  public void should_copy_nodes_with_shift() {
+    ParseTree source = new ParseTree();
+    int first = source.addNode(0, 1, matcher);
+    int second = source.addNode(1, 3, matcher);
+    source.addNode(0, 3, matcher, new int[] {first, second}, 0, 2);
+    int node = source.addNode(1, 3, matcher, new int[] {second}, 0, 1);
+
+    ParseTree tree = new ParseTree();
+    tree.addNode(0, 1, matcher);
+    int copy = tree.copy(source, node, 10);
+    assertThat(copy).isEqualTo(2);
+    assertThat(tree.size()).isEqualTo(3);
+    assertThat(tree.getStartIndex(copy)).isEqualTo(11);
+    assertThat(tree.getEndIndex(copy)).isEqualTo(13);
+    assertThat(tree.getMatcher(copy)).isSameAs(matcher);
+    assertThat(tree.getChildrenCount(copy)).isEqualTo(1);
+    assertThat(tree.getStartIndex(tree.getChild(copy, 0))).isEqualTo(11);
+  }
+
+  @Test
+  public void should_convert_to_and_from_objects() {
+    ParseNode leaf = new ParseNode(0, 1, matcher);
+    ParseNode root = new ParseNode(0, 1, ImmutableList.of(leaf, new ParseNode(1, 1, Collections.<ParseNode>emptyList(), matcher)), matcher);
+
+    ParseTree tree = ParseTree.of(root);
+    assertThat(tree.size()).isEqualTo(3);
+    assertThat(tree.getChildrenCount(tree.getRoot())).isEqualTo(2);
+
+    ParseNode result = tree.toParseNode(tree.getRoot());
+    assertThat(result.getChildren()).hasSize(2);
+    assertThat(result.getChildren().get(1).getStartIndex()).isEqualTo(1);
+    assertThat(result.getMatcher()).isSameAs(matcher);
+  }
+
+}
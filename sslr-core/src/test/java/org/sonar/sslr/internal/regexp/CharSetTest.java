@@ -0,0 +1,59 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.regexp;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CharSetTest {
+
+  @Test
+  public void should_merge_ranges() {
+    CharSet set = CharSet.range('a', 'c').union(CharSet.range('x', 'z')).union(CharSet.range('d', 'f')).union(CharSet.range('b', 'b'));
+    assertThat(set.getRanges()).isEqualTo(new int[] {'a', 'f', 'x', 'z'});
+    assertThat(set.toString()).isEqualTo("[97, 102, 120, 122]");
+  }
+
+  @Test
+  public void should_complement() {
+    CharSet set = CharSet.of("b");
+    assertThat(set.complement().getRanges()).isEqualTo(new int[] {0, 'a', 'c', Character.MAX_CODE_POINT});
+    assertThat(set.complement().complement().getRanges()).isEqualTo(set.getRanges());
+    assertThat(CharSet.EMPTY.complement().getRanges()).isEqualTo(new int[] {0, Character.MAX_CODE_POINT});
+  }
+
+  @Test
+  public void should_test_membership() {
+    assertThat(CharSet.DIGITS.contains('5')).isTrue();
+    assertThat(CharSet.DIGITS.contains('a')).isFalse();
+    assertThat(CharSet.DOT.contains('\n')).isFalse();
+    assertThat(CharSet.DOT.contains(0x1F600)).isTrue();
+  }
+
+  @Test
+  public void should_test_intersection() {
+    assertThat(CharSet.DIGITS.intersects(CharSet.WORDS)).isTrue();
+    assertThat(CharSet.DIGITS.intersects(CharSet.SPACES)).isFalse();
+    assertThat(CharSet.range('a', 'c').intersects(CharSet.range('c', 'd'))).isTrue();
+    assertThat(CharSet.EMPTY.intersects(CharSet.DOT)).isFalse();
+  }
+
+}
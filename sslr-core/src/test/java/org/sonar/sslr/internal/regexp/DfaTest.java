@@ -0,0 +1,179 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.regexp;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class DfaTest {
+
+  @Test
+  public void should_match_same_as_java_util_regex() {
+    String[] regexps = {
+      "foo|bar",
+      "[a-zA-Z_][a-zA-Z_0-9]*+",
+      "[0-9]++(?:\\.[0-9]++)?+(?:[eE][+-]?+[0-9]++)?+",
+      "\\s++",
+      "//[^\\n\\r]*+",
+      "\"(?:[^\"\\\\]|\\\\.)*+\"",
+      "/\\*[\\s\\S]*?\\*/",
+      "a|ab",
+      "(a|ab)(c|bcd)",
+      "a*?b",
+      "a*?",
+      "(?:ab)*a",
+      "(?:a|b)+?b",
+      "a{2,3}",
+      "a{2,}?",
+      "(?:ab){0,2}+",
+      "a{0}b",
+      "[^abc]+",
+      "[a-c-]",
+      "[-a]\\d\\D\\w\\W\\S",
+      "\\x41\\u0042\\t\\cA.",
+      "[\\-\\]\\[]",
+      "x?+x",
+      "a++b",
+      "(a?)",
+      "\\Q",
+      "."
+    };
+    String[] inputs = {"", "foo", "bar", "foobar", "ab", "abcd", "abc", "aaa", "aaab", "aab", "b", "ababa", "Ident_1 x", "12.5e-3;",
+      "1.", "  \t\n x", "// comment\nx", "\"a\\\"b\" c", "/* a * / b */ c", "dz-", "-5x_!y", "AB\t\u0001\n", "AB\t\u0001 ",
+      "\ud83d\ude00", "-]", "xx"};
+    for (String regexp : regexps) {
+      Pattern pattern;
+      try {
+        pattern = Pattern.compile(regexp);
+      } catch (RuntimeException e) {
+        continue;
+      }
+      Dfa dfa = Dfa.compile(regexp);
+      if (dfa == null) {
+        continue;
+      }
+      for (String input : inputs) {
+        assertThat(dfa.match(input.toCharArray(), 0, input.length())).as(regexp + " on " + input).isEqualTo(lookingAt(pattern, input));
+      }
+    }
+  }
+
+  @Test
+  public void should_match_same_as_java_util_regex_on_random_inputs() {
+    String[] regexps = {
+      "(?:a|ab|abc)*c",
+      "(?:a|b)*?abb",
+      "(?:ab|a)(?:bc|c)?+",
+      "(?:a|bc)*+c",
+      "(?:a|b[ab])++c",
+      "[ab]*+c|a[^c]*",
+      "(?:a+b|ba*)+",
+      "a{1,3}?(?:b|ab)",
+      "(?:[ab]c?){2,4}"
+    };
+    Random random = new Random(42);
+    for (String regexp : regexps) {
+      Pattern pattern = Pattern.compile(regexp);
+      Dfa dfa = Dfa.compile(regexp);
+      assertThat(dfa).as(regexp).isNotNull();
+      for (int i = 0; i < 500; i++) {
+        char[] input = new char[random.nextInt(8)];
+        for (int j = 0; j < input.length; j++) {
+          input[j] = (char) ('a' + random.nextInt(3));
+        }
+        String s = new String(input);
+        assertThat(dfa.match(input, 0, input.length)).as(regexp + " on " + s).isEqualTo(lookingAt(pattern, s));
+      }
+    }
+  }
+
+  @Test
+  public void should_match_within_bounds() {
+    Dfa dfa = Dfa.compile("[a-z]++");
+    char[] input = "12abc34".toCharArray();
+    assertThat(dfa.match(input, 2, 7)).isEqualTo(5);
+    assertThat(dfa.match(input, 2, 4)).isEqualTo(4);
+    assertThat(dfa.match(input, 0, 7)).isEqualTo(-1);
+  }
+
+  @Test
+  public void should_match_code_points() {
+    Dfa dfa = Dfa.compile(".");
+    char[] input = "\ud83d\ude00".toCharArray();
+    assertThat(dfa.match(input, 0, 2)).isEqualTo(2);
+    assertThat(dfa.match(input, 0, 1)).isEqualTo(1);
+  }
+
+  @Test
+  public void should_determine_first_characters() {
+    Dfa dfa = Dfa.compile("[a-z]++|\\d");
+    assertThat(dfa.canStartWith('a')).isTrue();
+    assertThat(dfa.canStartWith('5')).isTrue();
+    assertThat(dfa.canStartWith('A')).isFalse();
+    assertThat(dfa.canStartWith('\u00e9')).isFalse();
+
+    dfa = Dfa.compile("[a-z]*+");
+    assertThat(dfa.canStartWith('A')).as("empty match").isTrue();
+
+    dfa = Dfa.compile(".");
+    assertThat(dfa.canStartWith('\ud83d')).as("high surrogate").isTrue();
+  }
+
+  @Test
+  public void should_not_compile_unsupported_regexps() {
+    String[] regexps = {
+      "^a",
+      "a$",
+      "a\\b",
+      "(?=a)a",
+      "(?!a)b",
+      "(?<=a)b",
+      "(?>a|ab)c",
+      "(?i)a",
+      "(?i:a)",
+      "(a)\\1",
+      "\\p{Alpha}",
+      "[a[b]]",
+      "[a-z&&[^b]]",
+      "\\Qa\\E",
+      "(?:a|ab)++b",
+      "(?:a|bc)*+b",
+      "[a-z]*+[a-z]",
+      "(?:a?)*",
+      "\\ud83d\\ude00",
+      "a{1,2000}"
+    };
+    for (String regexp : regexps) {
+      Pattern.compile(regexp);
+      assertThat(Dfa.compile(regexp)).as(regexp).isNull();
+    }
+  }
+
+  private static int lookingAt(Pattern pattern, String input) {
+    Matcher matcher = pattern.matcher(input);
+    return matcher.lookingAt() ? matcher.end() : -1;
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.text;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class LineIndexTest {
+
+  @Test
+  public void test() {
+    LineIndex lines = LineIndex.of("foo\r\nbar\nbaz\rqux\r".toCharArray());
+    assertThat(lines.length()).isEqualTo(17);
+    assertThat(lines.getLineCount()).isEqualTo(5);
+
+    assertThat(lines.getLineNumber(0)).isEqualTo(1);
+    assertThat(lines.getLineNumber(4)).isEqualTo(1);
+    assertThat(lines.getLineNumber(5)).isEqualTo(2);
+    assertThat(lines.getLineNumber(13)).isEqualTo(4);
+    assertThat(lines.getLineNumber(17)).isEqualTo(5);
+
+    assertThat(lines.getLineStart(1)).isEqualTo(0);
+    assertThat(lines.getLineEnd(1)).isEqualTo(5);
+    assertThat(lines.getLineStart(3)).isEqualTo(9);
+    assertThat(lines.getLineEnd(3)).isEqualTo(13);
+    assertThat(lines.getLineStart(5)).isEqualTo(17);
+    assertThat(lines.getLineEnd(5)).isEqualTo(17);
+  }
+
+  @Test
+  public void should_compute_starts_of_lines() {
+    LineIndex lines = LineIndex.of("foo\nbar\r\nbaz\rqux\r".toCharArray());
+    assertThat(lines.getLineCount()).isEqualTo(5);
+    assertThat(lines.getLineStart(2)).isEqualTo(4);
+    assertThat(lines.getLineStart(3)).isEqualTo(9);
+    assertThat(lines.getLineStart(4)).isEqualTo(13);
+    assertThat(lines.getLineStart(5)).isEqualTo(17);
+  }
+
+  @Test
+  public void empty() {
+    LineIndex lines = LineIndex.of(new char[0]);
+    assertThat(lines.getLineCount()).isEqualTo(1);
+    assertThat(lines.getLineNumber(0)).isEqualTo(1);
+    assertThat(lines.getLineEnd(1)).isEqualTo(0);
+  }
+
+  @Test
+  public void should_build_from_chunks() {
+    char[] chars = "a\r\nb\r\rc".toCharArray();
+    LineIndex.Builder builder = new LineIndex.Builder();
+    for (int i = 0; i < chars.length; i++) {
+      builder.append(chars, i, i + 1);
+    }
+    LineIndex lines = builder.build();
+    assertThat(lines.getLineCount()).isEqualTo(4);
+    assertThat(lines.getLineStart(2)).isEqualTo(3);
+    assertThat(lines.getLineStart(3)).isEqualTo(5);
+    assertThat(lines.getLineStart(4)).isEqualTo(6);
+  }
+
+}
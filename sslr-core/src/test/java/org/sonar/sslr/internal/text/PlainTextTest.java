@@ -43,6 +43,21 @@ public class PlainTextTest {
     assertThat(text.length()).isEqualTo(3);
   }
 
+  @Test
+  public void test_length_less_than_length_of_array() {
+    char[] chars = "barbaz".toCharArray();
+    PlainText text = new PlainText(chars, 3);
+    assertThat(text.length()).isEqualTo(3);
+    assertThat(text.toString()).isEqualTo("bar");
+    assertThat(text.getChars()).isSameAs(chars);
+    assertThat(text.toChars()).isEqualTo("bar".toCharArray());
+  }
+
+  @Test
+  public void test_toChars() {
+    assertThat(text.toChars()).isSameAs(text.getChars());
+  }
+
   @Test
   public void test_subText() {
     assertThat(text.subText(1, 2)).isInstanceOf(SubText.class);
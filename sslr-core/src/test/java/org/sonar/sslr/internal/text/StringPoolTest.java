@@ -0,0 +1,60 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.text;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class StringPoolTest {
+
+  @Test
+  public void should_return_same_instance_for_equal_sequences() {
+    StringPool pool = new StringPool();
+    String foo = pool.get("_foo_", 1, 4);
+    assertThat(foo).isEqualTo("foo");
+    assertThat(pool.get(new StringBuilder("foo"), 0, 3)).isSameAs(foo);
+    assertThat(pool.get(new String("foo"))).isSameAs(foo);
+    assertThat(pool.get("fo", 0, 2)).isEqualTo("fo");
+    assertThat(pool.get("", 0, 0)).isEqualTo("");
+  }
+
+  @Test
+  public void should_add_given_string() {
+    StringPool pool = new StringPool();
+    String foo = new String("foo");
+    assertThat(pool.get(foo)).isSameAs(foo);
+    assertThat(pool.get("foo", 0, 3)).isSameAs(foo);
+  }
+
+  @Test
+  public void should_grow() {
+    StringPool pool = new StringPool();
+    String[] strings = new String[10000];
+    for (int i = 0; i < strings.length; i++) {
+      strings[i] = pool.get(Integer.toString(i));
+    }
+    for (int i = 0; i < strings.length; i++) {
+      String s = Integer.toString(i);
+      assertThat(pool.get(s, 0, s.length())).isSameAs(strings[i]);
+    }
+  }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.text;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.sslr.text.TextLocation;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class TextFileReaderTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void should_read() throws IOException {
+    String content = "foo\nété\r\n" + Strings.repeat("x", 10000) + "\r\nbar";
+    File file = temporaryFolder.newFile("file.txt");
+    Files.write(content, file, Charsets.UTF_8);
+
+    LocatedText text = TextFileReader.read(file, Charsets.UTF_8);
+    assertThat(text.toString()).isEqualTo(content);
+    assertThat(text.length()).isEqualTo(content.length());
+    assertThat(text.getLineIndex().length()).isEqualTo(content.length());
+    assertThat(text.getLineIndex().getLineCount()).isEqualTo(4);
+    assertThat(text.getLocation(content.length() - 1)).isEqualTo(new TextLocation(file, 4, 3));
+  }
+
+  @Test
+  public void should_read_multibyte_character_split_between_chunks() throws IOException {
+    String content = Strings.repeat("x", 8191) + "é" + Strings.repeat("x", 8191) + "\u20AC";
+    File file = temporaryFolder.newFile("file.txt");
+    Files.write(content, file, Charsets.UTF_8);
+
+    LocatedText text = TextFileReader.read(file, Charsets.UTF_8);
+    assertThat(text.toString()).isEqualTo(content);
+  }
+
+  @Test
+  public void should_read_empty_file() throws IOException {
+    File file = temporaryFolder.newFile("file.txt");
+
+    LocatedText text = TextFileReader.read(file, Charsets.UTF_8);
+    assertThat(text.length()).isEqualTo(0);
+    assertThat(text.getLineIndex().getLineCount()).isEqualTo(1);
+  }
+
+}
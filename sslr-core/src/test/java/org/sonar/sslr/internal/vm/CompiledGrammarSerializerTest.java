@@ -0,0 +1,207 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.base.Charsets;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Trivia.TriviaKind;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.sslr.grammar.GrammarRuleKey;
+import org.sonar.sslr.grammar.LexerlessGrammarBuilder;
+import org.sonar.sslr.internal.grammar.MutableParsingRule;
+import org.sonar.sslr.internal.matchers.ParseNode;
+import org.sonar.sslr.parser.LexerlessGrammar;
+import org.sonar.sslr.parser.ParsingResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CompiledGrammarSerializerTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private enum Keys implements GrammarRuleKey {
+    ROOT, STATEMENT, EXPRESSION, PRIMARY, NUMBER, IDENTIFIER, SPACING
+  }
+
+  public static LexerlessGrammar grammar() {
+    LexerlessGrammarBuilder b = LexerlessGrammarBuilder.create();
+    b.rule(Keys.ROOT).is(b.zeroOrMore(Keys.STATEMENT), Keys.SPACING, b.endOfInput());
+    b.rule(Keys.STATEMENT).is(Keys.EXPRESSION, Keys.SPACING, ";");
+    b.rule(Keys.EXPRESSION).is(Keys.PRIMARY, b.zeroOrMore(Keys.SPACING, b.firstOf("+", "-"), Keys.PRIMARY));
+    b.rule(Keys.PRIMARY).is(Keys.SPACING, b.firstOf(Keys.NUMBER, Keys.IDENTIFIER, b.sequence("(", Keys.EXPRESSION, Keys.SPACING, ")"), b.nothing())).skip();
+    b.rule(Keys.NUMBER).is(b.regexp("[0-9]++"));
+    b.rule(Keys.IDENTIFIER).is(b.token(GenericTokenType.IDENTIFIER, b.regexp("[a-z]++")), b.nextNot("("));
+    b.rule(Keys.SPACING).is(b.zeroOrMore(b.firstOf(
+        b.skippedTrivia(b.regexp("\\s++")),
+        b.commentTrivia(b.regexp("//[^\\n]*+"))))).skipIfOneChild();
+    b.setRootRule(Keys.ROOT);
+    return b.build();
+  }
+
+  @Test
+  public void should_read_written_grammar() throws Exception {
+    CompiledGrammar grammar = MutableGrammarCompiler.compile((CompilableGrammarRule) grammar().getRootRule());
+    CompiledGrammar loaded = writeAndRead(grammar);
+
+    assertThat(Arrays.toString(loaded.getInstructions())).isEqualTo(Arrays.toString(grammar.getInstructions()));
+    assertThat(loaded.getRootRuleKey()).isSameAs(Keys.ROOT);
+    assertThat(loaded.getRootRuleOffset()).isEqualTo(grammar.getRootRuleOffset());
+    assertThat(loaded.getRules()).hasSize(grammar.getRules().size());
+    assertThat(((MutableParsingRule) loaded.getMatcher(Keys.PRIMARY)).hasToBeSkippedFromAst(null)).isTrue();
+    assertThat(loaded.getErrorLocatingGrammar()).isNotNull();
+    assertThat(Arrays.toString(loaded.getErrorLocatingGrammar().getInstructions()))
+        .isEqualTo(Arrays.toString(grammar.getErrorLocatingGrammar().getInstructions()));
+
+    String[] inputs = {"1 + x;", "(1 - (2 + y)) ; // comment\n x;", "", "1 + ;", "x(1);", "1 + (2;"};
+    for (String input : inputs) {
+      ParsingResult expected = Machine.parse(input.toCharArray(), grammar);
+      ParsingResult actual = Machine.parse(input.toCharArray(), loaded);
+      assertThat(actual.isMatched()).as(input).isEqualTo(expected.isMatched());
+      if (expected.isMatched()) {
+        assertThat(print(actual.getParseTreeRoot())).as(input).isEqualTo(print(expected.getParseTreeRoot()));
+      } else {
+        assertThat(actual.getParseError().getErrorIndex()).as(input).isEqualTo(expected.getParseError().getErrorIndex());
+      }
+    }
+  }
+
+  @Test
+  public void should_read_subexpressions_of_tokens_and_trivias() throws Exception {
+    MutableParsingRule rule = new MutableParsingRule("rule");
+    rule.is(new TokenExpression(GenericTokenType.IDENTIFIER, new PatternExpression("[a-z]++")), new TriviaExpression(TriviaKind.COMMENT, new StringExpression("//")));
+    CompiledGrammar grammar = MutableGrammarCompiler.compile(rule);
+    CompiledGrammar loaded = writeAndRead(grammar);
+
+    assertThat(Arrays.toString(loaded.getInstructions())).isEqualTo(Arrays.toString(grammar.getInstructions()));
+    ParseNode root = Machine.parse("foo//".toCharArray(), loaded).getParseTreeRoot();
+    TokenExpression token = (TokenExpression) root.getChildren().get(0).getMatcher();
+    assertThat(((PatternExpression) token.getSubExpression()).getRegex()).isEqualTo("[a-z]++");
+    TriviaExpression trivia = (TriviaExpression) root.getChildren().get(1).getMatcher();
+    assertThat(((StringExpression) trivia.getSubExpression()).getString()).isEqualTo("//");
+  }
+
+  @Test
+  public void should_not_write_tokens_with_arbitrary_subexpressions() throws Exception {
+    MutableParsingRule rule = new MutableParsingRule("rule");
+    rule.is(new TokenExpression(GenericTokenType.IDENTIFIER, new SequenceExpression(new StringExpression("a"), new StringExpression("b"))));
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("because its subexpression is not a matcher");
+    CompiledGrammarSerializer.write(MutableGrammarCompiler.compile(rule), new ByteArrayOutputStream());
+  }
+
+  @Test
+  public void should_read_rules_identified_by_name() throws Exception {
+    MutableParsingRule rule = new MutableParsingRule("rule");
+    rule.is("foo");
+    CompiledGrammar loaded = writeAndRead(MutableGrammarCompiler.compile(rule));
+    assertThat(((MutableParsingRule) loaded.getMatcher(loaded.getRootRuleKey())).getName()).isEqualTo("rule");
+    assertThat(Machine.parse("foo".toCharArray(), loaded).isMatched()).isTrue();
+  }
+
+  @Test
+  public void should_not_write_rules_with_arbitrary_keys() throws Exception {
+    MutableParsingRule rule = new MutableParsingRule(new GrammarRuleKey() {
+    });
+    rule.is("foo");
+    thrown.expect(IllegalArgumentException.class);
+    CompiledGrammarSerializer.write(MutableGrammarCompiler.compile(rule), new ByteArrayOutputStream());
+  }
+
+  @Test
+  public void should_not_write_arbitrary_native_expressions() throws Exception {
+    MutableParsingRule rule = new MutableParsingRule("rule");
+    rule.is(new NativeExpression() {
+      @Override
+      public void execute(Machine machine) {
+      }
+    });
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Unable to write");
+    CompiledGrammarSerializer.write(MutableGrammarCompiler.compile(rule), new ByteArrayOutputStream());
+  }
+
+  @Test
+  public void should_not_read_arbitrary_input() throws Exception {
+    thrown.expect(IOException.class);
+    thrown.expectMessage("Not a compiled grammar");
+    CompiledGrammarSerializer.read(new ByteArrayInputStream("foo bar baz".getBytes(Charsets.UTF_8)), getClass().getClassLoader());
+  }
+
+  @Test
+  public void should_write_grammar_into_file() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "grammar.bin");
+    CompiledGrammarSerializer.main(new String[] {getClass().getName(), "grammar", file.getPath()});
+    assertThat(file.length()).isGreaterThan(0);
+
+    InputStream in = new FileInputStream(file);
+    try {
+      CompiledGrammar loaded = CompiledGrammarSerializer.read(in, getClass().getClassLoader());
+      assertThat(Machine.parse("1 + 2;".toCharArray(), loaded).isMatched()).isTrue();
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test
+  public void main_should_require_arguments() throws Exception {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Usage");
+    CompiledGrammarSerializer.main(new String[0]);
+  }
+
+  private CompiledGrammar writeAndRead(CompiledGrammar grammar) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CompiledGrammarSerializer.write(grammar, out);
+    return CompiledGrammarSerializer.read(new ByteArrayInputStream(out.toByteArray()), getClass().getClassLoader());
+  }
+
+  private static String print(ParseNode node) {
+    StringBuilder sb = new StringBuilder();
+    Object matcher = node.getMatcher();
+    if (matcher instanceof TokenExpression) {
+      sb.append("Token ").append(((TokenExpression) matcher).getTokenType());
+    } else if (matcher instanceof TriviaExpression) {
+      sb.append("Trivia ").append(((TriviaExpression) matcher).getTriviaKind());
+    } else {
+      sb.append(matcher);
+    }
+    sb.append(' ').append(node.getStartIndex()).append(' ').append(node.getEndIndex()).append(" [");
+    for (ParseNode child : node.getChildren()) {
+      sb.append(print(child));
+    }
+    return sb.append(']').toString();
+  }
+
+}
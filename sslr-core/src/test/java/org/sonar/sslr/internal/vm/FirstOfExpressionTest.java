@@ -19,8 +19,12 @@
  */
 package org.sonar.sslr.internal.vm;
 
+import com.google.common.collect.ImmutableMap;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Map;
+
 import static org.fest.assertions.Assertions.assertThat;
 
 public class FirstOfExpressionTest {
@@ -47,4 +51,94 @@ public class FirstOfExpressionTest {
     });
   }
 
+  @Test
+  public void should_merge_strings() {
+    StringExpression a = new StringExpression("a");
+    StringExpression b = new StringExpression("b");
+    StringExpression c = new StringExpression("c");
+    FirstOfExpression expression = new FirstOfExpression(a, b, new SubExpression(1), c, new SubExpression(2), c, a);
+    Instruction[] instructions = expression.compile(new CompilationHandler() {
+      @Override
+      public boolean isEnabled(Optimization optimization) {
+        return optimization == Optimization.STRING_TRIE;
+      }
+    });
+    assertThat(instructions).hasSize(13);
+    assertThat(((StringTrieExpression) instructions[1]).getStrings()).isEqualTo(new StringExpression[] {a, b});
+    assertThat(instructions[4]).isEqualTo(SubExpression.mockInstruction(1));
+    assertThat(instructions[7]).isSameAs(c);
+    assertThat(instructions[10]).isEqualTo(SubExpression.mockInstruction(2));
+    assertThat(((StringTrieExpression) instructions[12]).getStrings()).isEqualTo(new StringExpression[] {c, a});
+  }
+
+  @Test
+  public void should_compile_dispatch() {
+    SubExpression a = new SubExpression(1);
+    SubExpression b = new SubExpression(2);
+    SubExpression any = new SubExpression(3);
+    final Map<ParsingExpression, FirstSet> firstSets = ImmutableMap.<ParsingExpression, FirstSet>of(
+        a, FirstSet.ofChar('a'),
+        b, FirstSet.ofChar('b'),
+        any, FirstSet.ANY);
+    FirstOfExpression expression = new FirstOfExpression(a, b, any);
+    Instruction[] instructions = expression.compile(new CompilationHandler() {
+      @Override
+      public FirstSet firstSet(ParsingExpression expression) {
+        return firstSets.get(expression);
+      }
+    });
+
+    int[] offsets = new int[128];
+    Arrays.fill(offsets, 1);
+    offsets['a'] = 4;
+    offsets['b'] = 9;
+    assertThat(instructions).isEqualTo(new Instruction[] {
+      Instruction.charDispatch(offsets, 1),
+      // any other character
+      Instruction.choice(2),
+      Instruction.jump(16),
+      Instruction.backtrack(),
+      // 'a'
+      Instruction.choice(2),
+      Instruction.jump(9),
+      Instruction.choice(2),
+      Instruction.jump(11),
+      Instruction.backtrack(),
+      // 'b'
+      Instruction.choice(2),
+      Instruction.jump(6),
+      Instruction.choice(2),
+      Instruction.jump(6),
+      Instruction.backtrack(),
+      SubExpression.mockInstruction(1),
+      Instruction.commit(5),
+      SubExpression.mockInstruction(2),
+      Instruction.commit(3),
+      SubExpression.mockInstruction(3),
+      Instruction.commit(1),
+    });
+  }
+
+  @Test
+  public void should_not_compile_dispatch_when_useless() {
+    SubExpression a = new SubExpression(1);
+    SubExpression nullable = new SubExpression(2);
+    final Map<ParsingExpression, FirstSet> firstSets = ImmutableMap.<ParsingExpression, FirstSet>of(
+        a, FirstSet.ANY,
+        nullable, FirstSet.NULLABLE);
+    FirstOfExpression expression = new FirstOfExpression(a, nullable);
+    Instruction[] instructions = expression.compile(new CompilationHandler() {
+      @Override
+      public FirstSet firstSet(ParsingExpression expression) {
+        return firstSets.get(expression);
+      }
+    });
+    assertThat(instructions).isEqualTo(new Instruction[] {
+      Instruction.choice(3),
+      SubExpression.mockInstruction(1),
+      Instruction.commit(2),
+      SubExpression.mockInstruction(2),
+    });
+  }
+
 }
@@ -0,0 +1,122 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.google.common.collect.ImmutableSet;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.TokenType;
+import org.junit.Test;
+import org.sonar.sslr.internal.grammar.MutableParsingRule;
+import org.sonar.sslr.internal.vm.lexerful.TokenTypeExpression;
+import org.sonar.sslr.internal.vm.lexerful.TokenTypesExpression;
+import org.sonar.sslr.internal.vm.lexerful.TokenValueExpression;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FirstSetCalculatorTest {
+
+  private final FirstSetCalculator calculator = new FirstSetCalculator();
+
+  @Test
+  public void string() {
+    FirstSet firstSet = calculator.compute(new StringExpression("foo"));
+    assertThat(firstSet.getChars()).containsOnly('f');
+    assertThat(firstSet.isNullable()).isFalse();
+    assertThat(firstSet.isAny()).isFalse();
+    assertThat(firstSet.mayStartWith('f')).isTrue();
+    assertThat(firstSet.mayStartWith('o')).isFalse();
+
+    assertThat(calculator.compute(new StringExpression(""))).isSameAs(FirstSet.NULLABLE);
+  }
+
+  @Test
+  public void sequence() {
+    FirstSet firstSet = calculator.compute(new SequenceExpression(
+        new OptionalExpression(new StringExpression("a")),
+        new ZeroOrMoreExpression(new StringExpression("b")),
+        new NextExpression(new StringExpression("x")),
+        new OneOrMoreExpression(new StringExpression("c")),
+        new StringExpression("d")));
+    assertThat(firstSet.getChars()).containsOnly('a', 'b', 'c');
+    assertThat(firstSet.isNullable()).isFalse();
+
+    firstSet = calculator.compute(new SequenceExpression(
+        new OptionalExpression(new StringExpression("a")),
+        new NextNotExpression(new StringExpression("b"))));
+    assertThat(firstSet.getChars()).containsOnly('a');
+    assertThat(firstSet.isNullable()).isTrue();
+    assertThat(firstSet.mayStartWith('z')).isTrue();
+  }
+
+  @Test
+  public void first_of() {
+    FirstSet firstSet = calculator.compute(new FirstOfExpression(
+        new StringExpression("a"),
+        new TokenExpression(GenericTokenType.IDENTIFIER, new StringExpression("b")),
+        new TriviaExpression(null, new StringExpression("c")),
+        NothingExpression.INSTANCE));
+    assertThat(firstSet.getChars()).containsOnly('a', 'b', 'c');
+    assertThat(firstSet.isNullable()).isFalse();
+
+    assertThat(calculator.compute(new FirstOfExpression(new StringExpression("a"), new PatternExpression("a")))).isSameAs(FirstSet.ANY);
+  }
+
+  @Test
+  public void rules() {
+    MutableParsingRule rule = new MutableParsingRule("rule");
+    MutableParsingRule recursiveRule = new MutableParsingRule("recursiveRule");
+    rule.is("a", recursiveRule);
+    recursiveRule.is(new FirstOfExpression(new StringExpression("b"), new SequenceExpression(recursiveRule, new StringExpression("c"))));
+
+    assertThat(calculator.compute(rule).getChars()).containsOnly('a');
+    assertThat(calculator.compute(recursiveRule)).isSameAs(FirstSet.ANY);
+    assertThat(calculator.compute(new MutableParsingRule("undefined"))).isSameAs(FirstSet.ANY);
+  }
+
+  @Test
+  public void predicates() {
+    MutableParsingRule rule = new MutableParsingRule("rule");
+    rule.is(new NextExpression(new FirstOfExpression(new SequenceExpression(rule, new StringExpression("b")), new StringExpression("c"))));
+
+    assertThat(calculator.compute(rule)).isSameAs(FirstSet.ANY);
+    assertThat(calculator.compute(new NextExpression(new StringExpression("a")))).isSameAs(FirstSet.NULLABLE);
+    assertThat(calculator.compute(new NextNotExpression(new PatternExpression("a")))).isSameAs(FirstSet.ANY);
+  }
+
+  @Test
+  public void loops_with_nullable_sub_expression() {
+    assertThat(calculator.compute(new ZeroOrMoreExpression(new NextNotExpression(new StringExpression("a"))))).isSameAs(FirstSet.ANY);
+    assertThat(calculator.compute(new OneOrMoreExpression(new OptionalExpression(new StringExpression("a"))))).isSameAs(FirstSet.ANY);
+    assertThat(calculator.compute(new OneOrMoreExpression(new StringExpression("a"))).getChars()).containsOnly('a');
+  }
+
+  @Test
+  public void tokens() {
+    TokenType type = GenericTokenType.IDENTIFIER;
+    FirstSet firstSet = calculator.compute(new FirstOfExpression(
+        new TokenTypeExpression(type),
+        new TokenTypesExpression(GenericTokenType.LITERAL, GenericTokenType.CONSTANT),
+        new TokenValueExpression("foo")));
+    assertThat(firstSet.getTokenTypes()).isEqualTo(ImmutableSet.of(type, GenericTokenType.LITERAL, GenericTokenType.CONSTANT));
+    assertThat(firstSet.getTokenValues()).containsOnly("foo");
+    assertThat(firstSet.getChars()).isEmpty();
+  }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.sonar.sslr.api.GenericTokenType;
+import org.junit.Test;
+import org.sonar.sslr.internal.vm.lexerful.TokenTypeExpression;
+
+import java.util.EnumSet;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class InstructionOptimizerTest {
+
+  private final Instruction a = new StringExpression("a");
+  private final Instruction b = new StringExpression("b");
+
+  @Test
+  public void should_not_change_instructions_without_optimizations() {
+    Instruction[] instructions = {
+      Instruction.jump(1),
+      Instruction.choice(3),
+      a,
+      Instruction.commitVerify(-2),
+      Instruction.end()
+    };
+    assertThat(InstructionOptimizer.optimize(instructions, EnumSet.noneOf(Optimization.class))).isEqualTo(instructions);
+  }
+
+  @Test
+  public void should_use_partial_commit_in_zero_or_more() {
+    Instruction[] instructions = {
+      Instruction.choice(3),
+      a,
+      Instruction.commitVerify(-2),
+      Instruction.end()
+    };
+    assertThat(InstructionOptimizer.optimize(instructions, EnumSet.of(Optimization.PARTIAL_COMMIT))).isEqualTo(new Instruction[] {
+      Instruction.choice(3),
+      a,
+      Instruction.partialCommitVerify(-1),
+      Instruction.end()
+    });
+  }
+
+  @Test
+  public void should_use_partial_commit_in_one_or_more() {
+    Instruction[] instructions = {
+      Instruction.choice(5),
+      a,
+      Instruction.commitVerify(1),
+      Instruction.choice(3),
+      Instruction.jump(-3),
+      Instruction.backtrack(),
+      Instruction.end()
+    };
+    assertThat(InstructionOptimizer.optimize(instructions, EnumSet.of(Optimization.PARTIAL_COMMIT))).isEqualTo(new Instruction[] {
+      Instruction.choice(6),
+      a,
+      Instruction.commitVerify(1),
+      Instruction.choice(4),
+      a,
+      Instruction.partialCommitVerify(-1),
+      Instruction.backtrack(),
+      Instruction.end()
+    });
+  }
+
+  @Test
+  public void should_insert_test_of_character() {
+    Instruction[] instructions = {
+      Instruction.choice(3),
+      a,
+      Instruction.commit(2),
+      b,
+      Instruction.end()
+    };
+    assertThat(InstructionOptimizer.optimize(instructions, EnumSet.of(Optimization.TEST_INSTRUCTIONS))).isEqualTo(new Instruction[] {
+      Instruction.testChar('a', 4),
+      Instruction.choice(3),
+      a,
+      Instruction.commit(2),
+      b,
+      Instruction.end()
+    });
+  }
+
+  @Test
+  public void should_insert_test_of_token() {
+    Instruction token = Instruction.tokenType(new TokenTypeExpression(GenericTokenType.IDENTIFIER), GenericTokenType.IDENTIFIER, 0);
+    Instruction[] instructions = {
+      Instruction.jump(1),
+      Instruction.choice(3),
+      token,
+      Instruction.commit(2),
+      b,
+      Instruction.end()
+    };
+    assertThat(InstructionOptimizer.optimize(instructions, EnumSet.of(Optimization.TEST_INSTRUCTIONS))).isEqualTo(new Instruction[] {
+      Instruction.jump(1),
+      Instruction.testToken(GenericTokenType.IDENTIFIER, 0, 4),
+      Instruction.choice(3),
+      token,
+      Instruction.commit(2),
+      b,
+      Instruction.end()
+    });
+  }
+
+  @Test
+  public void should_thread_jumps() {
+    Instruction[] instructions = {
+      Instruction.choice(2),
+      Instruction.jump(2),
+      Instruction.jump(3),
+      a,
+      Instruction.jump(1),
+      Instruction.end()
+    };
+    assertThat(InstructionOptimizer.optimize(instructions, EnumSet.of(Optimization.JUMP_THREADING))).isEqualTo(new Instruction[] {
+      Instruction.choice(3),
+      a,
+      Instruction.end(),
+      Instruction.end()
+    });
+  }
+
+  @Test
+  public void should_replace_jump_to_ret() {
+    Instruction[] instructions = {
+      Instruction.choice(2),
+      Instruction.jump(3),
+      a,
+      Instruction.commit(1),
+      Instruction.ret()
+    };
+    assertThat(InstructionOptimizer.optimize(instructions, EnumSet.of(Optimization.JUMP_THREADING))).isEqualTo(new Instruction[] {
+      Instruction.choice(2),
+      Instruction.ret(),
+      a,
+      Instruction.commit(1),
+      Instruction.ret()
+    });
+  }
+
+}
@@ -19,6 +19,9 @@
  */
 package org.sonar.sslr.internal.vm;
 
+import com.google.common.collect.ImmutableMap;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.TokenType;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -29,6 +32,7 @@ import org.sonar.sslr.internal.matchers.Matcher;
 import org.sonar.sslr.internal.vm.Instruction.BackCommitInstruction;
 import org.sonar.sslr.internal.vm.Instruction.BacktrackInstruction;
 import org.sonar.sslr.internal.vm.Instruction.CallInstruction;
+import org.sonar.sslr.internal.vm.Instruction.CharDispatchInstruction;
 import org.sonar.sslr.internal.vm.Instruction.ChoiceInstruction;
 import org.sonar.sslr.internal.vm.Instruction.CommitInstruction;
 import org.sonar.sslr.internal.vm.Instruction.CommitVerifyInstruction;
@@ -36,12 +40,16 @@ import org.sonar.sslr.internal.vm.Instruction.EndInstruction;
 import org.sonar.sslr.internal.vm.Instruction.FailTwiceInstruction;
 import org.sonar.sslr.internal.vm.Instruction.IgnoreErrorsInstruction;
 import org.sonar.sslr.internal.vm.Instruction.JumpInstruction;
+import org.sonar.sslr.internal.vm.Instruction.PartialCommitVerifyInstruction;
 import org.sonar.sslr.internal.vm.Instruction.PredicateChoiceInstruction;
 import org.sonar.sslr.internal.vm.Instruction.RetInstruction;
+import org.sonar.sslr.internal.vm.Instruction.TestCharInstruction;
+import org.sonar.sslr.internal.vm.Instruction.TestTokenInstruction;
+import org.sonar.sslr.internal.vm.Instruction.TokenDispatchInstruction;
+import org.sonar.sslr.internal.vm.lexerful.TokenTypeIds;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -87,6 +95,20 @@ public class InstructionTest {
     verifyNoMoreInteractions(machine);
   }
 
+  @Test
+  public void call_with_return_offset() {
+    Matcher matcher = mock(Matcher.class);
+    Instruction instruction = Instruction.call(42, 13, matcher);
+    assertThat(instruction.toString()).isEqualTo("Call 42 13");
+    assertThat(instruction.equals(Instruction.call(42, 13, matcher))).isTrue();
+    assertThat(instruction.equals(Instruction.call(42, matcher))).isFalse();
+
+    instruction.execute(machine);
+    InOrder inOrder = Mockito.inOrder(machine);
+    inOrder.verify(machine).pushReturn(13, matcher, 42);
+    verifyNoMoreInteractions(machine);
+  }
+
   @Test
   public void choice() {
     Instruction instruction = Instruction.choice(42);
@@ -132,12 +154,9 @@ public class InstructionTest {
     assertThat(instruction.equals(new Object())).isFalse();
     assertThat(instruction.hashCode()).isEqualTo(42);
 
-    MachineStack stack = new MachineStack().getOrCreateChild();
-    when(machine.peek()).thenReturn(stack);
     instruction.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
-    inOrder.verify(machine, times(2)).peek();
-    inOrder.verify(machine).pop();
+    inOrder.verify(machine).commit();
     inOrder.verify(machine).jump(42);
     verifyNoMoreInteractions(machine);
   }
@@ -152,14 +171,14 @@ public class InstructionTest {
     assertThat(instruction.equals(new Object())).isFalse();
     assertThat(instruction.hashCode()).isEqualTo(42);
 
-    MachineStack stack = new MachineStack().getOrCreateChild();
+    MachineStack stack = new MachineStack();
     when(machine.peek()).thenReturn(stack);
     when(machine.getIndex()).thenReturn(13);
     instruction.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).getIndex();
-    inOrder.verify(machine, times(3)).peek();
-    inOrder.verify(machine).pop();
+    inOrder.verify(machine).peek();
+    inOrder.verify(machine).commit();
     inOrder.verify(machine).jump(42);
     verifyNoMoreInteractions(machine);
   }
@@ -167,8 +186,8 @@ public class InstructionTest {
   @Test
   public void commitVerify_should_throw_exception() {
     Instruction instruction = Instruction.commitVerify(42);
-    MachineStack stack = new MachineStack().getOrCreateChild();
-    stack.setIndex(13);
+    MachineStack stack = new MachineStack();
+    stack.push(0, 13, false, 0);
     when(machine.peek()).thenReturn(stack);
     when(machine.getIndex()).thenReturn(13);
     thrown.expect(GrammarException.class);
@@ -176,6 +195,91 @@ public class InstructionTest {
     instruction.execute(machine);
   }
 
+  @Test
+  public void partialCommitVerify() {
+    Instruction instruction = Instruction.partialCommitVerify(42);
+    assertThat(instruction).isInstanceOf(PartialCommitVerifyInstruction.class);
+    assertThat(instruction.toString()).isEqualTo("PartialCommitVerify 42");
+    assertThat(instruction.equals(Instruction.partialCommitVerify(42))).isTrue();
+    assertThat(instruction.equals(Instruction.partialCommitVerify(13))).isFalse();
+    assertThat(instruction.equals(Instruction.commitVerify(42))).isFalse();
+    assertThat(instruction.hashCode()).isEqualTo(42);
+
+    MachineStack stack = new MachineStack();
+    when(machine.peek()).thenReturn(stack);
+    when(machine.getIndex()).thenReturn(13);
+    instruction.execute(machine);
+    InOrder inOrder = Mockito.inOrder(machine);
+    inOrder.verify(machine).getIndex();
+    inOrder.verify(machine).peek();
+    inOrder.verify(machine).partialCommit();
+    inOrder.verify(machine).jump(42);
+    verifyNoMoreInteractions(machine);
+  }
+
+  @Test
+  public void partialCommitVerify_should_throw_exception() {
+    Instruction instruction = Instruction.partialCommitVerify(42);
+    MachineStack stack = new MachineStack();
+    stack.push(0, 13, false, 0);
+    when(machine.peek()).thenReturn(stack);
+    when(machine.getIndex()).thenReturn(13);
+    thrown.expect(GrammarException.class);
+    thrown.expectMessage("The inner part of ZeroOrMore and OneOrMore must not allow empty matches");
+    instruction.execute(machine);
+  }
+
+  @Test
+  public void testChar() {
+    Instruction instruction = Instruction.testChar('a', 42);
+    assertThat(instruction).isInstanceOf(TestCharInstruction.class);
+    assertThat(instruction.toString()).isEqualTo("TestChar a 42");
+    assertThat(instruction.equals(Instruction.testChar('a', 42))).isTrue();
+    assertThat(instruction.equals(Instruction.testChar('b', 42))).isFalse();
+    assertThat(instruction.equals(Instruction.testChar('a', 13))).isFalse();
+    assertThat(instruction.equals(new Object())).isFalse();
+    assertThat(instruction.hashCode()).isEqualTo(42);
+
+    when(machine.length()).thenReturn(1);
+    when(machine.charAt(0)).thenReturn('a');
+    instruction.execute(machine);
+    verify(machine).jump(1);
+
+    when(machine.charAt(0)).thenReturn('b');
+    instruction.execute(machine);
+    verify(machine).jump(42);
+
+    when(machine.length()).thenReturn(0);
+    instruction.execute(machine);
+    verify(machine, Mockito.times(2)).jump(42);
+  }
+
+  @Test
+  public void testToken() {
+    TokenType type = mock(TokenType.class);
+    Instruction instruction = Instruction.testToken(type, 0, 42);
+    assertThat(instruction).isInstanceOf(TestTokenInstruction.class);
+    assertThat(instruction.equals(Instruction.testToken(type, 0, 42))).isTrue();
+    assertThat(instruction.equals(Instruction.testToken(GenericTokenType.IDENTIFIER, 0, 42))).isFalse();
+    assertThat(instruction.equals(Instruction.testToken(type, 1, 42))).isFalse();
+    assertThat(instruction.equals(Instruction.testToken(type, 0, 13))).isFalse();
+    assertThat(instruction.equals(new Object())).isFalse();
+    assertThat(instruction.hashCode()).isEqualTo(42);
+
+    when(machine.length()).thenReturn(1);
+    when(machine.tokenTypeIdAt(0)).thenReturn(0);
+    instruction.execute(machine);
+    verify(machine).jump(1);
+
+    when(machine.tokenTypeIdAt(0)).thenReturn(1);
+    instruction.execute(machine);
+    verify(machine).jump(42);
+
+    when(machine.length()).thenReturn(0);
+    instruction.execute(machine);
+    verify(machine, Mockito.times(2)).jump(42);
+  }
+
   @Test
   public void ret() {
     Instruction instruction = Instruction.ret();
@@ -266,6 +370,71 @@ public class InstructionTest {
     verifyNoMoreInteractions(machine);
   }
 
+  @Test
+  public void charDispatch() {
+    Instruction instruction = Instruction.charDispatch(new int[] {1, 2}, 3);
+    assertThat(instruction).isInstanceOf(CharDispatchInstruction.class);
+    assertThat(instruction.toString()).isEqualTo("CharDispatch [1, 2] 3");
+    assertThat(instruction.equals(Instruction.charDispatch(new int[] {1, 2}, 3))).isTrue();
+    assertThat(instruction.equals(Instruction.charDispatch(new int[] {1, 2}, 4))).isFalse();
+    assertThat(instruction.equals(Instruction.charDispatch(new int[] {1, 3}, 3))).isFalse();
+    assertThat(instruction.equals(new Object())).isFalse();
+    assertThat(instruction.hashCode()).isEqualTo(3);
+
+    when(machine.length()).thenReturn(1);
+    when(machine.charAt(0)).thenReturn((char) 1);
+    instruction.execute(machine);
+    verify(machine).jump(2);
+
+    when(machine.charAt(0)).thenReturn('a');
+    instruction.execute(machine);
+    verify(machine).jump(3);
+
+    when(machine.length()).thenReturn(0);
+    instruction.execute(machine);
+    verify(machine, Mockito.times(2)).jump(3);
+  }
+
+  @Test
+  public void tokenDispatch() {
+    TokenType type = mock(TokenType.class);
+    TokenTypeIds typeIds = new TokenTypeIds();
+    typeIds.register(GenericTokenType.IDENTIFIER);
+    Instruction instruction = Instruction.tokenDispatch(
+        ImmutableMap.of(type, 0),
+        ImmutableMap.of("foo", 0),
+        new int[] {1, 2, 3, 4},
+        typeIds);
+    assertThat(instruction).isInstanceOf(TokenDispatchInstruction.class);
+    assertThat(instruction.equals(Instruction.tokenDispatch(ImmutableMap.of(type, 0), ImmutableMap.of("foo", 0), new int[] {1, 2, 3, 4}, typeIds))).isTrue();
+    assertThat(instruction.equals(Instruction.tokenDispatch(ImmutableMap.of(type, 0), ImmutableMap.of("bar", 0), new int[] {1, 2, 3, 4}, typeIds))).isFalse();
+    assertThat(instruction.equals(new Object())).isFalse();
+    assertThat(typeIds.size()).isEqualTo(2);
+
+    when(machine.length()).thenReturn(1);
+    when(machine.tokenTypeIdAt(0)).thenReturn(typeIds.of(type));
+    when(machine.tokenValueAt(0)).thenReturn("foo");
+    instruction.execute(machine);
+    verify(machine).jump(1);
+
+    when(machine.tokenValueAt(0)).thenReturn("bar");
+    instruction.execute(machine);
+    verify(machine).jump(2);
+
+    when(machine.tokenTypeIdAt(0)).thenReturn(typeIds.of(GenericTokenType.IDENTIFIER));
+    when(machine.tokenValueAt(0)).thenReturn("foo");
+    instruction.execute(machine);
+    verify(machine).jump(3);
+
+    when(machine.tokenTypeIdAt(0)).thenReturn(typeIds.of(GenericTokenType.LITERAL));
+    instruction.execute(machine);
+    verify(machine, Mockito.times(2)).jump(3);
+
+    when(machine.length()).thenReturn(0);
+    instruction.execute(machine);
+    verify(machine).jump(4);
+  }
+
   @Test
   public void ignoreErrors() {
     Instruction instruction = Instruction.ignoreErrors();
@@ -0,0 +1,110 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import com.sonar.sslr.api.TokenType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.sslr.internal.matchers.Matcher;
+import org.sonar.sslr.internal.vm.lexerful.TokenTypeIds;
+import org.sonar.sslr.parser.MemoizationPolicy;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class MachineContextTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private final MachineContext context = new MachineContext();
+
+  @Test
+  public void should_grow() {
+    context.acquire(3, 2);
+    assertThat(context.memos()).isEqualTo(new int[] {-1, -1, -1, -1});
+    assertThat(context.calls()).isEqualTo(new int[] {-1, -1});
+    context.release();
+
+    context.acquire(1, 5);
+    assertThat(context.memos().length).isEqualTo(4);
+    assertThat(context.calls()).isEqualTo(new int[] {-1, -1, -1, -1, -1});
+  }
+
+  @Test
+  public void should_clear_on_release() {
+    context.acquire(3, 2);
+    context.memos()[1] = 42;
+    context.calls()[1] = 42;
+    context.stack().push(0, 0, false, 0);
+    context.stack().setMatcher(mock(Matcher.class));
+    context.stack().addNode(42);
+    context.release();
+
+    assertThat(context.stack().size()).isEqualTo(1);
+    assertThat(context.stack().matcher()).isNull();
+    assertThat(context.stack().subNodesEnd()).isEqualTo(0);
+
+    context.acquire(3, 2);
+    assertThat(context.memos()).isEqualTo(new int[] {-1, -1, -1, -1});
+    assertThat(context.calls()).isEqualTo(new int[] {-1, -1});
+  }
+
+  @Test
+  public void should_compute_token_type_ids_for_given_grammar() {
+    TokenType type1 = mock(TokenType.class);
+    TokenType type2 = mock(TokenType.class);
+    TokenType[] types = {type1, type2, type1};
+    TokenTypeIds ids = new TokenTypeIds();
+    ids.register(type1);
+    assertThat(context.tokenTypeIds(types, 3, ids)).isEqualTo(new int[] {0, 1, 0});
+
+    TokenTypeIds otherIds = new TokenTypeIds();
+    otherIds.register(type2);
+    int[] result = context.tokenTypeIds(types, 2, otherIds);
+    assertThat(result[0]).isEqualTo(1);
+    assertThat(result[1]).isEqualTo(0);
+  }
+
+  @Test
+  public void should_not_be_acquired_twice() {
+    context.acquire(0, 0);
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Machine context can't be used by several parses at the same time");
+    context.acquire(0, 0);
+  }
+
+  @Test
+  public void should_bound_memos_by_window() {
+    MachineContext context = new MachineContext(MemoizationPolicy.LAST_MATCH, 2);
+    context.acquire(3, 2);
+    assertThat(context.memos()).isEqualTo(new int[] {-1, -1});
+    assertThat(context.memoWindow()).isEqualTo(2);
+  }
+
+  @Test
+  public void should_not_accept_non_positive_window() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("memoWindow must be positive");
+    new MachineContext(MemoizationPolicy.LAST_MATCH, 0);
+  }
+
+}
@@ -24,7 +24,7 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.sonar.sslr.grammar.GrammarException;
 import org.sonar.sslr.internal.matchers.Matcher;
-import org.sonar.sslr.internal.matchers.ParseNode;
+import org.sonar.sslr.internal.matchers.ParseTree;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -77,6 +77,7 @@ public class MachineTest {
     assertThat(machine.length()).isEqualTo(3);
     assertThat(machine.charAt(0)).isEqualTo('b');
     assertThat(machine.charAt(1)).isEqualTo('a');
+    assertThat(machine.getInput()[machine.getIndex()]).isEqualTo('b');
   }
 
   @Test
@@ -85,11 +86,9 @@ public class MachineTest {
     Matcher matcher = mock(Matcher.class);
     machine.advanceIndex(1);
     machine.jump(1);
-    MachineStack previousStack = machine.peek();
     machine.pushReturn(2, matcher, 1);
     assertThat(machine.getAddress()).as("new address").isEqualTo(2);
-    assertThat(machine.peek()).isNotSameAs(previousStack);
-    assertThat(machine.peek().parent()).isSameAs(previousStack);
+    assertThat(machine.peek().size()).isEqualTo(2);
     assertThat(machine.peek().index()).as("current index").isEqualTo(1);
     assertThat(machine.peek().address()).as("return address").isEqualTo(1 + 2);
     assertThat(machine.peek().matcher()).isSameAs(matcher);
@@ -122,23 +121,59 @@ public class MachineTest {
     Machine machine = new Machine("foo", new Instruction[2]);
     machine.advanceIndex(1);
     machine.jump(42);
-    MachineStack previousStack = machine.peek();
     machine.pushBacktrack(13);
-    assertThat(machine.peek()).isNotSameAs(previousStack);
-    assertThat(machine.peek().parent()).isSameAs(previousStack);
+    assertThat(machine.peek().size()).isEqualTo(2);
     assertThat(machine.peek().index()).as("current index").isEqualTo(1);
     assertThat(machine.peek().address()).as("backtrack address").isEqualTo(42 + 13);
     assertThat(machine.peek().matcher()).isNull();
   }
 
+  @Test
+  public void should_compute_committed_index() {
+    Machine machine = new Machine("foo", new Instruction[2]);
+    machine.pushReturn(0, mock(Matcher.class), 0);
+    assertThat(machine.peek().committedIndex()).isEqualTo(-1);
+    machine.advanceIndex(1);
+    machine.pushBacktrack(0);
+    machine.advanceIndex(1);
+    machine.pushBacktrack(0);
+    assertThat(machine.peek().committedIndex()).isEqualTo(1);
+  }
+
   @Test
   public void should_pop() {
     Machine machine = new Machine("", new Instruction[2]);
-    MachineStack previousStack = machine.peek();
+    Matcher matcher = mock(Matcher.class);
     machine.pushBacktrack(13);
-    assertThat(machine.peek()).isNotSameAs(previousStack);
+    machine.createLeafNode(matcher, 0);
+    assertThat(machine.peek().size()).isEqualTo(2);
     machine.pop();
-    assertThat(machine.peek()).isSameAs(previousStack);
+    assertThat(machine.peek().size()).isEqualTo(1);
+    assertThat(subNodesCount(machine)).as("nodes are removed").isEqualTo(0);
+  }
+
+  @Test
+  public void should_commit() {
+    Machine machine = new Machine("", new Instruction[2]);
+    Matcher matcher = mock(Matcher.class);
+    machine.pushBacktrack(13);
+    machine.createLeafNode(matcher, 0);
+    machine.commit();
+    assertThat(machine.peek().size()).isEqualTo(1);
+    assertThat(subNodesCount(machine)).as("nodes are preserved").isEqualTo(1);
+  }
+
+  @Test
+  public void should_partial_commit() {
+    Machine machine = new Machine("foo", new Instruction[2]);
+    Matcher matcher = mock(Matcher.class);
+    machine.pushBacktrack(13);
+    machine.createLeafNode(matcher, 1);
+    machine.partialCommit();
+    assertThat(machine.peek().size()).isEqualTo(2);
+    assertThat(machine.peek().index()).isEqualTo(1);
+    machine.pop();
+    assertThat(subNodesCount(machine)).as("nodes are preserved").isEqualTo(1);
   }
 
   @Test
@@ -156,12 +191,14 @@ public class MachineTest {
   public void should_backtrack() {
     Machine machine = new Machine("", new Instruction[4]);
     Matcher matcher = mock(Matcher.class);
-    MachineStack previousStack = machine.peek();
     machine.pushBacktrack(42);
     machine.pushReturn(13, matcher, 0);
+    machine.createLeafNode(matcher, 0);
     machine.pushReturn(13, matcher, 1);
     machine.backtrack();
-    assertThat(machine.peek()).isSameAs(previousStack);
+    assertThat(machine.peek().size()).isEqualTo(1);
+    assertThat(subNodesCount(machine)).isEqualTo(0);
+    assertThat(machine.getParseTree().size()).as("nodes are removed from tree").isEqualTo(0);
     assertThat(machine.getAddress()).isEqualTo(42);
   }
 
@@ -171,11 +208,12 @@ public class MachineTest {
     Matcher matcher = mock(Matcher.class);
     machine.advanceIndex(42);
     machine.createLeafNode(matcher, 13);
-    ParseNode node = machine.peek().subNodes().get(0);
-    assertThat(node.getMatcher()).isSameAs(matcher);
-    assertThat(node.getStartIndex()).isEqualTo(42);
-    assertThat(node.getEndIndex()).isEqualTo(42 + 13);
-    assertThat(node.getChildren()).isEmpty();
+    ParseTree tree = machine.getParseTree();
+    int node = machine.peek().nodes()[0];
+    assertThat(tree.getMatcher(node)).isSameAs(matcher);
+    assertThat(tree.getStartIndex(node)).isEqualTo(42);
+    assertThat(tree.getEndIndex(node)).isEqualTo(42 + 13);
+    assertThat(tree.getChildrenCount(node)).isEqualTo(0);
   }
 
   @Test
@@ -189,11 +227,15 @@ public class MachineTest {
     machine.createLeafNode(subMatcher, 2);
     machine.createLeafNode(subMatcher, 3);
     machine.createNode();
-    ParseNode node = machine.peek().parent().subNodes().get(0);
-    assertThat(node.getMatcher()).isSameAs(matcher);
-    assertThat(node.getStartIndex()).isEqualTo(1);
-    assertThat(node.getEndIndex()).isEqualTo(1 + 2 + 3);
-    assertThat(node.getChildren()).hasSize(2);
+    assertThat(subNodesCount(machine)).isEqualTo(0);
+    machine.popReturn();
+    assertThat(subNodesCount(machine)).isEqualTo(1);
+    ParseTree tree = machine.getParseTree();
+    int node = machine.peek().nodes()[0];
+    assertThat(tree.getMatcher(node)).isSameAs(matcher);
+    assertThat(tree.getStartIndex(node)).isEqualTo(1);
+    assertThat(tree.getEndIndex(node)).isEqualTo(1 + 2 + 3);
+    assertThat(tree.getChildrenCount(node)).isEqualTo(2);
   }
 
   @Test
@@ -205,12 +247,30 @@ public class MachineTest {
     machine.pushReturn(1, matcher, 2);
     machine.advanceIndex(3);
     machine.createNode();
-    ParseNode memo = machine.peek().parent().subNodes().get(0);
+    machine.popReturn();
+    int memo = machine.peek().nodes()[0];
     machine.backtrack();
     machine.pushReturn(2, matcher, 1);
     assertThat(machine.getAddress()).isEqualTo(2);
     assertThat(machine.getIndex()).isEqualTo(3);
-    assertThat(machine.peek().subNodes()).containsOnly(memo);
+    assertThat(subNodesCount(machine)).isEqualTo(1);
+    assertThat(machine.peek().nodes()[machine.peek().subNodesStart()]).isEqualTo(memo);
+  }
+
+  @Test
+  public void should_remove_nodes_created_after_memoized_node_on_backtrack() {
+    Machine machine = new Machine("foo", new Instruction[3]);
+    MemoParsingExpression matcher = mock(MemoParsingExpression.class);
+    when(matcher.shouldMemoize()).thenReturn(true);
+    machine.pushBacktrack(0);
+    machine.pushReturn(1, matcher, 2);
+    machine.advanceIndex(3);
+    machine.createNode();
+    machine.popReturn();
+    machine.createLeafNode(mock(Matcher.class), 0);
+    assertThat(machine.getParseTree().size()).isEqualTo(2);
+    machine.backtrack();
+    assertThat(machine.getParseTree().size()).isEqualTo(1);
   }
 
   @Test
@@ -226,7 +286,7 @@ public class MachineTest {
     machine.pushReturn(2, matcher, 1);
     assertThat(machine.getAddress()).isEqualTo(1);
     assertThat(machine.getIndex()).isEqualTo(0);
-    assertThat(machine.peek().subNodes()).isEmpty();
+    assertThat(subNodesCount(machine)).isEqualTo(0);
   }
 
   @Test
@@ -243,7 +303,11 @@ public class MachineTest {
     machine.pushReturn(2, anotherMatcher, 1);
     assertThat(machine.getAddress()).isEqualTo(1);
     assertThat(machine.getIndex()).isEqualTo(0);
-    assertThat(machine.peek().subNodes()).isEmpty();
+    assertThat(subNodesCount(machine)).isEqualTo(0);
+  }
+
+  private static int subNodesCount(Machine machine) {
+    return machine.peek().subNodesEnd() - machine.peek().subNodesStart();
   }
 
 }
@@ -0,0 +1,76 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class MemoTableTest {
+
+  private final MemoTable table = new MemoTable();
+
+  @Test
+  public void should_put_and_get() {
+    assertThat(table.get(1, 2)).isEqualTo(MemoTable.ABSENT);
+    table.put(1, 2, 42);
+    table.put(2, 1, MemoTable.MISMATCH);
+    assertThat(table.get(1, 2)).isEqualTo(42);
+    assertThat(table.get(2, 1)).isEqualTo(MemoTable.MISMATCH);
+    assertThat(table.size()).isEqualTo(2);
+
+    table.put(1, 2, 13);
+    assertThat(table.get(1, 2)).isEqualTo(13);
+    assertThat(table.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void should_grow() {
+    for (int i = 0; i < 10000; i++) {
+      table.put(i % 7, i, i);
+    }
+    assertThat(table.size()).isEqualTo(10000);
+    for (int i = 0; i < 10000; i++) {
+      assertThat(table.get(i % 7, i)).isEqualTo(i);
+    }
+    assertThat(table.get(0, 1)).isEqualTo(MemoTable.ABSENT);
+  }
+
+  @Test
+  public void should_clear() {
+    table.put(1, 2, 3);
+    table.clear();
+    assertThat(table.size()).isEqualTo(0);
+    assertThat(table.get(1, 2)).isEqualTo(MemoTable.ABSENT);
+  }
+
+  @Test
+  public void should_remove_before_index() {
+    for (int i = 0; i < 10000; i++) {
+      table.put(i % 7, i, i);
+    }
+    table.removeBefore(9000);
+    assertThat(table.size()).isEqualTo(1000);
+    assertThat(table.get(8999 % 7, 8999)).isEqualTo(MemoTable.ABSENT);
+    assertThat(table.get(9000 % 7, 9000)).isEqualTo(9000);
+    assertThat(table.get(9999 % 7, 9999)).isEqualTo(9999);
+  }
+
+}
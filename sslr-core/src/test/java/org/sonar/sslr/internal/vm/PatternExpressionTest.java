@@ -25,10 +25,13 @@ import org.junit.rules.ExpectedException;
 import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.sonar.sslr.grammar.GrammarException;
+import org.sonar.sslr.internal.matchers.Matcher;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.atLeast;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
@@ -46,8 +49,30 @@ public class PatternExpressionTest {
     assertThat(expression.toString()).isEqualTo("Pattern foo|bar");
   }
 
+  @Test
+  public void should_match_by_automaton() {
+    when(machine.getInput()).thenReturn("xfoo".toCharArray());
+    when(machine.getIndex()).thenReturn(1);
+    when(machine.length()).thenReturn(3);
+    expression.execute(machine);
+    InOrder inOrder = Mockito.inOrder(machine);
+    inOrder.verify(machine).createLeafNode(expression, 3);
+    inOrder.verify(machine).jump(1);
+  }
+
+  @Test
+  public void should_backtrack_by_automaton() {
+    when(machine.getInput()).thenReturn("fox".toCharArray());
+    when(machine.getIndex()).thenReturn(0);
+    when(machine.length()).thenReturn(2);
+    expression.execute(machine);
+    verify(machine).backtrack();
+    verify(machine, never()).createLeafNode(Mockito.any(Matcher.class), Mockito.anyInt());
+  }
+
   @Test
   public void should_match() {
+    expression = new PatternExpression("(?=f)foo|bar");
     when(machine.length()).thenReturn(3);
     when(machine.charAt(0)).thenReturn('f');
     when(machine.charAt(1)).thenReturn('o');
@@ -65,6 +90,7 @@ public class PatternExpressionTest {
 
   @Test
   public void should_backtrack() {
+    expression = new PatternExpression("(?=f)foo|bar");
     when(machine.length()).thenReturn(1);
     when(machine.charAt(0)).thenReturn('z');
     expression.execute(machine);
@@ -77,10 +103,11 @@ public class PatternExpressionTest {
 
   @Test
   public void should_catch_StackOverflowError() {
+    expression = new PatternExpression("foo|bar\\b");
     when(machine.length()).thenReturn(1);
     when(machine.charAt(0)).thenThrow(StackOverflowError.class);
     thrown.expect(GrammarException.class);
-    thrown.expectMessage("The regular expression 'foo|bar' has led to a stack overflow error."
+    thrown.expectMessage("The regular expression 'foo|bar\\b' has led to a stack overflow error."
       + " This error is certainly due to an inefficient use of alternations. See http://bugs.sun.com/bugdatabase/view_bug.do?bug_id=5050507");
     expression.execute(machine);
   }
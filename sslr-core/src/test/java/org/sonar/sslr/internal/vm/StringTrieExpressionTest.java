@@ -0,0 +1,99 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StringTrieExpressionTest {
+
+  private final StringExpression shiftLeftAssign = new StringExpression("<<=");
+  private final StringExpression shiftLeft = new StringExpression("<<");
+  private final StringExpression lessOrEqual = new StringExpression("<=");
+  private final StringExpression less = new StringExpression("<");
+  private final StringExpression arrow = new StringExpression("->");
+  private final StringTrieExpression expression = new StringTrieExpression(shiftLeftAssign, shiftLeft, lessOrEqual, less, arrow);
+
+  @Test
+  public void should_compile() {
+    assertThat(expression.compile(new CompilationHandler())).containsOnly(expression);
+    assertThat(expression.getStrings()).containsOnly(shiftLeftAssign, shiftLeft, lessOrEqual, less, arrow);
+    assertThat(expression.toString()).isEqualTo("StringTrie [String <<=, String <<, String <=, String <, String ->]");
+  }
+
+  @Test
+  public void should_match() {
+    assertMatch(expression, "<<=", shiftLeftAssign, 3);
+    assertMatch(expression, "<<x", shiftLeft, 2);
+    assertMatch(expression, "<=<", lessOrEqual, 2);
+    assertMatch(expression, "<", less, 1);
+    assertMatch(expression, "->", arrow, 2);
+  }
+
+  @Test
+  public void should_prefer_first_alternative() {
+    StringTrieExpression expression = new StringTrieExpression(less, shiftLeftAssign, shiftLeft);
+    assertMatch(expression, "<<=", less, 1);
+  }
+
+  @Test
+  public void should_match_empty_string() {
+    StringExpression empty = new StringExpression("");
+    StringTrieExpression expression = new StringTrieExpression(arrow, empty, less);
+    assertMatch(expression, "-<", empty, 0);
+    assertMatch(expression, "->", arrow, 2);
+    assertMatch(expression, "<", empty, 0);
+  }
+
+  @Test
+  public void should_backtrack() {
+    assertBacktrack("");
+    assertBacktrack("-");
+    assertBacktrack("-=");
+    assertBacktrack("=");
+  }
+
+  private static void assertMatch(StringTrieExpression expression, String input, StringExpression expected, int length) {
+    Machine machine = machine(input);
+    expression.execute(machine);
+    verify(machine).createLeafNode(expected, length);
+    verify(machine).jump(1);
+  }
+
+  private void assertBacktrack(String input) {
+    Machine machine = machine(input);
+    expression.execute(machine);
+    verify(machine).backtrack();
+  }
+
+  private static Machine machine(String input) {
+    Machine machine = mock(Machine.class);
+    when(machine.length()).thenReturn(input.length());
+    for (int i = 0; i < input.length(); i++) {
+      when(machine.charAt(i)).thenReturn(input.charAt(i));
+    }
+    return machine;
+  }
+
+}
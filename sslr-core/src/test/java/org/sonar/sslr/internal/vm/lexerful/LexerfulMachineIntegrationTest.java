@@ -35,23 +35,24 @@ import static org.mockito.Mockito.when;
 public class LexerfulMachineIntegrationTest {
 
   private Token[] tokens;
+  private CompilationHandler compiler = new CompilationHandler();
 
   @Test
   public void tokenType() {
-    Instruction[] instructions = new TokenTypeExpression(GenericTokenType.IDENTIFIER).compile(new CompilationHandler());
-    assertThat(Machine.execute(instructions, token(GenericTokenType.IDENTIFIER))).isTrue();
-    assertThat(Machine.execute(instructions, token(GenericTokenType.LITERAL))).isFalse();
+    Instruction[] instructions = new TokenTypeExpression(GenericTokenType.IDENTIFIER).compile(compiler);
+    assertThat(Machine.execute(instructions, compiler.tokenTypeIds(), token(GenericTokenType.IDENTIFIER))).isTrue();
+    assertThat(Machine.execute(instructions, compiler.tokenTypeIds(), token(GenericTokenType.LITERAL))).isFalse();
   }
 
   @Test
   public void tokenTypes() {
-    Instruction[] instructions = new TokenTypesExpression(GenericTokenType.IDENTIFIER, GenericTokenType.LITERAL).compile(new CompilationHandler());
+    Instruction[] instructions = new TokenTypesExpression(GenericTokenType.IDENTIFIER, GenericTokenType.LITERAL).compile(compiler);
     tokens = new Token[] {token(GenericTokenType.IDENTIFIER)};
-    assertThat(Machine.execute(instructions, tokens)).isTrue();
+    assertThat(Machine.execute(instructions, compiler.tokenTypeIds(), tokens)).isTrue();
     tokens = new Token[] {token(GenericTokenType.LITERAL)};
-    assertThat(Machine.execute(instructions, tokens)).isTrue();
+    assertThat(Machine.execute(instructions, compiler.tokenTypeIds(), tokens)).isTrue();
     tokens = new Token[] {token(GenericTokenType.UNKNOWN_CHAR)};
-    assertThat(Machine.execute(instructions, tokens)).isFalse();
+    assertThat(Machine.execute(instructions, compiler.tokenTypeIds(), tokens)).isFalse();
   }
 
   @Test
@@ -69,15 +70,15 @@ public class LexerfulMachineIntegrationTest {
 
   @Test
   public void tokensBridge() {
-    Instruction[] instructions = new TokensBridgeExpression(GenericTokenType.IDENTIFIER, GenericTokenType.LITERAL).compile(new CompilationHandler());
+    Instruction[] instructions = new TokensBridgeExpression(GenericTokenType.IDENTIFIER, GenericTokenType.LITERAL).compile(compiler);
     tokens = new Token[] {token(GenericTokenType.IDENTIFIER), token(GenericTokenType.LITERAL)};
-    assertThat(Machine.execute(instructions, tokens)).isTrue();
+    assertThat(Machine.execute(instructions, compiler.tokenTypeIds(), tokens)).isTrue();
     tokens = new Token[] {token(GenericTokenType.IDENTIFIER), token(GenericTokenType.IDENTIFIER), token(GenericTokenType.LITERAL)};
-    assertThat(Machine.execute(instructions, tokens)).isFalse();
+    assertThat(Machine.execute(instructions, compiler.tokenTypeIds(), tokens)).isFalse();
     tokens = new Token[] {token(GenericTokenType.IDENTIFIER), token(GenericTokenType.IDENTIFIER), token(GenericTokenType.LITERAL), token(GenericTokenType.LITERAL)};
-    assertThat(Machine.execute(instructions, tokens)).isTrue();
+    assertThat(Machine.execute(instructions, compiler.tokenTypeIds(), tokens)).isTrue();
     tokens = new Token[] {token(GenericTokenType.IDENTIFIER), token(GenericTokenType.UNKNOWN_CHAR), token(GenericTokenType.LITERAL)};
-    assertThat(Machine.execute(instructions, tokens)).isTrue();
+    assertThat(Machine.execute(instructions, compiler.tokenTypeIds(), tokens)).isTrue();
   }
 
   @Test
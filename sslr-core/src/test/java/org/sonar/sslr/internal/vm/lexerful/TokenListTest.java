@@ -0,0 +1,80 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm.lexerful;
+
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.Arrays;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TokenListTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void should_grow() {
+    TokenList tokens = new TokenList(1);
+    Token token1 = mock(Token.class);
+    Token token2 = mock(Token.class);
+    tokens.append(token1);
+    tokens.append(token2);
+    assertThat(tokens).containsExactly(token1, token2);
+    assertThat(tokens.size()).isEqualTo(2);
+    assertThat(tokens.elements().length).isGreaterThanOrEqualTo(2);
+    assertThat(tokens.elements()[0]).isSameAs(token1);
+  }
+
+  @Test
+  public void should_hold_types_and_values() {
+    TokenType type = mock(TokenType.class);
+    Token token = mock(Token.class);
+    when(token.getType()).thenReturn(type);
+    when(token.getValue()).thenReturn("foo");
+    TokenList tokens = TokenList.copyOf(Arrays.asList(mock(Token.class), token));
+    assertThat(tokens.size()).isEqualTo(2);
+    assertThat(tokens.get(1)).isSameAs(token);
+    assertThat(tokens.types()[1]).isSameAs(type);
+    assertThat(tokens.values()[1]).isEqualTo("foo");
+  }
+
+  @Test
+  public void should_check_index() {
+    TokenList tokens = new TokenList();
+    tokens.append(mock(Token.class));
+    thrown.expect(IndexOutOfBoundsException.class);
+    tokens.get(1);
+  }
+
+  @Test
+  public void should_be_unmodifiable() {
+    TokenList tokens = new TokenList();
+    thrown.expect(UnsupportedOperationException.class);
+    tokens.add(mock(Token.class));
+  }
+
+}
@@ -19,7 +19,6 @@
  */
 package org.sonar.sslr.internal.vm.lexerful;
 
-import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.TokenType;
 import org.junit.Rule;
 import org.junit.Test;
@@ -27,6 +26,7 @@ import org.junit.rules.ExpectedException;
 import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.sonar.sslr.internal.vm.CompilationHandler;
+import org.sonar.sslr.internal.vm.Instruction;
 import org.sonar.sslr.internal.vm.Machine;
 
 import static org.fest.assertions.Assertions.assertThat;
@@ -42,23 +42,26 @@ public class TokenTypeExpressionTest {
   private TokenType type = mock(TokenType.class);
   private TokenTypeExpression expression = new TokenTypeExpression(type);
   private Machine machine = mock(Machine.class);
+  private CompilationHandler compiler = new CompilationHandler();
+  private Instruction instruction = expression.compile(compiler)[0];
 
   @Test
   public void should_compile() {
-    assertThat(expression.compile(new CompilationHandler())).containsOnly(expression);
+    assertThat(instruction).isInstanceOf(Instruction.TokenTypeInstruction.class);
+    assertThat(((Instruction.TokenTypeInstruction) instruction).getTypeId()).isEqualTo(compiler.tokenTypeIds().of(type));
+    assertThat(compiler.tokenTypeIds().size()).isEqualTo(1);
     assertThat(expression.toString()).isEqualTo("TokenType " + type);
+    assertThat(instruction.toString()).isEqualTo(expression.toString());
   }
 
   @Test
   public void should_match() {
-    Token token = mock(Token.class);
-    when(token.getType()).thenReturn(type);
     when(machine.length()).thenReturn(1);
-    when(machine.tokenAt(0)).thenReturn(token);
-    expression.execute(machine);
+    when(machine.tokenTypeIdAt(0)).thenReturn(0);
+    instruction.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
+    inOrder.verify(machine).tokenTypeIdAt(0);
     inOrder.verify(machine).createLeafNode(expression, 1);
     inOrder.verify(machine).jump(1);
     verifyNoMoreInteractions(machine);
@@ -67,7 +70,7 @@ public class TokenTypeExpressionTest {
   @Test
   public void should_backtrack() {
     when(machine.length()).thenReturn(0);
-    expression.execute(machine);
+    instruction.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
     inOrder.verify(machine).backtrack();
@@ -76,14 +79,12 @@ public class TokenTypeExpressionTest {
 
   @Test
   public void should_backtrack2() {
-    Token token = mock(Token.class);
-    when(token.getType()).thenReturn(mock(TokenType.class));
     when(machine.length()).thenReturn(1);
-    when(machine.tokenAt(0)).thenReturn(token);
-    expression.execute(machine);
+    when(machine.tokenTypeIdAt(0)).thenReturn(1);
+    instruction.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
+    inOrder.verify(machine).tokenTypeIdAt(0);
     inOrder.verify(machine).backtrack();
     verifyNoMoreInteractions(machine);
   }
@@ -0,0 +1,49 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.internal.vm.lexerful;
+
+import com.sonar.sslr.api.GenericTokenType;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class TokenTypeIdsTest {
+
+  @Test
+  public void should_assign_dense_ids() {
+    TokenTypeIds ids = new TokenTypeIds();
+    assertThat(ids.register(GenericTokenType.IDENTIFIER)).isEqualTo(0);
+    assertThat(ids.register(GenericTokenType.LITERAL)).isEqualTo(1);
+    assertThat(ids.register(GenericTokenType.IDENTIFIER)).isEqualTo(0);
+    assertThat(ids.size()).isEqualTo(2);
+    assertThat(ids.of(GenericTokenType.LITERAL)).isEqualTo(1);
+    assertThat(ids.of(GenericTokenType.EOF)).isEqualTo(2);
+  }
+
+  @Test
+  public void should_be_independent() {
+    TokenTypeIds ids = new TokenTypeIds();
+    ids.register(GenericTokenType.IDENTIFIER);
+    TokenTypeIds otherIds = new TokenTypeIds();
+    assertThat(otherIds.register(GenericTokenType.LITERAL)).isEqualTo(0);
+    assertThat(otherIds.of(GenericTokenType.IDENTIFIER)).isEqualTo(1);
+  }
+
+}
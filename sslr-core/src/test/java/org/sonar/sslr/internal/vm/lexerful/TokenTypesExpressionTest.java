@@ -20,7 +20,6 @@
 package org.sonar.sslr.internal.vm.lexerful;
 
 import com.google.common.collect.ImmutableSet;
-import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.TokenType;
 import org.junit.Rule;
 import org.junit.Test;
@@ -28,6 +27,7 @@ import org.junit.rules.ExpectedException;
 import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.sonar.sslr.internal.vm.CompilationHandler;
+import org.sonar.sslr.internal.vm.Instruction;
 import org.sonar.sslr.internal.vm.Machine;
 
 import static org.fest.assertions.Assertions.assertThat;
@@ -44,23 +44,25 @@ public class TokenTypesExpressionTest {
   private TokenType type2 = mock(TokenType.class);
   private TokenTypesExpression expression = new TokenTypesExpression(type1, type2);
   private Machine machine = mock(Machine.class);
+  private CompilationHandler compiler = new CompilationHandler();
+  private Instruction instruction = expression.compile(compiler)[0];
 
   @Test
   public void should_compile() {
-    assertThat(expression.compile(new CompilationHandler())).containsOnly(expression);
+    assertThat(instruction).isInstanceOf(Instruction.TokenTypesInstruction.class);
+    assertThat(compiler.tokenTypeIds().size()).isEqualTo(2);
     assertThat(expression.toString()).isEqualTo("TokenTypes " + ImmutableSet.of(type1, type2));
+    assertThat(instruction.toString()).isEqualTo(expression.toString());
   }
 
   @Test
   public void should_match() {
-    Token token = mock(Token.class);
-    when(token.getType()).thenReturn(type1);
     when(machine.length()).thenReturn(1);
-    when(machine.tokenAt(0)).thenReturn(token);
-    expression.execute(machine);
+    when(machine.tokenTypeIdAt(0)).thenReturn(compiler.tokenTypeIds().of(type1));
+    instruction.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
+    inOrder.verify(machine).tokenTypeIdAt(0);
     inOrder.verify(machine).createLeafNode(expression, 1);
     inOrder.verify(machine).jump(1);
     verifyNoMoreInteractions(machine);
@@ -69,7 +71,7 @@ public class TokenTypesExpressionTest {
   @Test
   public void should_backtrack() {
     when(machine.length()).thenReturn(0);
-    expression.execute(machine);
+    instruction.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
     inOrder.verify(machine).backtrack();
@@ -78,14 +80,24 @@ public class TokenTypesExpressionTest {
 
   @Test
   public void should_backtrack2() {
-    Token token = mock(Token.class);
-    when(token.getType()).thenReturn(mock(TokenType.class));
     when(machine.length()).thenReturn(1);
-    when(machine.tokenAt(0)).thenReturn(token);
-    expression.execute(machine);
+    when(machine.tokenTypeIdAt(0)).thenReturn(2);
+    instruction.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
+    inOrder.verify(machine).tokenTypeIdAt(0);
+    inOrder.verify(machine).backtrack();
+    verifyNoMoreInteractions(machine);
+  }
+
+  @Test
+  public void should_backtrack3() {
+    when(machine.length()).thenReturn(1);
+    when(machine.tokenTypeIdAt(0)).thenReturn(64);
+    instruction.execute(machine);
+    InOrder inOrder = Mockito.inOrder(machine);
+    inOrder.verify(machine).length();
+    inOrder.verify(machine).tokenTypeIdAt(0);
     inOrder.verify(machine).backtrack();
     verifyNoMoreInteractions(machine);
   }
@@ -19,7 +19,6 @@
  */
 package org.sonar.sslr.internal.vm.lexerful;
 
-import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.TokenType;
 import org.junit.Rule;
 import org.junit.Test;
@@ -27,6 +26,7 @@ import org.junit.rules.ExpectedException;
 import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.sonar.sslr.internal.vm.CompilationHandler;
+import org.sonar.sslr.internal.vm.Instruction;
 import org.sonar.sslr.internal.vm.Machine;
 
 import static org.fest.assertions.Assertions.assertThat;
@@ -45,34 +45,36 @@ public class TokensBridgeExpressionTest {
   private TokenType anotherType = mock(TokenType.class);
   private TokensBridgeExpression expression = new TokensBridgeExpression(fromType, toType);
   private Machine machine = mock(Machine.class);
+  private CompilationHandler compiler = new CompilationHandler();
+  private Instruction instruction = expression.compile(compiler)[0];
+  private int fromTypeId = compiler.tokenTypeIds().of(fromType);
+  private int toTypeId = compiler.tokenTypeIds().of(toType);
+  private int anotherTypeId = compiler.tokenTypeIds().of(anotherType);
 
   @Test
   public void should_compile() {
-    assertThat(expression.compile(new CompilationHandler())).containsOnly(expression);
+    assertThat(instruction).isInstanceOf(Instruction.TokensBridgeInstruction.class);
+    assertThat(compiler.tokenTypeIds().size()).isEqualTo(2);
     assertThat(expression.toString()).isEqualTo("Bridge[" + fromType + "," + toType + "]");
+    assertThat(instruction.toString()).isEqualTo(expression.toString());
   }
 
   @Test
   public void should_match() {
     when(machine.length()).thenReturn(5);
-    Token token1 = token(fromType);
-    Token token2 = token(fromType);
-    Token token3 = token(anotherType);
-    Token token4 = token(toType);
-    Token token5 = token(toType);
-    when(machine.tokenAt(0)).thenReturn(token1);
-    when(machine.tokenAt(1)).thenReturn(token2);
-    when(machine.tokenAt(2)).thenReturn(token3);
-    when(machine.tokenAt(3)).thenReturn(token4);
-    when(machine.tokenAt(4)).thenReturn(token5);
-    expression.execute(machine);
+    when(machine.tokenTypeIdAt(0)).thenReturn(fromTypeId);
+    when(machine.tokenTypeIdAt(1)).thenReturn(fromTypeId);
+    when(machine.tokenTypeIdAt(2)).thenReturn(anotherTypeId);
+    when(machine.tokenTypeIdAt(3)).thenReturn(toTypeId);
+    when(machine.tokenTypeIdAt(4)).thenReturn(toTypeId);
+    instruction.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
-    inOrder.verify(machine).tokenAt(1);
-    inOrder.verify(machine).tokenAt(2);
-    inOrder.verify(machine).tokenAt(3);
-    inOrder.verify(machine).tokenAt(4);
+    inOrder.verify(machine).tokenTypeIdAt(0);
+    inOrder.verify(machine).tokenTypeIdAt(1);
+    inOrder.verify(machine).tokenTypeIdAt(2);
+    inOrder.verify(machine).tokenTypeIdAt(3);
+    inOrder.verify(machine).tokenTypeIdAt(4);
     // Number of created nodes must be equal to the number of consumed tokens (5):
     inOrder.verify(machine, times(5)).createLeafNode(expression, 1);
     inOrder.verify(machine).jump(1);
@@ -82,7 +84,7 @@ public class TokensBridgeExpressionTest {
   @Test
   public void should_backtrack() {
     when(machine.length()).thenReturn(0);
-    expression.execute(machine);
+    instruction.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
     inOrder.verify(machine).backtrack();
@@ -92,12 +94,11 @@ public class TokensBridgeExpressionTest {
   @Test
   public void should_backtrack2() {
     when(machine.length()).thenReturn(2);
-    Token token1 = token(anotherType);
-    when(machine.tokenAt(0)).thenReturn(token1);
-    expression.execute(machine);
+    when(machine.tokenTypeIdAt(0)).thenReturn(anotherTypeId);
+    instruction.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
+    inOrder.verify(machine).tokenTypeIdAt(0);
     inOrder.verify(machine).backtrack();
     verifyNoMoreInteractions(machine);
   }
@@ -105,23 +106,15 @@ public class TokensBridgeExpressionTest {
   @Test
   public void should_backtrack3() {
     when(machine.length()).thenReturn(2);
-    Token token1 = token(fromType);
-    Token token2 = token(fromType);
-    when(machine.tokenAt(0)).thenReturn(token1);
-    when(machine.tokenAt(1)).thenReturn(token2);
-    expression.execute(machine);
+    when(machine.tokenTypeIdAt(0)).thenReturn(fromTypeId);
+    when(machine.tokenTypeIdAt(1)).thenReturn(fromTypeId);
+    instruction.execute(machine);
     InOrder inOrder = Mockito.inOrder(machine);
     inOrder.verify(machine).length();
-    inOrder.verify(machine).tokenAt(0);
-    inOrder.verify(machine).tokenAt(1);
+    inOrder.verify(machine).tokenTypeIdAt(0);
+    inOrder.verify(machine).tokenTypeIdAt(1);
     inOrder.verify(machine).backtrack();
     verifyNoMoreInteractions(machine);
   }
 
-  private static Token token(TokenType tokenType) {
-    Token token = mock(Token.class);
-    when(token.getType()).thenReturn(tokenType);
-    return token;
-  }
-
 }
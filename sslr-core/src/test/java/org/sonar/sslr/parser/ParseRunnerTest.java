@@ -19,11 +19,26 @@
  */
 package org.sonar.sslr.parser;
 
+import com.google.common.base.Strings;
 import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.sonar.sslr.grammar.GrammarException;
 import org.sonar.sslr.internal.grammar.MutableParsingRule;
+import org.sonar.sslr.internal.matchers.ExpressionGrammar;
+import org.sonar.sslr.internal.matchers.InputBuffer;
+import org.sonar.sslr.internal.matchers.ParseNode;
+import org.sonar.sslr.internal.text.LineIndex;
+import org.sonar.sslr.internal.vm.FirstOfExpression;
+import org.sonar.sslr.internal.vm.NextExpression;
+import org.sonar.sslr.internal.vm.NextNotExpression;
+import org.sonar.sslr.internal.vm.SequenceExpression;
+import org.sonar.sslr.internal.vm.StringExpression;
+import org.sonar.sslr.internal.vm.ZeroOrMoreExpression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 
 import static org.fest.assertions.Assertions.assertThat;
 
@@ -38,6 +53,46 @@ public class ParseRunnerTest {
     new ParseRunner(null);
   }
 
+  @Test
+  public void should_detect_left_recursion_through_predicate() {
+    MutableParsingRule rule = new MutableParsingRule("rule");
+    rule.is(new NextExpression(new FirstOfExpression(new SequenceExpression(rule, rule, new StringExpression("ba")), new StringExpression("c"))));
+    ParseRunner runner = new ParseRunner(rule);
+    thrown.expect(GrammarException.class);
+    thrown.expectMessage("Left recursion has been detected");
+    runner.parse("c".toCharArray());
+  }
+
+  @Test
+  public void should_detect_empty_loop_in_alternative() {
+    Rule rule = new MutableParsingRule("rule").is(new FirstOfExpression(
+        new SequenceExpression(new ZeroOrMoreExpression(new NextNotExpression(new StringExpression("q"))), new StringExpression("a")),
+        new StringExpression("c")));
+    ParseRunner runner = new ParseRunner(rule);
+    thrown.expect(GrammarException.class);
+    thrown.expectMessage("The inner part of ZeroOrMore and OneOrMore must not allow empty matches");
+    runner.parse("c".toCharArray());
+  }
+
+  @Test
+  public void should_compute_lines_only_when_required() {
+    Rule rule = new MutableParsingRule("rule").is("foo", "bar");
+    ParseRunner runner = new ParseRunner(rule);
+
+    char[] input = "foo\nbar".toCharArray();
+    LineIndex lines = LineIndex.of(input);
+    assertThat(runner.parse(input, lines).isMatched()).isFalse();
+    assertThat(lines.isComputed()).isFalse();
+
+    input = "foobar".toCharArray();
+    lines = LineIndex.of(input);
+    ParsingResult result = runner.parse(input, lines);
+    assertThat(result.isMatched()).isTrue();
+    assertThat(lines.isComputed()).isFalse();
+    assertThat(result.getInputBuffer().getPosition(3)).isEqualTo(new InputBuffer.Position(1, 4));
+    assertThat(lines.isComputed()).isTrue();
+  }
+
   @Test
   public void should_report_error_at_rule_level() {
     Rule rule = new MutableParsingRule("rule").is("foo", "bar");
@@ -133,4 +188,142 @@ public class ParseRunnerTest {
     assertThat(parseError.getErrorIndex()).isEqualTo(0);
   }
 
+  @Test
+  public void should_parse_with_bounded_memoization() {
+    Rule subRule = new MutableParsingRule("subRule").is("foo");
+    Rule rule = new MutableParsingRule("rule").is(GrammarOperators.zeroOrMore(GrammarOperators.firstOf(
+        GrammarOperators.sequence(subRule, "bar"),
+        GrammarOperators.sequence(subRule, "baz"))), GrammarOperators.endOfInput());
+    char[] input = Strings.repeat("foobarfoobaz", 5000).toCharArray();
+    for (MemoizationPolicy memoizationPolicy : MemoizationPolicy.values()) {
+      ParseRunner runner = new ParseRunner(rule, false, memoizationPolicy, 10);
+      assertThat(runner.parse(input).getParseTreeRoot().getChildren()).hasSize(2 * 2 * 5000);
+    }
+  }
+
+  @Test
+  public void should_report_error_at_same_location_with_dispatch_on_first_character() {
+    Rule subRule = new MutableParsingRule("subRule").is("foo");
+    Rule rule = new MutableParsingRule("rule").is(GrammarOperators.firstOf(
+        GrammarOperators.sequence(subRule, "bar"),
+        "baz",
+        GrammarOperators.sequence(subRule, "qux")));
+    ParseRunner runner = new ParseRunner(rule);
+    assertThat(runner.parse("fooqux".toCharArray()).isMatched()).isTrue();
+    ParsingResult result = runner.parse("foobaz".toCharArray());
+    assertThat(result.isMatched()).isFalse();
+    assertThat(result.getParseError().getErrorIndex()).isEqualTo(3);
+  }
+
+  @Test
+  public void should_reparse_with_same_result_as_parse() {
+    Rule rule = new ExpressionGrammar().getRootRule();
+    String source = "(a + 1) * (b - 2) / c + d * (e + (f - 3))";
+    TextEdit[] edits = {
+      new TextEdit(0, 0, "x + "),
+      new TextEdit(2, 0, "a"),
+      new TextEdit(4, 1, " "),
+      new TextEdit(6, 0, "1 "),
+      new TextEdit(10, 7, "b"),
+      new TextEdit(source.length(), 0, " + g"),
+      new TextEdit(source.length() - 11, 10, ""),
+      new TextEdit(0, source.length(), "z")};
+    for (MemoizationPolicy memoizationPolicy : MemoizationPolicy.values()) {
+      ParseRunner runner = new ParseRunner(rule, true, memoizationPolicy);
+      ParsingResult previous = runner.parse(source.toCharArray());
+      for (TextEdit edit : edits) {
+        ParsingResult result = runner.parse(previous, edit);
+        String expectedSource = source.substring(0, edit.getOffset()) + edit.getInsertedText() + source.substring(edit.getOffset() + edit.getRemovedLength());
+        ParsingResult expected = runner.parse(expectedSource.toCharArray());
+        assertThat(result.isMatched()).isTrue();
+        assertThat(text(result.getInputBuffer())).isEqualTo(expectedSource);
+        assertThat(toString(result.getParseTreeRoot())).as(memoizationPolicy + " " + expectedSource)
+            .isEqualTo(toString(expected.getParseTreeRoot()));
+      }
+    }
+  }
+
+  @Test
+  public void should_report_error_after_reparse() {
+    ParseRunner runner = new ParseRunner(new ExpressionGrammar().getRootRule());
+    ParsingResult previous = runner.parse("a + (b * c) + d".toCharArray());
+    ParsingResult result = runner.parse(previous, new TextEdit(5, 1, "+"));
+    assertThat(result.isMatched()).isFalse();
+    assertThat(result.getParseError().getErrorIndex()).isEqualTo(runner.parse("a + (+ * c) + d".toCharArray()).getParseError().getErrorIndex());
+
+    result = runner.parse(result, new TextEdit(5, 1, "b"));
+    assertThat(result.isMatched()).isTrue();
+  }
+
+  private static String text(InputBuffer inputBuffer) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < inputBuffer.length(); i++) {
+      sb.append(inputBuffer.charAt(i));
+    }
+    return sb.toString();
+  }
+
+  private static String toString(ParseNode node) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(node.getMatcher()).append('[').append(node.getStartIndex()).append(',').append(node.getEndIndex()).append(']');
+    for (ParseNode child : node.getChildren()) {
+      sb.append(' ').append(toString(child));
+    }
+    return sb.append(';').toString();
+  }
+
+  @Test
+  public void should_load_saved_grammar() throws Exception {
+    Rule subRule = new MutableParsingRule("subRule").is("foo");
+    Rule rule = new MutableParsingRule("rule").is(GrammarOperators.oneOrMore(subRule), GrammarOperators.endOfInput());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new ParseRunner(rule).save(out);
+
+    ParseRunner runner = ParseRunner.load(new ByteArrayInputStream(out.toByteArray()), getClass().getClassLoader());
+    assertThat(runner.parse("foofoo".toCharArray()).getParseTreeRoot().getChildren()).hasSize(2);
+    ParsingResult result = runner.parse("foobar".toCharArray());
+    assertThat(result.isMatched()).isFalse();
+    assertThat(result.getParseError().getErrorIndex()).isEqualTo(3);
+  }
+
+  @Test
+  public void should_reuse_machine_context() throws Exception {
+    Rule subRule = new MutableParsingRule("subRule").is("foo");
+    Rule rule = new MutableParsingRule("rule").is(GrammarOperators.oneOrMore(subRule), GrammarOperators.endOfInput());
+    final ParseRunner runner = new ParseRunner(rule, true);
+
+    assertThat(runner.parse("foofoofoo".toCharArray()).getParseTreeRoot().getChildren()).hasSize(3);
+    assertThat(runner.parse("foo".toCharArray()).getParseTreeRoot().getChildren()).hasSize(1);
+    assertThat(runner.parse("foobar".toCharArray()).isMatched()).isFalse();
+    assertThat(runner.parse("foofoo".toCharArray()).getParseTreeRoot().getChildren()).hasSize(2);
+
+    final ParsingResult[] results = new ParsingResult[1];
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        results[0] = runner.parse("foofoo".toCharArray());
+      }
+    };
+    thread.start();
+    thread.join();
+    assertThat(results[0].getParseTreeRoot().getChildren()).hasSize(2);
+  }
+
+  @Test
+  public void should_produce_same_result_with_any_memoization_policy() {
+    Rule subRule = new MutableParsingRule("subRule").is("foo");
+    Rule rule = new MutableParsingRule("rule").is(GrammarOperators.firstOf(
+        GrammarOperators.sequence(subRule, "bar"),
+        GrammarOperators.sequence(subRule, "baz"),
+        GrammarOperators.sequence(GrammarOperators.zeroOrMore(subRule), GrammarOperators.endOfInput())));
+    for (MemoizationPolicy memoizationPolicy : MemoizationPolicy.values()) {
+      ParseRunner runner = new ParseRunner(rule, true, memoizationPolicy);
+      assertThat(runner.parse("foobaz".toCharArray()).getParseTreeRoot().getChildren()).hasSize(2);
+      assertThat(runner.parse("foofoo".toCharArray()).getParseTreeRoot().getChildren()).hasSize(2);
+      ParsingResult result = runner.parse("foobax".toCharArray());
+      assertThat(result.isMatched()).isFalse();
+      assertThat(result.getParseError().getErrorIndex()).isEqualTo(3);
+    }
+  }
+
 }
@@ -21,9 +21,13 @@ package org.sonar.sslr.parser;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.io.Files;
+import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.RecognitionException;
 import com.sonar.sslr.api.Token;
+import com.sonar.sslr.impl.ParseListener;
 import com.sonar.sslr.impl.Parser;
 import org.junit.Before;
 import org.junit.Rule;
@@ -31,10 +35,14 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.sslr.internal.matchers.ExpressionGrammar;
+import org.sonar.sslr.text.Preprocessor;
+import org.sonar.sslr.text.PreprocessorsChain;
 
 import java.io.File;
 import java.nio.charset.Charset;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.fest.assertions.Assertions.assertThat;
 
@@ -79,6 +87,16 @@ public class ParserAdapterTest {
     parser.parse(file);
   }
 
+  @Test
+  public void should_parse_file_with_multibyte_characters() throws Exception {
+    File file = temporaryFolder.newFile();
+    Files.write("été+1", file, Charsets.UTF_8);
+    AstNode ast = parser.parse(file);
+    assertThat(ast.getTokenValue()).isEqualTo("été");
+    assertThat(ast.getLastToken().getValue()).isEqualTo("1");
+    assertThat(ast.getLastToken().getColumn()).isEqualTo(4);
+  }
+
   @Test
   public void should_not_parse_invalid_file() {
     thrown.expect(RecognitionException.class);
@@ -86,6 +104,63 @@ public class ParserAdapterTest {
     parser.parse(file);
   }
 
+  @Test
+  public void should_parse_files_in_parallel() throws Exception {
+    List<File> files = Lists.newArrayList();
+    for (int i = 0; i < 20; i++) {
+      File file = temporaryFolder.newFile();
+      Files.write(i % 5 == 0 ? "1+" : "1+" + i, file, Charsets.UTF_8);
+      files.add(file);
+    }
+
+    final Map<File, AstNode> asts = Maps.newHashMap();
+    final Map<File, RecognitionException> exceptions = Maps.newHashMap();
+    parser.parse(files, 3, new ParseListener() {
+      public void onSuccess(File file, AstNode ast) {
+        asts.put(file, ast);
+      }
+
+      public void onFailure(File file, RecognitionException e) {
+        exceptions.put(file, e);
+      }
+    });
+
+    assertThat(asts).hasSize(16);
+    assertThat(exceptions).hasSize(4);
+    assertThat(exceptions.keySet()).containsOnly(files.get(0), files.get(5), files.get(10), files.get(15));
+    assertThat(asts.get(files.get(12)).getTokenValue()).isEqualTo("1");
+  }
+
+  @Test
+  public void should_reparse_string() {
+    ParsingResult result = parser.parseResult("1+1");
+    result = parser.reparse(result, new TextEdit(2, 0, "(2*3)+"));
+    AstNode astNode = parser.createAst(result);
+    assertThat(astNode.getTokenValue()).isEqualTo("1");
+    assertThat(astNode.getLastToken().getColumn()).isEqualTo(8);
+  }
+
+  @Test
+  public void should_not_create_ast_from_invalid_result() {
+    thrown.expect(RecognitionException.class);
+    parser.createAst(parser.parseResult("1+"));
+  }
+
+  @Test
+  public void should_not_reparse_with_preprocessors() {
+    parser = new ParserAdapter(Charset.forName("UTF-8"), grammar, new PreprocessorsChain(Collections.<Preprocessor>emptyList()));
+    assertThat(parser.isReparseSupported()).isFalse();
+    thrown.expect(IllegalStateException.class);
+    parser.parseResult("1+1");
+  }
+
+  @Test
+  public void should_not_parse_files_without_threads() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("number of threads must be greater than zero, but was 0");
+    parser.parse(ImmutableList.<File>of(), 0, null);
+  }
+
   @Test
   public void builder_should_not_create_new_instance_from_adapter() {
     assertThat(Parser.builder(parser).build()).isSameAs(parser);
@@ -0,0 +1,73 @@
+/*
+ * SonarSource Language Recognizer
+ * Copyright (C) 2010 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.sslr.parser;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.sslr.internal.matchers.ImmutableInputBuffer;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class TextEditTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void should_apply() {
+    ImmutableInputBuffer input = new ImmutableInputBuffer("foo bar baz".toCharArray());
+    assertThat(new String(new TextEdit(4, 3, "qux").apply(input))).isEqualTo("foo qux baz");
+    assertThat(new String(new TextEdit(0, 0, "(").apply(input))).isEqualTo("(foo bar baz");
+    assertThat(new String(new TextEdit(3, 8, "").apply(input))).isEqualTo("foo");
+  }
+
+  @Test
+  public void should_not_apply_outside_of_input() {
+    thrown.expect(IndexOutOfBoundsException.class);
+    new TextEdit(2, 2, "").apply(new ImmutableInputBuffer("foo".toCharArray()));
+  }
+
+  @Test
+  public void should_compute_edit_between_texts() {
+    TextEdit edit = TextEdit.between("foo bar baz", "foo qux baz");
+    assertThat(edit.getOffset()).isEqualTo(4);
+    assertThat(edit.getRemovedLength()).isEqualTo(3);
+    assertThat(edit.getInsertedText()).isEqualTo("qux");
+    assertThat(edit.getShift()).isEqualTo(0);
+
+    edit = TextEdit.between("aaa", "aaaa");
+    assertThat(edit.getOffset()).isEqualTo(3);
+    assertThat(edit.getRemovedLength()).isEqualTo(0);
+    assertThat(edit.getInsertedText()).isEqualTo("a");
+
+    edit = TextEdit.between("foo", "foo");
+    assertThat(edit.getRemovedLength()).isEqualTo(0);
+    assertThat(edit.getInsertedText()).isEmpty();
+  }
+
+  @Test
+  public void should_not_accept_negative_offset() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("offset must not be negative");
+    new TextEdit(-1, 0, "");
+  }
+
+}
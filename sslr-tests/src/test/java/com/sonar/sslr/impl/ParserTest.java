@@ -19,9 +19,27 @@
  */
 package com.sonar.sslr.impl;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
 import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.impl.matcher.RuleDefinition;
+import com.sonar.sslr.test.minic.MiniCGrammar;
+import com.sonar.sslr.test.minic.MiniCLexer;
+import com.sonar.sslr.test.minic.MiniCParser;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static com.sonar.sslr.api.GenericTokenType.EOF;
 import static com.sonar.sslr.test.minic.MiniCParser.parseFile;
@@ -30,6 +48,9 @@ import static org.fest.assertions.Assertions.assertThat;
 
 public class ParserTest {
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Test(expected = RecognitionException.class)
   public void lexerErrorStringWrappedInRecognitionException() {
     parseString(".");
@@ -57,4 +78,89 @@ public class ParserTest {
     assertThat(compilationUnit.getFirstChild().is(EOF)).isTrue();
   }
 
+  @Test
+  public void should_recompile_grammar_when_rule_overridden() {
+    Parser<Grammar> parser = MiniCParser.create();
+    assertThat(parser.parse("int a;").getNumberOfChildren()).isEqualTo(2);
+
+    ((RuleDefinition) parser.getGrammar().rule(MiniCGrammar.COMPILATION_UNIT)).override(EOF);
+    try {
+      parser.parse("int a;");
+      throw new AssertionError("This should be unreachable!");
+    } catch (RecognitionException e) {
+      // expected
+    }
+    assertThat(parser.parse("").getNumberOfChildren()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_recompile_grammar_when_root_rule_changed() {
+    Parser<Grammar> parser = MiniCParser.create();
+    assertThat(parser.parse("").is(MiniCGrammar.COMPILATION_UNIT)).isTrue();
+
+    parser.setRootRule(parser.getGrammar().rule(MiniCGrammar.BIN_TYPE));
+    assertThat(parser.parse("int").is(MiniCGrammar.BIN_TYPE)).isTrue();
+  }
+
+  @Test
+  public void should_parse_files_in_parallel() throws Exception {
+    List<File> files = Lists.newArrayList();
+    for (int i = 0; i < 20; i++) {
+      File file = temporaryFolder.newFile();
+      Files.write(i % 5 == 0 ? "int a" + i : "int a" + i + ";", file, Charsets.UTF_8);
+      files.add(file);
+    }
+
+    final Map<File, AstNode> asts = Maps.newHashMap();
+    final Map<File, RecognitionException> exceptions = Maps.newHashMap();
+    MiniCParser.create().parse(files, 4, new ParseListener() {
+      public void onSuccess(File file, AstNode ast) {
+        asts.put(file, ast);
+      }
+
+      public void onFailure(File file, RecognitionException e) {
+        exceptions.put(file, e);
+      }
+    });
+
+    assertThat(asts).hasSize(16);
+    assertThat(exceptions.keySet()).containsOnly(files.get(0), files.get(5), files.get(10), files.get(15));
+    assertThat(asts.get(files.get(12)).getToken().getURI()).isEqualTo(files.get(12).toURI());
+    assertThat(asts.get(files.get(12)).getFirstDescendant(MiniCGrammar.BIN_VARIABLE_DEFINITION).getTokenValue()).isEqualTo("a12");
+  }
+
+  @Test
+  public void should_parse_files_in_parallel_with_lexer_per_thread() throws Exception {
+    List<File> files = Lists.newArrayList();
+    for (int i = 0; i < 20; i++) {
+      File file = temporaryFolder.newFile();
+      Files.write(i % 5 == 0 ? "int a" + i : "int a" + i + ";", file, Charsets.UTF_8);
+      files.add(file);
+    }
+
+    final Map<File, AstNode> asts = Maps.newConcurrentMap();
+    final Map<File, RecognitionException> exceptions = Maps.newConcurrentMap();
+    final Set<Lexer> lexers = Sets.newSetFromMap(Maps.<Lexer, Boolean> newConcurrentMap());
+    MiniCParser.create().parse(files, 4, new ParseListener() {
+      public void onSuccess(File file, AstNode ast) {
+        asts.put(file, ast);
+      }
+
+      public void onFailure(File file, RecognitionException e) {
+        exceptions.put(file, e);
+      }
+    }, new Supplier<Lexer>() {
+      public Lexer get() {
+        Lexer lexer = MiniCLexer.create();
+        lexers.add(lexer);
+        return lexer;
+      }
+    });
+
+    assertThat(asts).hasSize(16);
+    assertThat(exceptions.keySet()).containsOnly(files.get(0), files.get(5), files.get(10), files.get(15));
+    assertThat(asts.get(files.get(12)).getFirstDescendant(MiniCGrammar.BIN_VARIABLE_DEFINITION).getTokenValue()).isEqualTo("a12");
+    assertThat(lexers.size()).isGreaterThan(0).isLessThanOrEqualTo(4);
+  }
+
 }
@@ -56,13 +56,29 @@ public class PunctuatorChannelTest {
     assertThat(channel.consume(new CodeReader("!"), lexer)).isFalse();
   }
 
+  @Test
+  public void should_fall_back_to_shorter_punctuator() {
+    assertThat(channel, consume("..", lexer));
+    assertThat(lexer.getTokens(), hasToken(".", MyPunctuatorAndOperator.DOT));
+
+    assertThat(channel, consume("...", lexer));
+    assertThat(lexer.getTokens(), hasToken("...", MyPunctuatorAndOperator.ELLIPSIS));
+  }
+
+  @Test
+  public void should_determine_first_characters() {
+    assertThat(channel.canStartWith('*')).isTrue();
+    assertThat(channel.canStartWith('!')).isTrue();
+    assertThat(channel.canStartWith('w')).isFalse();
+  }
+
   @Test
   public void testNotConsumeWord() {
     assertThat(channel.consume(new CodeReader("word"), lexer)).isFalse();
   }
 
   private enum MyPunctuatorAndOperator implements TokenType {
-    STAR("*"), COLON(","), EQUAL("="), EQUAL_OP("=="), MUL_ASSIGN("*="), NOT_EQUAL("!=");
+    STAR("*"), COLON(","), EQUAL("="), EQUAL_OP("=="), MUL_ASSIGN("*="), NOT_EQUAL("!="), DOT("."), ELLIPSIS("...");
 
     private final String value;
 
@@ -44,6 +44,13 @@ public class RegexpChannelTest {
     assertThat(lexer.getTokens(), hasToken("56", GenericTokenType.CONSTANT));
   }
 
+  @Test
+  public void should_determine_first_characters() {
+    channel = new RegexpChannel(GenericTokenType.CONSTANT, "[0-9]++");
+    assertThat(channel.canStartWith('5'), is(true));
+    assertThat(channel.canStartWith('N'), is(false));
+  }
+
   @Test
   public void testColumnNumber() {
     channel = new RegexpChannel(GenericTokenType.CONSTANT, "[0-9]*");
@@ -19,15 +19,25 @@
  */
 package com.sonar.sslr.test.minic;
 
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.sonar.sslr.api.Token;
 import com.sonar.sslr.impl.Lexer;
 import org.junit.Test;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static com.sonar.sslr.api.GenericTokenType.IDENTIFIER;
 import static com.sonar.sslr.test.lexer.LexerMatchers.hasComment;
 import static com.sonar.sslr.test.lexer.LexerMatchers.hasToken;
 import static com.sonar.sslr.test.minic.MiniCLexer.Keywords.*;
 import static com.sonar.sslr.test.minic.MiniCLexer.Literals.INTEGER;
 import static com.sonar.sslr.test.minic.MiniCLexer.Punctuators.*;
+import static org.fest.assertions.Assertions.assertThat;
 import static org.junit.Assert.assertThat;
 
 public class MiniCLexerTest {
@@ -93,4 +103,34 @@ public class MiniCLexerTest {
     assertThat(lexer.lex("--"), hasToken(DEC));
   }
 
+  @Test
+  public void lexConcurrently() throws Exception {
+    final String source = Strings.repeat("/* comment */ int a = b + 42; \n", 1000);
+    final List<Token> expected = lexer.lex(source);
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<List<Token>>> results = Lists.newArrayList();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(new Callable<List<Token>>() {
+          public List<Token> call() {
+            return lexer.lex(source);
+          }
+        }));
+      }
+      for (Future<List<Token>> result : results) {
+        List<Token> tokens = result.get();
+        assertThat(tokens.size()).isEqualTo(expected.size());
+        for (int i = 0; i < tokens.size(); i++) {
+          assertThat(tokens.get(i).getType()).isEqualTo(expected.get(i).getType());
+          assertThat(tokens.get(i).getValue()).isEqualTo(expected.get(i).getValue());
+          assertThat(tokens.get(i).getLine()).isEqualTo(expected.get(i).getLine());
+          assertThat(tokens.get(i).getTrivia()).hasSize(expected.get(i).getTrivia().size());
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
 }
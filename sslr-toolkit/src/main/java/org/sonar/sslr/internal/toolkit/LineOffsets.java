@@ -19,41 +19,62 @@
  */
 package org.sonar.sslr.internal.toolkit;
 
-import com.google.common.collect.Maps;
 import com.sonar.sslr.api.Token;
-
-import java.util.Map;
+import org.sonar.sslr.internal.text.LineIndex;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+/**
+ * Converts positions of tokens into offsets in the document of source code editor,
+ * in which each line terminator, including {@code "\r\n"}, occupies a single offset.
+ */
 public class LineOffsets {
 
-  private static final String NEWLINE_REGEX = "(\r)?\n|\r";
-
-  private final Map<Integer, Integer> lineOffsets = Maps.newHashMap();
+  /**
+   * Offsets of lines, index is number of line minus 1.
+   */
+  private final int[] lineOffsets;
   private final int endOffset;
 
   public LineOffsets(String code) {
+    char[] chars = code.toCharArray();
+    LineIndex lines = LineIndex.of(chars);
+    lineOffsets = new int[lines.getLineCount()];
     int currentOffset = 0;
-
-    String[] lines = code.split(NEWLINE_REGEX, -1);
-    for (int line = 1; line <= lines.length; line++) {
-      lineOffsets.put(line, currentOffset);
-      currentOffset += lines[line - 1].length() + 1;
+    for (int line = 1; line <= lineOffsets.length; line++) {
+      lineOffsets[line - 1] = currentOffset;
+      currentOffset += getLineLength(chars, lines, line) + 1;
     }
 
     endOffset = currentOffset - 1;
   }
 
+  /**
+   * @return length of line without line terminator
+   */
+  private static int getLineLength(char[] chars, LineIndex lines, int line) {
+    int start = lines.getLineStart(line);
+    int end = lines.getLineEnd(line);
+    if (end > start && chars[end - 1] == '\n') {
+      end--;
+    }
+    if (end > start && chars[end - 1] == '\r') {
+      end--;
+    }
+    return end - start;
+  }
+
   public int getStartOffset(Token token) {
     return getOffset(token.getLine(), token.getColumn());
   }
 
   public int getEndOffset(Token token) {
-    String[] tokenLines = token.getOriginalValue().split(NEWLINE_REGEX, -1);
+    String value = token.getOriginalValue();
+    LineIndex tokenLines = LineIndex.of(value.toCharArray());
+    int tokenLineCount = tokenLines.getLineCount();
 
-    int tokenLastLine = token.getLine() + tokenLines.length - 1;
-    int tokenLastLineColumn = (tokenLines.length > 1 ? 0 : token.getColumn()) + tokenLines[tokenLines.length - 1].length();
+    int tokenLastLine = token.getLine() + tokenLineCount - 1;
+    int tokenLastLineColumn = (tokenLineCount > 1 ? 0 : token.getColumn()) + value.length() - tokenLines.getLineStart(tokenLineCount);
 
     return getOffset(tokenLastLine, tokenLastLineColumn);
   }
@@ -62,8 +83,8 @@ public class LineOffsets {
     checkArgument(line >= 1);
     checkArgument(column >= 0);
 
-    if (lineOffsets.containsKey(line)) {
-      return Math.min(lineOffsets.get(line) + column, endOffset);
+    if (line <= lineOffsets.length) {
+      return Math.min(lineOffsets[line - 1] + column, endOffset);
     } else {
       return endOffset;
     }
@@ -25,9 +25,13 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.io.Files;
 import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.impl.Parser;
 import com.sonar.sslr.impl.ast.AstXmlPrinter;
 import org.sonar.colorizer.HtmlOptions;
 import org.sonar.colorizer.HtmlRenderer;
+import org.sonar.sslr.parser.ParserAdapter;
+import org.sonar.sslr.parser.ParsingResult;
+import org.sonar.sslr.parser.TextEdit;
 
 import java.io.File;
 import java.io.IOException;
@@ -42,6 +46,12 @@ public class SourceCodeModel {
   private String sourceCode;
   private AstNode astNode;
 
+  /**
+   * Parser and result of the last parse, which can be used to reparse source code after edit.
+   */
+  private Parser<?> parser;
+  private ParsingResult parsingResult;
+
   public SourceCodeModel(ConfigurationModel configurationModel) {
     Preconditions.checkNotNull(configurationModel);
 
@@ -50,6 +60,8 @@ public class SourceCodeModel {
 
   public void setSourceCode(File source, Charset charset) {
     this.astNode = configurationModel.getParser().parse(source);
+    this.parser = null;
+    this.parsingResult = null;
 
     try {
       this.sourceCode = Files.toString(source, charset);
@@ -59,7 +71,20 @@ public class SourceCodeModel {
   }
 
   public void setSourceCode(String sourceCode) {
-    this.astNode = configurationModel.getParser().parse(sourceCode);
+    Parser<?> newParser = configurationModel.getParser();
+    if (newParser instanceof ParserAdapter && ((ParserAdapter<?>) newParser).isReparseSupported()) {
+      ParserAdapter<?> parserAdapter = (ParserAdapter<?>) newParser;
+      ParsingResult result = newParser == parser && parsingResult != null
+          ? parserAdapter.reparse(parsingResult, TextEdit.between(this.sourceCode, sourceCode))
+          : parserAdapter.parseResult(sourceCode);
+      this.astNode = parserAdapter.createAst(result);
+      this.parser = newParser;
+      this.parsingResult = result;
+    } else {
+      this.astNode = newParser.parse(sourceCode);
+      this.parser = null;
+      this.parsingResult = null;
+    }
     this.sourceCode = sourceCode;
   }
 